@@ -7,6 +7,7 @@ package core;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import movement.MovementModel;
 import movement.Path;
@@ -19,7 +20,24 @@ import static core.Constants.DEBUG;
  * A DTN capable host.
  */
 public class DTNHost implements Comparable<DTNHost> {
-	private static int nextAddress = 0;
+	/**
+	 * Should the hosts be moved by interpolating on their paths -setting id
+	 * ({@value}). Boolean (true/false) variable in the
+	 * {@link World#OPTIMIZATION_SETTINGS_NS} namespace. If true, a host's
+	 * location is computed on every move from the time it has traveled its
+	 * current path, using the path's cumulative travel times
+	 * ({@link Path#getLocationAt(double)}), instead of moving it towards the
+	 * next waypoint by the distance it can travel. Movement listeners are
+	 * still told about every waypoint the host passes. The locations differ
+	 * slightly from the default movement where the speed changes, because the
+	 * default movement uses the distance left over from a leg on the next leg
+	 * while this uses the time left over. Default is false.
+	 */
+	public static final String INTERPOLATE_MOVEMENT_S = "interpolateMovement";
+
+	private static AtomicInteger nextAddress;
+	/** are hosts moved by interpolating on their paths */
+	private static boolean interpolateMovement;
 	private int address;
 
 	private Coord location; 	// where is the host
@@ -29,6 +47,12 @@ public class DTNHost implements Comparable<DTNHost> {
 	private MovementModel movement;
 	private Path path;
 	private double speed;
+	/** where the host was when it started the current path */
+	private Coord pathStart;
+	/** time from the start location to the first waypoint of the path */
+	private double pathLeadTime;
+	/** time the host has traveled the current path */
+	private double pathTime;
 	private double nextTimeToMove;
 	private String name;
 	private List<MessageListener> msgListeners;
@@ -61,11 +85,7 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.name = groupId+address;
 		this.net = new ArrayList<NetworkInterface>();
 
-		for (NetworkInterface i : interf) {
-			NetworkInterface ni = i.replicate();
-			ni.setHost(this);
-			net.add(ni);
-		}
+		addInterfaces(interf);
 
 		// TODO - think about the names of the interfaces and the nodes
 		//this.name = groupId + ((NetworkInterface)net.get(1)).getAddress();
@@ -75,6 +95,7 @@ public class DTNHost implements Comparable<DTNHost> {
 
 		// create instances by replicating the prototypes
 		this.movement = mmProto.replicate();
+		this.movement.register();
 		this.movement.setComBus(comBus);
 		this.movement.setHost(this);
 		setRouter(mRouterProto.replicate());
@@ -84,8 +105,75 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.nextTimeToMove = movement.nextPathAvailable();
 		this.path = null;
 
-		if (movLs != null) { // inform movement listeners about the location
-			for (MovementListener l : movLs) {
+		informMovementListeners();
+	}
+
+	/**
+	 * Creates a new DTNHost that has only its movement model (and initial
+	 * location). The model isn't registered and the host has no network
+	 * interfaces or router until {@link #register(List, MessageRouter)} is
+	 * called. Hosts can be created in parallel this way if the movement
+	 * model allows it ({@link MovementModel#canReplicateInParallel()}).
+	 * @param address Network address of the host
+	 * @param msgLs Message listeners
+	 * @param movLs Movement listeners
+	 * @param groupId GroupID of this host
+	 * @param comBus Module communication bus object
+	 * @param mmProto Prototype of the movement model of this host
+	 */
+	DTNHost(int address, List<MessageListener> msgLs,
+			List<MovementListener> movLs, String groupId,
+			ModuleCommunicationBus comBus, MovementModel mmProto) {
+		this.comBus = comBus;
+		this.address = address;
+		this.name = groupId+address;
+		this.net = new ArrayList<NetworkInterface>();
+		this.msgListeners = msgLs;
+		this.movListeners = movLs;
+
+		this.movement = mmProto.replicate();
+		this.movement.setComBus(comBus);
+		this.movement.setHost(this);
+
+		this.location = movement.getInitialLocation();
+
+		this.nextTimeToMove = movement.nextPathAvailable();
+		this.path = null;
+	}
+
+	/**
+	 * Finishes the creation of a host created with only a movement model:
+	 * registers the movement model, adds the network interfaces and the
+	 * router, and informs the movement listeners about the host's initial
+	 * location. Must be called for the hosts in the order of their addresses.
+	 * @param interf List of NetworkInterfaces for the class
+	 * @param mRouterProto Prototype of the message router of this host
+	 */
+	void register(List<NetworkInterface> interf, MessageRouter mRouterProto) {
+		this.movement.register();
+		addInterfaces(interf);
+		setRouter(mRouterProto.replicate());
+		informMovementListeners();
+	}
+
+	/**
+	 * Adds replicas of the given network interfaces to this host
+	 * @param interf The network interface prototypes
+	 */
+	private void addInterfaces(List<NetworkInterface> interf) {
+		for (NetworkInterface i : interf) {
+			NetworkInterface ni = i.replicate();
+			ni.setHost(this);
+			net.add(ni);
+		}
+	}
+
+	/**
+	 * Informs the movement listeners about the initial location of the host
+	 */
+	private void informMovementListeners() {
+		if (movListeners != null) {
+			for (MovementListener l : movListeners) {
 				l.initialLocation(this, this.location);
 			}
 		}
@@ -93,18 +181,20 @@ public class DTNHost implements Comparable<DTNHost> {
 
 	/**
 	 * Returns a new network interface address and increments the address for
-	 * subsequent calls.
+	 * subsequent calls. Thread-safe without locking.
 	 * @return The next address.
 	 */
-	private synchronized static int getNextAddress() {
-		return nextAddress++;
+	static int getNextAddress() {
+		return nextAddress.getAndIncrement();
 	}
 
 	/**
 	 * Reset the host and its interfaces
 	 */
 	public static void reset() {
-		nextAddress = 0;
+		nextAddress = new AtomicInteger(0);
+		Settings s = new Settings(World.OPTIMIZATION_SETTINGS_NS);
+		interpolateMovement = s.getBoolean(INTERPOLATE_MOVEMENT_S, false);
 	}
 
 	/**
@@ -204,6 +294,38 @@ public class DTNHost implements Comparable<DTNHost> {
 	}
 
 
+	/**
+	 * Returns the location where this node will be at the given time if it
+	 * keeps traveling its current path. The location is found in logarithmic
+	 * time in the number of the path's waypoints.
+	 * @param time The simulation time
+	 * @return The predicted location at that time. If the time is not in the
+	 * future or the node is not moving on a path, the current location is
+	 * returned. After the end of the path, the end of the path is returned.
+	 */
+	public Coord getLocationAt(double time) {
+		double timeLeft = time - SimClock.getTime();
+		if (timeLeft <= 0 || path == null || destination == null ||
+				speed <= 0 || !isMovementActive()) {
+			return this.location.clone();
+		}
+
+		double distance = this.location.distance(this.destination);
+		double timeToDestination = distance / speed;
+		if (timeLeft < timeToDestination) { // on the way to the destination
+			double ratio = timeLeft / timeToDestination;
+			return new Coord(location.getX() + ratio *
+					(destination.getX() - location.getX()),
+					location.getY() + ratio *
+					(destination.getY() - location.getY()));
+		}
+
+		/* the destination is the previous waypoint returned by the path */
+		int index = path.getNextWaypointIndex() - 1;
+		return path.getLocationAt(path.getTimeTo(index) + timeLeft -
+				timeToDestination);
+	}
+
 	/**
 	 * Sets the Node's location overriding any location set by movement model
 	 * @param location The location to set
@@ -385,6 +507,10 @@ public class DTNHost implements Comparable<DTNHost> {
 				return;
 			}
 		}
+		if (interpolateMovement) {
+			moveOnPath(timeIncrement);
+			return;
+		}
 
 		possibleMovement = timeIncrement * speed;
 		distance = this.location.distance(this.destination);
@@ -407,6 +533,40 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.location.translate(dx, dy);
 	}
 
+	/**
+	 * Moves the host by interpolating on its current path (see
+	 * {@link #INTERPOLATE_MOVEMENT_S})
+	 * @param timeIncrement How long time the node moves
+	 */
+	private void moveOnPath(double timeIncrement) {
+		if (this.path == null && !setNextWaypoint()) {
+			return; // no new path yet
+		}
+
+		this.pathTime += timeIncrement;
+		while (this.pathTime >= this.pathLeadTime +
+				path.getTimeTo(path.getNextWaypointIndex() - 1)) {
+			// node passes its next destination
+			this.location.setLocation(this.destination); // snap to destination
+			if (!setNextWaypoint()) { // get a new waypoint
+				return; // no more waypoints left
+			}
+		}
+
+		if (this.pathTime < this.pathLeadTime) {
+			// still on the way to the first waypoint of the path
+			double ratio = this.pathTime / this.pathLeadTime;
+			this.location.setLocation(this.pathStart);
+			this.location.translate(
+					ratio * (destination.getX() - pathStart.getX()),
+					ratio * (destination.getY() - pathStart.getY()));
+		}
+		else {
+			this.location.setLocation(
+					path.getLocationAt(this.pathTime - this.pathLeadTime));
+		}
+	}
+
 	/**
 	 * Sets the next destination and speed to correspond the next waypoint
 	 * on the path.
@@ -416,6 +576,13 @@ public class DTNHost implements Comparable<DTNHost> {
 	private boolean setNextWaypoint() {
 		if (path == null) {
 			path = movement.getPath();
+			if (this.movListeners != null) {
+				for (MovementListener l : this.movListeners) {
+					if (l instanceof PathListener) {
+						((PathListener)l).newPath(this, path);
+					}
+				}
+			}
 		}
 
 		if (path == null || !path.hasNext()) {
@@ -427,6 +594,14 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.destination = path.getNextWaypoint();
 		this.speed = path.getSpeed();
 
+		if (interpolateMovement && path.getNextWaypointIndex() == 1) {
+			// a new path: its times are counted from the first waypoint
+			double distance = this.location.distance(this.destination);
+			this.pathStart = this.location.clone();
+			this.pathLeadTime = (distance == 0 ? 0 : distance / this.speed);
+			this.pathTime = 0;
+		}
+
 		if (this.movListeners != null) {
 			for (MovementListener l : this.movListeners) {
 				l.newDestination(this, this.destination, this.speed);
@@ -163,6 +163,16 @@ public class Message implements Comparable<Message> {
 		}
 	}
 
+	/**
+	 * Returns the simulation time when the TTL of the message expires
+	 * @return The expiry time or Double.MAX_VALUE if the TTL is infinite
+	 */
+	public double getExpiryTime() {
+		if (this.initTtl == INFINITE_TTL) {
+			return Double.MAX_VALUE;
+		}
+		return this.timeCreated + this.initTtl * 60;
+	}
 
 	/**
 	 * Sets the initial TTL (time-to-live) for this message. The initial
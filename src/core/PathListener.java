@@ -0,0 +1,25 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import movement.Path;
+
+/**
+ * Interface for classes that want to be informed about the whole paths that
+ * hosts get from their movement models (and not only about the individual
+ * destinations, like {@link MovementListener}s).
+ */
+public interface PathListener extends MovementListener {
+
+	/**
+	 * Method is called every time a host asks a new path from its movement
+	 * model, right after the movement model returned the path.
+	 * @param host The host that asked the path
+	 * @param path The path the movement model returned (may be null if the
+	 * host has to wait for a path)
+	 */
+	public void newPath(DTNHost host, Path path);
+
+}
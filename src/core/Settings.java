@@ -8,7 +8,9 @@ import java.io.*;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
 import java.util.Scanner;
 import java.util.Set;
@@ -186,6 +188,26 @@ public class Settings {
 		return this.namespace;
 	}
 
+	/**
+	 * Returns the names of all the settings in the (primary) namespace of
+	 * the settings object, without the namespace prefix
+	 * @return the names of the settings in alphabetical order
+	 */
+	public List<String> getSettingNames() {
+		if (props == null) {
+			init(null);
+		}
+		String prefix = getFullPropertyName("", false);
+		List<String> names = new ArrayList<String>();
+		for (String name : props.stringPropertyNames()) {
+			if (name.startsWith(prefix) && name.length() > prefix.length()) {
+				names.add(name.substring(prefix.length()));
+			}
+		}
+		Collections.sort(names);
+		return names;
+	}
+
 	/**
 	 * Returns the secondary namespace of the settings object
 	 * @return the secondary namespace of the settings object
@@ -10,6 +10,12 @@ import input.EventQueueHandler;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import movement.MapBasedMovement;
 import movement.MovementModel;
@@ -71,6 +77,22 @@ public class SimScenario implements Serializable {
 	/** application name in the group -setting id ({@value})*/
 	public static final String GAPPNAME_S = "application";
 
+	/**
+	 * Should hosts be created in parallel -setting id ({@value}). Boolean
+	 * (true/false) variable in the {@link World#OPTIMIZATION_SETTINGS_NS}
+	 * namespace. If true, the movement models of each group's hosts are
+	 * replicated, and the initial locations drawn, in parallel. Each host
+	 * draws the random numbers from its own generator that is seeded with the
+	 * group's seed and the host's index in the group. After that, the
+	 * movement models are registered and the network interfaces and routers
+	 * are created in the order of the host addresses. The results don't
+	 * depend on the number of threads but they differ from the results of
+	 * serial creation. Groups whose movement model can't be replicated in
+	 * parallel ({@link MovementModel#canReplicateInParallel()}) are created
+	 * serially. Default is false.
+	 */
+	public static final String PARALLEL_HOSTS_S = "parallelHostCreation";
+
 	/** package where to look for movement models */
 	private static final String MM_PACKAGE = "movement.";
 	/** package where to look for router classes */
@@ -320,6 +342,10 @@ public class SimScenario implements Serializable {
 	 */
 	protected void createHosts() {
 		this.hosts = new ArrayList<DTNHost>();
+		Settings os = new Settings(World.OPTIMIZATION_SETTINGS_NS);
+		boolean parallel = os.getBoolean(PARALLEL_HOSTS_S, false);
+		os.setNameSpace(MovementModel.MOVEMENT_MODEL_NS);
+		int rngSeed = os.getInt(MovementModel.RNG_SEED, 0);
 
 		for (int i=1; i<=nrofGroups; i++) {
 			List<NetworkInterface> interfaces =
@@ -390,17 +416,96 @@ public class SimScenario implements Serializable {
 			}
 
 			// creates hosts of ith group
-			for (int j=0; j<nrofHosts; j++) {
-				ModuleCommunicationBus comBus = new ModuleCommunicationBus();
-
-				// prototypes are given to new DTNHost which replicates
-				// new instances of movement model and message router
-				DTNHost host = new DTNHost(this.messageListeners,
-						this.movementListeners,	gid, interfaces, comBus,
-						mmProto, mRouterProto);
-				hosts.add(host);
+			if (parallel && mmProto.canReplicateInParallel()) {
+				createHostsInParallel(gid, nrofHosts, interfaces, mmProto,
+						mRouterProto, getSeed(rngSeed, i));
 			}
+			else {
+				for (int j=0; j<nrofHosts; j++) {
+					ModuleCommunicationBus comBus =
+						new ModuleCommunicationBus();
+
+					// prototypes are given to new DTNHost which replicates
+					// new instances of movement model and message router
+					DTNHost host = new DTNHost(this.messageListeners,
+							this.movementListeners,	gid, interfaces, comBus,
+							mmProto, mRouterProto);
+					hosts.add(host);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates the hosts of a group in parallel. First the addresses of the
+	 * hosts are reserved, then the movement models are replicated in
+	 * parallel (see {@link #PARALLEL_HOSTS_S}) and finally the hosts are
+	 * registered in the order of their addresses.
+	 * @param gid Group ID of the hosts
+	 * @param nrofHosts Number of hosts in the group
+	 * @param interfaces Network interface prototypes of the group
+	 * @param mmProto Movement model prototype of the group
+	 * @param mRouterProto Router prototype of the group
+	 * @param groupSeed Seed of the group's random number generators
+	 */
+	private void createHostsInParallel(final String gid, int nrofHosts,
+			List<NetworkInterface> interfaces, final MovementModel mmProto,
+			MessageRouter mRouterProto, long groupSeed) {
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1,
+				Math.min(nrofHosts, Runtime.getRuntime().availableProcessors())));
+		List<Future<DTNHost>> results = new ArrayList<Future<DTNHost>>();
+		List<DTNHost> groupHosts = new ArrayList<DTNHost>();
+
+		for (int j=0; j<nrofHosts; j++) {
+			final int address = DTNHost.getNextAddress();
+			final long seed = getSeed(groupSeed, j);
+			results.add(pool.submit(new Callable<DTNHost>() {
+				public DTNHost call() {
+					MovementModel.setReplicaRng(new Random(seed));
+					try {
+						return new DTNHost(address, messageListeners,
+								movementListeners, gid,
+								new ModuleCommunicationBus(), mmProto);
+					} finally {
+						MovementModel.setReplicaRng(null);
+					}
+				}
+			}));
 		}
+
+		try {
+			for (Future<DTNHost> f : results) {
+				groupHosts.add(f.get());
+			}
+		} catch (InterruptedException e) {
+			throw new SimError("Host creation interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SimError) {
+				throw (SimError)e.getCause();
+			}
+			throw new SimError("Host creation failed: " + e.getCause(), e);
+		} finally {
+			pool.shutdown();
+		}
+
+		for (DTNHost host : groupHosts) {
+			host.register(interfaces, mRouterProto);
+			hosts.add(host);
+		}
+	}
+
+	/**
+	 * Returns a random number generator seed derived from the given seed and
+	 * index. Consecutive indexes give well mixed seeds.
+	 * @param seed The seed to derive from
+	 * @param index The index
+	 * @return The derived seed
+	 */
+	private static long getSeed(long seed, int index) {
+		long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
 	}
 
 	/**
@@ -6,6 +6,8 @@ package core;
 
 import input.EventQueue;
 import input.ExternalEvent;
+import input.MessageBatch;
+import input.MessageBatchQueue;
 import input.ScheduledUpdatesQueue;
 
 import java.util.ArrayList;
@@ -37,6 +39,16 @@ public class World {
 	 */
 	public static final String SIMULATE_CON_ONCE_S = "simulateConnectionsOnce";
 
+	/**
+	 * Should messages of message generators be created in batches
+	 * -setting id ({@value}). Boolean (true/false) variable. If true, all
+	 * the messages a generator ({@link MessageBatchQueue}) creates before the
+	 * next event of other event queues (or the end of the update interval)
+	 * are created at once and the hosts are updated only after the whole
+	 * batch instead of after every message. Default is false.
+	 */
+	public static final String BATCH_MESSAGES_S = "batchMessageCreation";
+
 	private int sizeX;
 	private int sizeY;
 	private List<EventQueue> eventQueues;
@@ -56,6 +68,8 @@ public class World {
 	/** Queue of scheduled update requests */
 	private ScheduledUpdatesQueue scheduledUpdates;
 	private boolean simulateConOnce;
+	/** batch for creating messages (null if batching is disabled) */
+	private MessageBatch messageBatch;
 
 	/**
 	 * Constructor.
@@ -90,6 +104,9 @@ public class World {
 			randomizeUpdates = s.getBoolean(RANDOMIZE_UPDATES_S);
 		}
 		simulateConOnce = s.getBoolean(SIMULATE_CON_ONCE_S, false);
+		if (s.getBoolean(BATCH_MESSAGES_S, false)) {
+			this.messageBatch = new MessageBatch(64);
+		}
 
 		if(randomizeUpdates) {
 			// creates the update order array that can be shuffled
@@ -155,9 +172,15 @@ public class World {
 		/* process all events that are due until next interval update */
 		while (this.nextQueueEventTime <= runUntil) {
 			simClock.setTime(this.nextQueueEventTime);
-			ExternalEvent ee = this.nextEventQueue.nextEvent();
-			ee.processEvent(this);
-			updateHosts(); // update all hosts after every event
+			if (this.messageBatch != null &&
+					this.nextEventQueue instanceof MessageBatchQueue) {
+				createMessages((MessageBatchQueue)this.nextEventQueue, runUntil);
+			}
+			else {
+				ExternalEvent ee = this.nextEventQueue.nextEvent();
+				ee.processEvent(this);
+			}
+			updateHosts(); // update all hosts after every event (or batch)
 			setNextEventQueue();
 		}
 
@@ -172,6 +195,43 @@ public class World {
 		}
 	}
 
+	/**
+	 * Creates all messages of a message queue that are due before the next
+	 * event of any other event queue, or the given time. The simulation
+	 * clock is set to each message's creation time and is left to the last
+	 * message's time.
+	 * @param queue The queue whose messages are created
+	 * @param runUntil Time until which the messages are created
+	 */
+	private void createMessages(MessageBatchQueue queue, double runUntil) {
+		double until = runUntil;
+		/* the queue is before the other queues with the same event time
+		 * if it is earlier in the list (see setNextEventQueue) */
+		boolean before = false;
+
+		until = Math.min(until, Math.nextAfter(
+				scheduledUpdates.nextEventsTime(), Double.NEGATIVE_INFINITY));
+		for (EventQueue eq : eventQueues) {
+			if (eq == queue) {
+				before = true;
+			}
+			else if (before) {
+				until = Math.min(until, eq.nextEventsTime());
+			}
+			else {
+				until = Math.min(until, Math.nextAfter(eq.nextEventsTime(),
+						Double.NEGATIVE_INFINITY));
+			}
+		}
+
+		this.messageBatch.clear();
+		queue.nextMessages(until, this.messageBatch);
+		for (int i=0, n = this.messageBatch.size(); i < n; i++) {
+			simClock.setTime(this.messageBatch.getTime(i));
+			this.messageBatch.createMessage(this, i);
+		}
+	}
+
 	/**
 	 * Updates all hosts (calls update for every one of them). If update
 	 * order randomizing is on (updateOrder array is defined), the calls
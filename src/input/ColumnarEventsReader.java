@@ -0,0 +1,583 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import core.SimError;
+
+/**
+ * <P>Reads external events from a compact, columnar binary file. Can also
+ * create such files from the events of any other external events reader
+ * (see {@link #storeToColumnarFile(ExternalEventsReader, File)} and
+ * {@link #main(String[])}).</P>
+ * <P>The file starts with a header (magic number, format version, number of
+ * events, the offset of the string dictionary and the fingerprint of the
+ * settings the events were created with) that is followed by one
+ * fixed-width column per event field: time (double), event type (byte),
+ * the two host addresses (ints), message/interface ID (int index to the
+ * dictionary), message size (int) and response size (int). The dictionary
+ * of the ID strings is at the end of the file. The columns are read through
+ * memory-mapped windows of the file so reading doesn't need any
+ * intermediate buffers, and ID strings are shared by all events that refer
+ * to them.</P>
+ */
+public class ColumnarEventsReader implements ExternalEventsReader {
+	/** Extension of columnar external events files */
+	public static final String COLUMNAR_EXT = ".colee";
+	/** Magic number at the start of columnar external events files */
+	public static final int MAGIC = 0x4F4E4543; /* "ONEC" */
+	/** Version of the file format this class writes. Files of version 1
+	 * (that have no fingerprint) can also be read. */
+	public static final int VERSION = 2;
+	/** Fingerprint of files whose source settings are not known */
+	public static final long NO_FINGERPRINT = 0;
+
+	/* event type identifiers of the type column */
+	private static final byte CONN_UP = 1;
+	private static final byte CONN_DOWN = 2;
+	private static final byte CREATE = 3;
+	private static final byte SEND = 4;
+	private static final byte DELIVERED = 5;
+	private static final byte ABORT = 6;
+	private static final byte DROP = 7;
+	private static final byte REMOVE = 8;
+
+	/** dictionary index for events without an ID string */
+	private static final int NO_ID = -1;
+
+	/* indexes of the columns */
+	private static final int TIME_COL = 0;
+	private static final int TYPE_COL = 1;
+	private static final int HOST_COL = 2;
+	private static final int HOST2_COL = 3;
+	private static final int ID_COL = 4;
+	private static final int SIZE_COL = 5;
+	private static final int RESP_SIZE_COL = 6;
+	/** widths of the columns (bytes per event) */
+	private static final int[] COLUMN_WIDTHS = {8, 1, 4, 4, 4, 4, 4};
+
+	/** size of the header: magic, version, nrof events, dictionary offset,
+	 * fingerprint */
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8;
+	/** size of the header of version 1 files (no fingerprint) */
+	private static final int V1_HEADER_SIZE = 4 + 4 + 8 + 8;
+	/** how many events of a column are mapped to memory at a time */
+	private static final int WINDOW_EVENTS = 1 << 20;
+	/** how many events are read at a time when converting */
+	private static final int CONVERT_BATCH = 1000;
+	/** size of the column buffers when converting */
+	private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+	private RandomAccessFile file;
+	private long nrofEvents;
+	private long nextEvent;
+	private Column[] columns;
+	private String[] dictionary;
+
+	/**
+	 * Constructor.
+	 * @param eventsFile The file where the events are read
+	 */
+	public ColumnarEventsReader(File eventsFile) {
+		try {
+			this.file = new RandomAccessFile(eventsFile, "r");
+			FileChannel channel = file.getChannel();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while (header.hasRemaining() &&
+					channel.read(header, header.position()) > 0);
+			header.flip();
+			if (header.remaining() < V1_HEADER_SIZE ||
+					header.getInt() != MAGIC) {
+				throw new SimError("Invalid columnar external events file: " +
+						eventsFile.getAbsolutePath());
+			}
+			int version = header.getInt();
+			int headerSize = getHeaderSize(version);
+			if (headerSize < 0) {
+				throw new SimError("Unsupported columnar external events " +
+						"file version " + version + " in " +
+						eventsFile.getAbsolutePath());
+			}
+			if (header.limit() < headerSize) {
+				throw new SimError("Invalid columnar external events file: " +
+						eventsFile.getAbsolutePath());
+			}
+			this.nrofEvents = header.getLong();
+			long dictOffset = header.getLong();
+
+			long offset = headerSize;
+			this.columns = new Column[COLUMN_WIDTHS.length];
+			for (int i=0; i<columns.length; i++) {
+				columns[i] = new Column(channel, offset, COLUMN_WIDTHS[i],
+						nrofEvents);
+				offset += COLUMN_WIDTHS[i] * nrofEvents;
+			}
+			if (offset != dictOffset) {
+				throw new SimError("Corrupted columnar external events file: " +
+						eventsFile.getAbsolutePath());
+			}
+
+			/* not closed: closing the stream would close the channel */
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					Channels.newInputStream(channel.position(dictOffset))));
+			this.dictionary = new String[in.readInt()];
+			for (int i=0; i<dictionary.length; i++) {
+				dictionary[i] = in.readUTF();
+			}
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+
+		this.nextEvent = 0;
+	}
+
+	/**
+	 * Read events from a columnar file
+	 * @param nrof Maximum number of events to read
+	 * @return Events in an ArrayList (empty list if didn't read any)
+	 */
+	public List<ExternalEvent> readEvents(int nrof) {
+		int count = (int)Math.min(nrof, nrofEvents - nextEvent);
+		ArrayList<ExternalEvent> events =
+			new ArrayList<ExternalEvent>(Math.max(count, 0));
+
+		try {
+			for (int n=0; n<count; n++, nextEvent++) {
+				events.add(createEvent(nextEvent));
+			}
+		} catch (IOException e) {
+			throw new SimError("Reading from columnar external events file " +
+					"failed", e);
+		}
+
+		return events;
+	}
+
+	/**
+	 * Creates an event from the column values of an index
+	 * @param index Index of the event
+	 * @return The event
+	 * @throws IOException If reading the columns failed
+	 */
+	private ExternalEvent createEvent(long index) throws IOException {
+		double time = columns[TIME_COL].getDouble(index);
+		byte type = columns[TYPE_COL].getByte(index);
+		int host = columns[HOST_COL].getInt(index);
+		int host2 = columns[HOST2_COL].getInt(index);
+		int idIndex = columns[ID_COL].getInt(index);
+		String id = (idIndex == NO_ID ? null : dictionary[idIndex]);
+
+		switch (type) {
+		case CONN_UP:
+		case CONN_DOWN:
+			return new ConnectionEvent(host, host2, id, type == CONN_UP, time);
+		case CREATE:
+			return new MessageCreateEvent(host, host2, id,
+					columns[SIZE_COL].getInt(index),
+					columns[RESP_SIZE_COL].getInt(index), time);
+		case SEND:
+			return new MessageRelayEvent(host, host2, id, time,
+					MessageRelayEvent.SENDING);
+		case DELIVERED:
+			return new MessageRelayEvent(host, host2, id, time,
+					MessageRelayEvent.TRANSFERRED);
+		case ABORT:
+			return new MessageRelayEvent(host, host2, id, time,
+					MessageRelayEvent.ABORTED);
+		case DROP:
+		case REMOVE:
+			return new MessageDeleteEvent(host, id, time, type == DROP);
+		default:
+			throw new SimError("Invalid event type " + type + " for event " +
+					index + " in columnar external events file");
+		}
+	}
+
+	public void close() {
+		try {
+			this.file.close();
+		}
+		catch (IOException ioe) {
+			throw new SimError(ioe);
+		}
+	}
+
+	/**
+	 * Checks if the given file is a columnar external events file, i.e.,
+	 * starts with the {@link #MAGIC} number
+	 * @param file The file to check
+	 * @return True if the file is a columnar ee file, false if not
+	 */
+	public static boolean isColumnarEeFile(File file) {
+		if (!file.isFile() || file.length() < V1_HEADER_SIZE) {
+			return false;
+		}
+
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(file));
+			try {
+				return in.readInt() == MAGIC;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Reads the fingerprint of the settings the events of a columnar file
+	 * were created with from the file's header
+	 * @param file The columnar file
+	 * @return The fingerprint or {@link #NO_FINGERPRINT} (e.g. for files of
+	 * version 1)
+	 * @throws IOException if the file is not a readable columnar file
+	 */
+	public static long getFingerprint(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Invalid columnar external events " +
+						"file: " + file.getAbsolutePath());
+			}
+			int version = in.readInt();
+			if (getHeaderSize(version) < 0) {
+				throw new IOException("Unsupported columnar external " +
+						"events file version " + version + " in " +
+						file.getAbsolutePath());
+			}
+			if (version == 1) {
+				return NO_FINGERPRINT;
+			}
+			in.readLong(); /* nrof events */
+			in.readLong(); /* dictionary offset */
+			return in.readLong();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Returns the size of the header of a file format version
+	 * @param version The version
+	 * @return The header size or -1 if the version is not supported
+	 */
+	private static int getHeaderSize(int version) {
+		switch (version) {
+		case 1:
+			return V1_HEADER_SIZE;
+		case VERSION:
+			return HEADER_SIZE;
+		default:
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns a checksum (CRC-32) of a file's contents, e.g., for checking
+	 * that two runs use the same events
+	 * @param file The file
+	 * @return The checksum as a hexadecimal string
+	 * @throws IOException if reading the file failed
+	 */
+	public static String getChecksum(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+		FileInputStream in = new FileInputStream(file);
+		try {
+			int len;
+			while ((len = in.read(buffer)) > 0) {
+				crc.update(buffer, 0, len);
+			}
+		} finally {
+			in.close();
+		}
+		return String.format("%08x", crc.getValue());
+	}
+
+	/**
+	 * Reads all the events of a reader and stores them to a columnar file.
+	 * The events are streamed through temporary column files (in the
+	 * directory of the output file) so the events don't need to fit in
+	 * memory.
+	 * @param reader The reader whose events are stored
+	 * @param outFile The file where the events are stored
+	 * @return The number of events stored
+	 * @throws IOException if something in storing went wrong
+	 */
+	public static long storeToColumnarFile(ExternalEventsReader reader,
+			File outFile) throws IOException {
+		return storeToColumnarFile(reader, outFile, NO_FINGERPRINT);
+	}
+
+	/**
+	 * Reads all the events of a reader and stores them to a columnar file
+	 * with a fingerprint of the settings the events were created with.
+	 * @param reader The reader whose events are stored
+	 * @param outFile The file where the events are stored
+	 * @param fingerprint The fingerprint to store to the file's header
+	 * @return The number of events stored
+	 * @throws IOException if something in storing went wrong
+	 * @see #storeToColumnarFile(ExternalEventsReader, File)
+	 */
+	public static long storeToColumnarFile(ExternalEventsReader reader,
+			File outFile, long fingerprint) throws IOException {
+		File dir = outFile.getAbsoluteFile().getParentFile();
+		File[] colFiles = new File[COLUMN_WIDTHS.length];
+		DataOutputStream[] cols = new DataOutputStream[COLUMN_WIDTHS.length];
+		Map<String, Integer> idIndexes = new HashMap<String, Integer>();
+		List<String> ids = new ArrayList<String>();
+		long nrof = 0;
+
+		try {
+			for (int i=0; i<cols.length; i++) {
+				colFiles[i] = File.createTempFile("colee", ".tmp", dir);
+				cols[i] = new DataOutputStream(new BufferedOutputStream(
+						new FileOutputStream(colFiles[i]), WRITE_BUFFER_SIZE));
+			}
+
+			List<ExternalEvent> events;
+			while ((events = reader.readEvents(CONVERT_BATCH)).size() > 0) {
+				for (ExternalEvent ee : events) {
+					writeEvent(ee, cols, idIndexes, ids);
+				}
+				nrof += events.size();
+			}
+			for (DataOutputStream col : cols) {
+				col.close();
+			}
+
+			FileOutputStream fos = new FileOutputStream(outFile);
+			try {
+				FileChannel out = fos.getChannel();
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				long dictOffset = HEADER_SIZE;
+				for (int width : COLUMN_WIDTHS) {
+					dictOffset += width * nrof;
+				}
+				header.putInt(MAGIC).putInt(VERSION).putLong(nrof);
+				header.putLong(dictOffset).putLong(fingerprint).flip();
+				while (header.hasRemaining()) {
+					out.write(header);
+				}
+
+				for (File colFile : colFiles) {
+					FileChannel in = new FileInputStream(colFile).getChannel();
+					try {
+						long pos = 0, size = in.size();
+						while (pos < size) {
+							pos += in.transferTo(pos, size - pos, out);
+						}
+					} finally {
+						in.close();
+					}
+				}
+
+				DataOutputStream dictOut = new DataOutputStream(
+						new BufferedOutputStream(fos));
+				dictOut.writeInt(ids.size());
+				for (String id : ids) {
+					dictOut.writeUTF(id);
+				}
+				dictOut.flush();
+			} finally {
+				fos.close();
+			}
+		} finally {
+			for (int i=0; i<cols.length; i++) {
+				if (cols[i] != null) {
+					cols[i].close();
+				}
+				if (colFiles[i] != null) {
+					colFiles[i].delete();
+				}
+			}
+		}
+
+		return nrof;
+	}
+
+	/**
+	 * Writes the column values of an event
+	 * @param ee The event
+	 * @param cols Outputs of the columns
+	 * @param idIndexes Dictionary indexes of the ID strings written so far
+	 * @param ids The ID strings in dictionary index order
+	 * @throws IOException if writing failed
+	 */
+	private static void writeEvent(ExternalEvent ee, DataOutputStream[] cols,
+			Map<String, Integer> idIndexes, List<String> ids)
+			throws IOException {
+		byte type;
+		int host, host2;
+		String id;
+		int size = 0, respSize = 0;
+
+		if (ee instanceof ConnectionEvent) {
+			ConnectionEvent ce = (ConnectionEvent)ee;
+			type = (ce.isUp() ? CONN_UP : CONN_DOWN);
+			host = ce.getFromAddress();
+			host2 = ce.getToAddress();
+			id = ce.getInterfaceId();
+		}
+		else if (ee instanceof MessageEvent) {
+			MessageEvent me = (MessageEvent)ee;
+			host = me.getFromAddress();
+			host2 = me.getToAddress();
+			id = me.getId();
+
+			if (me instanceof MessageCreateEvent) {
+				type = CREATE;
+				size = ((MessageCreateEvent)me).getSize();
+				respSize = ((MessageCreateEvent)me).getResponseSize();
+			}
+			else if (me instanceof MessageDeleteEvent) {
+				type = (((MessageDeleteEvent)me).isDrop() ? DROP : REMOVE);
+			}
+			else if (me instanceof MessageRelayEvent) {
+				switch (((MessageRelayEvent)me).getStage()) {
+				case MessageRelayEvent.SENDING:
+					type = SEND;
+					break;
+				case MessageRelayEvent.TRANSFERRED:
+					type = DELIVERED;
+					break;
+				default:
+					type = ABORT;
+				}
+			}
+			else {
+				throw new SimError("Unsupported event for columnar file: " + ee);
+			}
+		}
+		else {
+			throw new SimError("Unsupported event for columnar file: " + ee);
+		}
+
+		int idIndex = NO_ID;
+		if (id != null) {
+			Integer index = idIndexes.get(id);
+			if (index == null) {
+				index = ids.size();
+				idIndexes.put(id, index);
+				ids.add(id);
+			}
+			idIndex = index;
+		}
+
+		cols[TIME_COL].writeDouble(ee.getTime());
+		cols[TYPE_COL].writeByte(type);
+		cols[HOST_COL].writeInt(host);
+		cols[HOST2_COL].writeInt(host2);
+		cols[ID_COL].writeInt(idIndex);
+		cols[SIZE_COL].writeInt(size);
+		cols[RESP_SIZE_COL].writeInt(respSize);
+	}
+
+	/**
+	 * Converts a standard external events file to a columnar file.
+	 * Usage: <CODE>ColumnarEventsReader &lt;standard events file&gt;
+	 * &lt;output file&gt;</CODE>
+	 * @param args The input and output file paths
+	 * @throws IOException if the conversion failed
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.out.println("Usage: ColumnarEventsReader " +
+					"<standard events file> <output file>");
+			System.exit(1);
+		}
+
+		StandardEventsReader reader = new StandardEventsReader(
+				new File(args[0]));
+		File outFile = new File(args[1]);
+		long nrof = storeToColumnarFile(reader, outFile);
+		reader.close();
+		System.out.println("Converted " + nrof + " events to " + args[1] +
+				" (checksum " + getChecksum(outFile) + ")");
+	}
+
+	/**
+	 * One column of the file, read through a memory-mapped window
+	 */
+	private static class Column {
+		private FileChannel channel;
+		private long offset;
+		private int width;
+		private long nrofEvents;
+		private MappedByteBuffer window;
+		/** index of the first event in the window */
+		private long first;
+		/** index of the first event after the window */
+		private long end;
+
+		/**
+		 * Constructor.
+		 * @param channel Channel of the file
+		 * @param offset Offset of the column in the file
+		 * @param width Width of a column value
+		 * @param nrofEvents Number of events (values) in the column
+		 */
+		public Column(FileChannel channel, long offset, int width,
+				long nrofEvents) {
+			this.channel = channel;
+			this.offset = offset;
+			this.width = width;
+			this.nrofEvents = nrofEvents;
+			this.first = this.end = 0;
+		}
+
+		/**
+		 * Returns the position of an event's value in the window, mapping
+		 * a new window first if the event is not in the current one
+		 * @param index Index of the event
+		 * @return Position of the value in the window
+		 * @throws IOException if mapping the file failed
+		 */
+		private int positionOf(long index) throws IOException {
+			if (index < first || index >= end) {
+				first = index;
+				end = Math.min(nrofEvents, index + WINDOW_EVENTS);
+				window = channel.map(FileChannel.MapMode.READ_ONLY,
+						offset + first * width, (end - first) * width);
+			}
+			return (int)(index - first) * width;
+		}
+
+		public double getDouble(long index) throws IOException {
+			int pos = positionOf(index);
+			return window.getDouble(pos);
+		}
+
+		public byte getByte(long index) throws IOException {
+			int pos = positionOf(index);
+			return window.get(pos);
+		}
+
+		public int getInt(long index) throws IOException {
+			int pos = positionOf(index);
+			return window.getInt(pos);
+		}
+	}
+}
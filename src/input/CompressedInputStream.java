@@ -0,0 +1,321 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Enumeration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * <P>Input stream for reading (possibly) compressed input files. Use
+ * {@link #open(File)} to open a file: the compression is detected from the
+ * first bytes of the file (not from the file name) and compressed files are
+ * decompressed in a background thread, so decompressing overlaps with
+ * parsing the data in the reading thread. Uncompressed files are read
+ * directly.</P>
+ * <P>Supported formats are gzip (.gz) and zip (the first entry of the
+ * archive is read). Zstandard compressed files are recognized, but can't be
+ * read because Java doesn't have a decompressor for them.</P>
+ */
+public class CompressedInputStream extends InputStream {
+	/** size of the decompressed chunks passed to the reading thread */
+	private static final int CHUNK_SIZE = 1 << 16;
+	/** how many decompressed chunks are buffered */
+	private static final int NROF_CHUNKS = 16;
+
+	/** magic numbers (first bytes) of the known formats */
+	private static final int[] GZIP_MAGIC = {0x1f, 0x8b};
+	private static final int[] ZIP_MAGIC = {0x50, 0x4b, 0x03, 0x04};
+	private static final int[] ZSTD_MAGIC = {0x28, 0xb5, 0x2f, 0xfd};
+	private static final int MAX_MAGIC_LENGTH = 4;
+
+	/** marker chunk (compared by identity) for the end of the data */
+	private static final byte[] END_OF_DATA = new byte[0];
+
+	private BlockingQueue<byte[]> chunks;
+	private Thread decompressor;
+	/** error that stopped the decompression (or null) */
+	private volatile IOException error;
+	/** has the stream been closed */
+	private volatile boolean closed;
+	/** the chunk that is being read and the position in it */
+	private byte[] current;
+	private int currentPos;
+	private boolean endOfData;
+
+	/**
+	 * Creates a stream that reads the data of the given (decompressing)
+	 * stream in a background thread.
+	 * @param in The stream to read from
+	 * @param name Name of the stream (for the thread's name)
+	 */
+	private CompressedInputStream(final InputStream in, String name) {
+		this.chunks = new ArrayBlockingQueue<byte[]>(NROF_CHUNKS);
+		this.current = null;
+		this.endOfData = false;
+		this.closed = false;
+
+		this.decompressor = new Thread("Decompressor-" + name) {
+			public void run() {
+				decompress(in);
+			}
+		};
+		/* don't keep the VM alive if the stream isn't read until the end */
+		this.decompressor.setDaemon(true);
+		this.decompressor.start();
+	}
+
+	/**
+	 * Opens a file for reading. If the file is compressed, the returned
+	 * stream gives the decompressed data.
+	 * @param file The file to open
+	 * @return An input stream for reading the (decompressed) contents
+	 * @throws IOException if the file couldn't be opened or its compression
+	 * format is not supported
+	 */
+	public static InputStream open(File file) throws IOException {
+		int[] magic = readMagic(file);
+
+		if (startsWith(magic, GZIP_MAGIC)) {
+			InputStream fileIn = new FileInputStream(file);
+			try {
+				InputStream in = new GZIPInputStream(fileIn, CHUNK_SIZE);
+				return new CompressedInputStream(in, file.getName());
+			} catch (IOException e) {
+				fileIn.close(); /* e.g. invalid gzip header */
+				throw e;
+			}
+		}
+		else if (startsWith(magic, ZIP_MAGIC)) {
+			// TODO: try to find the correct entry based on file name
+			ZipInputStream in = new ZipInputStream(new BufferedInputStream(
+					new FileInputStream(file), CHUNK_SIZE));
+			try {
+				if (in.getNextEntry() == null) {
+					throw new IOException("No entries in zip file " + file);
+				}
+			} catch (IOException e) {
+				in.close();
+				throw e;
+			}
+			return new CompressedInputStream(in, file.getName());
+		}
+		else if (startsWith(magic, ZSTD_MAGIC)) {
+			throw new IOException("Zstandard compressed file " + file +
+					" is not supported; use gzip or an uncompressed file");
+		}
+
+		return new FileInputStream(file);
+	}
+
+	/**
+	 * Opens a file for reading text in the platform's default charset
+	 * (like {@link java.io.FileReader} does). If the file is compressed,
+	 * the returned reader gives the decompressed text.
+	 * @param file The file to open
+	 * @return A reader for the (decompressed) text
+	 * @throws IOException if the file couldn't be opened
+	 * @see #open(File)
+	 */
+	public static Reader openReader(File file) throws IOException {
+		return new InputStreamReader(open(file));
+	}
+
+	/**
+	 * Returns true if the file is compressed in a known format
+	 * @param file The file to check
+	 * @return True if the file is compressed
+	 * @throws IOException if the file couldn't be read
+	 */
+	public static boolean isCompressed(File file) throws IOException {
+		int[] magic = readMagic(file);
+		return startsWith(magic, GZIP_MAGIC) || startsWith(magic, ZIP_MAGIC) ||
+			startsWith(magic, ZSTD_MAGIC);
+	}
+
+	/**
+	 * Returns the size of the file's contents when uncompressed, if known
+	 * @param file The file
+	 * @return The uncompressed size in bytes or -1 if it is not known
+	 * @throws IOException if the file couldn't be read
+	 */
+	public static long getUncompressedSize(File file) throws IOException {
+		int[] magic = readMagic(file);
+
+		if (startsWith(magic, ZIP_MAGIC)) {
+			ZipFile zf = new ZipFile(file);
+			try {
+				Enumeration<? extends ZipEntry> entries = zf.entries();
+				if (!entries.hasMoreElements()) {
+					throw new IOException("No entries in zip file " + file);
+				}
+				return entries.nextElement().getSize();
+			} finally {
+				zf.close();
+			}
+		}
+		else if (isCompressed(file)) {
+			return -1; /* gzip only stores the size modulo 2^32 */
+		}
+		return file.length();
+	}
+
+	/**
+	 * Reads the first bytes of a file
+	 * @param file The file
+	 * @return The bytes (less than the maximum magic length if the file is
+	 * shorter)
+	 * @throws IOException if the file couldn't be read
+	 */
+	private static int[] readMagic(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			int[] bytes = new int[MAX_MAGIC_LENGTH];
+			int n = 0;
+			int b;
+			while (n < bytes.length && (b = in.read()) != -1) {
+				bytes[n++] = b;
+			}
+			int[] magic = new int[n];
+			System.arraycopy(bytes, 0, magic, 0, n);
+			return magic;
+		} finally {
+			in.close();
+		}
+	}
+
+	private static boolean startsWith(int[] bytes, int[] magic) {
+		if (bytes.length < magic.length) {
+			return false;
+		}
+		for (int i=0; i<magic.length; i++) {
+			if (bytes[i] != magic[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the decompressed data in chunks to the queue until all data is
+	 * read or the stream is closed. Run by the background thread.
+	 * @param in The decompressing stream
+	 */
+	private void decompress(InputStream in) {
+		try {
+			while (true) {
+				byte[] chunk = new byte[CHUNK_SIZE];
+				int len = 0;
+				int n;
+				while (len < chunk.length &&
+						(n = in.read(chunk, len, chunk.length - len)) > 0) {
+					len += n;
+				}
+				if (len == 0) {
+					break;
+				}
+				if (len < chunk.length) {
+					byte[] last = new byte[len];
+					System.arraycopy(chunk, 0, last, 0, len);
+					chunk = last;
+				}
+				chunks.put(chunk);
+			}
+			chunks.put(END_OF_DATA);
+		} catch (InterruptedException e) {
+			return; /* closed */
+		} catch (IOException e) {
+			if (closed) {
+				return;
+			}
+			this.error = e;
+			try {
+				chunks.put(END_OF_DATA);
+			} catch (InterruptedException ie) { /* closed */ }
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {}
+		}
+	}
+
+	/**
+	 * Makes sure there's data left in the current chunk, waiting for the
+	 * background thread if necessary
+	 * @return True if there's data left, false at the end of data
+	 * @throws IOException if the decompression failed
+	 */
+	private boolean fill() throws IOException {
+		if (current != null && currentPos < current.length) {
+			return true;
+		}
+		if (endOfData) {
+			return false;
+		}
+
+		try {
+			current = chunks.take();
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while decompressing");
+		}
+		currentPos = 0;
+
+		if (current == END_OF_DATA) {
+			current = null;
+			endOfData = true;
+			if (error != null) {
+				throw error;
+			}
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!fill()) {
+			return -1;
+		}
+		return current[currentPos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!fill()) {
+			return -1;
+		}
+
+		int n = Math.min(len, current.length - currentPos);
+		System.arraycopy(current, currentPos, b, off, n);
+		currentPos += n;
+		return n;
+	}
+
+	/**
+	 * Stops the decompression. The decompressing stream is closed by the
+	 * background thread.
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		this.endOfData = true;
+		this.current = null;
+		this.decompressor.interrupt();
+	}
+}
@@ -38,6 +38,38 @@ public class ConnectionEvent extends ExternalEvent {
 		this.interfaceId = interf;
 	}
 
+	/**
+	 * Returns the address of the node the (dis)connection is from
+	 * @return the address of the node the (dis)connection is from
+	 */
+	public int getFromAddress() {
+		return this.fromAddr;
+	}
+
+	/**
+	 * Returns the address of the node the (dis)connection is to
+	 * @return the address of the node the (dis)connection is to
+	 */
+	public int getToAddress() {
+		return this.toAddr;
+	}
+
+	/**
+	 * Returns true if this is a "connection up" event
+	 * @return true if this is a "connection up" event, false if "down"
+	 */
+	public boolean isUp() {
+		return this.isUp;
+	}
+
+	/**
+	 * Returns the identifier of the interface used for the connection
+	 * @return the interface identifier or null if not defined
+	 */
+	public String getInterfaceId() {
+		return this.interfaceId;
+	}
+
 	@Override
 	public void processEvent(World world) {
 		DTNHost from = world.getNodeByAddress(this.fromAddr);
@@ -4,10 +4,16 @@
  */
 package input;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.zip.CRC32;
 
 import core.Settings;
+import core.SettingsError;
+import core.SimScenario;
 
 /**
  * <p>
@@ -31,6 +37,11 @@ import core.Settings;
  * is used to define the path to the event file and event generator class
  * is loaded when the name of the class is defined with
  * <code>CLASS_SETTING</code>.
+ * <p>
+ * The events of an event generator class can be stored to a workload file
+ * (setting <code>WORKLOAD_FILE_SETTING</code>) so that all runs that use the
+ * file get exactly the same events, and the events don't have to be
+ * generated again on every run.
  */
 public class EventQueueHandler  {
 	/** Event queue settings main namespace ({@value})*/
@@ -48,6 +59,28 @@ public class EventQueueHandler  {
 	public static final String PRELOAD_SETTING = "nrofPreload";
 	/** path of external events file -setting id ({@value})*/
 	public static final String PATH_SETTING = "filePath";
+	/** path of a workload file for an event generator class -setting id
+	 * ({@value}). If the file doesn't exist, all the events the generator
+	 * creates during the simulation (end time) are stored to it in the
+	 * columnar binary format (see {@link ColumnarEventsReader}). If the file
+	 * exists, the events are read from it and the generator is not used.
+	 * The file's header has a fingerprint of the generator's settings and
+	 * the scenario's end time; if they have changed since the file was
+	 * created, the simulation is not run. Delete the file (or use another
+	 * file) to generate a new workload. */
+	public static final String WORKLOAD_FILE_SETTING = "workloadFile";
+	/** expected checksum of the workload file -setting id ({@value}).
+	 * Optional. If defined, the simulation is not run unless the checksum of
+	 * the workload file matches. The checksum is printed when the workload
+	 * file is created and can be computed with
+	 * {@link ColumnarEventsReader#getChecksum(File)}. */
+	public static final String WORKLOAD_CHECKSUM_SETTING = "workloadChecksum";
+
+	/** settings of the event generator namespace that don't affect the
+	 * events it creates and are left out of the workload fingerprint */
+	private static final List<String> NON_WORKLOAD_SETTINGS = Arrays.asList(
+			WORKLOAD_FILE_SETTING, WORKLOAD_CHECKSUM_SETTING, PRELOAD_SETTING,
+			ExternalEventsQueue.PREFETCH_SETTING);
 
 	private List<EventQueue> queues;
 
@@ -70,8 +103,13 @@ public class EventQueueHandler  {
 					preload = s.getInt(PRELOAD_SETTING);
 				}
 				path = s.getSetting(PATH_SETTING);
+				boolean prefetch = s.getBoolean(
+						ExternalEventsQueue.PREFETCH_SETTING, false);
 
-				queues.add(new ExternalEventsQueue(path, preload));
+				queues.add(new ExternalEventsQueue(path, preload, prefetch));
+			}
+			else if (s.contains(WORKLOAD_FILE_SETTING)) { // stored generator
+				queues.add(createWorkloadQueue(s));
 			}
 			else if (s.contains(CLASS_SETTING)) { // event generator class
 				String className = CLASS_PACKAGE + "." +
@@ -83,6 +121,119 @@ public class EventQueueHandler  {
 		}
 	}
 
+	/**
+	 * Creates an event queue that reads the events of an event generator
+	 * from a workload file. The file is created first if it doesn't exist.
+	 * @param s Settings of the event queue
+	 * @return The event queue
+	 * @throws SettingsError if the file can't be used or it was created with
+	 * different settings
+	 */
+	private EventQueue createWorkloadQueue(Settings s) {
+		File file = new File(s.getSetting(WORKLOAD_FILE_SETTING));
+		int preload = 0;
+		if (s.contains(PRELOAD_SETTING)) {
+			preload = s.getInt(PRELOAD_SETTING);
+		}
+		boolean prefetch = s.getBoolean(
+				ExternalEventsQueue.PREFETCH_SETTING, false);
+
+		long fingerprint = getWorkloadFingerprint(s);
+
+		try {
+			if (!file.exists()) {
+				storeWorkload(s, file, fingerprint);
+			}
+			else if (ColumnarEventsReader.getFingerprint(file) !=
+					fingerprint) {
+				/* not regenerated here: other simulations may be using the
+				 * file at the same time */
+				throw new SettingsError("Workload file " + file + " was " +
+						"created with different " + s.getNameSpace() +
+						" settings or " + SimScenario.SCENARIO_NS + "." +
+						SimScenario.END_TIME_S + ". Delete the file to " +
+						"create a new workload.");
+			}
+
+			if (s.contains(WORKLOAD_CHECKSUM_SETTING)) {
+				String checksum = ColumnarEventsReader.getChecksum(file);
+				if (!checksum.equalsIgnoreCase(
+						s.getSetting(WORKLOAD_CHECKSUM_SETTING))) {
+					throw new SettingsError("Checksum of workload file " +
+							file + " is " + checksum + ", not " +
+							s.getSetting(WORKLOAD_CHECKSUM_SETTING));
+				}
+			}
+		} catch (IOException e) {
+			throw new SettingsError("Can't use workload file " + file + ": " +
+					e.getMessage());
+		}
+
+		return new ExternalEventsQueue(file.getPath(), preload, prefetch);
+	}
+
+	/**
+	 * Stores all the events an event generator creates during the
+	 * simulation to a workload file
+	 * @param s Settings of the event generator
+	 * @param file The file where the events are stored
+	 * @param fingerprint Fingerprint of the generator's settings
+	 * @throws IOException if storing the events failed
+	 */
+	private void storeWorkload(Settings s, File file, long fingerprint)
+			throws IOException {
+		String className = CLASS_PACKAGE + "." + s.getSetting(CLASS_SETTING);
+		EventQueue eq = (EventQueue)s.createIntializedObject(className);
+		double endTime = getEndTime();
+
+		/* store to a temporary file first so that other simulations that
+		 * use the same workload never see a partially written file */
+		File dir = file.getAbsoluteFile().getParentFile();
+		File tmpFile = File.createTempFile("workload", ".tmp", dir);
+		try {
+			long nrof = ColumnarEventsReader.storeToColumnarFile(
+					new EventQueueReader(eq, endTime), tmpFile, fingerprint);
+			if (!tmpFile.renameTo(file) && !file.exists()) {
+				throw new IOException("Can't rename " + tmpFile);
+			}
+			System.out.println("Stored " + nrof + " events of " + className +
+					" to " + file + " (checksum " +
+					ColumnarEventsReader.getChecksum(file) + ")");
+		} finally {
+			tmpFile.delete();
+		}
+	}
+
+	/**
+	 * Returns a fingerprint (CRC-32) of all the settings in an event
+	 * generator's namespace that affect its events, and the scenario's end
+	 * time
+	 * @param s Settings of the event generator
+	 * @return The fingerprint
+	 */
+	private long getWorkloadFingerprint(Settings s) {
+		StringBuilder sb = new StringBuilder();
+		for (String name : s.getSettingNames()) {
+			if (!NON_WORKLOAD_SETTINGS.contains(name) && s.contains(name)) {
+				sb.append(name + "=" + s.getSetting(name) + "\n");
+			}
+		}
+		sb.append(SimScenario.END_TIME_S + "=" + getEndTime());
+
+		CRC32 crc = new CRC32();
+		crc.update(sb.toString().getBytes());
+		return crc.getValue();
+	}
+
+	/**
+	 * Returns the end time of the scenario
+	 * @return the end time of the scenario
+	 */
+	private double getEndTime() {
+		return new Settings(SimScenario.SCENARIO_NS).getDouble(
+				SimScenario.END_TIME_S);
+	}
+
 	/**
 	 * Returns all the loaded event queues
 	 * @return all the loaded event queues
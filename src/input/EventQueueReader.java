@@ -0,0 +1,49 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * External events reader that reads the events of an event queue (e.g.
+ * a message event generator) until a given time. Can be used for storing
+ * the events a generator creates to a file (see
+ * {@link ColumnarEventsReader#storeToColumnarFile(ExternalEventsReader,
+ * java.io.File)}). Plain {@link ExternalEvent}s (that don't do anything)
+ * are left out.
+ */
+public class EventQueueReader implements ExternalEventsReader {
+	private EventQueue queue;
+	private double endTime;
+
+	/**
+	 * Constructor.
+	 * @param queue The queue whose events are read
+	 * @param endTime Time of the last event to read (events due at
+	 * later times are not read)
+	 */
+	public EventQueueReader(EventQueue queue, double endTime) {
+		this.queue = queue;
+		this.endTime = endTime;
+	}
+
+	public List<ExternalEvent> readEvents(int nrof) {
+		List<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
+
+		while (events.size() < nrof && queue.nextEventsTime() <= endTime) {
+			ExternalEvent ee = queue.nextEvent();
+			if (ee.getClass() != ExternalEvent.class) {
+				events.add(ee);
+			}
+		}
+
+		return events;
+	}
+
+	public void close() {
+		// nothing to do
+	}
+}
@@ -21,6 +21,10 @@ public class ExternalEventsQueue implements EventQueue {
 	public static final String PRELOAD_SETTING = "nrofPreload";
 	/** path of external events file -setting id ({@value})*/
 	public static final String PATH_SETTING = "filePath";
+	/** read events in a background thread -setting id ({@value}).
+	 * Boolean valued. If true, the next batches of events are read and
+	 * parsed ahead of time in a separate thread. Default = false. */
+	public static final String PREFETCH_SETTING = "prefetch";
 
 	/** default number of preloaded events */
 	public static final int DEFAULT_NROF_PRELOAD = 500;
@@ -31,24 +35,42 @@ public class ExternalEventsQueue implements EventQueue {
 	private int nrofPreload;
 	private List<ExternalEvent> queue;
 	private boolean allEventsRead = false;
+	private boolean prefetch;
 
 	/**
 	 * Creates a new Queue from a file
 	 * @param filePath Path to the file where the events are read from. If
 	 * file ends with extension defined in {@link BinaryEventsReader#BINARY_EXT}
-	 * the file is assumed to be a binary file.
+	 * the file is assumed to be a binary file. Columnar files are recognized
+	 * from their content (see {@link ColumnarEventsReader#MAGIC}).
 	 * @param nrofPreload How many events to preload
 	 * @see BinaryEventsReader#BINARY_EXT
 	 * @see BinaryEventsReader#storeToBinaryFile(String, List)
+	 * @see ColumnarEventsReader#storeToColumnarFile(ExternalEventsReader, File)
 	 */
 	public ExternalEventsQueue(String filePath, int nrofPreload) {
+		this(filePath, nrofPreload, false);
+	}
+
+	/**
+	 * Creates a new Queue from a file
+	 * @param filePath Path to the file where the events are read from
+	 * @param nrofPreload How many events to preload
+	 * @param prefetch If true, events are read ahead in a background thread
+	 * @see #ExternalEventsQueue(String, int)
+	 * @see PrefetchingEventsReader
+	 */
+	public ExternalEventsQueue(String filePath, int nrofPreload,
+			boolean prefetch) {
 		setNrofPreload(nrofPreload);
+		this.prefetch = prefetch;
 		init(filePath);
 	}
 
 	/**
-	 * Create a new Queue based on the given settings: {@link #PRELOAD_SETTING}
-	 * and {@link #PATH_SETTING}. The path setting supports value filling.
+	 * Create a new Queue based on the given settings: {@link #PRELOAD_SETTING},
+	 * {@link #PATH_SETTING} and {@link #PREFETCH_SETTING}. The path setting
+	 * supports value filling.
 	 * @param s The settings
 	 */
 	public ExternalEventsQueue(Settings s) {
@@ -58,6 +80,7 @@ public class ExternalEventsQueue implements EventQueue {
 		else {
 			setNrofPreload(DEFAULT_NROF_PRELOAD);
 		}
+		this.prefetch = s.getBoolean(PREFETCH_SETTING, false);
         String eeFilePath = s.valueFillString(s.getSetting(PATH_SETTING));
         init(eeFilePath);
     }
@@ -77,13 +100,21 @@ public class ExternalEventsQueue implements EventQueue {
 	private void init(String eeFilePath) {
 		this.eventsFile = new File(eeFilePath);
 
-		if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
+		if (ColumnarEventsReader.isColumnarEeFile(eventsFile)) {
+			this.reader = new ColumnarEventsReader(eventsFile);
+		}
+		else if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
 			this.reader = new BinaryEventsReader(eventsFile);
 		}
 		else {
 			this.reader = new StandardEventsReader(eventsFile);
 		}
 
+		if (prefetch) {
+			this.reader = new PrefetchingEventsReader(reader, nrofPreload,
+					PrefetchingEventsReader.DEFAULT_NROF_BATCHES);
+		}
+
 		this.queue = readEvents(nrofPreload);
 		this.nextEventIndex = 0;
 	}
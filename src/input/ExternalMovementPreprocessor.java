@@ -0,0 +1,596 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import core.SettingsError;
+
+/**
+ * <P>Converts a raw location trace to the format of
+ * {@link ExternalMovementReader}, i.e., the same job the toolkit's
+ * conversion scripts (e.g. transimsParser.pl) do, but in parallel.</P>
+ * <P>The input has one location sample per line, with the time, node id,
+ * x and y coordinates in configurable whitespace separated columns. Lines
+ * don't need to be in time order. The input is split to chunks at line
+ * boundaries and the chunks are parsed on a fork-join pool, which also
+ * computes the min/max bounds and stable-sorts the samples by time
+ * (merge sort). The output has the offset header and the samples normalized
+ * to start from zero time and coordinates. The first location of every
+ * node is given at the first time instance (as ExternalMovement requires)
+ * and the other samples of that instance are left out.</P>
+ * <P>All samples are kept in memory in primitive arrays (about 32 bytes per
+ * sample).</P>
+ * <P>Usage: <CODE>ExternalMovementPreprocessor [-columns t,id,x,y]
+ * [-skip nrofLines] [-threads n] &lt;input&gt; &lt;output&gt;</CODE><BR>
+ * Default columns are <CODE>0,1,2,3</CODE>; Transims vehicle snapshots
+ * can be converted with <CODE>-columns 9,3,4,5 -skip 1</CODE>.</P>
+ */
+public class ExternalMovementPreprocessor {
+	/** Maximum size of a chunk parsed by one task (bytes) */
+	private static final int MAX_CHUNK_SIZE = 32 * 1024 * 1024;
+	/** Number of chunks per thread (for balancing the load) */
+	private static final int CHUNKS_PER_THREAD = 4;
+	/** Ranges smaller than this are sorted in a single task */
+	private static final int SORT_THRESHOLD = 1 << 13;
+	/** Prefix for comment lines */
+	private static final String COMMENT_PREFIX = "#";
+	/** Maximum number of decimals the normalized values are rounded to */
+	private static final int MAX_DECIMALS = 9;
+	private static final long[] POW10 = {1L, 10L, 100L, 1000L, 10000L,
+		100000L, 1000000L, 10000000L, 100000000L, 1000000000L};
+
+	private final int timeCol;
+	private final int idCol;
+	private final int xCol;
+	private final int yCol;
+	private final int nrofCols;
+	private int skipLines;
+	private ForkJoinPool pool;
+
+	/* all samples (in input order) */
+	private double[] times;
+	private double[] xs;
+	private double[] ys;
+	private int[] ids;
+	private List<String> idNames;
+	private double minTime, maxTime, minX, maxX, minY, maxY;
+	/** largest number of decimals in the input values */
+	private int decimals;
+
+	/**
+	 * Constructor.
+	 * @param columns Indexes of the time, id, x and y columns
+	 * @param skipLines Number of lines to skip from the start of the input
+	 * @param nrofThreads Number of threads to use
+	 */
+	public ExternalMovementPreprocessor(int[] columns, int skipLines,
+			int nrofThreads) {
+		if (columns.length != 4) {
+			throw new SettingsError("Four columns (time, id, x, y) required");
+		}
+		this.timeCol = columns[0];
+		this.idCol = columns[1];
+		this.xCol = columns[2];
+		this.yCol = columns[3];
+		int max = 0;
+		for (int c : columns) {
+			max = Math.max(max, c);
+		}
+		this.nrofCols = max + 1;
+		this.skipLines = skipLines;
+		this.pool = new ForkJoinPool(Math.max(1, nrofThreads));
+	}
+
+	/**
+	 * Converts a trace
+	 * @param inFile The raw trace file
+	 * @param outFile The file where the converted trace is written
+	 * @return Number of samples read from the input
+	 * @throws IOException if reading or writing failed
+	 */
+	public int process(File inFile, File outFile) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(inFile, "r");
+		try {
+			parse(in.getChannel(), splitToChunks(in));
+		} finally {
+			in.close();
+		}
+
+		int[] order = new int[times.length];
+		for (int i=0; i<order.length; i++) {
+			order[i] = i;
+		}
+		pool.invoke(new SortTask(order, new int[order.length], 0,
+				order.length));
+
+		write(outFile, order);
+		return times.length;
+	}
+
+	/**
+	 * Shuts down the thread pool of the preprocessor
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Splits the input to chunks that start at line boundaries
+	 * @param in The input
+	 * @return Start offsets of the chunks and the end offset of the input
+	 * @throws IOException if reading failed
+	 */
+	private long[] splitToChunks(RandomAccessFile in) throws IOException {
+		long length = in.length();
+		long start = 0;
+
+		in.seek(0);
+		for (int i=0; i<skipLines && start < length; i++) {
+			while (start < length && in.read() != '\n') {
+				start++;
+			}
+			start++; /* the line feed */
+		}
+		start = Math.min(start, length);
+
+		int nrofChunks = (int)Math.max(pool.getParallelism() *
+				CHUNKS_PER_THREAD, (length - start) / MAX_CHUNK_SIZE + 1);
+		long chunkSize = Math.max(1, (length - start) / nrofChunks);
+		List<Long> bounds = new ArrayList<Long>();
+		bounds.add(start);
+
+		for (long b = start + chunkSize; b < length; b += chunkSize) {
+			long prev = bounds.get(bounds.size() - 1);
+			if (b <= prev) {
+				continue;
+			}
+			/* move the boundary to the start of the next line */
+			in.seek(b - 1);
+			long pos = b - 1;
+			int c;
+			while ((c = in.read()) != -1 && c != '\n') {
+				pos++;
+			}
+			pos++;
+			if (pos < length && pos > prev) {
+				bounds.add(pos);
+			}
+		}
+		bounds.add(length);
+
+		long[] offsets = new long[bounds.size()];
+		for (int i=0; i<offsets.length; i++) {
+			offsets[i] = bounds.get(i);
+		}
+		return offsets;
+	}
+
+	/**
+	 * Parses the chunks in parallel and combines the results
+	 * @param channel Channel of the input file
+	 * @param bounds Chunk boundaries
+	 */
+	private void parse(FileChannel channel, long[] bounds) {
+		List<ChunkTask> tasks = new ArrayList<ChunkTask>();
+		for (int i=0; i<bounds.length - 1; i++) {
+			ChunkTask t = new ChunkTask(channel, bounds[i], bounds[i+1]);
+			tasks.add(t);
+			pool.execute(t);
+		}
+
+		Map<String, Integer> idIndexes = new HashMap<String, Integer>();
+		this.idNames = new ArrayList<String>();
+		this.minTime = this.minX = this.minY = Double.MAX_VALUE;
+		this.maxTime = this.maxX = this.maxY = -Double.MAX_VALUE;
+		this.decimals = 0;
+		int total = 0;
+		List<Chunk> chunks = new ArrayList<Chunk>();
+
+		for (ChunkTask t : tasks) {
+			Chunk c = t.join();
+			chunks.add(c);
+			total += c.size;
+			minTime = Math.min(minTime, c.minTime);
+			maxTime = Math.max(maxTime, c.maxTime);
+			minX = Math.min(minX, c.minX);
+			maxX = Math.max(maxX, c.maxX);
+			minY = Math.min(minY, c.minY);
+			maxY = Math.max(maxY, c.maxY);
+			decimals = Math.max(decimals, c.decimals);
+
+			/* global id indexes in the order of first appearance */
+			c.globalIds = new int[c.idNames.size()];
+			for (int i=0; i<c.globalIds.length; i++) {
+				String id = c.idNames.get(i);
+				Integer index = idIndexes.get(id);
+				if (index == null) {
+					index = idNames.size();
+					idIndexes.put(id, index);
+					idNames.add(id);
+				}
+				c.globalIds[i] = index;
+			}
+		}
+
+		if (total == 0) {
+			throw new SettingsError("No location samples in the trace");
+		}
+
+		this.times = new double[total];
+		this.xs = new double[total];
+		this.ys = new double[total];
+		this.ids = new int[total];
+		int offset = 0;
+		for (Chunk c : chunks) {
+			System.arraycopy(c.times, 0, times, offset, c.size);
+			System.arraycopy(c.xs, 0, xs, offset, c.size);
+			System.arraycopy(c.ys, 0, ys, offset, c.size);
+			for (int i=0; i<c.size; i++) {
+				ids[offset + i] = c.globalIds[c.ids[i]];
+			}
+			offset += c.size;
+		}
+	}
+
+	/**
+	 * Writes the sorted and normalized samples
+	 * @param outFile The output file
+	 * @param order Sample indexes in time order
+	 * @throws IOException if writing failed
+	 */
+	private void write(File outFile, int[] order) throws IOException {
+		BufferedWriter out = new BufferedWriter(new FileWriter(outFile),
+				1 << 16);
+		try {
+			out.write("0 " + format(maxTime - minTime) + " 0 " +
+					format(maxX - minX) + " 0 " + format(maxY - minY) + "\n");
+
+			/* first location of each node at the first time instance */
+			boolean[] written = new boolean[idNames.size()];
+			for (int i : order) {
+				if (!written[ids[i]]) {
+					written[ids[i]] = true;
+					writeSample(out, 0, ids[i], xs[i], ys[i]);
+				}
+			}
+
+			for (int i : order) {
+				if (times[i] > minTime) {
+					writeSample(out, times[i] - minTime, ids[i], xs[i], ys[i]);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private void writeSample(BufferedWriter out, double time, int id,
+			double x, double y) throws IOException {
+		out.write(format(time));
+		out.write(' ');
+		out.write(idNames.get(id));
+		out.write(' ');
+		out.write(format(x - minX));
+		out.write(' ');
+		out.write(format(y - minY));
+		out.write('\n');
+	}
+
+	/**
+	 * Formats a value without an exponent. The value is rounded to the
+	 * precision of the input so that the normalization doesn't add
+	 * floating point noise (e.g. 12.299999999999997) to the output.
+	 * @param value The value
+	 * @return The formatted value
+	 */
+	private String format(double value) {
+		if (decimals <= MAX_DECIMALS &&
+				Math.abs(value) < 1e15 / POW10[decimals]) {
+			long scaled = Math.round(value * POW10[decimals]);
+			int nrofDecimals = decimals;
+			while (nrofDecimals > 0 && scaled % 10 == 0) {
+				scaled /= 10;
+				nrofDecimals--;
+			}
+			String digits = Long.toString(Math.abs(scaled));
+			if (nrofDecimals == 0) {
+				return (scaled < 0 ? "-" : "") + digits;
+			}
+
+			StringBuilder sb = new StringBuilder(digits.length() + 3);
+			if (scaled < 0) {
+				sb.append('-');
+			}
+			int intDigits = digits.length() - nrofDecimals;
+			if (intDigits <= 0) {
+				sb.append("0.");
+				for (int i = intDigits; i < 0; i++) {
+					sb.append('0');
+				}
+				sb.append(digits);
+			}
+			else {
+				sb.append(digits, 0, intDigits).append('.');
+				sb.append(digits, intDigits, digits.length());
+			}
+			return sb.toString();
+		}
+
+		String s = Double.toString(value);
+		if (s.indexOf('E') >= 0) {
+			s = BigDecimal.valueOf(value).toPlainString();
+		}
+		return s;
+	}
+
+	/**
+	 * Parsed samples of one chunk of the input
+	 */
+	private static class Chunk {
+		private int size;
+		private double[] times;
+		private double[] xs;
+		private double[] ys;
+		/** chunk-local id indexes */
+		private int[] ids;
+		private List<String> idNames;
+		/** global indexes of the local id indexes */
+		private int[] globalIds;
+		/** largest number of decimals in the values */
+		private int decimals;
+		private double minTime = Double.MAX_VALUE;
+		private double maxTime = -Double.MAX_VALUE;
+		private double minX = Double.MAX_VALUE;
+		private double maxX = -Double.MAX_VALUE;
+		private double minY = Double.MAX_VALUE;
+		private double maxY = -Double.MAX_VALUE;
+
+		private Chunk(int capacity) {
+			this.times = new double[capacity];
+			this.xs = new double[capacity];
+			this.ys = new double[capacity];
+			this.ids = new int[capacity];
+			this.idNames = new ArrayList<String>();
+		}
+
+		private void add(double time, int id, double x, double y) {
+			if (size == times.length) {
+				int newSize = Math.max(16, size * 2);
+				times = Arrays.copyOf(times, newSize);
+				xs = Arrays.copyOf(xs, newSize);
+				ys = Arrays.copyOf(ys, newSize);
+				ids = Arrays.copyOf(ids, newSize);
+			}
+			times[size] = time;
+			xs[size] = x;
+			ys[size] = y;
+			ids[size] = id;
+			size++;
+
+			minTime = Math.min(minTime, time);
+			maxTime = Math.max(maxTime, time);
+			minX = Math.min(minX, x);
+			maxX = Math.max(maxX, x);
+			minY = Math.min(minY, y);
+			maxY = Math.max(maxY, y);
+		}
+	}
+
+	/**
+	 * Task that reads and parses one chunk of the input
+	 */
+	private class ChunkTask extends RecursiveTask<Chunk> {
+		private static final long serialVersionUID = 42L;
+		private FileChannel channel;
+		private long start;
+		private long end;
+
+		private ChunkTask(FileChannel channel, long start, long end) {
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected Chunk compute() {
+			byte[] bytes = new byte[(int)(end - start)];
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			Map<String, Integer> localIds = new HashMap<String, Integer>();
+			Chunk chunk = new Chunk(bytes.length / 24 + 1);
+
+			try {
+				while (buffer.hasRemaining()) {
+					if (channel.read(buffer, start + buffer.position()) < 0) {
+						break;
+					}
+				}
+
+				LineTokenizer tokens = new LineTokenizer(
+						new ByteArrayInputStream(bytes, 0, buffer.position()),
+						nrofCols);
+				while (tokens.nextLine()) {
+					if (tokens.isEmptyOrComment(COMMENT_PREFIX)) {
+						continue;
+					}
+					if (tokens.getNrofTokens() < nrofCols) {
+						throw new SettingsError("Invalid line '" +
+								tokens.getLine() + "'");
+					}
+
+					String id = tokens.getToken(idCol);
+					Integer index = localIds.get(id);
+					if (index == null) {
+						index = chunk.idNames.size();
+						localIds.put(id, index);
+						chunk.idNames.add(id);
+					}
+
+					try {
+						chunk.add(tokens.parseDouble(timeCol), index,
+								tokens.parseDouble(xCol),
+								tokens.parseDouble(yCol));
+					} catch (NumberFormatException e) {
+						throw new SettingsError("Invalid line '" +
+								tokens.getLine() + "'");
+					}
+					chunk.decimals = Math.max(chunk.decimals, Math.max(
+							getNrofDecimals(tokens, timeCol), Math.max(
+							getNrofDecimals(tokens, xCol),
+							getNrofDecimals(tokens, yCol))));
+				}
+			} catch (IOException e) {
+				throw new SettingsError("Can't read the trace: " +
+						e.getMessage());
+			}
+
+			return chunk;
+		}
+	}
+
+	/**
+	 * Returns the number of decimals in a number token
+	 * @param tokens The tokenizer
+	 * @param t Index of the token
+	 * @return The number of digits after the decimal point or more than
+	 * {@link #MAX_DECIMALS} if the token has an exponent
+	 */
+	private static int getNrofDecimals(LineTokenizer tokens, int t) {
+		int len = tokens.getTokenLength(t);
+		int nrof = -1;
+		for (int i=0; i<len; i++) {
+			byte b = tokens.getTokenByte(t, i);
+			if (b == '.') {
+				nrof = 0;
+			}
+			else if (b == 'e' || b == 'E') {
+				return MAX_DECIMALS + 1;
+			}
+			else if (nrof >= 0) {
+				nrof++;
+			}
+		}
+		return Math.max(nrof, 0);
+	}
+
+	/**
+	 * Task that stable-sorts a range of sample indexes by the sample time
+	 * (merge sort)
+	 */
+	private class SortTask extends RecursiveAction {
+		private static final long serialVersionUID = 42L;
+		private int[] order;
+		private int[] temp;
+		private int lo;
+		private int hi;
+
+		private SortTask(int[] order, int[] temp, int lo, int hi) {
+			this.order = order;
+			this.temp = temp;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo <= 1) {
+				return;
+			}
+			int mid = (lo + hi) >>> 1;
+			if (hi - lo <= SORT_THRESHOLD) {
+				new SortTask(order, temp, lo, mid).compute();
+				new SortTask(order, temp, mid, hi).compute();
+			}
+			else {
+				invokeAll(new SortTask(order, temp, lo, mid),
+						new SortTask(order, temp, mid, hi));
+			}
+
+			if (times[order[mid - 1]] <= times[order[mid]]) {
+				return; /* already in order (e.g. time-ordered input) */
+			}
+
+			System.arraycopy(order, lo, temp, lo, hi - lo);
+			int i = lo, j = mid, k = lo;
+			while (i < mid && j < hi) {
+				/* take from the left on ties to keep the sort stable */
+				if (times[temp[j]] < times[temp[i]]) {
+					order[k++] = temp[j++];
+				}
+				else {
+					order[k++] = temp[i++];
+				}
+			}
+			while (i < mid) {
+				order[k++] = temp[i++];
+			}
+			while (j < hi) {
+				order[k++] = temp[j++];
+			}
+		}
+	}
+
+	/**
+	 * Converts a trace from the command line.
+	 * @param args The arguments (see the class documentation)
+	 * @throws IOException if the conversion failed
+	 */
+	public static void main(String[] args) throws IOException {
+		int[] columns = {0, 1, 2, 3};
+		int skip = 0;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int i = 0;
+
+		for (; i < args.length - 2; i += 2) {
+			if (args[i].equals("-columns")) {
+				String[] parts = args[i+1].split(",");
+				columns = new int[parts.length];
+				for (int j=0; j<parts.length; j++) {
+					columns[j] = Integer.parseInt(parts[j].trim());
+				}
+			}
+			else if (args[i].equals("-skip")) {
+				skip = Integer.parseInt(args[i+1]);
+			}
+			else if (args[i].equals("-threads")) {
+				threads = Integer.parseInt(args[i+1]);
+			}
+			else {
+				break;
+			}
+		}
+
+		if (args.length - i != 2) {
+			System.out.println("Usage: ExternalMovementPreprocessor " +
+					"[-columns t,id,x,y] [-skip nrofLines] [-threads n] " +
+					"<input> <output>");
+			System.exit(1);
+		}
+
+		long start = System.currentTimeMillis();
+		ExternalMovementPreprocessor p =
+			new ExternalMovementPreprocessor(columns, skip, threads);
+		int nrof = p.process(new File(args[i]), new File(args[i+1]));
+		p.shutdown();
+		System.out.println("Converted " + nrof + " samples in " +
+				(System.currentTimeMillis() - start) / 1000.0 + " s");
+	}
+}
@@ -6,9 +6,10 @@ package input;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
 
 import util.Tuple;
 
@@ -39,9 +40,13 @@ import core.SettingsError;
 public class ExternalMovementReader {
 	/* Prefix for comment lines (lines starting with this are ignored) */
 	public static final String COMMENT_PREFIX = "#";
-	private Scanner scanner;
+	/** number of tokens parsed from a line (rest are ignored) */
+	private static final int MAX_TOKENS = 6;
+	/** initial size of the id index table (must be a power of two) */
+	private static final int INIT_ID_TABLE_SIZE = 1024;
+
+	private LineTokenizer tokens;
 	private double lastTimeStamp = -1;
-	private String lastLine;
 	private double minTime;
 	private double maxTime;
 	private double minX;
@@ -50,6 +55,25 @@ public class ExternalMovementReader {
 	private double maxY;
 	private boolean normalize;
 
+	/** the first sample of the next time instance (read ahead, not
+	 * normalized) */
+	private boolean hasNextSample;
+	private double nextTime;
+	private int nextIdIndex;
+	private double nextX;
+	private double nextY;
+
+	/** id indexes and coordinates of the last read time instance */
+	private int batchSize;
+	private int[] batchIds;
+	private double[] batchX;
+	private double[] batchY;
+
+	/** the ids in index order */
+	private List<String> ids;
+	/** open addressing hash table of id bytes and their indexes */
+	private byte[][] idTableKeys;
+	private int[] idTableValues;
 
 	/**
 	 * Constructor. Creates a new reader that reads the data from a file.
@@ -60,27 +84,41 @@ public class ExternalMovementReader {
 		this.normalize = true;
 		File inFile = new File(inFilePath);
 		try {
-			scanner = new Scanner(inFile);
+			tokens = new LineTokenizer(CompressedInputStream.open(inFile),
+					MAX_TOKENS);
 		} catch (FileNotFoundException e) {
 			throw new SettingsError("Couldn't find external movement input " +
 					"file " + inFile);
+		} catch (IOException e) {
+			throw new SettingsError("Couldn't read external movement input " +
+					"file " + inFile + ": " + e.getMessage());
 		}
 
-		String offsets = scanner.nextLine();
-
+		if (!nextLine() || tokens.getNrofTokens() < 6) {
+			throw new SettingsError("Invalid offset line '" +
+					tokens.getLine() + "'");
+		}
 		try {
-			Scanner lineScan = new Scanner(offsets);
-			minTime = lineScan.nextDouble();
-			maxTime = lineScan.nextDouble();
-			minX = lineScan.nextDouble();
-			maxX = lineScan.nextDouble();
-			minY = lineScan.nextDouble();
-			maxY = lineScan.nextDouble();
-		} catch (Exception e) {
-			throw new SettingsError("Invalid offset line '" + offsets + "'");
+			minTime = tokens.parseDouble(0);
+			maxTime = tokens.parseDouble(1);
+			minX = tokens.parseDouble(2);
+			maxX = tokens.parseDouble(3);
+			minY = tokens.parseDouble(4);
+			maxY = tokens.parseDouble(5);
+		} catch (NumberFormatException e) {
+			throw new SettingsError("Invalid offset line '" +
+					tokens.getLine() + "'");
 		}
 
-		lastLine = scanner.nextLine();
+		this.ids = new ArrayList<String>();
+		this.idTableKeys = new byte[INIT_ID_TABLE_SIZE][];
+		this.idTableValues = new int[INIT_ID_TABLE_SIZE];
+		this.batchIds = new int[16];
+		this.batchX = new double[16];
+		this.batchY = new double[16];
+		this.batchSize = 0;
+
+		this.hasNextSample = readSample();
 	}
 
 	/**
@@ -97,63 +135,202 @@ public class ExternalMovementReader {
 	 * Reads all new id-coordinate tuples that belong to the same time instance
 	 * @return A list of tuples or empty list if there were no more moves
 	 * @throws SettingError if an invalid line was read
+	 * @see #readNextMovementBatch()
 	 */
 	public List<Tuple<String, Coord>> readNextMovements() {
+		int nrof = readNextMovementBatch();
 		ArrayList<Tuple<String, Coord>> moves =
-			new ArrayList<Tuple<String, Coord>>();
+			new ArrayList<Tuple<String, Coord>>(nrof);
 
-		if (!scanner.hasNextLine()) {
-			return moves;
+		for (int i=0; i<nrof; i++) {
+			moves.add(new Tuple<String, Coord>(ids.get(batchIds[i]),
+					new Coord(batchX[i], batchY[i])));
 		}
 
-		Scanner lineScan = new Scanner(lastLine);
-		double time = lineScan.nextDouble();
-		String id = lineScan.next();
-		double x = lineScan.nextDouble();
-		double y = lineScan.nextDouble();
+		return moves;
+	}
 
-		if (normalize) {
-			time -= minTime;
-			x -= minX;
-			y -= minY;
+	/**
+	 * Reads all the samples that belong to the next time instance to reused
+	 * buffers. Use {@link #getBatchIds()}, {@link #getBatchX()} and
+	 * {@link #getBatchY()} to access the samples. The contents of the buffers
+	 * stay valid until the next call of this method.
+	 * @return Number of samples read or 0 if there were no more moves
+	 * @throws SettingError if an invalid line was read
+	 */
+	public int readNextMovementBatch() {
+		batchSize = 0;
+		if (!hasNextSample) {
+			return 0;
 		}
 
+		double time = normalizedTime(nextTime);
 		lastTimeStamp = time;
 
-		while (scanner.hasNextLine() && lastTimeStamp == time) {
-			lastLine = scanner.nextLine();
-
-			if (lastLine.trim().length() == 0 ||
-					lastLine.startsWith(COMMENT_PREFIX)) {
-				continue; /* skip empty and comment lines */
+		do {
+			if (batchSize == batchIds.length) {
+				int newSize = batchSize * 2;
+				batchIds = Arrays.copyOf(batchIds, newSize);
+				batchX = Arrays.copyOf(batchX, newSize);
+				batchY = Arrays.copyOf(batchY, newSize);
 			}
+			batchIds[batchSize] = nextIdIndex;
+			batchX[batchSize] = (normalize ? nextX - minX : nextX);
+			batchY[batchSize] = (normalize ? nextY - minY : nextY);
+			batchSize++;
+
+			hasNextSample = readSample();
+		} while (hasNextSample && normalizedTime(nextTime) == time);
+
+		return batchSize;
+	}
+
+	/**
+	 * Returns the id indexes of the last read batch. Only the first
+	 * n values are valid, where n is the value returned by
+	 * {@link #readNextMovementBatch()}.
+	 * @return The id indexes (see {@link #getId(int)})
+	 */
+	public int[] getBatchIds() {
+		return batchIds;
+	}
+
+	/**
+	 * Returns the x coordinates of the last read batch
+	 * @return The x coordinates
+	 * @see #getBatchIds()
+	 */
+	public double[] getBatchX() {
+		return batchX;
+	}
+
+	/**
+	 * Returns the y coordinates of the last read batch
+	 * @return The y coordinates
+	 * @see #getBatchIds()
+	 */
+	public double[] getBatchY() {
+		return batchY;
+	}
+
+	/**
+	 * Returns the id of an id index. Indexes are given to ids in the order
+	 * they first appear in the file.
+	 * @param index The id index
+	 * @return The id
+	 */
+	public String getId(int index) {
+		return ids.get(index);
+	}
+
+	/**
+	 * Returns the number of different ids read so far
+	 * @return the number of different ids read so far
+	 */
+	public int getNrofIds() {
+		return ids.size();
+	}
 
-			// add previous line's tuple
-			moves.add(new Tuple<String, Coord>(id, new Coord(x,y)));
+	/**
+	 * Returns a time value normalized if normalizing is on
+	 * @param time The time value
+	 * @return The (normalized) time value
+	 */
+	private double normalizedTime(double time) {
+		return (normalize ? time - minTime : time);
+	}
 
-			lineScan = new Scanner(lastLine);
+	/**
+	 * Reads the next sample line to the next sample fields
+	 * @return True if a sample was read, false if there were no more lines
+	 * @throws SettingError if an invalid line was read
+	 */
+	private boolean readSample() {
+		while (nextLine()) {
+			if (tokens.isEmptyOrComment(COMMENT_PREFIX)) {
+				continue; /* skip empty and comment lines */
+			}
 
 			try {
-				time = lineScan.nextDouble();
-				id = lineScan.next();
-				x = lineScan.nextDouble();
-				y = lineScan.nextDouble();
-			} catch (Exception e) {
-				throw new SettingsError("Invalid line '" + lastLine + "'");
+				if (tokens.getNrofTokens() < 4) {
+					throw new NumberFormatException();
+				}
+				nextTime = tokens.parseDouble(0);
+				nextX = tokens.parseDouble(2);
+				nextY = tokens.parseDouble(3);
+			} catch (NumberFormatException e) {
+				throw new SettingsError("Invalid line '" + tokens.getLine() +
+						"'");
 			}
+			nextIdIndex = getIdIndex(1);
+			return true;
+		}
 
-			if (normalize) {
-				time -= minTime;
-				x -= minX;
-				y -= minY;
+		return false;
+	}
+
+	/**
+	 * Returns the index of the id in the given token of the current line,
+	 * giving a new index to new ids
+	 * @param t Index of the token
+	 * @return The id index
+	 */
+	private int getIdIndex(int t) {
+		int mask = idTableKeys.length - 1;
+		int slot = tokens.getTokenHash(t) & mask;
+
+		while (idTableKeys[slot] != null) {
+			if (tokens.tokenEquals(t, idTableKeys[slot])) {
+				return idTableValues[slot];
 			}
+			slot = (slot + 1) & mask;
 		}
 
-		if (!scanner.hasNextLine()) {	// add the last tuple of the file
-			moves.add(new Tuple<String, Coord>(id, new Coord(x,y)));
+		int index = ids.size();
+		ids.add(tokens.getToken(t));
+		idTableKeys[slot] = tokens.getTokenBytes(t);
+		idTableValues[slot] = index;
+
+		if (ids.size() * 2 > idTableKeys.length) {
+			growIdTable();
 		}
+		return index;
+	}
 
-		return moves;
+	/**
+	 * Doubles the size of the id hash table
+	 */
+	private void growIdTable() {
+		byte[][] oldKeys = idTableKeys;
+		int[] oldValues = idTableValues;
+		idTableKeys = new byte[oldKeys.length * 2][];
+		idTableValues = new int[oldKeys.length * 2];
+		int mask = idTableKeys.length - 1;
+
+		for (int i=0; i<oldKeys.length; i++) {
+			if (oldKeys[i] == null) {
+				continue;
+			}
+			int slot = Arrays.hashCode(oldKeys[i]) & mask;
+			while (idTableKeys[slot] != null) {
+				slot = (slot + 1) & mask;
+			}
+			idTableKeys[slot] = oldKeys[i];
+			idTableValues[slot] = oldValues[i];
+		}
+	}
+
+	/**
+	 * Reads the next line of the file
+	 * @return True if a line was read, false if there were no more lines
+	 */
+	private boolean nextLine() {
+		try {
+			return tokens.nextLine();
+		} catch (IOException e) {
+			throw new SettingsError("Couldn't read external movement input " +
+					"file: " + e.getMessage());
+		}
 	}
 
 	/**
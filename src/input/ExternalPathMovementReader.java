@@ -5,20 +5,26 @@
 
 package input;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import core.SettingsError;
 
@@ -32,6 +38,7 @@ import core.SettingsError;
  *
  * <p>Reads external traces that are of the form:</p>
  * <code>id time_1,x_1,y_1 time_2,x_2,y_2 ... \n<code>
+ * <p>Empty lines and lines without any data points are skipped.</p>
  *
  * <p>The first line should be:</>
  * <code>maxID minTime maxTime minX maxX minY maxY</code>
@@ -45,14 +52,30 @@ import core.SettingsError;
  * times must match the ONE simulation time.
  * </p>
  *
- * <p>Trace and activity files ending in .zip are assumed to be
- * compressed and will be automatically uncompressed during reading. The whole
- * trace is loaded into memory at once.</p>
+ * <p>Compressed (e.g. gzip or zip) trace and activity files are detected
+ * automatically and uncompressed during reading (see
+ * {@link CompressedInputStream}). The whole trace is loaded into memory at
+ * once.</p>
+ *
+ * <p>Uncompressed traces can also be read using an index (see
+ * {@link #getInstance(String, String, boolean)}). The index contains the
+ * file offset, start time and start location of every path, and it is stored
+ * in a sidecar file next to the trace (trace file name +
+ * {@value #INDEX_EXT}). The index is built when it doesn't exist or is
+ * older than the trace. With an index only the index is loaded at startup
+ * and each path is read from the trace file when it is requested.</p>
  *
  * @author teemuk
  *
  */
 public class ExternalPathMovementReader {
+	/** Extension of the path index files */
+	public static final String INDEX_EXT = ".pidx";
+	/** Magic number at the start of path index files */
+	private static final int INDEX_MAGIC = 0x4F4E4550; /* "ONEP" */
+	/** Version of the path index file format */
+	private static final int INDEX_VERSION = 1;
+
 	 // Singletons are evil, but I'm lazy
 	private static Map<String, ExternalPathMovementReader> singletons =
 		new HashMap<String, ExternalPathMovementReader>();
@@ -74,8 +97,17 @@ public class ExternalPathMovementReader {
 		public double end;
 	}
 
-	// Path cache
+	// Path cache (null if the paths are read using the index)
 	private List<List<List<Entry>>> paths = null;
+	// Path index: trace file offsets, start times and start locations of the
+	// paths of each node (null if the whole trace is in the path cache)
+	private long[][] pathOffsets = null;
+	private double[][] pathStartTimes;
+	private double[][] pathStartX;
+	private double[][] pathStartY;
+	// Trace file for reading the indexed paths
+	private RandomAccessFile traceAccess;
+	private byte[] lineBuffer;
 	// Activity cache
 	private List<List<ActiveTime>> activeTimes = null;
 
@@ -95,30 +127,20 @@ public class ExternalPathMovementReader {
 	 *
 	 * @param traceFilePath		path to the trace file
 	 * @param activityFilePath	path to the activity file
+	 * @param useIndex			if true, the paths are read using an index
 	 */
 	private ExternalPathMovementReader(String traceFilePath,
-			String activityFilePath) throws IOException {
+			String activityFilePath, boolean useIndex) throws IOException {
 		// Open the trace file for reading
 		File inFile = new File(traceFilePath);
-		long traceSize = inFile.length();
-		long totalRead = 0;
+		long traceSize;
 		long readSize = 0;
-		long printSize = 5*1024*1024;
 
 		BufferedReader reader = null;
 		try {
-			if (traceFilePath.endsWith(".zip")) {
-				// Grab the first entry from the zip file
-				// TODO: try to find the correct entry based on file name
-				ZipFile zf = new ZipFile(traceFilePath);
-				ZipEntry ze = zf.entries().nextElement();
-				reader = new BufferedReader(
-						new InputStreamReader(zf.getInputStream(ze)));
-				traceSize = ze.getSize();
-			} else {
-				reader = new BufferedReader(
-					new FileReader(traceFilePath));
-			}
+			traceSize = CompressedInputStream.getUncompressedSize(inFile);
+			reader = new BufferedReader(
+					CompressedInputStream.openReader(inFile));
 		} catch (FileNotFoundException e1) {
 			throw new SettingsError("Couldn't find external movement input " +
 					"file " + inFile);
@@ -151,10 +173,35 @@ public class ExternalPathMovementReader {
 			throw new SettingsError("Invalid offset line '" + offsets + "'");
 		}
 
+		if (useIndex && !CompressedInputStream.isCompressed(inFile)) {
+			reader.close();
+			loadIndex(inFile);
+			this.traceAccess = new RandomAccessFile(inFile, "r");
+			this.lineBuffer = new byte[1024];
+		}
+		else {
+			readAllPaths(reader, readSize, traceSize);
+		}
+
+		readActivity(activityFilePath);
+	}
+
+	/**
+	 * Reads all the paths of the trace to the path cache
+	 * @param reader Reader of the trace file, positioned after the header
+	 * @param readSize Number of bytes read from the trace so far
+	 * @param traceSize Size of the trace file (for progress reports)
+	 * @throws IOException if reading failed
+	 */
+	private void readAllPaths(BufferedReader reader, long readSize,
+			long traceSize) throws IOException {
+		long totalRead = 0;
+		long printSize = 5*1024*1024;
+
 		// Initialize path cache
 		this.paths = new ArrayList<List<List<Entry>>>(this.maxID + 1);
 		for (int i=0; i<=this.maxID; i++) {
-			this.paths.add(i, new LinkedList<List<Entry>>());
+			this.paths.add(i, new ArrayList<List<Entry>>());
 		}
 
 		// Parse traces
@@ -165,57 +212,85 @@ public class ExternalPathMovementReader {
 			if (readSize >= printSize) {
 				totalRead += readSize;
 				readSize = 0;
-				System.out.println("Processed " + (totalRead/1024) + "KB out" +
-						" of " + (traceSize/1024) + "KB (" +
-						Math.round(100.0*totalRead/traceSize) + "%)");
+				if (traceSize > 0) {
+					System.out.println("Processed " + (totalRead/1024) +
+							"KB out of " + (traceSize/1024) + "KB (" +
+							Math.round(100.0*totalRead/traceSize) + "%)");
+				}
+				else {
+					System.out.println("Processed " + (totalRead/1024) + "KB");
+				}
 			}
 
-			if (line.equals("")) {
+			String[] parts = splitLine(line);
+			if (parts.length < 2) {
 				line = reader.readLine();
-				continue; // Skip empty lines
+				continue; // Skip empty lines and lines without a path
 			}
-			Scanner traceScan = new Scanner(line);
-			int id = traceScan.nextInt();
-			List<List<Entry>> paths = this.paths.get(id);
-			List<Entry> path = new LinkedList<Entry>();
-			while (traceScan.hasNext()) {
-				String dataPoint = traceScan.next();
-				int d1 = dataPoint.indexOf(',');
-				int d2 = dataPoint.indexOf(',', d1+1);
-
-				Entry e = new Entry();
-				e.time = Double.parseDouble(dataPoint.substring(0, d1));
-				e.x = Double.parseDouble(dataPoint.substring(d1+1, d2));
-				e.y = Double.parseDouble(dataPoint.substring(d2+1));
-
-				if (this.normalize) {
-					e.time -= this.minTime;
-					e.x -= this.minX;
-					e.y -= this.minY;
-				}
-
-				path.add(e);
-			}
-			paths.add(path);
+			int id = Integer.parseInt(parts[0]);
+			this.paths.get(id).add(parsePath(parts));
 
 			line = reader.readLine();
 		}
+		reader.close();
+	}
+
+	/**
+	 * Splits a trace line to the id and the data points
+	 * @param line The line
+	 * @return The parts of the line
+	 */
+	private static String[] splitLine(String line) {
+		return line.trim().split("\\s+");
+	}
+
+	/**
+	 * Parses the path of a trace line
+	 * @param parts The parts of the line (see {@link #splitLine(String)})
+	 * @return The path
+	 */
+	private List<Entry> parsePath(String[] parts) {
+		List<Entry> path = new ArrayList<Entry>(parts.length - 1);
+		for (int i=1; i<parts.length; i++) {
+			path.add(parseEntry(parts[i]));
+		}
+		return path;
+	}
+
+	/**
+	 * Parses a data point (time,x,y) of a path
+	 * @param dataPoint The data point
+	 * @return The point
+	 */
+	private Entry parseEntry(String dataPoint) {
+		int d1 = dataPoint.indexOf(',');
+		int d2 = dataPoint.indexOf(',', d1+1);
+
+		Entry e = new Entry();
+		e.time = Double.parseDouble(dataPoint.substring(0, d1));
+		e.x = Double.parseDouble(dataPoint.substring(d1+1, d2));
+		e.y = Double.parseDouble(dataPoint.substring(d2+1));
+
+		if (this.normalize) {
+			e.time -= this.minTime;
+			e.x -= this.minX;
+			e.y -= this.minY;
+		}
+		return e;
+	}
 
+	/**
+	 * Reads the activity times
+	 * @param activityFilePath path to the activity file
+	 * @throws IOException if reading failed
+	 */
+	private void readActivity(String activityFilePath) throws IOException {
 		// Parse activity times
-		inFile = new File(activityFilePath);
-		reader = null;
+		File inFile = new File(activityFilePath);
+		BufferedReader reader = null;
 		try {
-			if (activityFilePath.endsWith(".zip")) {
-				// Grab the first entry from the zip file
-				// TODO: try to find the correct entry based on file name
-				ZipFile zf = new ZipFile(activityFilePath);
-				ZipEntry ze = zf.entries().nextElement();
-				reader = new BufferedReader(
-						new InputStreamReader(zf.getInputStream(ze)));
-			} else {
-				reader = new BufferedReader(
-					new FileReader(activityFilePath));
-			}
+			reader = new BufferedReader(
+					CompressedInputStream.openReader(inFile));
 		} catch (FileNotFoundException e) {
 			throw new SettingsError("Couldn't find external activity input " +
 					"file " + inFile);
@@ -228,7 +303,7 @@ public class ExternalPathMovementReader {
 		}
 
 		// Parse the file
-		line = reader.readLine();
+		String line = reader.readLine();
 		while (line != null) {
 			Scanner traceScan = new Scanner(line);
 			int id = traceScan.nextInt();
@@ -246,16 +321,357 @@ public class ExternalPathMovementReader {
 
 			line = reader.readLine();
 		}
+		reader.close();
+	}
+
+	/**
+	 * Loads the path index from the index file of the trace, or builds (and
+	 * stores) the index if the index file doesn't exist or is not up to date.
+	 * @param traceFile The trace file
+	 * @throws IOException if reading the trace failed
+	 */
+	private void loadIndex(File traceFile) throws IOException {
+		File indexFile = new File(traceFile.getPath() + INDEX_EXT);
+
+		if (!readIndexFile(indexFile, traceFile)) {
+			buildIndex(traceFile);
+			try {
+				writeIndexFile(indexFile, traceFile);
+			} catch (IOException e) {
+				/* can't store the index; it's rebuilt the next time */
+				indexFile.delete();
+			}
+		}
+
+		/* the index file has the raw values */
+		if (this.normalize) {
+			for (int id=0; id<=this.maxID; id++) {
+				for (int i=0; i<pathOffsets[id].length; i++) {
+					pathStartTimes[id][i] -= this.minTime;
+					pathStartX[id][i] -= this.minX;
+					pathStartY[id][i] -= this.minY;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates the index arrays for the given numbers of paths
+	 * @param id ID of the node
+	 * @param nrofPaths Number of paths of the node
+	 */
+	private void initIndexArrays(int id, int nrofPaths) {
+		if (this.pathOffsets == null) {
+			this.pathOffsets = new long[this.maxID + 1][];
+			this.pathStartTimes = new double[this.maxID + 1][];
+			this.pathStartX = new double[this.maxID + 1][];
+			this.pathStartY = new double[this.maxID + 1][];
+		}
+		this.pathOffsets[id] = new long[nrofPaths];
+		this.pathStartTimes[id] = new double[nrofPaths];
+		this.pathStartX[id] = new double[nrofPaths];
+		this.pathStartY[id] = new double[nrofPaths];
+	}
+
+	/**
+	 * Reads the (raw, not normalized) index of the trace from an index file
+	 * @param indexFile The index file
+	 * @param traceFile The trace file
+	 * @return True if the index was read, false if the index file doesn't
+	 * exist or doesn't match the trace file
+	 * @throws IOException if reading failed
+	 */
+	private boolean readIndexFile(File indexFile, File traceFile)
+			throws IOException {
+		if (!indexFile.isFile()) {
+			return false;
+		}
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(indexFile)));
+		try {
+			if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION ||
+					in.readLong() != traceFile.length() ||
+					in.readLong() != traceFile.lastModified() ||
+					in.readInt() != this.maxID) {
+				return false; /* old index or some other file */
+			}
+
+			for (int id=0; id<=this.maxID; id++) {
+				initIndexArrays(id, in.readInt());
+				for (int i=0; i<pathOffsets[id].length; i++) {
+					pathOffsets[id][i] = in.readLong();
+					pathStartTimes[id][i] = in.readDouble();
+					pathStartX[id][i] = in.readDouble();
+					pathStartY[id][i] = in.readDouble();
+				}
+			}
+		} catch (EOFException e) {
+			this.pathOffsets = null;
+			return false; /* truncated index */
+		} finally {
+			in.close();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Writes the (raw, not normalized) index of the trace to an index file
+	 * @param indexFile The index file
+	 * @param traceFile The trace file
+	 * @throws IOException if writing failed
+	 */
+	private void writeIndexFile(File indexFile, File traceFile)
+			throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(indexFile)));
+		try {
+			out.writeInt(INDEX_MAGIC);
+			out.writeInt(INDEX_VERSION);
+			out.writeLong(traceFile.length());
+			out.writeLong(traceFile.lastModified());
+			out.writeInt(this.maxID);
+
+			for (int id=0; id<=this.maxID; id++) {
+				out.writeInt(pathOffsets[id].length);
+				for (int i=0; i<pathOffsets[id].length; i++) {
+					out.writeLong(pathOffsets[id][i]);
+					out.writeDouble(pathStartTimes[id][i]);
+					out.writeDouble(pathStartX[id][i]);
+					out.writeDouble(pathStartY[id][i]);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Builds the (raw, not normalized) index by scanning the trace file. Only
+	 * the id and the first data point of each line are parsed.
+	 * @param traceFile The trace file
+	 * @throws IOException if reading the trace failed
+	 */
+	private void buildIndex(File traceFile) throws IOException {
+		InputStream in = new FileInputStream(traceFile);
+		byte[] buffer = new byte[1 << 16];
+		int bufferPos = 0;
+		int bufferLimit = 0;
+		byte[] prefix = new byte[256];
+		int prefixLength = 0;
+		int nrofTokens = 0;
+		boolean inToken = false;
+		long offset = 0;
+		long lineStart = -1;
+		boolean header = true;
+		/* lines of each node: offset and first point (time, x, y) */
+		List<List<double[]>> lines = new ArrayList<List<double[]>>();
+		for (int i=0; i<=this.maxID; i++) {
+			lines.add(new ArrayList<double[]>());
+		}
+
+		while (true) {
+			if (bufferPos == bufferLimit) {
+				bufferLimit = in.read(buffer);
+				bufferPos = 0;
+				if (bufferLimit <= 0) {
+					break;
+				}
+			}
+			byte b = buffer[bufferPos++];
+
+			if (lineStart < 0) {
+				lineStart = offset;
+				prefixLength = nrofTokens = 0;
+				inToken = false;
+			}
+			offset++;
+
+			if (b == '\n') {
+				if (!header) {
+					addIndexLine(lines, lineStart, prefix, prefixLength);
+				}
+				header = false;
+				lineStart = -1;
+				continue;
+			}
+
+			/* collect the first two tokens (the id and the first point) */
+			boolean ws = (b == ' ' || b == '\t' || b == '\r');
+			if (ws && inToken) {
+				nrofTokens++;
+			}
+			inToken = !ws;
+			if (nrofTokens < 2) {
+				if (prefixLength == prefix.length) {
+					prefix = Arrays.copyOf(prefix, prefix.length * 2);
+				}
+				prefix[prefixLength++] = b;
+			}
+		}
+		in.close();
+		if (lineStart >= 0 && !header) { // the last line without a line feed
+			addIndexLine(lines, lineStart, prefix, prefixLength);
+		}
+
+		for (int id=0; id<=this.maxID; id++) {
+			List<double[]> nodeLines = lines.get(id);
+			initIndexArrays(id, nodeLines.size());
+			for (int i=0; i<nodeLines.size(); i++) {
+				double[] line = nodeLines.get(i);
+				pathOffsets[id][i] = (long)line[0];
+				pathStartTimes[id][i] = line[1];
+				pathStartX[id][i] = line[2];
+				pathStartY[id][i] = line[3];
+			}
+		}
+	}
+
+	/**
+	 * Adds a trace line to the lines of the index being built
+	 * @param lines Offsets and first points of the lines of each node
+	 * @param offset Offset of the line
+	 * @param prefix Bytes of the first two tokens of the line
+	 * @param length Number of bytes in the prefix
+	 */
+	private void addIndexLine(List<List<double[]>> lines, long offset,
+			byte[] prefix, int length) {
+		String[] parts = splitLine(new String(prefix, 0, length));
+		if (parts.length < 2) {
+			return; // Skip empty lines and lines without a path
+		}
+
+		int id = Integer.parseInt(parts[0]);
+		String point = parts[1];
+		int d1 = point.indexOf(',');
+		int d2 = point.indexOf(',', d1+1);
+
+		/* offsets up to 2^53 are exact as doubles */
+		lines.get(id).add(new double[] {offset,
+				Double.parseDouble(point.substring(0, d1)),
+				Double.parseDouble(point.substring(d1+1, d2)),
+				Double.parseDouble(point.substring(d2+1))});
+	}
+
+	/**
+	 * Reads the line at the given offset of the trace file
+	 * @param offset The offset
+	 * @return The line
+	 * @throws IOException if reading failed
+	 */
+	private String readTraceLine(long offset) throws IOException {
+		int length = 0;
+		traceAccess.seek(offset);
+
+		while (true) {
+			if (length == lineBuffer.length) {
+				lineBuffer = Arrays.copyOf(lineBuffer, lineBuffer.length * 2);
+			}
+			int n = traceAccess.read(lineBuffer, length,
+					lineBuffer.length - length);
+			if (n <= 0) {
+				break;
+			}
+			for (int i=length; i<length+n; i++) {
+				if (lineBuffer[i] == '\n') {
+					return new String(lineBuffer, 0, i);
+				}
+			}
+			length += n;
+		}
+
+		return new String(lineBuffer, 0, length);
+	}
+
+	/**
+	 * Returns the number of paths of the node with the given ID.
+	 *
+	 * @param ID	ID of the node
+	 * @return		number of paths
+	 */
+	public int getNrofPaths(int ID) {
+		if (this.pathOffsets != null) {
+			return this.pathOffsets[ID].length;
+		}
+		return this.paths.get(ID).size();
 	}
 
 	/**
-	 * Returns the path for the node with the given ID.
+	 * Returns the first point of a path of the node with the given ID
+	 * without loading the whole path.
+	 *
+	 * @param ID	ID of the node
+	 * @param index	index of the path
+	 * @return		the first point of the path or null if the path has no
+	 * 				points
+	 */
+	public Entry getPathStart(int ID, int index) {
+		if (this.pathOffsets != null) {
+			Entry e = new Entry();
+			e.time = this.pathStartTimes[ID][index];
+			e.x = this.pathStartX[ID][index];
+			e.y = this.pathStartY[ID][index];
+			return e;
+		}
+		List<Entry> path = this.paths.get(ID).get(index);
+		return (path.size() > 0 ? path.get(0) : null);
+	}
+
+	/**
+	 * Returns the start time of a path of the node with the given ID
+	 * without loading the whole path.
+	 *
+	 * @param ID	ID of the node
+	 * @param index	index of the path
+	 * @return		the time of the first point of the path
+	 */
+	public double getPathStartTime(int ID, int index) {
+		if (this.pathOffsets != null) {
+			return this.pathStartTimes[ID][index];
+		}
+		return this.paths.get(ID).get(index).get(0).time;
+	}
+
+	/**
+	 * Returns a path of the node with the given ID. If the trace is indexed,
+	 * the path is read from the trace file.
+	 *
+	 * @param ID	ID of the node
+	 * @param index	index of the path
+	 * @return		the path
+	 */
+	public List<Entry> getPath(int ID, int index) {
+		if (this.pathOffsets == null) {
+			return this.paths.get(ID).get(index);
+		}
+
+		try {
+			return parsePath(splitLine(readTraceLine(
+					this.pathOffsets[ID][index])));
+		} catch (IOException e) {
+			throw new SettingsError("Couldn't read path from external " +
+					"movement trace: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the path for the node with the given ID. If the trace is
+	 * indexed, all the paths of the node are read from the trace file.
 	 *
 	 * @param ID	ID of the node
 	 * @return		full path for the node.
 	 */
 	public List<List<ExternalPathMovementReader.Entry>> getPaths(int ID) {
-		return this.paths.get(ID);
+		if (this.pathOffsets == null) {
+			return this.paths.get(ID);
+		}
+
+		List<List<Entry>> nodePaths = new ArrayList<List<Entry>>();
+		for (int i=0; i<getNrofPaths(ID); i++) {
+			nodePaths.add(getPath(ID, i));
+		}
+		return nodePaths;
 	}
 
 	/**
@@ -340,15 +756,36 @@ public class ExternalPathMovementReader {
 	 */
 	public static ExternalPathMovementReader getInstance(String traceFilePath,
 			String activeFilePath) {
-		if (!ExternalPathMovementReader.singletons.containsKey(traceFilePath)) {
+		return getInstance(traceFilePath, activeFilePath, false);
+	}
+
+	/**
+	 * Get an instance of the reader for the given file paths. If the files
+	 * have already been read previously (with the same useIndex value) they
+	 * will not be read again and instead the previous instance of the reader
+	 * will be returned.
+	 *
+	 * @param traceFilePath path where the trace file is read from
+	 * @param activeFilePath path where the activity file is read from
+	 * @param useIndex if true, paths of uncompressed traces are read using
+	 * 			an index file instead of loading the whole trace
+	 * @return instance of the reader for the given trace file.
+	 * @throws SettingsError if the trace or activity file can't be read
+	 */
+	public static ExternalPathMovementReader getInstance(String traceFilePath,
+			String activeFilePath, boolean useIndex) {
+		String key = traceFilePath + "\n" + activeFilePath + "\n" + useIndex;
+		if (!ExternalPathMovementReader.singletons.containsKey(key)) {
 			try {
-				ExternalPathMovementReader.singletons.put(traceFilePath,
+				ExternalPathMovementReader.singletons.put(key,
 						new ExternalPathMovementReader(traceFilePath,
-								activeFilePath));
+								activeFilePath, useIndex));
 			} catch (IOException e) {
-				System.exit(1);
+				throw new SettingsError("Couldn't read external path " +
+						"movement trace " + traceFilePath + ": " +
+						e.getMessage());
 			}
 		}
-		return ExternalPathMovementReader.singletons.get(traceFilePath);
+		return ExternalPathMovementReader.singletons.get(key);
 	}
 }
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads lines of whitespace separated tokens from an input stream. The
+ * lines are read to a reused byte buffer and the tokens are accessed (and
+ * numbers parsed) directly from the bytes, so no objects are created per
+ * line unless a token is requested as a String. Tokens are in the platform's
+ * default charset but the comparison methods only support ASCII strings.
+ */
+public class LineTokenizer {
+	/** size of the input buffer */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/** exactly representable powers of ten for parsing decimal numbers */
+	private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5,
+		1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17,
+		1e18, 1e19, 1e20, 1e21, 1e22};
+	/** largest integer mantissa that is exactly representable as double */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	private InputStream in;
+	/** input buffer and the valid range in it */
+	private byte[] buffer;
+	private int bufferPos;
+	private int bufferLimit;
+	/** bytes of the current line (without the line feed) */
+	private byte[] line;
+	private int lineLength;
+	/** start and end (exclusive) offsets of the current line's tokens */
+	private int[] tokenStart;
+	private int[] tokenEnd;
+	private int nrofTokens;
+
+	/**
+	 * Constructor.
+	 * @param in The stream to read from
+	 * @param maxTokens Maximum number of tokens per line; the rest of the
+	 * line is ignored
+	 */
+	public LineTokenizer(InputStream in, int maxTokens) {
+		this.in = in;
+		this.buffer = new byte[BUFFER_SIZE];
+		this.bufferPos = this.bufferLimit = 0;
+		this.line = new byte[256];
+		this.tokenStart = new int[maxTokens];
+		this.tokenEnd = new int[maxTokens];
+	}
+
+	/**
+	 * Reads and tokenizes the next line
+	 * @return True if a line was read, false if the end of stream was reached
+	 * @throws IOException if reading failed
+	 */
+	public boolean nextLine() throws IOException {
+		boolean gotData = false;
+		lineLength = 0;
+		nrofTokens = 0;
+
+		while (true) {
+			if (bufferPos >= bufferLimit) {
+				bufferLimit = in.read(buffer, 0, buffer.length);
+				bufferPos = 0;
+				if (bufferLimit <= 0) {
+					bufferLimit = 0;
+					if (gotData) {
+						tokenize();
+					}
+					return gotData;
+				}
+			}
+			gotData = true;
+
+			int end = bufferPos;
+			while (end < bufferLimit && buffer[end] != '\n') {
+				end++;
+			}
+
+			int len = end - bufferPos;
+			if (lineLength + len > line.length) {
+				line = Arrays.copyOf(line, Math.max(line.length * 2,
+						lineLength + len));
+			}
+			System.arraycopy(buffer, bufferPos, line, lineLength, len);
+			lineLength += len;
+
+			if (end < bufferLimit) { // found the line feed
+				bufferPos = end + 1;
+				tokenize();
+				return true;
+			}
+			bufferPos = bufferLimit;
+		}
+	}
+
+	/**
+	 * Splits the current line to whitespace separated tokens
+	 */
+	private void tokenize() {
+		int i = 0;
+
+		while (i < lineLength && nrofTokens < tokenStart.length) {
+			while (i < lineLength && isWhitespace(line[i])) {
+				i++;
+			}
+			if (i == lineLength) {
+				break;
+			}
+			tokenStart[nrofTokens] = i;
+			while (i < lineLength && !isWhitespace(line[i])) {
+				i++;
+			}
+			tokenEnd[nrofTokens] = i;
+			nrofTokens++;
+		}
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\f';
+	}
+
+	/**
+	 * Returns true if the byte is an ASCII digit
+	 * @param b The byte
+	 * @return True if the byte is a digit
+	 */
+	public static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	/**
+	 * Returns the number of tokens on the current line
+	 * @return the number of tokens on the current line
+	 */
+	public int getNrofTokens() {
+		return nrofTokens;
+	}
+
+	/**
+	 * Returns true if the current line has no tokens or its first token
+	 * starts with the given comment prefix
+	 * @param commentPrefix The (ASCII) comment prefix
+	 * @return True for empty and comment lines
+	 */
+	public boolean isEmptyOrComment(String commentPrefix) {
+		if (nrofTokens == 0) {
+			return true;
+		}
+		int start = tokenStart[0];
+		if (tokenEnd[0] - start < commentPrefix.length()) {
+			return false;
+		}
+		for (int i=0, n=commentPrefix.length(); i<n; i++) {
+			if (line[start + i] != commentPrefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the current line as a String (e.g. for error messages)
+	 * @return the current line
+	 */
+	public String getLine() {
+		return new String(line, 0, lineLength);
+	}
+
+	/**
+	 * Returns the length of a token in bytes
+	 * @param t Index of the token
+	 * @return The length
+	 */
+	public int getTokenLength(int t) {
+		return tokenEnd[t] - tokenStart[t];
+	}
+
+	/**
+	 * Returns a byte of a token
+	 * @param t Index of the token
+	 * @param i Index of the byte in the token
+	 * @return The byte
+	 */
+	public byte getTokenByte(int t, int i) {
+		return line[tokenStart[t] + i];
+	}
+
+	/**
+	 * Returns a token as a string
+	 * @param t Index of the token
+	 * @return The token
+	 */
+	public String getToken(int t) {
+		return new String(line, tokenStart[t], tokenEnd[t] - tokenStart[t]);
+	}
+
+	/**
+	 * Returns a copy of the bytes of a token
+	 * @param t Index of the token
+	 * @return The bytes
+	 */
+	public byte[] getTokenBytes(int t) {
+		return Arrays.copyOfRange(line, tokenStart[t], tokenEnd[t]);
+	}
+
+	/**
+	 * Returns a hash code of a token's bytes
+	 * @param t Index of the token
+	 * @return The hash code (same as Arrays.hashCode of the token bytes)
+	 */
+	public int getTokenHash(int t) {
+		int hash = 1;
+		for (int i = tokenStart[t], end = tokenEnd[t]; i < end; i++) {
+			hash = 31 * hash + line[i];
+		}
+		return hash;
+	}
+
+	/**
+	 * Returns true if a token's bytes are equal to the given bytes
+	 * @param t Index of the token
+	 * @param bytes The bytes to compare to
+	 * @return True if the token and the bytes are equal
+	 */
+	public boolean tokenEquals(int t, byte[] bytes) {
+		int start = tokenStart[t];
+		if (tokenEnd[t] - start != bytes.length) {
+			return false;
+		}
+		for (int i=0; i<bytes.length; i++) {
+			if (line[start + i] != bytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if a token equals the given string
+	 * @param t Index of the token
+	 * @param s The (ASCII) string to compare to
+	 * @return True if the token and the string are equal
+	 */
+	public boolean tokenIs(int t, String s) {
+		int start = tokenStart[t];
+		if (tokenEnd[t] - start != s.length()) {
+			return false;
+		}
+		for (int i=0, n=s.length(); i<n; i++) {
+			if (line[start + i] != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if a token equals the given string, ignoring case
+	 * @param t Index of the token
+	 * @param s The (ASCII) string to compare to
+	 * @return True if the token and the string are equal ignoring case
+	 */
+	public boolean tokenIsIgnoreCase(int t, String s) {
+		int start = tokenStart[t];
+		if (tokenEnd[t] - start != s.length()) {
+			return false;
+		}
+		for (int i=0, n=s.length(); i<n; i++) {
+			if (Character.toLowerCase((char)line[start + i]) !=
+					Character.toLowerCase(s.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses a decimal number token. Plain decimal numbers whose value can
+	 * be computed exactly are parsed directly from the bytes (with the same
+	 * correctly rounded result as Double.parseDouble); others (e.g. with
+	 * exponents or very many digits) with Double.parseDouble.
+	 * @param t Index of the token
+	 * @return The parsed value
+	 * @throws NumberFormatException if the token is not a valid number
+	 */
+	public double parseDouble(int t) {
+		int i = tokenStart[t];
+		int end = tokenEnd[t];
+		boolean negative = false;
+		boolean dot = false;
+		long mantissa = 0;
+		int nrofDigits = 0;
+		int scale = 0;
+
+		if (line[i] == '-' || line[i] == '+') {
+			negative = (line[i] == '-');
+			i++;
+		}
+		for (; i < end; i++) {
+			byte b = line[i];
+			if (isDigit(b) && mantissa < MAX_EXACT_MANTISSA) {
+				mantissa = mantissa * 10 + (b - '0');
+				nrofDigits++;
+				if (dot) {
+					scale--;
+				}
+			}
+			else if (b == '.' && !dot) {
+				dot = true;
+			}
+			else {
+				break;
+			}
+		}
+
+		if (i < end || nrofDigits == 0 || mantissa >= MAX_EXACT_MANTISSA ||
+				-scale >= POW10.length) {
+			return Double.parseDouble(getToken(t));
+		}
+
+		double value = mantissa / POW10[-scale];
+		return (negative ? -value : value);
+	}
+
+	/**
+	 * Closes the stream
+	 */
+	public void close() {
+		try {
+			this.in.close();
+		} catch (IOException e) {}
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.Arrays;
+
+import core.DTNHost;
+import core.Message;
+import core.World;
+
+/**
+ * A reusable batch of message creation events. The events are stored in
+ * parallel primitive arrays (columns) instead of event objects, so filling
+ * the batch doesn't create objects per message (except for the message IDs).
+ * @see MessageBatchQueue
+ */
+public class MessageBatch {
+	private int size;
+	private int[] from;
+	private int[] to;
+	private String[] ids;
+	private int[] msgSize;
+	private int[] responseSize;
+	private double[] times;
+
+	/**
+	 * Creates an empty batch
+	 * @param capacity Initial capacity of the batch (the batch grows
+	 * when needed)
+	 */
+	public MessageBatch(int capacity) {
+		capacity = Math.max(1, capacity);
+		this.from = new int[capacity];
+		this.to = new int[capacity];
+		this.ids = new String[capacity];
+		this.msgSize = new int[capacity];
+		this.responseSize = new int[capacity];
+		this.times = new double[capacity];
+		this.size = 0;
+	}
+
+	/**
+	 * Adds a message creation to the batch
+	 * @param from Address of the creator of the message
+	 * @param to Address of the destination of the message
+	 * @param id ID of the message
+	 * @param size Size of the message
+	 * @param responseSize Size of the requested response message or 0 if
+	 * no response is requested
+	 * @param time Time when the message is created
+	 */
+	public void add(int from, int to, String id, int size, int responseSize,
+			double time) {
+		if (this.size == this.times.length) {
+			int newSize = this.size * 2;
+			this.from = Arrays.copyOf(this.from, newSize);
+			this.to = Arrays.copyOf(this.to, newSize);
+			this.ids = Arrays.copyOf(this.ids, newSize);
+			this.msgSize = Arrays.copyOf(this.msgSize, newSize);
+			this.responseSize = Arrays.copyOf(this.responseSize, newSize);
+			this.times = Arrays.copyOf(this.times, newSize);
+		}
+
+		int i = this.size++;
+		this.from[i] = from;
+		this.to[i] = to;
+		this.ids[i] = id;
+		this.msgSize[i] = size;
+		this.responseSize[i] = responseSize;
+		this.times[i] = time;
+	}
+
+	/**
+	 * Removes all messages from the batch (the capacity is kept)
+	 */
+	public void clear() {
+		Arrays.fill(this.ids, 0, this.size, null);
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the number of messages in the batch
+	 * @return the number of messages in the batch
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the address of the creator of a message
+	 * @param i Index of the message in the batch
+	 * @return the address of the creator
+	 */
+	public int getFrom(int i) {
+		return this.from[i];
+	}
+
+	/**
+	 * Returns the address of the destination of a message
+	 * @param i Index of the message in the batch
+	 * @return the address of the destination
+	 */
+	public int getTo(int i) {
+		return this.to[i];
+	}
+
+	/**
+	 * Returns the ID of a message
+	 * @param i Index of the message in the batch
+	 * @return the ID of the message
+	 */
+	public String getId(int i) {
+		return this.ids[i];
+	}
+
+	/**
+	 * Returns the size of a message
+	 * @param i Index of the message in the batch
+	 * @return the size of the message
+	 */
+	public int getSize(int i) {
+		return this.msgSize[i];
+	}
+
+	/**
+	 * Returns the size of the response a message requests
+	 * @param i Index of the message in the batch
+	 * @return the size of the requested response (0 if no response)
+	 */
+	public int getResponseSize(int i) {
+		return this.responseSize[i];
+	}
+
+	/**
+	 * Returns the creation time of a message
+	 * @param i Index of the message in the batch
+	 * @return the creation time of the message
+	 */
+	public double getTime(int i) {
+		return this.times[i];
+	}
+
+	/**
+	 * Creates a message of the batch to its creator (like
+	 * {@link MessageCreateEvent#processEvent(World)} does). The simulation
+	 * clock is not changed.
+	 * @param world The world where the hosts are
+	 * @param i Index of the message in the batch
+	 */
+	public void createMessage(World world, int i) {
+		DTNHost toHost = world.getNodeByAddress(this.to[i]);
+		DTNHost fromHost = world.getNodeByAddress(this.from[i]);
+
+		Message m = new Message(fromHost, toHost, this.ids[i], this.msgSize[i]);
+		m.setResponseSize(this.responseSize[i]);
+		fromHost.createNewMessage(m);
+	}
+
+	/**
+	 * Returns a message creation event for a message of the batch
+	 * @param i Index of the message in the batch
+	 * @return A new event
+	 */
+	public MessageCreateEvent toEvent(int i) {
+		return new MessageCreateEvent(this.from[i], this.to[i], this.ids[i],
+				this.msgSize[i], this.responseSize[i], this.times[i]);
+	}
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+/**
+ * Interface for event queues that only create messages and can return
+ * all messages due within a time window at once. The World uses this
+ * interface (instead of {@link EventQueue#nextEvent()}) when batch message
+ * creation is enabled with the setting {@link core.World#BATCH_MESSAGES_S}.
+ */
+public interface MessageBatchQueue extends EventQueue {
+
+	/**
+	 * Adds all the messages whose creation time is at most the given time
+	 * to the batch (in the order they would be returned by
+	 * {@link EventQueue#nextEvent()}) and advances the queue past them.
+	 * @param until The time until which the messages are added
+	 * @param batch The batch where the messages are added
+	 */
+	public void nextMessages(double until, MessageBatch batch);
+
+}
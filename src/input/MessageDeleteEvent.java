@@ -31,6 +31,15 @@ public class MessageDeleteEvent extends MessageEvent {
 		this.drop = drop;
 	}
 
+	/**
+	 * Returns true if the delete is caused by a drop
+	 * @return true if the delete is caused by a drop, false if the message
+	 * is removed normally
+	 */
+	public boolean isDrop() {
+		return this.drop;
+	}
+
 	/**
 	 * Deletes the message
 	 */
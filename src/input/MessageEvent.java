@@ -29,6 +29,30 @@ public abstract class MessageEvent extends ExternalEvent {
 		this.id = id;
 	}
 
+	/**
+	 * Returns the address of the node the message is from
+	 * @return the address of the node the message is from
+	 */
+	public int getFromAddress() {
+		return this.fromAddr;
+	}
+
+	/**
+	 * Returns the address of the node the message is to
+	 * @return the address of the node the message is to
+	 */
+	public int getToAddress() {
+		return this.toAddr;
+	}
+
+	/**
+	 * Returns the identifier of the message
+	 * @return the identifier of the message
+	 */
+	public String getId() {
+		return this.id;
+	}
+
 	@Override
 	public String toString() {
 		return "MSG @" + this.time + " " + id;
@@ -12,9 +12,11 @@ import core.SettingsError;
 /**
  * Message creation -external events generator. Creates uniformly distributed
  * message creation patterns whose message size and inter-message intervals can
- * be configured.
+ * be configured. Subclasses that create different patterns should override
+ * {@link #drawMessage(MessageBatch)}, which is used both for single events
+ * and batches of messages.
  */
-public class MessageEventGenerator implements EventQueue {
+public class MessageEventGenerator implements MessageBatchQueue {
 	/** Message size range -setting id ({@value}). Can be either a single
 	 * value or a range (min, max) of uniformly distributed random values.
 	 * Defines the message size (bytes). */
@@ -64,6 +66,8 @@ public class MessageEventGenerator implements EventQueue {
 
 	/** Random number generator for this Class */
 	protected Random rng;
+	/** Batch for creating single events (created when needed) */
+	private MessageBatch eventBatch;
 
 	/**
 	 * Constructor, initializes the interval between events,
@@ -182,10 +186,14 @@ public class MessageEventGenerator implements EventQueue {
 	}
 
 	/**
-	 * Returns the next message creation event
-	 * @see input.EventQueue#nextEvent()
+	 * Draws the next message, adds it to the batch and advances to the
+	 * next message's time. The message's time in the batch must be the
+	 * time when the message is due, i.e., the value of
+	 * {@link #nextEventsTime()} before the call. If there's no message to
+	 * create (but the next events time is still advanced), nothing is added.
+	 * @param batch The batch where the message is added
 	 */
-	public ExternalEvent nextEvent() {
+	protected void drawMessage(MessageBatch batch) {
 		int responseSize = 0; /* zero stands for one way messages */
 		int msgSize;
 		int interval;
@@ -199,17 +207,42 @@ public class MessageEventGenerator implements EventQueue {
 		msgSize = drawMessageSize();
 		interval = drawNextEventTimeDiff();
 
-		/* Create event and advance to next event */
-		MessageCreateEvent mce = new MessageCreateEvent(from, to, this.getID(),
-				msgSize, responseSize, this.nextEventsTime);
+		/* Add message and advance to next event */
+		batch.add(from, to, this.getID(), msgSize, responseSize,
+				this.nextEventsTime);
 		this.nextEventsTime += interval;
 
 		if (this.msgTime != null && this.nextEventsTime > this.msgTime[1]) {
 			/* next event would be later than the end time */
 			this.nextEventsTime = Double.MAX_VALUE;
 		}
+	}
 
-		return mce;
+	/**
+	 * Returns the next message creation event
+	 * @see input.EventQueue#nextEvent()
+	 */
+	public ExternalEvent nextEvent() {
+		if (this.eventBatch == null) {
+			this.eventBatch = new MessageBatch(1);
+		}
+
+		this.eventBatch.clear();
+		drawMessage(this.eventBatch);
+		if (this.eventBatch.size() == 0) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+		return this.eventBatch.toEvent(0);
+	}
+
+	/**
+	 * Adds all messages that are due until the given time to the batch
+	 * @see input.MessageBatchQueue#nextMessages(double, MessageBatch)
+	 */
+	public void nextMessages(double until, MessageBatch batch) {
+		while (this.nextEventsTime <= until) {
+			drawMessage(batch);
+		}
 	}
 
 	/**
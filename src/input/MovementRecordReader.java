@@ -0,0 +1,315 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import movement.Path;
+import core.Coord;
+import core.DTNSim;
+import core.SettingsError;
+
+/**
+ * <p>Reader for the binary movement record files that
+ * {@link report.MovementRecordReport} writes and
+ * {@link movement.RecordedMovement} replays. The file is memory mapped and
+ * indexed once (per simulation) when it's first requested; the paths are
+ * decoded from the mapped file only when they are needed.</p>
+ *
+ * <p>All values are big-endian (as written by a
+ * {@link java.io.DataOutputStream}). The file starts with a header:</p>
+ * <code>magic version nrofHosts (address x y)*nrofHosts</code>
+ * <p>where the coordinates are the initial locations of the hosts. The
+ * header is followed by the path records of all hosts in the order the
+ * hosts asked the paths from their movement models:</p>
+ * <code>address time x y nrofWaypoints nrofSpeeds speed*nrofSpeeds
+ * (x y)*nrofWaypoints</code>
+ * <p>where time is the simulation time when the path was asked, x and y is
+ * the location of the host after it got the path and nrofWaypoints is -1 if
+ * the host got no path (null). The speeds are stored as the path has them
+ * (see {@link Path#getSpeeds()}). The address and the counts are ints and
+ * all other values doubles.</p>
+ *
+ * <p>If the file ends in the middle of a record (e.g., the recorded
+ * simulation was terminated abruptly), the last record is ignored.</p>
+ */
+public class MovementRecordReader {
+	/** Default extension of movement record files */
+	public static final String RECORD_EXT = ".mrec";
+	/** Magic number at the start of movement record files */
+	public static final int RECORD_MAGIC = 0x4F4E4552; /* "ONER" */
+	/** Version of the movement record file format */
+	public static final int RECORD_VERSION = 1;
+
+	/** Maximum size of one memory mapped part of the file */
+	private static final long MAX_CHUNK_SIZE = 1L << 30;
+	/** Size of the fixed part of a path record */
+	private static final int RECORD_HEADER_SIZE = 4 + 3*8 + 2*4;
+
+	/** readers by the (canonical) paths of the files */
+	private static Map<String, MovementRecordReader> readers;
+
+	static {
+		DTNSim.registerForReset(MovementRecordReader.class.getCanonicalName());
+		reset();
+	}
+
+	/** memory mapped parts of the file; records don't span parts */
+	private MappedByteBuffer[] chunks;
+	/** initial locations of the hosts by address (null if not recorded) */
+	private Coord[] initialLocations;
+	/** locations of the path records of each host: the part index in the
+	 * upper and the position in the part in the lower 32 bits */
+	private long[][] records;
+
+	/**
+	 * Forgets all the read files
+	 */
+	public static synchronized void reset() {
+		readers = new HashMap<String, MovementRecordReader>();
+	}
+
+	/**
+	 * Returns a reader for a movement record file. Each file is read only
+	 * once (per simulation).
+	 * @param fileName Path to the movement record file
+	 * @return The reader of the file
+	 * @throws SettingsError if the file couldn't be read or is not a valid
+	 * movement record
+	 */
+	public static synchronized MovementRecordReader getInstance(
+			String fileName) {
+		File file = new File(fileName);
+		try {
+			String key = file.getCanonicalPath();
+			MovementRecordReader reader = readers.get(key);
+			if (reader == null) {
+				reader = new MovementRecordReader(file);
+				readers.put(key, reader);
+			}
+			return reader;
+		} catch (FileNotFoundException e) {
+			throw new SettingsError("Couldn't find movement record file " +
+					file);
+		} catch (IOException e) {
+			throw new SettingsError("Couldn't read movement record file " +
+					file + "\n" + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Creates a reader by mapping and indexing the file
+	 * @param file The movement record file
+	 * @throws IOException if reading the file failed
+	 */
+	private MovementRecordReader(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			readFile(raf.getChannel(), file);
+		} finally {
+			raf.close(); // the mappings stay valid
+		}
+	}
+
+	/**
+	 * Maps the file, reads the header and builds the record index
+	 * @param channel Channel of the file
+	 * @param file The file (for error messages)
+	 * @throws IOException if reading the file failed
+	 */
+	private void readFile(FileChannel channel, File file) throws IOException {
+		long size = channel.size();
+		List<MappedByteBuffer> chunkList = new ArrayList<MappedByteBuffer>();
+		long chunkStart = 0;
+		MappedByteBuffer chunk = map(channel, chunkStart, size);
+		chunkList.add(chunk);
+
+		if (size < 12 || chunk.getInt() != RECORD_MAGIC) {
+			throw new SettingsError(file + " is not a movement record file");
+		}
+		if (chunk.getInt() != RECORD_VERSION) {
+			throw new SettingsError("Unsupported movement record version " +
+					"in file " + file);
+		}
+
+		int nrofHosts = chunk.getInt();
+		int[] addresses = new int[nrofHosts];
+		double[] xs = new double[nrofHosts];
+		double[] ys = new double[nrofHosts];
+		int maxAddress = -1;
+		for (int i=0; i<nrofHosts; i++) {
+			addresses[i] = chunk.getInt();
+			xs[i] = chunk.getDouble();
+			ys[i] = chunk.getDouble();
+			maxAddress = Math.max(maxAddress, addresses[i]);
+		}
+		this.initialLocations = new Coord[maxAddress + 1];
+		for (int i=0; i<nrofHosts; i++) {
+			initialLocations[addresses[i]] = new Coord(xs[i], ys[i]);
+		}
+
+		/* index the records; counts[a] records of host a so far */
+		long[][] index = new long[maxAddress + 1][16];
+		int[] counts = new int[maxAddress + 1];
+		while (true) {
+			int pos = chunk.position();
+			int recordSize = -1;
+			if (chunk.remaining() >= RECORD_HEADER_SIZE) {
+				int nrofWaypoints = chunk.getInt(pos + RECORD_HEADER_SIZE - 8);
+				int nrofSpeeds = chunk.getInt(pos + RECORD_HEADER_SIZE - 4);
+				recordSize = RECORD_HEADER_SIZE + nrofSpeeds * 8 +
+					Math.max(nrofWaypoints, 0) * 16;
+			}
+
+			if (recordSize < 0 || recordSize > chunk.remaining()) {
+				/* the record continues past the end of this part */
+				long offset = chunkStart + pos;
+				if (size - offset <= chunk.remaining()) {
+					break; // end of file (or a truncated record)
+				}
+				if (pos == 0) {
+					throw new SettingsError("Too large record at offset " +
+							offset + " in movement record file " + file);
+				}
+				chunkStart = offset;
+				chunk = map(channel, chunkStart, size);
+				chunkList.add(chunk);
+				continue;
+			}
+
+			int address = chunk.getInt(pos);
+			if (address < 0 || address > maxAddress) {
+				throw new SettingsError("Unknown host address " + address +
+						" in movement record file " + file);
+			}
+			if (counts[address] == index[address].length) {
+				index[address] = Arrays.copyOf(index[address],
+						counts[address] * 2);
+			}
+			index[address][counts[address]++] =
+				((long)(chunkList.size() - 1) << 32) | pos;
+			chunk.position(pos + recordSize);
+		}
+
+		this.records = new long[maxAddress + 1][];
+		for (int i=0; i<=maxAddress; i++) {
+			records[i] = Arrays.copyOf(index[i], counts[i]);
+		}
+		this.chunks = chunkList.toArray(new MappedByteBuffer[0]);
+	}
+
+	/**
+	 * Maps (a part of) the file starting from the given offset
+	 */
+	private static MappedByteBuffer map(FileChannel channel, long offset,
+			long size) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, offset,
+				Math.min(MAX_CHUNK_SIZE, size - offset));
+	}
+
+	/**
+	 * Returns the part of the file that contains a path record
+	 */
+	private MappedByteBuffer getChunk(int address, int index) {
+		return chunks[(int)(records[address][index] >>> 32)];
+	}
+
+	/**
+	 * Returns the position of a path record in its part of the file
+	 */
+	private int getPosition(int address, int index) {
+		return (int)records[address][index];
+	}
+
+	/**
+	 * Returns true if the file has movement for the host with the given
+	 * address
+	 * @param address Address of the host
+	 * @return true if the host's movement is recorded
+	 */
+	public boolean hasHost(int address) {
+		return address >= 0 && address < initialLocations.length &&
+			initialLocations[address] != null;
+	}
+
+	/**
+	 * Returns the initial location of a host
+	 * @param address Address of the host
+	 * @return A new copy of the location
+	 */
+	public Coord getInitialLocation(int address) {
+		return initialLocations[address].clone();
+	}
+
+	/**
+	 * Returns the number of path records of a host
+	 * @param address Address of the host
+	 * @return The number of path records
+	 */
+	public int getNrofPaths(int address) {
+		return records[address].length;
+	}
+
+	/**
+	 * Returns the simulation time when a host asked for a path
+	 * @param address Address of the host
+	 * @param index Index of the path record
+	 * @return The simulation time of the path record
+	 */
+	public double getPathTime(int address, int index) {
+		return getChunk(address, index).getDouble(
+				getPosition(address, index) + 4);
+	}
+
+	/**
+	 * Returns the location of a host after it got a path
+	 * @param address Address of the host
+	 * @param index Index of the path record
+	 * @return The location
+	 */
+	public Coord getPathLocation(int address, int index) {
+		MappedByteBuffer chunk = getChunk(address, index);
+		int pos = getPosition(address, index);
+		return new Coord(chunk.getDouble(pos + 12), chunk.getDouble(pos + 20));
+	}
+
+	/**
+	 * Returns a recorded path of a host
+	 * @param address Address of the host
+	 * @param index Index of the path record
+	 * @return A new path or null if the host got no path
+	 */
+	public Path getPath(int address, int index) {
+		MappedByteBuffer chunk = getChunk(address, index);
+		int pos = getPosition(address, index) + RECORD_HEADER_SIZE - 8;
+		int nrofWaypoints = chunk.getInt(pos);
+		int nrofSpeeds = chunk.getInt(pos + 4);
+		if (nrofWaypoints < 0) {
+			return null;
+		}
+
+		pos += 8;
+		List<Double> speeds = new ArrayList<Double>(Math.max(nrofSpeeds, 1));
+		for (int i=0; i<nrofSpeeds; i++, pos += 8) {
+			speeds.add(chunk.getDouble(pos));
+		}
+		List<Coord> coords = new ArrayList<Coord>(nrofWaypoints);
+		for (int i=0; i<nrofWaypoints; i++, pos += 16) {
+			coords.add(new Coord(chunk.getDouble(pos),
+					chunk.getDouble(pos + 8)));
+		}
+		return new Path(coords, speeds);
+	}
+}
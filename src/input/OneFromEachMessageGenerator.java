@@ -40,13 +40,15 @@ public class OneFromEachMessageGenerator extends MessageEventGenerator {
 	}
 
 	/**
-	 * Returns the next message creation event
-	 * @see input.EventQueue#nextEvent()
+	 * Adds the next message to the batch
+	 * @see MessageEventGenerator#drawMessage(MessageBatch)
 	 */
-	public ExternalEvent nextEvent() {
+	@Override
+	protected void drawMessage(MessageBatch batch) {
 		int responseSize = 0; /* no responses requested */
 		int from;
 		int to;
+		double time = this.nextEventsTime;
 
 		from = this.fromIds.remove(0);
 		to = drawToAddress(toHostRange, -1);
@@ -54,7 +56,7 @@ public class OneFromEachMessageGenerator extends MessageEventGenerator {
 		if (to == from) { /* skip self */
 			if (this.fromIds.size() == 0) { /* oops, no more from addresses */
 				this.nextEventsTime = Double.MAX_VALUE;
-				return new ExternalEvent(Double.MAX_VALUE);
+				return;
 			} else {
 				from = this.fromIds.remove(0);
 			}
@@ -66,10 +68,7 @@ public class OneFromEachMessageGenerator extends MessageEventGenerator {
 			this.nextEventsTime += drawNextEventTimeDiff();
 		}
 
-		MessageCreateEvent mce = new MessageCreateEvent(from, to, getID(),
-				drawMessageSize(), responseSize, this.nextEventsTime);
-
-		return mce;
+		batch.add(from, to, getID(), drawMessageSize(), responseSize, time);
 	}
 
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import core.SimError;
+
+/**
+ * External events reader that reads the events of another reader ahead of
+ * time in a background thread. The events are read in batches to a bounded
+ * queue (by default two batches, i.e., double buffering), so reading and
+ * parsing the next batch overlaps with processing the current one and the
+ * reading thread is only blocked if the background thread falls behind.
+ * The wrapped reader must not be used by others while this reader is in use.
+ */
+public class PrefetchingEventsReader implements ExternalEventsReader {
+	/** Default number of batches that are read ahead */
+	public static final int DEFAULT_NROF_BATCHES = 2;
+
+	/** marker batch (compared by identity) for the end of events */
+	private static final List<ExternalEvent> END_OF_EVENTS =
+		new ArrayList<ExternalEvent>(0);
+
+	private BlockingQueue<List<ExternalEvent>> batches;
+	private Thread prefetcher;
+	/** error that stopped the background reading (or null) */
+	private volatile RuntimeException error;
+	/** has the reader been closed */
+	private volatile boolean closed;
+	/** the batch that is being returned and the index of the next event */
+	private List<ExternalEvent> current;
+	private int currentIndex;
+	private boolean allEventsRead;
+
+	/**
+	 * Creates a new prefetching reader and starts reading in the background.
+	 * @param reader The reader whose events are read
+	 * @param batchSize How many events are read at a time
+	 * @param nrofBatches How many batches are read ahead
+	 */
+	public PrefetchingEventsReader(final ExternalEventsReader reader,
+			final int batchSize, int nrofBatches) {
+		this.batches =
+			new ArrayBlockingQueue<List<ExternalEvent>>(nrofBatches);
+		this.current = null;
+		this.allEventsRead = false;
+		this.closed = false;
+
+		this.prefetcher = new Thread("ExternalEventsPrefetcher") {
+			public void run() {
+				prefetch(reader, batchSize);
+			}
+		};
+		/* don't keep the VM alive if the simulation ends before the file */
+		this.prefetcher.setDaemon(true);
+		this.prefetcher.start();
+	}
+
+	/**
+	 * Reads batches of events to the queue until all events are read or the
+	 * reader is closed. Run by the background thread.
+	 * @param reader The reader to read from
+	 * @param batchSize How many events are read at a time
+	 */
+	private void prefetch(ExternalEventsReader reader, int batchSize) {
+		try {
+			List<ExternalEvent> events;
+			do {
+				events = reader.readEvents(batchSize);
+				batches.put(events.size() > 0 ? events : END_OF_EVENTS);
+			} while (events.size() > 0);
+		} catch (InterruptedException e) {
+			return; /* closed */
+		} catch (RuntimeException e) {
+			if (closed) {
+				return; /* e.g. an interrupted channel read */
+			}
+			this.error = e;
+			try {
+				batches.put(END_OF_EVENTS);
+			} catch (InterruptedException ie) { /* closed */ }
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Returns the next batch that has events left, waiting for the background
+	 * thread if necessary
+	 * @return The batch or null if there are no more events
+	 */
+	private List<ExternalEvent> nextBatch() {
+		if (current != null && currentIndex < current.size()) {
+			return current;
+		}
+		if (allEventsRead) {
+			return null;
+		}
+
+		try {
+			current = batches.take();
+		} catch (InterruptedException e) {
+			throw new SimError("Interrupted while waiting for external events",
+					e);
+		}
+		currentIndex = 0;
+
+		if (current == END_OF_EVENTS) {
+			current = null;
+			allEventsRead = true;
+			if (error != null) {
+				throw new SimError("Reading external events failed: " +
+						error.getMessage(), error);
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Returns the next prefetched events. At most one batch of events is
+	 * returned per call, so less than the requested number of events may be
+	 * returned even when there are more events left.
+	 * @param nrof Maximum number of events to read
+	 * @return Events in a List (empty if there are no more events)
+	 */
+	public List<ExternalEvent> readEvents(int nrof) {
+		List<ExternalEvent> batch = nextBatch();
+		if (batch == null) {
+			return new ArrayList<ExternalEvent>(0);
+		}
+
+		if (currentIndex == 0 && batch.size() <= nrof) {
+			current = null;
+			return batch; /* the whole batch as it is */
+		}
+
+		int end = Math.min(batch.size(), currentIndex + nrof);
+		List<ExternalEvent> events =
+			new ArrayList<ExternalEvent>(batch.subList(currentIndex, end));
+		currentIndex = end;
+		return events;
+	}
+
+	/**
+	 * Stops the background reading. The wrapped reader is closed by the
+	 * background thread.
+	 */
+	public void close() {
+		this.closed = true;
+		this.allEventsRead = true;
+		this.current = null;
+		this.prefetcher.interrupt();
+	}
+}
@@ -4,17 +4,12 @@
  */
 package input;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.lang.Integer;
 import java.lang.NumberFormatException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
-import java.util.regex.Pattern;
 
 import core.SimError;
 
@@ -66,153 +61,46 @@ public class StandardEventsReader implements ExternalEventsReader {
 	/** Message identifier to use to refer to all messages ({@value}) */
 	public static final String ALL_MESSAGES_ID = "*";
 
-	//private Scanner scanner;
-	private BufferedReader reader;
+	/** maximum number of tokens parsed from a line (rest are ignored) */
+	private static final int MAX_TOKENS = 8;
+	/** prefix of comment lines */
+	private static final String COMMENT_PREFIX = "#";
+
+	private LineTokenizer tokens;
 
 	public StandardEventsReader(File eventsFile){
 		try {
-			//this.scanner = new Scanner(eventsFile);
-			this.reader = new BufferedReader(new FileReader(eventsFile));
-		} catch (FileNotFoundException e) {
+			this.tokens = new LineTokenizer(
+					CompressedInputStream.open(eventsFile), MAX_TOKENS);
+		} catch (IOException e) {
 			throw new SimError(e.getMessage(),e);
 		}
 	}
 
 
+	/**
+	 * Reads events from the file. Lines are tokenized and parsed directly
+	 * from the bytes of the file, without intermediate strings for the
+	 * numeric fields.
+	 * @param nrof Maximum number of events to read
+	 * @return Events in a List
+	 */
 	public List<ExternalEvent> readEvents(int nrof) {
 		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
 		int eventsRead = 0;
-		// skip empty and comment lines
-		Pattern skipPattern = Pattern.compile("(#.*)|(^\\s*$)");
 
-		String line;
-		try {
-			line = this.reader.readLine();
-		} catch (IOException e1) {
-			throw new SimError("Reading from external event file failed.");
-		}
-		while (eventsRead < nrof && line != null) {
-			Scanner lineScan = new Scanner(line);
-			if (skipPattern.matcher(line).matches()) {
-				// skip empty and comment lines
-				try {
-					line = this.reader.readLine();
-				} catch (IOException e) {
-					throw new SimError("Reading from external event file " +
-							"failed.");
-				}
-				continue;
+		while (eventsRead < nrof && nextLine()) {
+			if (tokens.isEmptyOrComment(COMMENT_PREFIX)) {
+				continue; // skip empty and comment lines
 			}
 
-			double time;
-			String action;
-			String msgId;
-			int hostAddr;
-			int host2Addr;
-
 			try {
-				time = lineScan.nextDouble();
-				action = lineScan.next();
-
-				if (action.equals(DROP)) {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
-					events.add(new MessageDeleteEvent(hostAddr, msgId,
-							time, true));
-				}
-				else if (action.equals(REMOVE)) {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
-					events.add(new MessageDeleteEvent(hostAddr, msgId,
-							time, false));
-				}
-				else if (action.equals(CONNECTION)) {
-					String connEventType;
-					boolean isUp;
-					hostAddr = getHostAddress(lineScan.next());
-					host2Addr = getHostAddress(lineScan.next());
-					connEventType = lineScan.next();
-
-					String interfaceId = null;
-					if (lineScan.hasNext()) {
-						interfaceId = lineScan.next();
-					}
-
-					if (connEventType.equalsIgnoreCase(CONNECTION_UP)) {
-						isUp = true;
-					}
-					else if (connEventType.equalsIgnoreCase(CONNECTION_DOWN)) {
-						isUp = false;
-					}
-					else {
-						throw new SimError("Unknown up/down value '" +
-								connEventType + "'");
-					}
-
-					ConnectionEvent ce = new ConnectionEvent(hostAddr,
-							host2Addr, interfaceId, isUp, time);
-
-					events.add(ce);
-				}
-				else {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
-
-					host2Addr = getHostAddress(lineScan.next());
-
-					if (action.equals(CREATE)){
-						int size = 0;
-
-						if (lineScan.hasNextInt()){
-							size = lineScan.nextInt();
-						}
-						else if (lineScan.hasNext()){
-							size = convertToInteger(lineScan.next());
-						}else{
-							throw new Exception("Invalid number of columns for CREATE event");
-						}
-
-						int respSize = 0;
-						if (lineScan.hasNextInt()) {
-							respSize = lineScan.nextInt();
-						}
-						else if(lineScan.hasNext()) {
-							respSize = convertToInteger(lineScan.next());
-						}
-						events.add(new MessageCreateEvent(hostAddr, host2Addr,
-								msgId, size, respSize, time));
-					}
-					else {
-						int stage = -1;
-						if (action.equals(SEND)) {
-							stage = MessageRelayEvent.SENDING;
-						}
-						else if (action.equals(DELIVERED)) {
-							stage = MessageRelayEvent.TRANSFERRED;
-						}
-						else if (action.equals(ABORT)) {
-							stage = MessageRelayEvent.ABORTED;
-						}
-						else {
-							throw new SimError("Unknown action '" + action +
-								"' in external events");
-						}
-						events.add(new MessageRelayEvent(hostAddr, host2Addr,
-								msgId, time, stage));
-					}
-				}
-				// discard the newline in the end
-				if (lineScan.hasNextLine()) {
-					lineScan.nextLine(); // TODO: test
-				}
+				events.add(parseEvent());
 				eventsRead++;
-				if (eventsRead < nrof) {
-					line = this.reader.readLine();
-				}
 			} catch (Exception e) {
-				e.printStackTrace();
 				throw new SimError("Can't parse external event " +
-						(eventsRead+1) + " from '" + line + "'", e);
+						(eventsRead+1) + " from '" + tokens.getLine() + "'",
+						e);
 			}
 		}
 
@@ -220,32 +108,176 @@ public class StandardEventsReader implements ExternalEventsReader {
 	}
 
 	/**
-	 * Parses a host address from a hostId string (the numeric part after
+	 * Parses an event from the tokens of the current line
+	 * @return The event
+	 * @throws Exception if the line doesn't contain a valid event
+	 */
+	private ExternalEvent parseEvent() throws Exception {
+		double time;
+		String msgId;
+		int hostAddr;
+		int host2Addr;
+
+		requireTokens(3);
+		time = tokens.parseDouble(0);
+
+		if (tokens.tokenIs(1, DROP) || tokens.tokenIs(1, REMOVE)) {
+			requireTokens(4);
+			msgId = tokens.getToken(2);
+			hostAddr = getHostAddress(3);
+			return new MessageDeleteEvent(hostAddr, msgId, time,
+					tokens.tokenIs(1, DROP));
+		}
+		else if (tokens.tokenIs(1, CONNECTION)) {
+			boolean isUp;
+			requireTokens(5);
+			hostAddr = getHostAddress(2);
+			host2Addr = getHostAddress(3);
+
+			String interfaceId = null;
+			if (tokens.getNrofTokens() > 5) {
+				interfaceId = tokens.getToken(5);
+			}
+
+			if (tokens.tokenIsIgnoreCase(4, CONNECTION_UP)) {
+				isUp = true;
+			}
+			else if (tokens.tokenIsIgnoreCase(4, CONNECTION_DOWN)) {
+				isUp = false;
+			}
+			else {
+				throw new SimError("Unknown up/down value '" +
+						tokens.getToken(4) + "'");
+			}
+
+			return new ConnectionEvent(hostAddr, host2Addr, interfaceId,
+					isUp, time);
+		}
+
+		requireTokens(5);
+		msgId = tokens.getToken(2);
+		hostAddr = getHostAddress(3);
+		host2Addr = getHostAddress(4);
+
+		if (tokens.tokenIs(1, CREATE)) {
+			if (tokens.getNrofTokens() < 6) {
+				throw new Exception("Invalid number of columns for CREATE " +
+						"event");
+			}
+			int size = parseSize(5);
+			int respSize = (tokens.getNrofTokens() > 6 ? parseSize(6) : 0);
+			return new MessageCreateEvent(hostAddr, host2Addr, msgId, size,
+					respSize, time);
+		}
+
+		int stage = -1;
+		if (tokens.tokenIs(1, SEND)) {
+			stage = MessageRelayEvent.SENDING;
+		}
+		else if (tokens.tokenIs(1, DELIVERED)) {
+			stage = MessageRelayEvent.TRANSFERRED;
+		}
+		else if (tokens.tokenIs(1, ABORT)) {
+			stage = MessageRelayEvent.ABORTED;
+		}
+		else {
+			throw new SimError("Unknown action '" + tokens.getToken(1) +
+				"' in external events");
+		}
+		return new MessageRelayEvent(hostAddr, host2Addr, msgId, time, stage);
+	}
+
+	/**
+	 * Reads the next line from the file
+	 * @return True if a line was read, false if the end of file was reached
+	 */
+	private boolean nextLine() {
+		try {
+			return tokens.nextLine();
+		} catch (IOException e) {
+			throw new SimError("Reading from external event file failed.", e);
+		}
+	}
+
+	/**
+	 * Checks that the current line has at least the given amount of tokens
+	 * @param nrof The required number of tokens
+	 * @throws Exception if there are less tokens
+	 */
+	private void requireTokens(int nrof) throws Exception {
+		if (tokens.getNrofTokens() < nrof) {
+			throw new Exception("Invalid number of columns (" +
+					tokens.getNrofTokens() + ")");
+		}
+	}
+
+	/**
+	 * Parses a size token, i.e., an integer or an integer with a data unit
+	 * suffix (see {@link #convertToInteger(String)})
+	 * @param t Index of the token
+	 * @return The size
+	 */
+	private int parseSize(int t) {
+		int len = tokens.getTokenLength(t);
+		boolean negative = (tokens.getTokenByte(t, 0) == '-');
+		int i = (negative ? 1 : 0);
+		long value = 0;
+
+		if (i == len || len - i > 10) {
+			return convertToInteger(tokens.getToken(t));
+		}
+		for (; i < len; i++) {
+			byte b = tokens.getTokenByte(t, i);
+			if (!LineTokenizer.isDigit(b)) {
+				return convertToInteger(tokens.getToken(t));
+			}
+			value = value * 10 + (b - '0');
+		}
+		if (negative) {
+			value = -value;
+		}
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			return convertToInteger(tokens.getToken(t));
+		}
+
+		return (int)value;
+	}
+
+	/**
+	 * Parses a host address from a hostId token (the numeric part after
 	 * optional non-numeric part).
-	 * @param hostId The id to parse the address from
+	 * @param t Index of the token
 	 * @return The address
 	 * @throws SimError if no address could be parsed from the id
 	 */
-	private int getHostAddress(String hostId) {
-		String addressPart = "";
-		if (hostId.matches("^\\d+$")) {
-			addressPart = hostId; // host id is only the address
+	private int getHostAddress(int t) {
+		int len = tokens.getTokenLength(t);
+		int i = 0;
+		long address = 0;
+
+		while (i < len && !LineTokenizer.isDigit(tokens.getTokenByte(t, i))) {
+			i++; // skip the non-numeric part
 		}
-		else if (hostId.matches("^\\D+\\d+$")) {
-			String [] parts = hostId.split("\\D");
-			addressPart = parts[parts.length-1]; // last occurence is the addr
+		if (i == len) {
+			throw new SimError("Invalid host ID '" + tokens.getToken(t) + "'");
 		}
-		else {
-			throw new SimError("Invalid host ID '" + hostId + "'");
+		for (; i < len; i++) {
+			byte b = tokens.getTokenByte(t, i);
+			if (!LineTokenizer.isDigit(b) || address > Integer.MAX_VALUE) {
+				throw new SimError("Invalid host ID '" + tokens.getToken(t) +
+						"'");
+			}
+			address = address * 10 + (b - '0');
+		}
+		if (address > Integer.MAX_VALUE) {
+			throw new SimError("Invalid host ID '" + tokens.getToken(t) + "'");
 		}
 
-		return Integer.parseInt(addressPart);
+		return (int)address;
 	}
 
 	public void close() {
-		try {
-			this.reader.close();
-		} catch (IOException e) {}
+		this.tokens.close();
 	}
 
 	private int convertToInteger(String str){
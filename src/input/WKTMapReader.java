@@ -5,7 +5,6 @@
 package input;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.Collection;
@@ -78,7 +77,7 @@ public class WKTMapReader extends WKTReader {
 	 * @throws IOException If something went wrong while reading the file
 	 */
 	public void addPaths(File file, int type) throws IOException {
-		addPaths(new FileReader(file), type);
+		addPaths(CompressedInputStream.openReader(file), type);
 	}
 
 
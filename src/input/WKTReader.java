@@ -6,7 +6,6 @@ package input;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
@@ -42,7 +41,7 @@ public class WKTReader {
 	 * @throws IOException if something went wrong while reading
 	 */
 	public List<Coord> readPoints(File file) throws IOException {
-		return readPoints(new FileReader(file));
+		return readPoints(CompressedInputStream.openReader(file));
 	}
 
 	/**
@@ -80,7 +79,7 @@ public class WKTReader {
 		List<List<Coord>> lines = new ArrayList<List<Coord>>();
 
 		String type;
-		init(new FileReader(file));
+		init(CompressedInputStream.openReader(file));
 
 		while((type = nextType()) != null) {
 			if (type.equals(LINESTRING)) {
@@ -34,8 +34,7 @@ public class BusMovement extends MapRouteMovement {
 		int bcs = settings.getInt(BusControlSystem.BUS_CONTROL_SYSTEM_NR);
 		controlSystem = BusControlSystem.getBusControlSystem(bcs);
 		controlSystem.setMap(super.getMap());
-		this.id = nextID++;
-		controlSystem.registerBus(this);
+		register();
 		startMode = true;
 		stops = new LinkedList<Coord>();
 		List<MapNode> stopNodes = super.getStops();
@@ -52,9 +51,13 @@ public class BusMovement extends MapRouteMovement {
 	public BusMovement(BusMovement proto) {
 		super(proto);
 		this.controlSystem = proto.controlSystem;
+		startMode = true;
+	}
+
+	@Override
+	public void register() {
 		this.id = nextID++;
 		controlSystem.registerBus(this);
-		startMode = true;
 	}
 
 	@Override
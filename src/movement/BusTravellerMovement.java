@@ -62,8 +62,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 		super(settings);
 		int bcs = settings.getInt(BusControlSystem.BUS_CONTROL_SYSTEM_NR);
 		controlSystem = BusControlSystem.getBusControlSystem(bcs);
-		id = nextID++;
-		controlSystem.registerTraveller(this);
+		register();
 		nextPath = new Path();
 		state = STATE_WALKING_ELSEWHERE;
 		if (settings.contains(PROBABILITIES_STRING)) {
@@ -73,7 +72,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 			probTakeOtherBus = settings.getDouble(PROBABILITY_TAKE_OTHER_BUS);
 		}
 		cbtd = new ContinueBusTripDecider(rng, probabilities);
-		pathFinder = new DijkstraPathFinder(null);
+		pathFinder = createPathFinder(null);
 		takeBus = true;
 	}
 
@@ -89,8 +88,6 @@ public class BusTravellerMovement extends MapBasedMovement implements
 			location = proto.location.clone();
 		}
 		nextPath = proto.nextPath;
-		id = nextID++;
-		controlSystem.registerTraveller(this);
 		probabilities = proto.probabilities;
 		cbtd = new ContinueBusTripDecider(rng, probabilities);
 		pathFinder = proto.pathFinder;
@@ -98,6 +95,12 @@ public class BusTravellerMovement extends MapBasedMovement implements
 		takeBus = true;
 	}
 
+	@Override
+	public void register() {
+		id = nextID++;
+		controlSystem.registerTraveller(this);
+	}
+
 	@Override
 	public Coord getInitialLocation() {
 
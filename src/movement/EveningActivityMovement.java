@@ -4,8 +4,6 @@
  */
 package movement;
 
-import input.WKTReader;
-
 import java.io.File;
 import java.util.LinkedList;
 import java.util.List;
@@ -13,6 +11,7 @@ import java.util.List;
 import movement.map.DijkstraPathFinder;
 import movement.map.MapNode;
 import movement.map.SimMap;
+import movement.map.WKTFileCache;
 import core.Coord;
 import core.Settings;
 
@@ -72,7 +71,7 @@ public class EveningActivityMovement extends MapBasedMovement
 	public EveningActivityMovement(Settings settings) {
 		super(settings);
 		super.backAllowed = false;
-		pathFinder = new DijkstraPathFinder(null);
+		pathFinder = createPathFinder(null);
 		mode = WALKING_TO_MEETING_SPOT_MODE;
 
 		nrOfMeetingSpots = settings.getInt(NR_OF_MEETING_SPOTS_SETTING);
@@ -102,31 +101,18 @@ public class EveningActivityMovement extends MapBasedMovement
 			}
 		} else {
 			try {
-				meetingSpotLocations = new LinkedList<Coord>();
-				List<Coord> locationsRead = (new WKTReader()).readPoints(
-						new File(shoppingSpotsFile));
-				for (Coord coord : locationsRead) {
-					SimMap map = getMap();
-					Coord offset = map.getOffset();
-					// mirror points if map data is mirrored
-					if (map.isMirrored()) {
-						coord.setLocation(coord.getX(), -coord.getY());
-					}
-					coord.translate(offset.getX(), offset.getY());
-					meetingSpotLocations.add(coord);
-				}
+				meetingSpotLocations = WKTFileCache.getPoints(
+						new File(shoppingSpotsFile), getMap());
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
 		}
 
-		this.id = nextID++;
-
 		int scsID = settings.getInt(EVENING_ACTIVITY_CONTROL_SYSTEM_NR_SETTING);
 
 		scs = EveningActivityControlSystem.getEveningActivityControlSystem(scsID);
 		scs.setRandomNumberGenerator(rng);
-		scs.addEveningActivityNode(this);
+		register();
 		scs.setMeetingSpots(meetingSpotLocations);
 
 		maxPathLength = 100;
@@ -144,13 +130,17 @@ public class EveningActivityMovement extends MapBasedMovement
 		super(proto);
 		this.pathFinder = proto.pathFinder;
 		this.mode = proto.mode;
-		this.id = nextID++;
 		scs = proto.scs;
-		scs.addEveningActivityNode(this);
 		this.setMinGroupSize(proto.getMinGroupSize());
 		this.setMaxGroupSize(proto.getMaxGroupSize());
 	}
 
+	@Override
+	public void register() {
+		this.id = nextID++;
+		scs.addEveningActivityNode(this);
+	}
+
 	/**
 	 * @return Unique ID of the shopper
 	 */
@@ -6,10 +6,8 @@ package movement;
 
 import input.ExternalMovementReader;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
 import java.util.Queue;
 
 import util.Tuple;
@@ -35,10 +33,16 @@ public class ExternalMovement extends MovementModel {
 	private static ExternalMovementReader reader;
 	private static String inputFileName;
 
-	/** mapping of external id to movement model */
-	private static Map<String, ExternalMovement> idMapping;
-	/** initial locations for nodes */
-	private static List<Tuple<String, Coord>> initLocations;
+	/** movement models indexed by the reader's id index (null for ids
+	 * without a model) */
+	private static ExternalMovement[] idMapping;
+	/** id indexes and initial locations for nodes */
+	private static int[] initIds;
+	private static double[] initX;
+	private static double[] initY;
+	/** number of initial locations and the next one to give out */
+	private static int nrofInitLocations;
+	private static int nextInitLocation;
 	/** time of the very first location data */
 	private static double initTime;
 	/** sampling interval (seconds) of the location data */
@@ -80,12 +84,16 @@ public class ExternalMovement extends MovementModel {
 		if (idMapping == null) {
 			// run these the first time object is created or after reset call
 			Settings s = new Settings(EXTERNAL_MOVEMENT_NS);
-			idMapping = new HashMap<String, ExternalMovement>();
 			inputFileName = s.getSetting(MOVEMENT_FILE_S);
 			reader = new ExternalMovementReader(inputFileName);
 
-			initLocations = reader.readNextMovements();
+			nrofInitLocations = reader.readNextMovementBatch();
+			nextInitLocation = 0;
+			initIds = Arrays.copyOf(reader.getBatchIds(), nrofInitLocations);
+			initX = Arrays.copyOf(reader.getBatchX(), nrofInitLocations);
+			initY = Arrays.copyOf(reader.getBatchY(), nrofInitLocations);
 			initTime = reader.getLastTimeStamp();
+			idMapping = new ExternalMovement[reader.getNrofIds()];
 			samplingInterval = -1;
 			lastPreloadTime = -1;
 
@@ -110,14 +118,15 @@ public class ExternalMovement extends MovementModel {
 		pathQueue = new LinkedList<Tuple<Double, Path>>();
 		latestPath = null;
 
-		if (initLocations.size() > 0) { // we have location data left
+		if (nextInitLocation < nrofInitLocations) { // location data left
 			// gets a new location from the list
-			Tuple<String, Coord> initLoc = initLocations.remove(0);
-			this.intialLocation = this.latestLocation = initLoc.getValue();
+			int i = nextInitLocation++;
+			this.intialLocation = new Coord(initX[i], initY[i]);
+			this.latestLocation = this.intialLocation;
 			this.latestPathStartTime = initTime;
 
 			// puts the new model to model map for later updates
-			idMapping.put(initLoc.getKey(), this);
+			idMapping[initIds[i]] = this;
 			isActive = true;
 		}
 		else {
@@ -159,13 +168,15 @@ public class ExternalMovement extends MovementModel {
 	 * Adds a new location with a time to this model's move pattern. If the
 	 * node stayed stationary during the update, the current path is put to the
 	 * queue and a new path is started once the node starts moving.
-	 * @param loc The location
+	 * @param x The x coordinate of the location
+	 * @param y The y coordinate of the location
 	 * @param time When should the node be there
 	 */
-	private void addLocation(Coord loc, double time) {
+	private void addLocation(double x, double y, double time) {
 		assert samplingInterval > 0 : "Non-positive sampling interval!";
 
-		if (loc.equals(latestLocation)) { // node didn't move
+		if (x == latestLocation.getX() && y == latestLocation.getY()) {
+			// node didn't move
 			if (latestPath != null) {
 				// constructing path -> end constructing and put it in the queue
 				pathQueue.add(new Tuple<Double, Path>
@@ -181,6 +192,7 @@ public class ExternalMovement extends MovementModel {
 			latestPath = new Path();
 		}
 
+		Coord loc = new Coord(x, y);
 		double speed = loc.distance(this.latestLocation) / samplingInterval;
 		latestPath.addWaypoint(loc, speed);
 
@@ -238,28 +250,37 @@ public class ExternalMovement extends MovementModel {
 		return new ExternalMovement(this);
 	}
 
+	@Override
+	public boolean canReplicateInParallel() {
+		return false; /* replicas take the next location of the trace */
+	}
+
 	/**
 	 * Reads paths for the next time instance from the reader
 	 * @return The time stamp of the reading or Double.NaN if no movements
 	 * were read.
 	 */
 	private static double readMorePaths() {
-		List<Tuple<String, Coord>> list = reader.readNextMovements();
+		int nrof = reader.readNextMovementBatch();
 		double time = reader.getLastTimeStamp();
+		int[] ids = reader.getBatchIds();
+		double[] xs = reader.getBatchX();
+		double[] ys = reader.getBatchY();
 
 		if (samplingInterval == -1) {
 			samplingInterval = time - initTime;
 		}
 
-		for (Tuple<String, Coord> t : list) {
-			ExternalMovement em = idMapping.get(t.getKey());
+		for (int i=0; i<nrof; i++) {
+			ExternalMovement em = (ids[i] < idMapping.length ?
+					idMapping[ids[i]] : null);
 			if (em != null) { // skip unknown IDs, i.e. IDs not mentioned in...
 				// ...init phase or if there are more IDs than nodes
-				em.addLocation(t.getValue(), time);
+				em.addLocation(xs[i], ys[i], time);
 			}
 		}
 
-		if (list.size() > 0) {
+		if (nrof > 0) {
 			return time;
 		}
 		else {
@@ -25,19 +25,28 @@ public class ExternalPathMovement extends MovementModel {
 	public static final String MOVEMENT_FILE_S = "traceFile";
 	/** activity file's path -setting id ({@value})*/
 	public static final String ACTIVITY_FILE_S = "activeFile";
+	/** use trace index -setting id ({@value}). Boolean valued. If true,
+	 * paths are read from the trace file when they are needed, using an
+	 * index file that is created next to the trace file (see
+	 * {@link ExternalPathMovementReader}). Default = false. */
+	public static final String TRACE_INDEX_S = "traceIndex";
 
 	// Settings
 	private String traceFile;
 	private String activeFile;
+	private boolean useIndex;
 
 	// Node's paths
-	private List<List<ExternalPathMovementReader.Entry>> paths;
+	private ExternalPathMovementReader reader;
+	private int nodeId;
+	private int nrofPaths;
 	private int curPath=0;
 	private List<ExternalPathMovementReader.ActiveTime> active;
 
 	public ExternalPathMovement(Settings settings) {
 		this.traceFile = settings.getSetting(MOVEMENT_FILE_S);
 		this.activeFile = settings.getSetting(ACTIVITY_FILE_S);
+		this.useIndex = settings.getBoolean(TRACE_INDEX_S, false);
 	}
 
 	/**
@@ -48,6 +57,7 @@ public class ExternalPathMovement extends MovementModel {
 	public ExternalPathMovement(ExternalPathMovement mm) {
 		this.traceFile = mm.traceFile;
 		this.activeFile = mm.activeFile;
+		this.useIndex = mm.useIndex;
 	}
 
 	/**
@@ -56,11 +66,11 @@ public class ExternalPathMovement extends MovementModel {
 	 */
 	private void init() {
 		// Get paths for this node
-		ExternalPathMovementReader reader =
-			ExternalPathMovementReader.getInstance(this.traceFile,
-					this.activeFile);
-		this.paths = reader.getPaths(getHost().getAddress());
-		this.active = reader.getActive(getHost().getAddress());
+		this.reader = ExternalPathMovementReader.getInstance(this.traceFile,
+					this.activeFile, this.useIndex);
+		this.nodeId = getHost().getAddress();
+		this.nrofPaths = reader.getNrofPaths(this.nodeId);
+		this.active = reader.getActive(this.nodeId);
 	}
 
 	@Override
@@ -90,13 +100,13 @@ public class ExternalPathMovement extends MovementModel {
 
 		// Check whether we're moving or waiting for the next path to start
 		double t = SimClock.getTime();
-		if (t < this.paths.get(this.curPath).get(0).time) {
+		if (t < reader.getPathStartTime(this.nodeId, this.curPath)) {
 			return null;
 		}
 
 		// Get the path
 		List<ExternalPathMovementReader.Entry> path =
-			this.paths.get(this.curPath);
+			reader.getPath(this.nodeId, this.curPath);
 		this.curPath++;
 
 		// Drop the node to the the beginning of the new path in case the
@@ -137,11 +147,13 @@ public class ExternalPathMovement extends MovementModel {
 	@Override
 	public Coord getInitialLocation() {
 		// Return the first point of the first path
-		if (this.paths.size() > 0 &&
-				this.paths.get(0).size() > 0) {
-			ExternalPathMovementReader.Entry e = this.paths.get(0).get(0);
-			Coord c = new Coord(e.x, e.y);
-			return c;
+		if (this.nrofPaths > 0) {
+			ExternalPathMovementReader.Entry e =
+				reader.getPathStart(this.nodeId, 0);
+			if (e != null) {
+				Coord c = new Coord(e.x, e.y);
+				return c;
+			}
 		}
 		return new Coord(0.0, 0.0);
 	}
@@ -152,10 +164,15 @@ public class ExternalPathMovement extends MovementModel {
 		return mm;
 	}
 
+	@Override
+	public boolean canReplicateInParallel() {
+		return false; /* replicas share a trace reader */
+	}
+
 	@Override
 	public double nextPathAvailable() {
-		if (this.curPath < this.paths.size())
-			return this.paths.get(this.curPath).get(0).time;
+		if (this.curPath < this.nrofPaths)
+			return reader.getPathStartTime(this.nodeId, this.curPath);
 		else
 			return Double.MAX_VALUE;
 	}
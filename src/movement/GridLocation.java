@@ -104,4 +104,9 @@ public class GridLocation extends MovementModel {
 		return new GridLocation(this);
 	}
 
+	@Override
+	public boolean canReplicateInParallel() {
+		return false; /* replicas take the next place of the grid */
+	}
+
 }
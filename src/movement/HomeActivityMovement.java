@@ -4,15 +4,13 @@
  */
 package movement;
 
-import input.WKTReader;
-
 import java.io.File;
-import java.util.LinkedList;
 import java.util.List;
 
 import movement.map.DijkstraPathFinder;
 import movement.map.MapNode;
 import movement.map.SimMap;
+import movement.map.WKTFileCache;
 import core.Coord;
 import core.Settings;
 import core.SimClock;
@@ -57,7 +55,7 @@ public class HomeActivityMovement extends MapBasedMovement
 	public HomeActivityMovement(Settings settings) {
 		super(settings);
 		distance = 100;
-		pathFinder = new DijkstraPathFinder(null);
+		pathFinder = createPathFinder(null);
 		mode = WALKING_HOME_MODE;
 
 		String homeLocationsFile = null;
@@ -76,19 +74,8 @@ public class HomeActivityMovement extends MapBasedMovement
 			homeLocation = mapNodes[homeIndex].getLocation().clone();
 		} else {
 			try {
-				allHomes = new LinkedList<Coord>();
-				List<Coord> locationsRead = (new WKTReader()).readPoints(
-						new File(homeLocationsFile));
-				for (Coord coord : locationsRead) {
-					SimMap map = getMap();
-					Coord offset = map.getOffset();
-					// mirror points if map data is mirrored
-					if (map.isMirrored()) {
-						coord.setLocation(coord.getX(), -coord.getY());
-					}
-					coord.translate(offset.getX(), offset.getY());
-					allHomes.add(coord);
-				}
+				allHomes = WKTFileCache.getPoints(new File(homeLocationsFile),
+						getMap());
 				homeLocation = allHomes.get(rng.nextInt(allHomes.size())).clone();
 			} catch (Exception e) {
 				e.printStackTrace();
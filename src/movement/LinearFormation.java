@@ -113,4 +113,9 @@ public class LinearFormation extends MovementModel {
 		return new LinearFormation(this);
 	}
 
+	@Override
+	public boolean canReplicateInParallel() {
+		return false; /* replicas take the next place of the formation */
+	}
+
 }
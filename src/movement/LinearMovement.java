@@ -177,4 +177,9 @@ public class LinearMovement extends MovementModel {
 		return new LinearMovement(this);
 	}
 
+	@Override
+	public boolean canReplicateInParallel() {
+		return false; /* replicas take the next place on the line */
+	}
+
 }
@@ -9,16 +9,16 @@ import input.WKTMapReader;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
-import java.util.Set;
 import java.util.Vector;
 
+import movement.map.DijkstraPathFinder;
+import movement.map.Landmarks;
+import movement.map.MapGraph;
 import movement.map.MapNode;
+import movement.map.PathCache;
 import movement.map.SimMap;
+import movement.map.SimMapCache;
 import core.Coord;
 import core.Settings;
 import core.SettingsError;
@@ -45,6 +45,25 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	public static final String NROF_FILES_S = "nrofMapFiles";
 	/** map file -setting id ({@value})*/
 	public static final String FILE_S = "mapFile";
+	/**
+	 * Map cache directory -setting id ({@value}). If defined, maps read from
+	 * WKT files are stored to binary cache files in this directory and
+	 * loaded from there when the same map files are used again (see
+	 * {@link SimMapCache}). By default, maps are not cached to files.
+	 */
+	public static final String MAP_CACHE_DIR_S = "mapCacheDir";
+	/**
+	 * Path cache size -setting id ({@value}). Maximum number of shortest
+	 * paths that are kept in the shared path caches of the shortest path
+	 * movement models (see {@link PathCache}). Default is 0 (no caching).
+	 */
+	public static final String PATH_CACHE_SIZE_S = "pathCacheSize";
+	/**
+	 * Number of landmarks -setting id ({@value}). Number of landmarks that
+	 * are selected for the "alt" path finder (see {@link Landmarks}).
+	 * Default is {@value Landmarks#DEF_NROF_LANDMARKS}.
+	 */
+	public static final String NROF_LANDMARKS_S = "nrofLandmarks";
 
 	/**
 	 * Per node group setting for selecting map node types that are OK for
@@ -55,8 +74,22 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	 */
 	public static final String MAP_SELECT_S = "okMaps";
 
+	/**
+	 * Per node group setting for selecting the shortest path algorithm of
+	 * movement models that use shortest paths ({@value}). Valid values are
+	 * "dijkstra" (default), "astar", "bidirectional" and "alt". See
+	 * {@link DijkstraPathFinder} for details.
+	 */
+	public static final String PATH_FINDER_S = "pathFinder";
+
 	/** the indexes of the OK map files or null if all maps are OK */
 	private int [] okMapNodeTypes;
+	/** the shortest path algorithm for path finders */
+	private int pathFinderAlgorithm;
+	/** maximum number of paths in path caches (0 = no caching) */
+	private int pathCacheSize;
+	/** number of landmarks for ALT path finders */
+	private int nrofLandmarks;
 
 	/** how many map files are read */
 	private int nrofMapFilesRead = 0;
@@ -64,6 +97,10 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	private static SimMap cachedMap = null;
 	/** names of the previously cached map's files (for hit comparison) */
 	private static List<String> cachedMapFiles = null;
+	/** map cache file of the previously cached map (or null) */
+	private static File cachedMapCacheFile = null;
+	/** map cache file of this model's map (or null if not cached) */
+	private File mapCacheFile;
 
 	/**
 	 * Creates a new MapBasedMovement based on a Settings object's settings.
@@ -72,7 +109,9 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	public MapBasedMovement(Settings settings) {
 		super(settings);
 		map = readMap();
+		mapCacheFile = cachedMapCacheFile;
 		readOkMapNodeTypes(settings);
+		readPathFinderSettings(settings);
 		maxPathLength = 100;
 		minPathLength = 10;
 		backAllowed = false;
@@ -90,6 +129,7 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		map = newMap;
 		this.nrofMapFilesRead = nrofMaps;
 		readOkMapNodeTypes(settings);
+		readPathFinderSettings(settings);
 		maxPathLength = 100;
 		minPathLength = 10;
 		backAllowed = false;
@@ -122,6 +162,35 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		}
 	}
 
+	/**
+	 * Reads the shortest path algorithm and path cache size from settings
+	 * @param settings The settings where the algorithm is read
+	 */
+	private void readPathFinderSettings(Settings settings) {
+		Settings mapSettings = new Settings(MAP_BASE_MOVEMENT_NS);
+		this.pathCacheSize = mapSettings.getInt(PATH_CACHE_SIZE_S, 0);
+		this.nrofLandmarks = mapSettings.getInt(NROF_LANDMARKS_S,
+				Landmarks.DEF_NROF_LANDMARKS);
+		if (this.nrofLandmarks < 1) {
+			throw new SettingsError("Invalid number of landmarks " +
+					this.nrofLandmarks + " for setting " +
+					mapSettings.getFullPropertyName(NROF_LANDMARKS_S));
+		}
+
+		if (settings.contains(PATH_FINDER_S)) {
+			String name = settings.getSetting(PATH_FINDER_S);
+			this.pathFinderAlgorithm = DijkstraPathFinder.getAlgorithm(name);
+			if (this.pathFinderAlgorithm < 0) {
+				throw new SettingsError("Unknown path finder '" + name +
+						"' for setting " +
+						settings.getFullPropertyName(PATH_FINDER_S));
+			}
+		}
+		else {
+			this.pathFinderAlgorithm = DijkstraPathFinder.DIJKSTRA;
+		}
+	}
+
 	/**
 	 * Copyconstructor.
 	 * @param mbm The MapBasedMovement object to base the new object to
@@ -129,7 +198,11 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	protected MapBasedMovement(MapBasedMovement mbm) {
 		super(mbm);
 		this.okMapNodeTypes = mbm.okMapNodeTypes;
+		this.pathFinderAlgorithm = mbm.pathFinderAlgorithm;
+		this.pathCacheSize = mbm.pathCacheSize;
+		this.nrofLandmarks = mbm.nrofLandmarks;
 		this.map = mbm.map;
+		this.mapCacheFile = mbm.mapCacheFile;
 		this.minPathLength = mbm.minPathLength;
 		this.maxPathLength = mbm.maxPathLength;
 		this.backAllowed = mbm.backAllowed;
@@ -168,6 +241,15 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		return placement;
 	}
 
+	/**
+	 * Returns the binary cache file of this movement model's map
+	 * @return The cache file or null if the map is not cached
+	 * @see #MAP_CACHE_DIR_S
+	 */
+	protected File getMapCacheFile() {
+		return this.mapCacheFile;
+	}
+
 	/**
 	 * Returns map node types that are OK for this movement model in an array
 	 * or null if all values are considered ok
@@ -177,6 +259,31 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		return okMapNodeTypes;
 	}
 
+	/**
+	 * Creates a shortest path finder that uses the path finding algorithm
+	 * selected for this movement model and the shared path cache if path
+	 * caching is enabled
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 * @return A new path finder
+	 */
+	protected DijkstraPathFinder createPathFinder(int[] okMapNodes) {
+		DijkstraPathFinder finder = new DijkstraPathFinder(okMapNodes,
+				this.pathFinderAlgorithm);
+		if (this.pathCacheSize > 0) {
+			finder.enablePathCache(this.pathCacheSize);
+		}
+		if (this.pathFinderAlgorithm == DijkstraPathFinder.ALT) {
+			/* compute (or read) the landmarks already before the first
+			 * search and share them with the next runs using the map */
+			File cacheFile = (mapCacheFile != null ?
+					Landmarks.getCacheFile(mapCacheFile) : null);
+			Landmarks.getLandmarks(map.getGraph(), this.nrofLandmarks,
+					cacheFile);
+		}
+		return finder;
+	}
+
 	@Override
 	public Path getPath() {
 		Path p = new Path(generateSpeed());
@@ -283,22 +390,47 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 			}
 		}
 
-		try {
-			int nrofMapFiles = settings.getInt(NROF_FILES_S);
+		int nrofMapFiles = settings.getInt(NROF_FILES_S);
+		List<File> mapFiles = new ArrayList<File>();
+		for (int i = 1; i <= nrofMapFiles; i++ ) {
+			String pathFile = settings.getSetting(FILE_S + i);
+			cachedMapFiles.add(pathFile);
+			mapFiles.add(new File(pathFile));
+		}
+		nrofMapFilesRead = nrofMapFiles;
 
-			for (int i = 1; i <= nrofMapFiles; i++ ) {
-				String pathFile = settings.getSetting(FILE_S + i);
-				cachedMapFiles.add(pathFile);
-				r.addPaths(new File(pathFile), i);
+		File cacheFile = null;
+		simMap = null;
+		try {
+			if (settings.contains(MAP_CACHE_DIR_S)) {
+				cacheFile = SimMapCache.getCacheFile(
+						new File(settings.getSetting(MAP_CACHE_DIR_S)),
+						SimMapCache.getKey(mapFiles));
+				if (cacheFile.exists()) {
+					try {
+						simMap = SimMapCache.read(cacheFile);
+					} catch (IOException e) {
+						simMap = null; // invalid cache -> read and replace it
+					}
+				}
 			}
 
-			nrofMapFilesRead = nrofMapFiles;
+			if (simMap == null) {
+				for (int i = 1; i <= nrofMapFiles; i++ ) {
+					r.addPaths(mapFiles.get(i-1), i);
+				}
+				simMap = r.getMap();
+				checkMapConnectedness(simMap);
+
+				if (cacheFile != null) {
+					/* only valid (connected) maps are cached */
+					SimMapCache.write(simMap, cacheFile);
+				}
+			}
 		} catch (IOException e) {
 			throw new SimError(e.toString(),e);
 		}
 
-		simMap = r.getMap();
-		checkMapConnectedness(simMap.getNodes());
 		// mirrors the map (y' = -y) and moves its upper left corner to origo
 		simMap.mirror();
 		Coord offset = simMap.getMinBound().clone();
@@ -306,49 +438,51 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		checkCoordValidity(simMap.getNodes());
 
 		cachedMap = simMap;
+		cachedMapCacheFile = cacheFile;
 		return simMap;
 	}
 
 	/**
 	 * Checks that all map nodes can be reached from all other map nodes
-	 * @param nodes The list of nodes to check
+	 * @param map The map to check
 	 * @throws SettingsError if all map nodes are not connected
 	 */
-	private void checkMapConnectedness(List<MapNode> nodes) {
-		Set<MapNode> visited = new HashSet<MapNode>();
-		Queue<MapNode> unvisited = new LinkedList<MapNode>();
-		MapNode firstNode;
-		MapNode next = null;
-
-		if (nodes.size() == 0) {
+	private void checkMapConnectedness(SimMap map) {
+		if (map.getNodes().size() == 0) {
 			throw new SimError("No map nodes in the given map");
 		}
 
-		firstNode = nodes.get(0);
-
-		visited.add(firstNode);
-		unvisited.addAll(firstNode.getNeighbors());
-
-		while ((next = unvisited.poll()) != null) {
-			visited.add(next);
-			for (MapNode n: next.getNeighbors()) {
-				if (!visited.contains(n) && ! unvisited.contains(n)) {
-					unvisited.add(n);
+		MapGraph graph = map.getGraph();
+		int nrofNodes = graph.getNrofNodes();
+		boolean[] visited = new boolean[nrofNodes];
+		int[] queue = new int[nrofNodes];
+		int queueEnd = 0;
+
+		visited[0] = true;
+		queue[queueEnd++] = 0;
+		for (int i=0; i<queueEnd; i++) { // breadth first from the first node
+			int next = queue[i];
+			for (int e = graph.getEdgesStart(next),
+					end = graph.getEdgesEnd(next); e < end; e++) {
+				int n = graph.getEdgeTarget(e);
+				if (!visited[n]) {
+					visited[n] = true;
+					queue[queueEnd++] = n;
 				}
 			}
 		}
 
-		if (visited.size() != nodes.size()) { // some node couldn't be reached
+		if (queueEnd != nrofNodes) { // some node couldn't be reached
 			MapNode disconnected = null;
-			for (MapNode n : nodes) { // find an example node
-				if (!visited.contains(n)) {
-					disconnected = n;
+			for (int i=0; i<nrofNodes; i++) { // find an example node
+				if (!visited[i]) {
+					disconnected = graph.getNode(i);
 					break;
 				}
 			}
 			throw new SettingsError("SimMap is not fully connected. Only " +
-					visited.size() + " out of " + nodes.size() + " map nodes " +
-					"can be reached from " + firstNode + ". E.g. " +
+					queueEnd + " out of " + nrofNodes + " map nodes " +
+					"can be reached from " + graph.getNode(0) + ". E.g. " +
 					disconnected + " can't be reached");
 		}
 	}
@@ -410,19 +544,7 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	}
 
 	public void setLocation(Coord lastWaypoint) {
-		// TODO: This should be optimized
-		MapNode nearest = null;
-		double minDistance = Double.MAX_VALUE;
-		Iterator<MapNode> iterator = getMap().getNodes().iterator();
-		while (iterator.hasNext()) {
-			MapNode temp = iterator.next();
-			double distance = temp.getLocation().distance(lastWaypoint);
-			if (distance < minDistance) {
-				minDistance = distance;
-				nearest = temp;
-			}
-		}
-		lastMapNode = nearest;
+		lastMapNode = getMap().getSpatialIndex().getNearestNode(lastWaypoint);
 	}
 
 	public boolean isReady() {
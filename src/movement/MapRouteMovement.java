@@ -60,7 +60,7 @@ public class MapRouteMovement extends MapBasedMovement implements
 		int type = settings.getInt(ROUTE_TYPE_S);
 		allRoutes = MapRoute.readRoutes(fileName, type, getMap());
 		nextRouteIndex = 0;
-		pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
+		pathFinder = createPathFinder(getOkMapNodeTypes());
 		this.route = this.allRoutes.get(this.nextRouteIndex).replicate();
 		if (this.nextRouteIndex >= this.allRoutes.size()) {
 			this.nextRouteIndex = 0;
@@ -149,6 +149,11 @@ public class MapRouteMovement extends MapBasedMovement implements
 		return new MapRouteMovement(this);
 	}
 
+	@Override
+	public boolean canReplicateInParallel() {
+		return false; /* replicas take the next route of the prototype */
+	}
+
 	/**
 	 * Returns the list of stops on the route
 	 * @return The list of stops
@@ -47,6 +47,9 @@ public abstract class MovementModel {
 
 	/** common rng for all movement models in the simulation */
 	protected static Random rng;
+	/** rngs of the replicas that are being created by the current thread */
+	private static final ThreadLocal<Random> replicaRng =
+		new ThreadLocal<Random>();
 
 	/** DTNHost to which this movement model is attached */
 	protected DTNHost host;
@@ -271,6 +274,45 @@ public abstract class MovementModel {
 	 */
 	public abstract MovementModel replicate();
 
+	/**
+	 * Returns true if replicas of this model can be created, and their
+	 * initial locations drawn, in parallel (see
+	 * {@link core.SimScenario#PARALLEL_HOSTS_S}). Models whose replicas
+	 * depend on the order they are created in (e.g., replicas that take the
+	 * next location or route of the prototype) must return false. Replicas
+	 * that join systems shared with other replicas must do it in
+	 * {@link #register()}.
+	 * @return True (subclasses that can't be replicated in parallel override
+	 * this)
+	 */
+	public boolean canReplicateInParallel() {
+		return true;
+	}
+
+	/**
+	 * Registers this replica to the systems it shares with the other
+	 * replicas (e.g., control systems). Called once for every replica after
+	 * the replica has been created, in the order of the hosts' addresses.
+	 * This implementation does nothing.
+	 */
+	public void register() { }
+
+	/**
+	 * Sets the random number generator the movement models use in the
+	 * current thread instead of the common one. Used when replicas are
+	 * created in parallel so that each replica draws from its own sequence.
+	 * @param replicaRng The random number generator or null to use the
+	 * common one again
+	 */
+	public static void setReplicaRng(Random replicaRng) {
+		if (replicaRng == null) {
+			MovementModel.replicaRng.remove();
+		}
+		else {
+			MovementModel.replicaRng.set(replicaRng);
+		}
+	}
+
 	/**
 	 * Resets all static fields to default values
 	 */
@@ -278,10 +320,76 @@ public abstract class MovementModel {
 		Settings s = new Settings(MOVEMENT_MODEL_NS);
 		if (s.contains(RNG_SEED)) {
 			int seed = s.getInt(RNG_SEED);
-			rng = new Random(seed);
+			rng = new ReplicaRandom(seed);
 		}
 		else {
-			rng = new Random(0);
+			rng = new ReplicaRandom(0);
+		}
+	}
+
+	/**
+	 * Random number generator that draws the numbers from the generator set
+	 * for the current thread with {@link MovementModel#setReplicaRng(Random)}
+	 * if there is one, and from its own sequence otherwise.
+	 */
+	private static class ReplicaRandom extends Random {
+		private static final long serialVersionUID = 1L;
+
+		public ReplicaRandom(long seed) {
+			super(seed);
+		}
+
+		@Override
+		public void nextBytes(byte[] bytes) {
+			Random r = replicaRng.get();
+			if (r != null) {
+				r.nextBytes(bytes);
+			}
+			else {
+				super.nextBytes(bytes);
+			}
+		}
+
+		@Override
+		public int nextInt() {
+			Random r = replicaRng.get();
+			return r != null ? r.nextInt() : super.nextInt();
+		}
+
+		@Override
+		public int nextInt(int n) {
+			Random r = replicaRng.get();
+			return r != null ? r.nextInt(n) : super.nextInt(n);
+		}
+
+		@Override
+		public long nextLong() {
+			Random r = replicaRng.get();
+			return r != null ? r.nextLong() : super.nextLong();
+		}
+
+		@Override
+		public boolean nextBoolean() {
+			Random r = replicaRng.get();
+			return r != null ? r.nextBoolean() : super.nextBoolean();
+		}
+
+		@Override
+		public float nextFloat() {
+			Random r = replicaRng.get();
+			return r != null ? r.nextFloat() : super.nextFloat();
+		}
+
+		@Override
+		public double nextDouble() {
+			Random r = replicaRng.get();
+			return r != null ? r.nextDouble() : super.nextDouble();
+		}
+
+		@Override
+		public double nextGaussian() {
+			Random r = replicaRng.get();
+			return r != null ? r.nextGaussian() : super.nextGaussian();
 		}
 	}
 
@@ -4,10 +4,7 @@
  */
 package movement;
 
-import input.WKTReader;
-
 import java.io.File;
-import java.util.LinkedList;
 import java.util.List;
 
 import util.ParetoRNG;
@@ -15,6 +12,7 @@ import util.ParetoRNG;
 import movement.map.DijkstraPathFinder;
 import movement.map.MapNode;
 import movement.map.SimMap;
+import movement.map.WKTFileCache;
 import core.Coord;
 import core.Settings;
 import core.SimClock;
@@ -87,7 +85,7 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 		officeMaxWaitTime = settings.getDouble(OFFICE_MAX_WAIT_TIME_SETTING);
 
 		startedWorkingTime = -1;
-		pathFinder = new DijkstraPathFinder(null);
+		pathFinder = createPathFinder(null);
 		mode = WALKING_TO_OFFICE_MODE;
 
 		String officeLocationsFile = null;
@@ -106,19 +104,8 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 			officeLocation = mapNodes[officeIndex].getLocation().clone();
 		} else {
 			try {
-				allOffices = new LinkedList<Coord>();
-				List<Coord> locationsRead = (new WKTReader()).
-					readPoints(new File(officeLocationsFile));
-				for (Coord coord : locationsRead) {
-					SimMap map = getMap();
-					Coord offset = map.getOffset();
-					// mirror points if map data is mirrored
-					if (map.isMirrored()) {
-						coord.setLocation(coord.getX(), -coord.getY());
-					}
-					coord.translate(offset.getX(), offset.getY());
-					allOffices.add(coord);
-				}
+				allOffices = WKTFileCache.getPoints(
+						new File(officeLocationsFile), getMap());
 				officeLocation = allOffices.get(
 						rng.nextInt(allOffices.size())).clone();
 			} catch (Exception e) {
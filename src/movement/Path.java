@@ -10,7 +10,10 @@ import java.util.List;
 import core.Coord;
 
 /**
- * A Path between multiple Coordinates.
+ * A Path between multiple Coordinates. The cumulative lengths and travel
+ * times of the path's legs are computed when they are first needed (e.g.,
+ * for {@link #getLocationAt(double)}) and kept in primitive arrays, so
+ * location queries take logarithmic time in the number of waypoints.
  */
 public class Path  {
 	/** coordinates of the path */
@@ -18,6 +21,10 @@ public class Path  {
 	/** speeds in the path legs */
 	private List<Double> speeds;
 	private int nextWpIndex;
+	/** distances from the first waypoint to each waypoint (or null) */
+	private double[] lengths;
+	/** travel times from the first waypoint to each waypoint (or null) */
+	private double[] times;
 
 	/**
 	 * Creates a path with zero speed.
@@ -39,6 +46,20 @@ public class Path  {
 		this.speeds = new ArrayList<Double>((ArrayList<Double>)path.speeds);
 	}
 
+	/**
+	 * Creates a path with the given waypoints and speeds. The lists are used
+	 * as such (not copied).
+	 * @param coords The waypoints of the path
+	 * @param speeds The speeds of the path: nothing (zero speed), one constant
+	 * speed or the speed towards each waypoint
+	 * @see #getSpeeds()
+	 */
+	public Path(List<Coord> coords, List<Double> speeds) {
+		this.nextWpIndex = 0;
+		this.coords = coords;
+		this.speeds = speeds;
+	}
+
 	/**
 	 * Creates a path with constant speed
 	 * @param speed The speed on the path
@@ -55,6 +76,7 @@ public class Path  {
 	public void setSpeed(double speed) {
 		this.speeds = new ArrayList<Double>(1);
 		speeds.add(speed);
+		this.times = null;
 	}
 
 	/**
@@ -119,6 +141,101 @@ public class Path  {
 		}
 	}
 
+	/**
+	 * Returns the index of the waypoint that {@link #getNextWaypoint()}
+	 * returns next
+	 * @return the index of the next waypoint
+	 */
+	public int getNextWaypointIndex() {
+		return this.nextWpIndex;
+	}
+
+	/**
+	 * Returns the length of the path (from the first to the last waypoint)
+	 * @return the length of the path
+	 */
+	public double getLength() {
+		computeLegs();
+		return (lengths.length == 0 ? 0 : lengths[lengths.length - 1]);
+	}
+
+	/**
+	 * Returns how long it takes to travel from the first waypoint to the
+	 * given waypoint
+	 * @param index Index of the waypoint
+	 * @return The travel time (infinite if some leg before the waypoint has
+	 * zero speed)
+	 */
+	public double getTimeTo(int index) {
+		computeLegs();
+		return times[index];
+	}
+
+	/**
+	 * Returns the location on the path at the given time after leaving the
+	 * first waypoint, assuming the path is traveled without stopping
+	 * @param time The time since leaving the first waypoint
+	 * @return The location at that time (the first or the last waypoint if
+	 * the time is before or after the travel time of the path), or null if
+	 * the path has no waypoints
+	 */
+	public Coord getLocationAt(double time) {
+		computeLegs();
+		int n = times.length;
+		if (n == 0) {
+			return null;
+		}
+		if (time <= 0) {
+			return coords.get(0).clone();
+		}
+		if (time >= times[n - 1]) {
+			return coords.get(n - 1).clone();
+		}
+
+		/* find the first waypoint that is reached after the time */
+		int lo = 1;
+		int hi = n - 1;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (times[mid] > time) {
+				hi = mid;
+			} else {
+				lo = mid + 1;
+			}
+		}
+
+		Coord from = coords.get(lo - 1);
+		Coord to = coords.get(lo);
+		double ratio = (time - times[lo - 1]) / (times[lo] - times[lo - 1]);
+		return new Coord(from.getX() + ratio * (to.getX() - from.getX()),
+				from.getY() + ratio * (to.getY() - from.getY()));
+	}
+
+	/**
+	 * Computes the cumulative lengths and travel times of the legs if they
+	 * haven't been computed yet (or waypoints have been added since)
+	 */
+	private void computeLegs() {
+		int n = coords.size();
+		if (times != null && times.length == n) {
+			return;
+		}
+
+		lengths = new double[n];
+		times = new double[n];
+		for (int i=1; i<n; i++) {
+			double length = coords.get(i-1).distance(coords.get(i));
+			double speed = 0;
+			if (speeds.size() == 1) {
+				speed = speeds.get(0);
+			} else if (speeds.size() > i) {
+				speed = speeds.get(i);
+			}
+			lengths[i] = lengths[i-1] + length;
+			times[i] = times[i-1] + (length == 0 ? 0 : length / speed);
+		}
+	}
+
 	/**
 	 * Returns a string presentation of the path's coordinates
 	 * @return Path as a string
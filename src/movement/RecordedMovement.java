@@ -0,0 +1,118 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement;
+
+import input.MovementRecordReader;
+import core.Coord;
+import core.DTNHost;
+import core.Settings;
+import core.SettingsError;
+import core.SimClock;
+import core.SimError;
+
+/**
+ * <P>Movement model that replays the movement recorded with
+ * {@link report.MovementRecordReport}. The hosts get exactly the same paths
+ * at the same times as in the recorded simulation, but no paths are
+ * searched and no random numbers are drawn, so replaying is much faster
+ * than running e.g. the working day movement model again. This makes it
+ * cheap to run the same movement with different routers or interfaces.</P>
+ * <P>The replayed simulation must have the same host groups (in the same
+ * order), numbers of hosts, update interval and movement activity times
+ * (see {@link util.ActivenessHandler}) as the recorded one, so the hosts
+ * ask for their paths at the same times. If a host asks for a path later
+ * than the recorded time, the replay is out of sync and the simulation is
+ * stopped with an error.</P>
+ */
+public class RecordedMovement extends MovementModel {
+	/** movement record file's path -setting id ({@value})*/
+	public static final String RECORD_FILE_S = "recordFile";
+
+	private String recordFile;
+	private MovementRecordReader reader;
+	private int address;
+	private int nrofPaths;
+	private int nextPath;
+
+	/**
+	 * Creates a new movement model based on the settings
+	 * @param settings The settings object where the settings are read
+	 */
+	public RecordedMovement(Settings settings) {
+		super(settings);
+		this.recordFile = settings.getSetting(RECORD_FILE_S);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param mm The movement model to copy
+	 */
+	public RecordedMovement(RecordedMovement mm) {
+		super(mm);
+		this.recordFile = mm.recordFile;
+	}
+
+	@Override
+	public void setHost(DTNHost host) {
+		super.setHost(host);
+		this.reader = MovementRecordReader.getInstance(this.recordFile);
+		this.address = host.getAddress();
+		if (!reader.hasHost(address)) {
+			throw new SettingsError("No recorded movement for host " + host +
+					" in " + this.recordFile);
+		}
+		this.nrofPaths = reader.getNrofPaths(address);
+		this.nextPath = 0;
+	}
+
+	@Override
+	public Coord getInitialLocation() {
+		return reader.getInitialLocation(address);
+	}
+
+	@Override
+	public Path getPath() {
+		if (nextPath >= nrofPaths) {
+			return null;
+		}
+
+		double time = reader.getPathTime(address, nextPath);
+		if (SimClock.getTime() < time) {
+			return null; // not the time for the next path yet
+		}
+		if (SimClock.getTime() > time) {
+			throw new SimError("Replay of the movement of host " + getHost() +
+					" is out of sync: recorded path at " + time + ", asked at " +
+					SimClock.getTime() + ". Does the scenario match the " +
+					"recorded one?");
+		}
+
+		/* movement models may move the host when it gets a new path */
+		Coord location = reader.getPathLocation(address, nextPath);
+		if (!location.equals(getHost().getLocation())) {
+			getHost().setLocation(location);
+		}
+
+		return reader.getPath(address, nextPath++);
+	}
+
+	@Override
+	public double nextPathAvailable() {
+		if (nextPath < nrofPaths) {
+			return reader.getPathTime(address, nextPath);
+		}
+		return Double.MAX_VALUE;
+	}
+
+	@Override
+	public RecordedMovement replicate() {
+		return new RecordedMovement(this);
+	}
+
+	@Override
+	public boolean canReplicateInParallel() {
+		return false; /* replicas share a record reader */
+	}
+}
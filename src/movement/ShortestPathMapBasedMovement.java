@@ -4,10 +4,12 @@
  */
 package movement;
 
+import java.io.File;
 import java.util.List;
 
 import movement.map.DijkstraPathFinder;
 import movement.map.MapNode;
+import movement.map.PathTrees;
 import movement.map.PointsOfInterest;
 import core.Settings;
 
@@ -17,11 +19,23 @@ import core.Settings;
  */
 public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 	SwitchableMovement {
+	/**
+	 * Per node group setting for precomputing shortest path trees to all the
+	 * group's Points Of Interest ({@value}). If true, paths to POIs are
+	 * looked up from the trees instead of searching them on every trip (see
+	 * {@link PathTrees}). If map caching is enabled (see
+	 * {@link MapBasedMovement#MAP_CACHE_DIR_S}), the trees are stored to a
+	 * file next to the map cache file. Default is false.
+	 */
+	public static final String POI_PATH_TREES_S = "poiPathTrees";
+
 	/** the Dijkstra shortest path finder */
 	private DijkstraPathFinder pathFinder;
 
 	/** Points Of Interest handler */
 	private PointsOfInterest pois;
+	/** shortest path trees to the POIs (or null) */
+	private PathTrees poiTrees;
 
 	/**
 	 * Creates a new movement model based on a Settings object's settings.
@@ -29,9 +43,31 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 	 */
 	public ShortestPathMapBasedMovement(Settings settings) {
 		super(settings);
-		this.pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
+		this.pathFinder = createPathFinder(getOkMapNodeTypes());
 		this.pois = new PointsOfInterest(getMap(), getOkMapNodeTypes(),
 				settings, rng);
+		if (settings.getBoolean(POI_PATH_TREES_S, false)) {
+			this.poiTrees = createPoiTrees();
+		}
+	}
+
+	/**
+	 * Creates (or reads from the cache) the shortest path trees to all POIs
+	 * @return The path trees or null if there are no POIs
+	 */
+	private PathTrees createPoiTrees() {
+		List<MapNode> poiNodes = pois.getPoiNodes();
+		if (poiNodes.isEmpty()) {
+			return null;
+		}
+
+		File cacheFile = null;
+		if (getMapCacheFile() != null) {
+			cacheFile = PathTrees.getCacheFile(getMapCacheFile(),
+					getOkMapNodeTypes(), poiNodes);
+		}
+		return PathTrees.getTrees(getMap().getGraph(), getOkMapNodeTypes(),
+				poiNodes, cacheFile);
 	}
 
 	/**
@@ -43,6 +79,7 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 		super(mbm);
 		this.pathFinder = mbm.pathFinder;
 		this.pois = mbm.pois;
+		this.poiTrees = mbm.poiTrees;
 	}
 
 	@Override
@@ -50,7 +87,13 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 		Path p = new Path(generateSpeed());
 		MapNode to = pois.selectDestination();
 
-		List<MapNode> nodePath = pathFinder.getShortestPath(lastMapNode, to);
+		List<MapNode> nodePath = null;
+		if (poiTrees != null) { // null if destination is not a POI
+			nodePath = poiTrees.getPath(lastMapNode, to);
+		}
+		if (nodePath == null) {
+			nodePath = pathFinder.getShortestPath(lastMapNode, to);
+		}
 
 		// this assertion should never fire if the map is checked in read phase
 		assert nodePath.size() > 0 : "No path from " + lastMapNode + " to " +
@@ -164,6 +164,12 @@ public class WorkingDayMovement extends ExtendedMovementModel {
 		return new WorkingDayMovement(this);
 	}
 
+	@Override
+	public void register() {
+		busTravellerMM.register();
+		eveningActivityMovement.register();
+	}
+
 
 	public Coord getOfficeLocation() {
 		return workerMM.getOfficeLocation().clone();
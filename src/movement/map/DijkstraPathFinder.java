@@ -4,63 +4,166 @@
  */
 package movement.map;
 
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Queue;
-import java.util.Set;
+
+import core.SimError;
 
 /**
- * Implementation of the Dijkstra's shortest path algorithm.
+ * <P>Implementation of the Dijkstra's shortest path algorithm. The search is
+ * run on the compact graph of the map nodes (see {@link MapGraph}) using
+ * primitive arrays and an indexed heap that are reused between searches, so
+ * searches don't allocate anything but the returned path.</P>
+ * <P>Besides the plain Dijkstra's algorithm, the finder can use A* search
+ * (with the euclidean distance to the destination as the heuristic),
+ * A* search with precomputed landmark distances (see {@link Landmarks}) or
+ * bidirectional Dijkstra's algorithm (searching from both ends of the path
+ * until the searches meet). All the algorithms find a shortest path, but
+ * if there are many shortest paths, the other algorithms may return a
+ * different one than the plain Dijkstra's algorithm. They usually need to
+ * visit much fewer map nodes.</P>
+ * <P>Found paths can be cached to a {@link PathCache} that is shared by all
+ * finders with the same map, OK map node types and algorithm (see
+ * {@link #enablePathCache(int)}).</P>
+ * <P>The same finder must not be used from multiple threads at the same
+ * time.</P>
  */
 public class DijkstraPathFinder {
+	/** Algorithm: plain Dijkstra's algorithm (the default) */
+	public static final int DIJKSTRA = 0;
+	/** Algorithm: A* search with euclidean distance heuristic */
+	public static final int A_STAR = 1;
+	/** Algorithm: bidirectional Dijkstra's algorithm */
+	public static final int BIDIRECTIONAL = 2;
+	/** Algorithm: A* search with landmarks and triangle inequality */
+	public static final int ALT = 3;
+	/** Names of the algorithms (indexed by the algorithm constants) */
+	public static final String[] ALGORITHM_NAMES =
+		{"dijkstra", "astar", "bidirectional", "alt"};
+
 	/** Value for infinite distance  */
-	private static final Double INFINITY = Double.MAX_VALUE;
-	/** Initial size of the priority queue */
-	private static final int PQ_INIT_SIZE = 11;
-
-	/** Map of node distances from the source node */
-	private DistanceMap distances;
-	/** Set of already visited nodes (where the shortest path is known) */
-	private Set<MapNode> visited;
-	/** Priority queue of unvisited nodes discovered so far */
-	private Queue<MapNode> unvisited;
-	/** Map of previous nodes on the shortest path(s) */
-	private Map<MapNode, MapNode> prevNodes;
+	private static final double INFINITY = Double.MAX_VALUE;
+
+	/** The search algorithm */
+	private int algorithm;
+	/** The graph of the previous search */
+	private MapGraph graph;
+	/** Search state from the source node */
+	private SearchState forward;
+	/** Search state from the destination node (bidirectional search) */
+	private SearchState backward;
+	/** Landmarks of the graph (ALT search) */
+	private Landmarks landmarks;
 
 	private int [] okMapNodes;
+	/** type bit mask of the OK map nodes */
+	private int okMask;
+
+	/** maximum number of paths in the path cache (0 = no caching) */
+	private int cacheCapacity;
+	/** the path cache of the previous search's graph (or null) */
+	private PathCache cache;
 
 	/**
-	 * Constructor.
+	 * Constructor for a finder that uses the Dijkstra's algorithm.
 	 * @param okMapNodes The map node types that are OK for paths or null if
 	 * all nodes are OK
 	 */
 	public DijkstraPathFinder(int [] okMapNodes) {
+		this(okMapNodes, DIJKSTRA);
+	}
+
+	/**
+	 * Constructor.
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 * @param algorithm The search algorithm ({@link #DIJKSTRA},
+	 * {@link #A_STAR}, {@link #BIDIRECTIONAL} or {@link #ALT})
+	 */
+	public DijkstraPathFinder(int [] okMapNodes, int algorithm) {
 		super();
+		if (algorithm < 0 || algorithm >= ALGORITHM_NAMES.length) {
+			throw new SimError("Unknown path finding algorithm " + algorithm);
+		}
+		this.algorithm = algorithm;
 		this.okMapNodes = okMapNodes;
+		if (okMapNodes != null) {
+			this.okMask = MapGraph.getTypeMask(okMapNodes);
+		}
+		this.forward = new SearchState();
+		if (algorithm == BIDIRECTIONAL) {
+			this.backward = new SearchState();
+		}
+	}
+
+	/**
+	 * Returns the algorithm with the given name
+	 * @param name Name of the algorithm (see {@link #ALGORITHM_NAMES})
+	 * @return The algorithm or -1 if there's no such algorithm
+	 */
+	public static int getAlgorithm(String name) {
+		for (int i=0; i<ALGORITHM_NAMES.length; i++) {
+			if (ALGORITHM_NAMES[i].equalsIgnoreCase(name)) {
+				return i;
+			}
+		}
+		return -1;
 	}
 
 	/**
-	 * Initializes a new search with a source node
-	 * @param node The path's source node
+	 * Returns the search algorithm of this finder
+	 * @return The search algorithm
 	 */
-	private void initWith(MapNode node) {
-		assert (okMapNodes != null ? node.isType(okMapNodes) : true);
-
-		// create needed data structures
-		this.unvisited = new PriorityQueue<MapNode>(PQ_INIT_SIZE,
-				new DistanceComparator());
-		this.visited = new HashSet<MapNode>();
-		this.prevNodes = new HashMap<MapNode, MapNode>();
-		this.distances = new DistanceMap();
-
-		// set distance to source 0 and initialize unvisited queue
-		this.distances.put(node, 0);
-		this.unvisited.add(node);
+	public int getAlgorithm() {
+		return this.algorithm;
+	}
+
+	/**
+	 * Enables caching of the found paths. The cache is shared with all
+	 * finders that search paths on the same map with the same OK map node
+	 * types and algorithm.
+	 * @param capacity Maximum number of paths in the cache (if the cache
+	 * doesn't exist yet)
+	 * @see PathCache
+	 */
+	public void enablePathCache(int capacity) {
+		this.cacheCapacity = capacity;
+		this.cache = null;
+	}
+
+	/**
+	 * Returns the path cache of a graph
+	 * @param g The graph
+	 * @return The path cache or null if caching is not enabled
+	 */
+	private PathCache getPathCache(MapGraph g) {
+		if (cacheCapacity <= 0) {
+			return null;
+		}
+		if (cache == null || cache.getGraph() != g) {
+			cache = PathCache.getCache(g, okMapNodes, algorithm,
+					cacheCapacity);
+		}
+		return cache;
+	}
+
+	/**
+	 * Initializes the search states for a new search
+	 * @param g The graph to search in
+	 */
+	private void initWith(MapGraph g) {
+		if (g != this.graph && algorithm == BIDIRECTIONAL) {
+			g.createReverseEdges();
+		}
+		if (g != this.graph && algorithm == ALT) {
+			landmarks = Landmarks.getLandmarks(g);
+		}
+		this.graph = g;
+		forward.init(g);
+		if (backward != null) {
+			backward.init(g);
+		}
 	}
 
 	/**
@@ -71,158 +174,254 @@ public class DijkstraPathFinder {
 	 * a list of MapNodes or an empty list if such path is not available
 	 */
 	public List<MapNode> getShortestPath(MapNode from, MapNode to) {
-		List<MapNode> path = new LinkedList<MapNode>();
+		LinkedList<MapNode> path = new LinkedList<MapNode>();
 
 		if (from.compareTo(to) == 0) { // source and destination are the same
 			path.add(from); // return a list containing only source node
 			return path;
 		}
 
-		initWith(from);
-		MapNode node = null;
+		MapGraph g = MapGraph.getGraph(from);
+		int source = g.getIndex(from);
+		int destination = g.getIndex(to);
+		if (destination < 0 || !isOk(g, destination)) {
+			return path; // destination can't be reached
+		}
+		assert isOk(g, source) : "Source node " + from + " is not OK";
+
+		PathCache pathCache = getPathCache(g);
+		if (pathCache != null) {
+			int[] cached = pathCache.get(source, destination);
+			if (cached != null) {
+				for (int n : cached) {
+					path.add(g.getNode(n));
+				}
+				return path;
+			}
+		}
+
+		initWith(g);
+		int meeting;
+		if (algorithm == BIDIRECTIONAL) {
+			meeting = searchBidirectional(source, destination);
+		}
+		else {
+			meeting = search(source, destination);
+		}
 
-		// always take the node with shortest distance
-		while ((node = unvisited.poll()) != null) {
-			if (node == to) {
-				break; // we found the destination -> no need to search further
+		if (meeting < 0) {
+			if (pathCache != null) {
+				pathCache.put(source, destination, new int[0]);
 			}
+			return path; // no path available
+		}
 
-			visited.add(node); // mark the node as visited
-			relax(node); // add/update neighbor nodes' distances
+		// path from the source to the meeting point of the searches
+		for (int n = meeting; n != source; n = forward.getPrev(n)) {
+			path.addFirst(g.getNode(n)); // always put previous node first
 		}
+		path.addFirst(from); // finally put the source node to first node
 
-		// now we either have the path or such path wasn't available
-		if (node == to) { // found a path
-			path.add(0,to);
-			MapNode prev = prevNodes.get(to);
-			while (prev != from) {
-				path.add(0, prev);	// always put previous node to beginning
-				prev = prevNodes.get(prev);
+		if (backward != null) { // path from meeting point to destination
+			for (int n = backward.getPrev(meeting); n >= 0;
+					n = backward.getPrev(n)) {
+				path.addLast(g.getNode(n));
 			}
+		}
 
-			path.add(0, from); // finally put the source node to first node
+		if (pathCache != null) {
+			int[] indexes = new int[path.size()];
+			int i = 0;
+			for (MapNode n : path) {
+				indexes[i++] = g.getIndex(n);
+			}
+			pathCache.put(source, destination, indexes);
 		}
 
 		return path;
 	}
 
 	/**
-	 * Relaxes the neighbors of a node (updates the shortest distances).
-	 * @param node The node whose neighbors are relaxed
+	 * Searches a shortest path from the source node to the destination node
+	 * using Dijkstra's algorithm or A* search
+	 * @param source Index of the source node
+	 * @param destination Index of the destination node
+	 * @return The destination node's index or -1 if there's no path to it
 	 */
-	private void relax(MapNode node) {
-		double nodeDist = distances.get(node);
-		for (MapNode n : node.getNeighbors()) {
-			if (visited.contains(n)) {
-				continue; // skip visited nodes
-			}
+	private int search(int source, int destination) {
+		IndexedHeap queue = forward.queue;
+
+		forward.setDistance(source, 0, -1);
+		queue.insertOrDecrease(source, estimate(source, destination));
 
-			if (okMapNodes != null && !n.isType(okMapNodes)) {
-				continue; // skip nodes that are not OK
+		// always take the node with shortest (estimated) distance
+		while (!queue.isEmpty()) {
+			int node = queue.poll();
+			if (node == destination) {
+				return destination; // found -> no need to search further
 			}
 
-			// n node's distance from path's source node
-			double nDist = nodeDist + getDistance(node, n);
+			double nodeDist = forward.getDistance(node);
+			for (int e = graph.getEdgesStart(node),
+					end = graph.getEdgesEnd(node); e < end; e++) {
+				int n = graph.getEdgeTarget(e);
+				if (!isOk(graph, n)) {
+					continue; // skip nodes that are not OK
+				}
 
-			if (distances.get(n) > nDist) { // stored distance > found dist?
-				prevNodes.put(n, node);
-				setDistance(n, nDist);
+				// n node's distance from path's source node
+				double nDist = nodeDist + graph.getEdgeLength(e);
+
+				/* with non-negative edge lengths (and consistent heuristic)
+				 * shorter paths are never found to visited nodes */
+				if (forward.getDistance(n) > nDist) {
+					forward.setDistance(n, nDist, node);
+					queue.insertOrDecrease(n, nDist + estimate(n, destination));
+				}
 			}
 		}
+
+		return -1;
 	}
 
 	/**
-	 * Sets the distance from source node to a node
-	 * @param n The node whose distance is set
-	 * @param distance The distance of the node from the source node
+	 * Searches a shortest path from both the source and the destination
+	 * node until the searches meet. Search is continued from the side with
+	 * fewer queued nodes.
+	 * @param source Index of the source node
+	 * @param destination Index of the destination node
+	 * @return Index of a node on a shortest path or -1 if there's no path
 	 */
-	private void setDistance(MapNode n, double distance) {
-		unvisited.remove(n); // remove node from old place in the queue
-		distances.put(n, distance); // update distance
-		unvisited.add(n); // insert node to the new place in the queue
+	private int searchBidirectional(int source, int destination) {
+		double shortest = INFINITY;
+		int meeting = -1;
+
+		forward.setDistance(source, 0, -1);
+		forward.queue.insertOrDecrease(source, 0);
+		backward.setDistance(destination, 0, -1);
+		backward.queue.insertOrDecrease(destination, 0);
+
+		while (!forward.queue.isEmpty() && !backward.queue.isEmpty()) {
+			if (forward.queue.peekKey() + backward.queue.peekKey() >=
+					shortest) {
+				break; // no shorter paths can be found
+			}
+
+			boolean isForward = forward.queue.size() <= backward.queue.size();
+			SearchState s = isForward ? forward : backward;
+			SearchState other = isForward ? backward : forward;
+			int node = s.queue.poll();
+			double nodeDist = s.getDistance(node);
+
+			int e = isForward ? graph.getEdgesStart(node) :
+				graph.getInEdgesStart(node);
+			int end = isForward ? graph.getEdgesEnd(node) :
+				graph.getInEdgesEnd(node);
+			for (; e < end; e++) {
+				int n;
+				double nDist;
+				if (isForward) {
+					n = graph.getEdgeTarget(e);
+					nDist = nodeDist + graph.getEdgeLength(e);
+				}
+				else {
+					n = graph.getInEdgeSource(e);
+					nDist = nodeDist + graph.getInEdgeLength(e);
+				}
+				if (n != source && !isOk(graph, n)) {
+					continue; // skip nodes that are not OK
+				}
+
+				if (s.getDistance(n) > nDist) {
+					s.setDistance(n, nDist, node);
+					s.queue.insertOrDecrease(n, nDist);
+				}
+
+				double otherDist = other.getDistance(n);
+				if (otherDist < INFINITY &&
+						s.getDistance(n) + otherDist < shortest) {
+					shortest = s.getDistance(n) + otherDist;
+					meeting = n;
+				}
+			}
+		}
+
+		return meeting;
 	}
 
 	/**
-	 * Returns the (euclidean) distance between the two map nodes
-	 * @param from The first node
-	 * @param to The second node
-	 * @return Euclidean distance between the two map nodes
+	 * Returns the estimated (never too large) distance between two nodes for
+	 * A* search, or 0 for Dijkstra's algorithm
 	 */
-	private double getDistance(MapNode from, MapNode to) {
-		return from.getLocation().distance(to.getLocation());
+	private double estimate(int node, int destination) {
+		if (algorithm == DIJKSTRA) {
+			return 0;
+		}
+		double dist = graph.getDistance(node, destination);
+		if (algorithm == ALT) {
+			dist = Math.max(dist, landmarks.getLowerBound(node, destination));
+		}
+		return dist;
 	}
 
 	/**
-	 * Comparator that compares two map nodes by their distance from
-	 * the source node.
+	 * Returns true if a node of the graph is OK for paths
 	 */
-	private class DistanceComparator implements Comparator<MapNode> {
-
-		/**
-		 * Compares two map nodes by their distance from the source node
-		 * @return -1, 0 or 1 if node1's distance is smaller, equal to, or
-		 * bigger than node2's distance
-		 */
-		public int compare(MapNode node1, MapNode node2) {
-			double dist1 = distances.get(node1);
-			double dist2 = distances.get(node2);
-
-			if (dist1 > dist2) {
-				return 1;
-			}
-			else if (dist1 < dist2) {
-				return -1;
-			}
-			else {
-				return node1.compareTo(node2);
-			}
-		}
+	private boolean isOk(MapGraph g, int node) {
+		return okMapNodes == null || g.isType(node, okMask);
 	}
 
 	/**
-	 * Simple Map implementation for storing distances.
+	 * Distances and previous nodes of the map nodes from the start of a
+	 * search, and the queue of nodes to visit. The values of the previous
+	 * search are invalidated by increasing the search's epoch, so the arrays
+	 * don't need to be cleared.
 	 */
-	private class DistanceMap {
-		private HashMap<MapNode, Double> map;
+	private static class SearchState {
+		private MapGraph graph;
+		/** Distances from the start node (valid for the current epoch) */
+		private double[] distances;
+		/** Previous nodes on the shortest paths (-1 for none) */
+		private int[] prevNodes;
+		/** The epochs when the nodes' values were set */
+		private int[] epochs;
+		private int epoch;
+		/** Priority queue of nodes discovered but not yet visited */
+		private IndexedHeap queue = new IndexedHeap();
 
 		/**
-		 * Constructor. Creates an empty distance map
+		 * Initializes the state for a new search
+		 * @param g The graph to search in
 		 */
-		public DistanceMap() {
-			this.map = new HashMap<MapNode, Double>();
-		}
-
-		/**
-		 * Returns the distance to a node. If no distance value
-		 * is found, returns {@link DijkstraPathFinder#INFINITY} as the value.
-		 * @param node The node whose distance is requested
-		 * @return The distance to that node
-		 */
-		public double get(MapNode node) {
-			Double value = map.get(node);
-			if (value != null) {
-				return value;
+		public void init(MapGraph g) {
+			if (g != this.graph) {
+				int nrofNodes = g.getNrofNodes();
+				this.graph = g;
+				this.distances = new double[nrofNodes];
+				this.prevNodes = new int[nrofNodes];
+				this.epochs = new int[nrofNodes];
+				this.epoch = 0;
 			}
-			else {
-				return INFINITY;
+			if (epoch == Integer.MAX_VALUE) { // start over with the epochs
+				Arrays.fill(epochs, 0);
+				epoch = 0;
 			}
+			epoch++;
+			queue.init(g);
 		}
 
-		/**
-		 * Puts a new distance value for a map node
-		 * @param node The node
-		 * @param distance Distance to that node
-		 */
-		public void  put(MapNode node, double distance) {
-			map.put(node, distance);
+		public double getDistance(int node) {
+			return epochs[node] == epoch ? distances[node] : INFINITY;
 		}
 
-		/**
-		 * Returns a string representation of the map's contents
-		 * @return a string representation of the map's contents
-		 */
-		public String toString() {
-			return map.toString();
+		public int getPrev(int node) {
+			return epochs[node] == epoch ? prevNodes[node] : -1;
+		}
+
+		public void setDistance(int node, double distance, int prev) {
+			epochs[node] = epoch;
+			distances[node] = distance;
+			prevNodes[node] = prev;
 		}
 	}
 }
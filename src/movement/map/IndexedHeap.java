@@ -0,0 +1,166 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.Arrays;
+
+/**
+ * Indexed binary heap (priority queue) of the nodes of a {@link MapGraph}.
+ * Each node is in the heap at most once and the heap knows the position of
+ * every node, so the key of a node can be decreased in O(log n) time. Nodes
+ * with the same key are ordered by their location. The arrays are allocated
+ * once per graph and reused after {@link #init(MapGraph)}.
+ */
+class IndexedHeap {
+	private MapGraph graph;
+	/** node indexes in heap order */
+	private int[] heap;
+	/** positions of the nodes in the heap (-1 for nodes not in the heap) */
+	private int[] positions;
+	/** keys of the nodes (valid only for nodes in the heap) */
+	private double[] keys;
+	private int size;
+
+	/**
+	 * Empties the heap and prepares it for the nodes of a graph
+	 * @param g The graph whose nodes are put to the heap
+	 */
+	public void init(MapGraph g) {
+		if (g != this.graph) {
+			int nrofNodes = g.getNrofNodes();
+			this.graph = g;
+			this.heap = new int[nrofNodes];
+			this.positions = new int[nrofNodes];
+			Arrays.fill(this.positions, -1);
+			this.keys = new double[nrofNodes];
+		}
+		else {
+			for (int i=0; i<size; i++) {
+				positions[heap[i]] = -1;
+			}
+		}
+		this.size = 0;
+	}
+
+	/**
+	 * Returns true if the heap is empty
+	 * @return true if the heap is empty
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Returns the number of nodes in the heap
+	 * @return the number of nodes in the heap
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns true if a node is in the heap
+	 * @param node Index of the node
+	 * @return true if the node is in the heap
+	 */
+	public boolean contains(int node) {
+		return positions[node] >= 0;
+	}
+
+	/**
+	 * Returns the smallest key in the heap
+	 * @return The smallest key or Double.MAX_VALUE if the heap is empty
+	 */
+	public double peekKey() {
+		return size > 0 ? keys[heap[0]] : Double.MAX_VALUE;
+	}
+
+	/**
+	 * Adds a node to the heap or decreases its key if it is already in the
+	 * heap
+	 * @param node Index of the node
+	 * @param key The new key of the node (must not be larger than the old
+	 * key if the node is in the heap)
+	 */
+	public void insertOrDecrease(int node, double key) {
+		int pos = positions[node];
+		if (pos < 0) {
+			pos = size++;
+		}
+		else {
+			assert key <= keys[node] : "Key of node " + node + " increased";
+		}
+		keys[node] = key;
+		siftUp(node, pos);
+	}
+
+	/**
+	 * Removes and returns the node with the smallest key
+	 * @return Index of the node
+	 */
+	public int poll() {
+		assert size > 0 : "Polled an empty heap";
+		int first = heap[0];
+		positions[first] = -1;
+		size--;
+		if (size > 0) {
+			siftDown(heap[size], 0);
+		}
+		return first;
+	}
+
+	/**
+	 * Moves a node up from a position until its parent is before it
+	 */
+	private void siftUp(int node, int pos) {
+		while (pos > 0) {
+			int parent = (pos - 1) >>> 1;
+			int pNode = heap[parent];
+			if (!isBefore(node, pNode)) {
+				break;
+			}
+			heap[pos] = pNode;
+			positions[pNode] = pos;
+			pos = parent;
+		}
+		heap[pos] = node;
+		positions[node] = pos;
+	}
+
+	/**
+	 * Moves a node down from a position until its children are after it
+	 */
+	private void siftDown(int node, int pos) {
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && isBefore(heap[child + 1], heap[child])) {
+				child++;
+			}
+			int cNode = heap[child];
+			if (!isBefore(cNode, node)) {
+				break;
+			}
+			heap[pos] = cNode;
+			positions[cNode] = pos;
+			pos = child;
+		}
+		heap[pos] = node;
+		positions[node] = pos;
+	}
+
+	/**
+	 * Returns true if node n1 should be polled before node n2: the nodes are
+	 * ordered by their keys and nodes with the same key by their location
+	 */
+	private boolean isBefore(int n1, int n2) {
+		if (keys[n1] != keys[n2]) {
+			return keys[n1] < keys[n2];
+		}
+		return graph.compareLocations(n1, n2) < 0;
+	}
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import core.SimError;
+
+/**
+ * <P>Landmark distances for A* search with landmarks and the triangle
+ * inequality ("ALT"). A few landmark nodes are selected far from each other
+ * (each new landmark is the node farthest from the already selected ones)
+ * and the shortest path distances from every landmark to every node and
+ * from every node to every landmark are precomputed. By the triangle
+ * inequality, for any landmark L the distance from node v to node t is at
+ * least <CODE>d(L,t) - d(L,v)</CODE> and <CODE>d(v,L) - d(t,L)</CODE>. These
+ * lower bounds are usually much tighter than the euclidean distance, so the
+ * A* search visits fewer nodes. The bounds are computed on the whole map, so
+ * they are valid for searches that are restricted to some map node types
+ * too.</P>
+ * <P>Computing the landmarks takes two Dijkstra's searches over the whole map
+ * per landmark, so the landmarks of a graph are computed only once and shared
+ * (see {@link #getLandmarks(MapGraph, int, File)}). They can also be stored
+ * to a cache file next to the map's cache file.</P>
+ */
+public class Landmarks {
+	/** Extension of landmark cache files */
+	public static final String CACHE_EXT = ".simalt";
+	/** Magic number at the start of landmark cache files */
+	public static final int MAGIC = 0x4F4E454C; /* "ONEL" */
+	/** Version of the file format */
+	public static final int VERSION = 1;
+	/** Default number of landmarks */
+	public static final int DEF_NROF_LANDMARKS = 8;
+
+	/** size of the header: magic, version, nrof nodes, edges and landmarks */
+	private static final int HEADER_SIZE = 5 * 4;
+	/** size of the buffer for writing */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/** maximum relative error of the distances stored as floats */
+	private static final double FLOAT_ERROR = 1e-6;
+
+	/** landmarks of the graphs */
+	private static Map<MapGraph, Landmarks> graphLandmarks =
+		new WeakHashMap<MapGraph, Landmarks>();
+
+	private MapGraph graph;
+	/** indexes of the landmark nodes */
+	private int[] landmarks;
+	/** distances from the landmarks to the nodes (node index * nrof
+	 * landmarks + landmark index) */
+	private float[] fromDists;
+	/** distances from the nodes to the landmarks */
+	private float[] toDists;
+
+	/**
+	 * Creates landmarks for a graph without computing them
+	 * @param graph The graph
+	 */
+	private Landmarks(MapGraph graph) {
+		this.graph = graph;
+	}
+
+	/**
+	 * Returns the landmarks of a graph. If the landmarks are not computed
+	 * yet, they are read from the cache file (if the file contains the
+	 * landmarks of the graph) or computed and stored to the cache file.
+	 * @param graph The graph
+	 * @param nrofLandmarks Number of landmarks to select if the landmarks
+	 * are computed
+	 * @param cacheFile The cache file or null if the landmarks are not cached
+	 * @return The landmarks
+	 */
+	public static synchronized Landmarks getLandmarks(MapGraph graph,
+			int nrofLandmarks, File cacheFile) {
+		Landmarks lm = graphLandmarks.get(graph);
+		if (lm != null) {
+			return lm;
+		}
+
+		lm = new Landmarks(graph);
+		boolean read = false;
+		if (cacheFile != null && cacheFile.exists()) {
+			try {
+				lm.read(cacheFile, nrofLandmarks);
+				read = true;
+			} catch (IOException e) {
+				// invalid cache -> compute the landmarks and replace it
+			}
+		}
+
+		if (!read) {
+			lm.compute(nrofLandmarks);
+			if (cacheFile != null) {
+				try {
+					lm.write(cacheFile);
+				} catch (IOException e) {
+					throw new SimError(e.toString(), e);
+				}
+			}
+		}
+
+		graphLandmarks.put(graph, lm);
+		return lm;
+	}
+
+	/**
+	 * Returns the landmarks of a graph. The landmarks are computed with the
+	 * default number of landmarks if they don't exist yet.
+	 * @param graph The graph
+	 * @return The landmarks
+	 */
+	public static Landmarks getLandmarks(MapGraph graph) {
+		return getLandmarks(graph, DEF_NROF_LANDMARKS, null);
+	}
+
+	/**
+	 * Returns the cache file of landmarks next to a map cache file
+	 * @param mapCacheFile The cache file of the map
+	 * @return The cache file (that may not exist)
+	 */
+	public static File getCacheFile(File mapCacheFile) {
+		String name = mapCacheFile.getName();
+		if (name.endsWith(SimMapCache.CACHE_EXT)) {
+			name = name.substring(0, name.length() -
+					SimMapCache.CACHE_EXT.length());
+		}
+		return new File(mapCacheFile.getParentFile(), name + CACHE_EXT);
+	}
+
+	/**
+	 * Returns the number of landmarks
+	 * @return the number of landmarks
+	 */
+	public int getNrofLandmarks() {
+		return this.landmarks.length;
+	}
+
+	/**
+	 * Returns the index of a landmark node
+	 * @param i Index of the landmark
+	 * @return Index of the landmark's node in the graph
+	 */
+	public int getLandmark(int i) {
+		return this.landmarks[i];
+	}
+
+	/**
+	 * Returns a lower bound for the length of the shortest path between two
+	 * nodes
+	 * @param from Index of the path's source node
+	 * @param to Index of the path's destination node
+	 * @return A lower bound for the distance
+	 */
+	public double getLowerBound(int from, int to) {
+		int k = landmarks.length;
+		int fromPos = from * k;
+		int toPos = to * k;
+		double bound = 0;
+
+		for (int i=0; i<k; i++) {
+			/* d(from,to) >= d(L,to) - d(L,from) */
+			double lTo = fromDists[toPos + i];
+			double lFrom = fromDists[fromPos + i];
+			double b = lTo - lFrom - (lTo + lFrom) * FLOAT_ERROR;
+			if (b > bound && lFrom < Float.MAX_VALUE) {
+				bound = b;
+			}
+
+			/* d(from,to) >= d(from,L) - d(to,L) */
+			double fromL = toDists[fromPos + i];
+			double toL = toDists[toPos + i];
+			b = fromL - toL - (fromL + toL) * FLOAT_ERROR;
+			if (b > bound && toL < Float.MAX_VALUE) {
+				bound = b;
+			}
+		}
+
+		return bound;
+	}
+
+	/**
+	 * Selects the landmarks and computes their distances
+	 * @param nrofLandmarks Number of landmarks to select
+	 */
+	private void compute(int nrofLandmarks) {
+		int nrofNodes = graph.getNrofNodes();
+		int k = Math.max(1, Math.min(nrofLandmarks, nrofNodes));
+		double[] dists = new double[nrofNodes];
+		double[] minDists = new double[nrofNodes];
+		IndexedHeap queue = new IndexedHeap();
+
+		graph.createReverseEdges();
+		this.landmarks = new int[k];
+		this.fromDists = new float[nrofNodes * k];
+		this.toDists = new float[nrofNodes * k];
+		Arrays.fill(minDists, Double.MAX_VALUE);
+
+		/* the first landmark is the node farthest from the first node */
+		search(0, true, dists, queue);
+		int next = getFarthest(dists);
+
+		for (int i=0; i<k; i++) {
+			landmarks[i] = next;
+			search(next, true, dists, queue);
+			for (int n=0; n<nrofNodes; n++) {
+				fromDists[n * k + i] = toFloat(dists[n]);
+				if (dists[n] < minDists[n]) {
+					minDists[n] = dists[n];
+				}
+			}
+			search(next, false, dists, queue);
+			for (int n=0; n<nrofNodes; n++) {
+				toDists[n * k + i] = toFloat(dists[n]);
+			}
+
+			/* next landmark is the node farthest from all the others */
+			next = getFarthest(minDists);
+		}
+	}
+
+	/**
+	 * Computes the distances from (or to) a node to all nodes
+	 * @param node Index of the node
+	 * @param forward If true, distances from the node are computed, if false,
+	 * distances to the node
+	 * @param dists The array where the distances are stored
+	 * @param queue The queue to use in the search
+	 */
+	private void search(int node, boolean forward, double[] dists,
+			IndexedHeap queue) {
+		Arrays.fill(dists, Double.MAX_VALUE);
+		queue.init(graph);
+		dists[node] = 0;
+		queue.insertOrDecrease(node, 0);
+
+		while (!queue.isEmpty()) {
+			int n = queue.poll();
+			int e = forward ? graph.getEdgesStart(n) : graph.getInEdgesStart(n);
+			int end = forward ? graph.getEdgesEnd(n) : graph.getInEdgesEnd(n);
+			for (; e < end; e++) {
+				int m;
+				double dist;
+				if (forward) {
+					m = graph.getEdgeTarget(e);
+					dist = dists[n] + graph.getEdgeLength(e);
+				}
+				else {
+					m = graph.getInEdgeSource(e);
+					dist = dists[n] + graph.getInEdgeLength(e);
+				}
+				if (dists[m] > dist) {
+					dists[m] = dist;
+					queue.insertOrDecrease(m, dist);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the largest finite distance
+	 */
+	private static int getFarthest(double[] dists) {
+		int farthest = 0;
+		for (int n=0; n<dists.length; n++) {
+			if (dists[n] < Double.MAX_VALUE && dists[n] > dists[farthest]) {
+				farthest = n;
+			}
+		}
+		return farthest;
+	}
+
+	private static float toFloat(double dist) {
+		return dist < Double.MAX_VALUE ? (float)dist : Float.MAX_VALUE;
+	}
+
+	/**
+	 * Stores the landmarks to a cache file. The file is first written to a
+	 * temporary file that is then renamed.
+	 * @param file The cache file
+	 * @throws IOException if writing failed
+	 */
+	private void write(File file) throws IOException {
+		File dir = file.getAbsoluteFile().getParentFile();
+		dir.mkdirs();
+		File tmpFile = File.createTempFile("simalt", ".tmp", dir);
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmpFile),
+							BUFFER_SIZE));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(graph.getNrofNodes());
+				out.writeInt(graph.getNrofEdges());
+				out.writeInt(landmarks.length);
+				for (int l : landmarks) {
+					out.writeInt(l);
+				}
+				for (float d : fromDists) {
+					out.writeFloat(d);
+				}
+				for (float d : toDists) {
+					out.writeFloat(d);
+				}
+			} finally {
+				out.close();
+			}
+
+			if (!tmpFile.renameTo(file) && !file.exists()) {
+				throw new IOException("Can't rename " + tmpFile);
+			}
+		} finally {
+			tmpFile.delete();
+		}
+	}
+
+	/**
+	 * Reads the landmarks from a cache file
+	 * @param file The cache file
+	 * @param nrofLandmarks The expected number of landmarks
+	 * @throws IOException if the file couldn't be read or it doesn't contain
+	 * the expected landmarks of the graph
+	 */
+	private void read(File file, int nrofLandmarks) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			int nrofNodes = graph.getNrofNodes();
+			int k = Math.max(1, Math.min(nrofLandmarks, nrofNodes));
+			long size = HEADER_SIZE + 4L * k + 2 * 4L * k * nrofNodes;
+			if (channel.size() != size) {
+				throw new IOException("Invalid landmark cache file " + file);
+			}
+
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, size);
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION ||
+					buffer.getInt() != nrofNodes ||
+					buffer.getInt() != graph.getNrofEdges() ||
+					buffer.getInt() != k) {
+				throw new IOException("Invalid landmark cache file " + file);
+			}
+
+			int[] lms = new int[k];
+			for (int i=0; i<k; i++) {
+				lms[i] = buffer.getInt();
+				if (lms[i] < 0 || lms[i] >= nrofNodes) {
+					throw new IOException("Corrupted landmark cache file " +
+							file);
+				}
+			}
+			float[] from = new float[k * nrofNodes];
+			float[] to = new float[k * nrofNodes];
+			ByteBuffer b = buffer.slice();
+			b.asFloatBuffer().get(from);
+			b.position(4 * from.length);
+			b.slice().asFloatBuffer().get(to);
+
+			this.landmarks = lms;
+			this.fromDists = from;
+			this.toDists = to;
+		} finally {
+			raf.close();
+		}
+	}
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <P>Compact (compressed sparse row) representation of the graph of map
+ * nodes. The nodes are identified by integer indexes (0...nrof nodes - 1)
+ * and their coordinates, types and neighbors are stored in primitive arrays,
+ * so searches on the graph need no hashing or boxing. The edges of node
+ * <CODE>i</CODE> are <CODE>getEdgesStart(i)...getEdgesEnd(i) - 1</CODE> and
+ * they are in the same order as the node's neighbor list. The lengths of the
+ * edges are precomputed. The incoming edges of the nodes (for searching
+ * backwards) are created on request with {@link #createReverseEdges()}.</P>
+ * <P>The graph is a snapshot of the nodes: if the nodes' neighbors or
+ * coordinates change (e.g., when a {@link SimMap} is translated), the graph
+ * is invalidated and a new one must be created (see
+ * {@link SimMap#getGraph()} and {@link #getGraph(MapNode)}).</P>
+ */
+public class MapGraph {
+	private MapNode[] nodes;
+	private double[] xs;
+	private double[] ys;
+	/** type bit masks of the nodes */
+	private int[] types;
+	/** start offsets of the nodes' edges (nrof nodes + 1 values) */
+	private int[] edgeOffsets;
+	/** target node indexes of the edges */
+	private int[] edgeTargets;
+	/** lengths of the edges */
+	private double[] edgeLengths;
+	/** start offsets of the nodes' incoming edges (or null if not created) */
+	private int[] inEdgeOffsets;
+	/** source node indexes of the incoming edges */
+	private int[] inEdgeSources;
+	/** lengths of the incoming edges */
+	private double[] inEdgeLengths;
+	private boolean valid;
+
+	/**
+	 * Creates a graph of the given nodes. The nodes get indexes in the order
+	 * of the list. All neighbors of the nodes must be in the list.
+	 * @param nodes The nodes of the graph
+	 */
+	public MapGraph(List<MapNode> nodes) {
+		int nrofNodes = nodes.size();
+		this.nodes = nodes.toArray(new MapNode[nrofNodes]);
+		this.xs = new double[nrofNodes];
+		this.ys = new double[nrofNodes];
+		this.types = new int[nrofNodes];
+		this.edgeOffsets = new int[nrofNodes + 1];
+
+		int nrofEdges = 0;
+		for (int i=0; i<nrofNodes; i++) {
+			MapNode n = this.nodes[i];
+			n.graph = this;
+			n.graphIndex = i;
+			xs[i] = n.getLocation().getX();
+			ys[i] = n.getLocation().getY();
+			types[i] = n.getTypeMask();
+			edgeOffsets[i] = nrofEdges;
+			nrofEdges += n.getNeighbors().size();
+		}
+		edgeOffsets[nrofNodes] = nrofEdges;
+
+		this.edgeTargets = new int[nrofEdges];
+		this.edgeLengths = new double[nrofEdges];
+		int e = 0;
+		for (int i=0; i<nrofNodes; i++) {
+			for (MapNode neighbor : this.nodes[i].getNeighbors()) {
+				int target = getIndex(neighbor);
+				if (target < 0) {
+					throw new IllegalArgumentException("Neighbor " + neighbor +
+							" of " + this.nodes[i] + " is not in the graph");
+				}
+				edgeTargets[e] = target;
+				/* same computation as Coord.distance */
+				double dx = xs[i] - xs[target];
+				double dy = ys[i] - ys[target];
+				edgeLengths[e] = Math.sqrt(dx*dx + dy*dy);
+				e++;
+			}
+		}
+
+		this.valid = true;
+	}
+
+	/**
+	 * Returns a valid graph that contains the given node. If the node
+	 * doesn't belong to a valid graph, a new graph of all the nodes that can
+	 * be reached from the node is created.
+	 * @param node The node
+	 * @return A graph that contains the node
+	 */
+	public static MapGraph getGraph(MapNode node) {
+		if (node.graph != null && node.graph.isValid() &&
+				node.graph.getIndex(node) >= 0) {
+			return node.graph;
+		}
+
+		List<MapNode> reachable = new ArrayList<MapNode>();
+		MapGraph marker = new MapGraph(new ArrayList<MapNode>());
+		node.graph = marker;
+		reachable.add(node);
+		for (int i=0; i<reachable.size(); i++) {
+			for (MapNode n : reachable.get(i).getNeighbors()) {
+				if (n.graph != marker) {
+					n.graph = marker;
+					reachable.add(n);
+				}
+			}
+		}
+
+		return new MapGraph(reachable);
+	}
+
+	/**
+	 * Converts node types to a bit mask that can be compared to the type
+	 * masks of the graph nodes
+	 * @param types The types (values in range [{@value MapNode#MIN_TYPE},
+	 * {@value MapNode#MAX_TYPE}])
+	 * @return The bit mask of the types
+	 * @see MapNode#isType(int[])
+	 */
+	public static int getTypeMask(int[] types) {
+		int mask = 0;
+		for (int type : types) {
+			assert type >= MapNode.MIN_TYPE && type <= MapNode.MAX_TYPE :
+				"Invalid node type " + type;
+			mask |= 1 << type;
+		}
+		return mask;
+	}
+
+	/**
+	 * Returns false if the nodes have changed after creating this graph
+	 * @return True if the graph is still valid
+	 */
+	public boolean isValid() {
+		return this.valid;
+	}
+
+	/**
+	 * Marks the graph invalid, e.g., because the nodes' neighbors or
+	 * coordinates have changed
+	 */
+	public void invalidate() {
+		this.valid = false;
+	}
+
+	/**
+	 * Returns the number of nodes in the graph
+	 * @return the number of nodes in the graph
+	 */
+	public int getNrofNodes() {
+		return this.nodes.length;
+	}
+
+	/**
+	 * Returns the number of edges in the graph
+	 * @return the number of edges in the graph
+	 */
+	public int getNrofEdges() {
+		return this.edgeTargets.length;
+	}
+
+	/**
+	 * Returns the index of a node in this graph
+	 * @param node The node
+	 * @return The index of the node or -1 if the node is not in this graph
+	 */
+	public int getIndex(MapNode node) {
+		int i = node.graphIndex;
+		if (i >= 0 && i < nodes.length && nodes[i] == node) {
+			return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the node with the given index
+	 * @param i Index of the node
+	 * @return The node
+	 */
+	public MapNode getNode(int i) {
+		return this.nodes[i];
+	}
+
+	/**
+	 * Returns the x coordinate of a node
+	 * @param i Index of the node
+	 * @return The x coordinate
+	 */
+	public double getX(int i) {
+		return this.xs[i];
+	}
+
+	/**
+	 * Returns the y coordinate of a node
+	 * @param i Index of the node
+	 * @return The y coordinate
+	 */
+	public double getY(int i) {
+		return this.ys[i];
+	}
+
+	/**
+	 * Returns the type bit mask of a node
+	 * @param i Index of the node
+	 * @return The type bit mask
+	 * @see MapNode#getTypeMask()
+	 */
+	public int getTypeMask(int i) {
+		return this.types[i];
+	}
+
+	/**
+	 * Returns true if a node is of any of the types of a type mask
+	 * @param i Index of the node
+	 * @param typeMask The type mask
+	 * @return True if the node's and the mask's types overlap
+	 * @see #getTypeMask(int[])
+	 */
+	public boolean isType(int i, int typeMask) {
+		return (this.types[i] & typeMask) != 0;
+	}
+
+	/**
+	 * Returns the index of the first edge of a node
+	 * @param i Index of the node
+	 * @return Index of the first edge
+	 */
+	public int getEdgesStart(int i) {
+		return this.edgeOffsets[i];
+	}
+
+	/**
+	 * Returns the index after the last edge of a node
+	 * @param i Index of the node
+	 * @return Index after the last edge
+	 */
+	public int getEdgesEnd(int i) {
+		return this.edgeOffsets[i + 1];
+	}
+
+	/**
+	 * Returns the index of the node an edge leads to
+	 * @param e Index of the edge
+	 * @return Index of the target node
+	 */
+	public int getEdgeTarget(int e) {
+		return this.edgeTargets[e];
+	}
+
+	/**
+	 * Returns the length of an edge
+	 * @param e Index of the edge
+	 * @return The euclidean distance between the edge's nodes
+	 */
+	public double getEdgeLength(int e) {
+		return this.edgeLengths[e];
+	}
+
+	/**
+	 * Creates the incoming edges of the nodes, unless they are already
+	 * created. Must be called before using the incoming edge methods.
+	 */
+	public synchronized void createReverseEdges() {
+		if (this.inEdgeOffsets != null) {
+			return;
+		}
+
+		int nrofNodes = getNrofNodes();
+		int nrofEdges = getNrofEdges();
+		int[] offsets = new int[nrofNodes + 1];
+		for (int e=0; e<nrofEdges; e++) { // count the incoming edges
+			offsets[edgeTargets[e] + 1]++;
+		}
+		for (int i=0; i<nrofNodes; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+
+		int[] next = offsets.clone();
+		int[] sources = new int[nrofEdges];
+		double[] lengths = new double[nrofEdges];
+		for (int i=0; i<nrofNodes; i++) {
+			for (int e = edgeOffsets[i]; e < edgeOffsets[i + 1]; e++) {
+				int pos = next[edgeTargets[e]]++;
+				sources[pos] = i;
+				lengths[pos] = edgeLengths[e];
+			}
+		}
+
+		this.inEdgeSources = sources;
+		this.inEdgeLengths = lengths;
+		this.inEdgeOffsets = offsets;
+	}
+
+	/**
+	 * Returns the index of the first incoming edge of a node
+	 * @param i Index of the node
+	 * @return Index of the first incoming edge
+	 * @see #createReverseEdges()
+	 */
+	public int getInEdgesStart(int i) {
+		return this.inEdgeOffsets[i];
+	}
+
+	/**
+	 * Returns the index after the last incoming edge of a node
+	 * @param i Index of the node
+	 * @return Index after the last incoming edge
+	 */
+	public int getInEdgesEnd(int i) {
+		return this.inEdgeOffsets[i + 1];
+	}
+
+	/**
+	 * Returns the index of the node an incoming edge comes from
+	 * @param e Index of the incoming edge
+	 * @return Index of the source node
+	 */
+	public int getInEdgeSource(int e) {
+		return this.inEdgeSources[e];
+	}
+
+	/**
+	 * Returns the length of an incoming edge
+	 * @param e Index of the incoming edge
+	 * @return The euclidean distance between the edge's nodes
+	 */
+	public double getInEdgeLength(int e) {
+		return this.inEdgeLengths[e];
+	}
+
+	/**
+	 * Returns the euclidean distance between two nodes
+	 * @param i Index of the first node
+	 * @param j Index of the second node
+	 * @return The distance
+	 */
+	public double getDistance(int i, int j) {
+		double dx = xs[i] - xs[j];
+		double dy = ys[i] - ys[j];
+		return Math.sqrt(dx*dx + dy*dy);
+	}
+
+	/**
+	 * Compares the locations of two nodes (like {@link MapNode#compareTo})
+	 * @param i Index of the first node
+	 * @param j Index of the second node
+	 * @return -1, 0 or 1 if the first node is before, in the same location
+	 * or after the second node
+	 */
+	public int compareLocations(int i, int j) {
+		if (ys[i] < ys[j]) {
+			return -1;
+		}
+		else if (ys[i] > ys[j]) {
+			return 1;
+		}
+		else if (xs[i] < xs[j]) {
+			return -1;
+		}
+		else if (xs[i] > xs[j]) {
+			return 1;
+		}
+		return 0;
+	}
+}
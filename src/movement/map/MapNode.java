@@ -25,6 +25,9 @@ public class MapNode implements Comparable<MapNode> {
 	private Vector<MapNode> neighbors;
 	// bit mask of map node's types or 0 if no type's are defined
 	private int type;
+	/** the latest graph the node was added to (and the node's index in it) */
+	MapGraph graph;
+	int graphIndex = -1;
 
 	/**
 	 * Constructor. Creates a map node to a location.
@@ -42,6 +45,7 @@ public class MapNode implements Comparable<MapNode> {
 	 */
 	public void addType(int type) {
 		this.type |= typeToBitMask(type);
+		invalidateGraph();
 	}
 
 	/**
@@ -77,6 +81,15 @@ public class MapNode implements Comparable<MapNode> {
 		return false;
 	}
 
+	/**
+	 * Returns the bit mask of the node's types (bit <CODE>1 &lt;&lt; type
+	 * </CODE> is set for every type of the node)
+	 * @return the bit mask of the node's types or 0 if no types are defined
+	 */
+	public int getTypeMask() {
+		return this.type;
+	}
+
 	/**
 	 * Converts type integer to a bit mask for setting & checking type
 	 * @param type The type to convert
@@ -108,6 +121,17 @@ public class MapNode implements Comparable<MapNode> {
 	private void addToList(MapNode node) {
 		if (!this.neighbors.contains(node) && node != this) {
 			this.neighbors.add(node);
+			invalidateGraph();
+		}
+	}
+
+	/**
+	 * Invalidates the graph the node belongs to (if any) after a change
+	 */
+	private void invalidateGraph() {
+		if (this.graph != null) {
+			this.graph.invalidate();
+			this.graph = null;
 		}
 	}
 
@@ -4,8 +4,6 @@
  */
 package movement.map;
 
-import input.WKTReader;
-
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -125,10 +123,8 @@ public class MapRoute {
 	public static List<MapRoute> readRoutes(String fileName, int type,
 			SimMap map) {
 		List<MapRoute> routes = new ArrayList<MapRoute>();
-		WKTReader reader = new WKTReader();
 		List<List<Coord>> coords;
 		File routeFile = null;
-		boolean mirror = map.isMirrored();
 		double xOffset = map.getOffset().getX();
 		double yOffset = map.getOffset().getY();
 
@@ -138,7 +134,8 @@ public class MapRoute {
 
 		try {
 			routeFile = new File(fileName);
-			coords = reader.readLines(routeFile);
+			// mirrored and translated to match map data
+			coords = WKTFileCache.getLines(routeFile, map);
 		}
 		catch (IOException ioe){
 			throw new SettingsError("Couldn't read MapRoute-data file " +
@@ -148,12 +145,6 @@ public class MapRoute {
 		for (List<Coord> l : coords) {
 			List<MapNode> nodes = new ArrayList<MapNode>();
 			for (Coord c : l) {
-				// make coordinates match sim map data
-				if (mirror) {
-					c.setLocation(c.getX(), -c.getY());
-				}
-				c.translate(xOffset, yOffset);
-
 				MapNode node = map.getNodeByCoord(c);
 				if (node == null) {
 					Coord orig = c.clone();
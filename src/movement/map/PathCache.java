@@ -0,0 +1,208 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.DTNSim;
+
+/**
+ * <P>Size-bounded cache of shortest paths found by {@link DijkstraPathFinder}s.
+ * The paths are stored as arrays of node indexes of a {@link MapGraph} and
+ * the least recently used paths are dropped when the cache is full.</P>
+ * <P>There is one shared cache for each combination of map graph, OK map
+ * node types and search algorithm (see
+ * {@link #getCache(MapGraph, int[], int, int)}), so all path finders (e.g.,
+ * of different node groups) that would find the same paths use the same
+ * cache. The caches are thread-safe and they keep hit and miss counts for
+ * statistics.</P>
+ */
+public class PathCache {
+	/** all caches of the current simulation */
+	private static List<PathCache> caches;
+
+	static {
+		DTNSim.registerForReset(PathCache.class.getCanonicalName());
+		reset();
+	}
+
+	private MapGraph graph;
+	private int[] okMapNodes;
+	private int algorithm;
+	private int capacity;
+	/** the paths by (source index * nrof nodes + destination index) */
+	private Map<Long, int[]> paths;
+	private long nrofHits;
+	private long nrofMisses;
+
+	/**
+	 * Creates a new cache
+	 * @param graph The graph of the paths
+	 * @param okMapNodes The OK map node types of the paths (or null)
+	 * @param algorithm The search algorithm of the paths
+	 * @param capacity Maximum number of paths in the cache
+	 */
+	private PathCache(MapGraph graph, int[] okMapNodes, int algorithm,
+			final int capacity) {
+		this.graph = graph;
+		this.okMapNodes = okMapNodes;
+		this.algorithm = algorithm;
+		this.capacity = capacity;
+		this.paths = new LinkedHashMap<Long, int[]>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, int[]> e) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the shared cache of the paths that are found on a graph using
+	 * the given OK map node types and search algorithm. A new cache is
+	 * created if such cache doesn't exist yet.
+	 * @param graph The graph of the paths
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 * @param algorithm The search algorithm of the paths
+	 * @param capacity Maximum number of paths in a new cache
+	 * @return The cache
+	 */
+	public static synchronized PathCache getCache(MapGraph graph,
+			int[] okMapNodes, int algorithm, int capacity) {
+		int[] types = sortedCopy(okMapNodes);
+		for (Iterator<PathCache> i = caches.iterator(); i.hasNext();) {
+			PathCache c = i.next();
+			if (!c.graph.isValid()) {
+				i.remove(); // the paths of changed maps are useless
+			}
+			else if (c.graph == graph && c.algorithm == algorithm &&
+					Arrays.equals(c.okMapNodes, types)) {
+				return c;
+			}
+		}
+
+		PathCache cache = new PathCache(graph, types, algorithm, capacity);
+		caches.add(cache);
+		return cache;
+	}
+
+	/**
+	 * Returns all the caches of the current simulation
+	 * @return A list of the caches
+	 */
+	public static synchronized List<PathCache> getCaches() {
+		return new ArrayList<PathCache>(caches);
+	}
+
+	/**
+	 * Removes all caches.
+	 */
+	public static synchronized void reset() {
+		caches = new ArrayList<PathCache>();
+	}
+
+	private static int[] sortedCopy(int[] values) {
+		if (values == null) {
+			return null;
+		}
+		int[] copy = values.clone();
+		Arrays.sort(copy);
+		return copy;
+	}
+
+	/**
+	 * Returns a path from the cache
+	 * @param source Index of the path's source node
+	 * @param destination Index of the path's destination node
+	 * @return The indexes of the path's nodes (an empty array if there's no
+	 * path) or null if the path is not in the cache
+	 */
+	public synchronized int[] get(int source, int destination) {
+		int[] path = paths.get(getKey(source, destination));
+		if (path != null) {
+			nrofHits++;
+		}
+		else {
+			nrofMisses++;
+		}
+		return path;
+	}
+
+	/**
+	 * Puts a path to the cache
+	 * @param source Index of the path's source node
+	 * @param destination Index of the path's destination node
+	 * @param path The indexes of the path's nodes (an empty array if there's
+	 * no path)
+	 */
+	public synchronized void put(int source, int destination, int[] path) {
+		paths.put(getKey(source, destination), path);
+	}
+
+	private long getKey(int source, int destination) {
+		return (long)source * graph.getNrofNodes() + destination;
+	}
+
+	/**
+	 * Returns the graph of the cached paths
+	 * @return the graph of the cached paths
+	 */
+	public MapGraph getGraph() {
+		return this.graph;
+	}
+
+	/**
+	 * Returns the (sorted) OK map node types of the cached paths
+	 * @return the OK map node types or null if all node types are OK
+	 */
+	public int[] getOkMapNodes() {
+		return this.okMapNodes;
+	}
+
+	/**
+	 * Returns the search algorithm of the cached paths
+	 * @return the search algorithm of the cached paths
+	 */
+	public int getAlgorithm() {
+		return this.algorithm;
+	}
+
+	/**
+	 * Returns the maximum number of paths in the cache
+	 * @return the maximum number of paths in the cache
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Returns the number of paths in the cache
+	 * @return the number of paths in the cache
+	 */
+	public synchronized int size() {
+		return this.paths.size();
+	}
+
+	/**
+	 * Returns the number of requested paths that were in the cache
+	 * @return the number of cache hits
+	 */
+	public synchronized long getNrofHits() {
+		return this.nrofHits;
+	}
+
+	/**
+	 * Returns the number of requested paths that were not in the cache
+	 * @return the number of cache misses
+	 */
+	public synchronized long getNrofMisses() {
+		return this.nrofMisses;
+	}
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import core.SimError;
+
+/**
+ * <P>Precomputed shortest path trees to a fixed set of destination (root)
+ * nodes, e.g., Points Of Interest. For each root, the tree tells the next
+ * node on a shortest path from every map node towards the root, so a
+ * shortest path to a root is found in time relative to the path's length.
+ * The trees are computed in parallel (one reverse Dijkstra's search per
+ * root) and they can be stored to a cache file next to the map's cache
+ * file (see {@link SimMapCache}).</P>
+ * <P>The paths are shortest paths that only go through OK map nodes, but if
+ * there are many equally short paths, the trees may give a different path
+ * than {@link DijkstraPathFinder}.</P>
+ */
+public class PathTrees {
+	/** Extension of path tree cache files */
+	public static final String CACHE_EXT = ".simtrees";
+	/** Magic number at the start of path tree cache files */
+	public static final int MAGIC = 0x4F4E4554; /* "ONET" */
+	/** Version of the file format */
+	public static final int VERSION = 1;
+
+	/** size of the header: magic, version, nrof nodes, OK mask, nrof roots */
+	private static final int HEADER_SIZE = 5 * 4;
+	/** size of the buffer for writing */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private MapGraph graph;
+	/** type bit mask of the OK map nodes (0 = all nodes are OK) */
+	private int okMask;
+	/** indexes of the root nodes */
+	private int[] roots;
+	/** index of the tree of each node (-1 for nodes that are not roots) */
+	private int[] treeIndexes;
+	/** next nodes towards the root of each tree (-1 if there's no path) */
+	private int[][] nextNodes;
+
+	/**
+	 * Creates path trees without computing them
+	 * @param graph The graph of the trees
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 * @param roots The root nodes of the trees
+	 */
+	private PathTrees(MapGraph graph, int[] okMapNodes, List<MapNode> roots) {
+		this.graph = graph;
+		this.okMask = (okMapNodes == null ? 0 :
+			MapGraph.getTypeMask(okMapNodes));
+		this.roots = new int[roots.size()];
+		this.treeIndexes = new int[graph.getNrofNodes()];
+		Arrays.fill(this.treeIndexes, -1);
+		for (int i=0; i<this.roots.length; i++) {
+			int root = graph.getIndex(roots.get(i));
+			if (root < 0) {
+				throw new SimError("Root " + roots.get(i) + " is not a node " +
+						"of the map");
+			}
+			this.roots[i] = root;
+			this.treeIndexes[root] = i;
+		}
+		this.nextNodes = new int[this.roots.length][];
+	}
+
+	/**
+	 * Returns shortest path trees to the given roots. If a cache file is
+	 * given, and it contains the trees, the trees are read from it.
+	 * Otherwise the trees are computed (in parallel using as many threads as
+	 * there are processors) and stored to the cache file.
+	 * @param graph The graph of the trees
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 * @param roots The root nodes of the trees
+	 * @param cacheFile The cache file or null if the trees are not cached
+	 * @return The path trees
+	 */
+	public static PathTrees getTrees(MapGraph graph, int[] okMapNodes,
+			List<MapNode> roots, File cacheFile) {
+		PathTrees trees = new PathTrees(graph, okMapNodes, roots);
+
+		if (cacheFile != null && cacheFile.exists()) {
+			try {
+				trees.read(cacheFile);
+				return trees;
+			} catch (IOException e) {
+				// invalid cache -> compute the trees and replace it
+			}
+		}
+
+		trees.compute(Runtime.getRuntime().availableProcessors());
+
+		if (cacheFile != null) {
+			try {
+				trees.write(cacheFile);
+			} catch (IOException e) {
+				throw new SimError(e.toString(), e);
+			}
+		}
+		return trees;
+	}
+
+	/**
+	 * Returns the cache file of path trees next to a map cache file
+	 * @param mapCacheFile The cache file of the map
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 * @param roots The root nodes of the trees
+	 * @return The cache file (that may not exist)
+	 */
+	public static File getCacheFile(File mapCacheFile, int[] okMapNodes,
+			List<MapNode> roots) {
+		String name = mapCacheFile.getName();
+		if (name.endsWith(SimMapCache.CACHE_EXT)) {
+			name = name.substring(0, name.length() -
+					SimMapCache.CACHE_EXT.length());
+		}
+		int okMask = (okMapNodes == null ? 0 :
+			MapGraph.getTypeMask(okMapNodes));
+		int rootsHash = 1;
+		for (MapNode n : roots) {
+			rootsHash = 31 * rootsHash + n.getLocation().hashCode();
+		}
+		/* the file's header identifies the trees, the name just tells
+		 * different tree sets apart */
+		return new File(mapCacheFile.getParentFile(), name +
+				String.format("-%08x%08x", okMask, rootsHash) + CACHE_EXT);
+	}
+
+	/**
+	 * Computes the trees
+	 * @param nrofThreads Number of threads to use
+	 */
+	private void compute(int nrofThreads) {
+		graph.createReverseEdges();
+		nrofThreads = Math.max(1, Math.min(nrofThreads, roots.length));
+		if (nrofThreads == 1) {
+			new TreeSearch(0, 1).run();
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(nrofThreads);
+		try {
+			List<Future<?>> results = new ArrayList<Future<?>>();
+			for (int i=0; i<nrofThreads; i++) {
+				results.add(executor.submit(new TreeSearch(i, nrofThreads)));
+			}
+			for (Future<?> f : results) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			throw new SimError("Interrupted while computing path trees");
+		} catch (ExecutionException e) {
+			throw new SimError(e.getCause().toString(), e);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Returns a shortest path from a node to a root node
+	 * @param from The source of the path
+	 * @param root The destination of the path
+	 * @return A shortest path from source to the root or null if the
+	 * destination is not a root of these trees or there's no path to it
+	 */
+	public List<MapNode> getPath(MapNode from, MapNode root) {
+		if (!graph.isValid()) {
+			return null; // the map has changed
+		}
+		int r = graph.getIndex(root);
+		int f = graph.getIndex(from);
+		if (r < 0 || f < 0 || treeIndexes[r] < 0) {
+			return null;
+		}
+
+		int[] next = nextNodes[treeIndexes[r]];
+		if (f != r && next[f] < 0) {
+			return null; // no path to the root
+		}
+
+		List<MapNode> path = new LinkedList<MapNode>();
+		for (int n = f; n != r; n = next[n]) {
+			path.add(graph.getNode(n));
+		}
+		path.add(root);
+		return path;
+	}
+
+	/**
+	 * Returns the number of trees
+	 * @return the number of trees
+	 */
+	public int getNrofTrees() {
+		return this.roots.length;
+	}
+
+	/**
+	 * Stores the trees to a cache file. The file is first written to a
+	 * temporary file that is then renamed.
+	 * @param file The cache file
+	 * @throws IOException if writing failed
+	 */
+	private void write(File file) throws IOException {
+		File dir = file.getAbsoluteFile().getParentFile();
+		dir.mkdirs();
+		File tmpFile = File.createTempFile("simtrees", ".tmp", dir);
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmpFile),
+							BUFFER_SIZE));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(graph.getNrofNodes());
+				out.writeInt(okMask);
+				out.writeInt(roots.length);
+				for (int root : roots) {
+					out.writeInt(root);
+				}
+				for (int[] next : nextNodes) {
+					for (int n : next) {
+						out.writeInt(n);
+					}
+				}
+			} finally {
+				out.close();
+			}
+
+			if (!tmpFile.renameTo(file) && !file.exists()) {
+				throw new IOException("Can't rename " + tmpFile);
+			}
+		} finally {
+			tmpFile.delete();
+		}
+	}
+
+	/**
+	 * Reads the trees from a cache file
+	 * @param file The cache file
+	 * @throws IOException if the file couldn't be read or it doesn't contain
+	 * these trees
+	 */
+	private void read(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			int nrofNodes = graph.getNrofNodes();
+			long size = HEADER_SIZE + 4L * roots.length +
+				4L * roots.length * nrofNodes;
+			if (channel.size() != size) {
+				throw new IOException("Invalid path tree cache file " + file);
+			}
+
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, size);
+			IntBuffer ints = buffer.asIntBuffer();
+			if (ints.get() != MAGIC || ints.get() != VERSION ||
+					ints.get() != nrofNodes || ints.get() != okMask ||
+					ints.get() != roots.length) {
+				throw new IOException("Invalid path tree cache file " + file);
+			}
+			for (int root : roots) {
+				if (ints.get() != root) {
+					throw new IOException("Different roots in path tree " +
+							"cache file " + file);
+				}
+			}
+
+			for (int i=0; i<roots.length; i++) {
+				int[] next = new int[nrofNodes];
+				ints.get(next);
+				for (int n : next) {
+					if (n < -1 || n >= nrofNodes) {
+						throw new IOException("Corrupted path tree cache " +
+								"file " + file);
+					}
+				}
+				nextNodes[i] = next;
+			}
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Computes the trees of every n:th root using reverse Dijkstra's
+	 * searches.
+	 */
+	private class TreeSearch implements Runnable {
+		private int first;
+		private int step;
+
+		/**
+		 * Constructor.
+		 * @param first Index of the first tree to compute
+		 * @param step Step between the indexes of the computed trees
+		 */
+		public TreeSearch(int first, int step) {
+			this.first = first;
+			this.step = step;
+		}
+
+		public void run() {
+			int nrofNodes = graph.getNrofNodes();
+			double[] distances = new double[nrofNodes];
+			IndexedHeap queue = new IndexedHeap();
+
+			for (int t = first; t < roots.length; t += step) {
+				int[] next = new int[nrofNodes];
+				Arrays.fill(next, -1);
+				Arrays.fill(distances, Double.MAX_VALUE);
+				queue.init(graph);
+
+				distances[roots[t]] = 0;
+				queue.insertOrDecrease(roots[t], 0);
+				while (!queue.isEmpty()) {
+					int node = queue.poll();
+					for (int e = graph.getInEdgesStart(node),
+							end = graph.getInEdgesEnd(node); e < end; e++) {
+						int n = graph.getInEdgeSource(e);
+						if (okMask != 0 && !graph.isType(n, okMask)) {
+							continue; // skip nodes that are not OK
+						}
+						double nDist = distances[node] +
+							graph.getInEdgeLength(e);
+						if (distances[n] > nDist) {
+							distances[n] = nDist;
+							next[n] = node;
+							queue.insertOrDecrease(n, nDist);
+						}
+					}
+				}
+
+				nextNodes[t] = next;
+			}
+		}
+	}
+}
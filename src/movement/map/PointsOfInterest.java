@@ -4,14 +4,14 @@
  */
 package movement.map;
 
-import input.WKTReader;
-
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 import util.Tuple;
 
@@ -100,6 +100,20 @@ public class PointsOfInterest {
 		return node;
 	}
 
+	/**
+	 * Returns all the POIs of this instance's POI groups
+	 * @return A list of POI map nodes (without duplicates)
+	 */
+	public List<MapNode> getPoiNodes() {
+		Set<MapNode> nodes = new LinkedHashSet<MapNode>();
+		for (List<MapNode> pois : poiLists) {
+			if (pois != null) {
+				nodes.addAll(pois);
+			}
+		}
+		return new ArrayList<MapNode>(nodes);
+	}
+
 	/**
 	 * Reads POI selections and their probabilities from given Settings and
 	 * stores them to <CODE>poiLists</CODE> and <CODE>poiProbs</CODE>.
@@ -108,7 +122,6 @@ public class PointsOfInterest {
 	 * some of the settings had invalid value(s).
 	 */
 	private void readPois(Settings s) {
-		Coord offset = map.getOffset();
 		if (!s.contains(POI_SELECT_S)) {
 			return; // no POIs for this group
 		}
@@ -139,7 +152,7 @@ public class PointsOfInterest {
 						index + " in " + fqSetting);
 			}
 
-			List<MapNode> nodes = readPoisOf(index, offset);
+			List<MapNode> nodes = readPoisOf(index);
 			if (poiLists.size() <= index) {
 				// list too small -> fill with nulls up to index
 				for (int j = poiLists.size(); j <= index; j++) {
@@ -167,21 +180,20 @@ public class PointsOfInterest {
 	 * Reads POIs from a file <CODE>{@value POI_FILE_S} + index</CODE> defined
 	 * in Settings' namespace {@value POI_NS}.
 	 * @param index The index of the POI file
-	 * @param offset Offset of map data
 	 * @return A list of MapNodes read from the POI file
 	 * @throws Settings error if there was an error while reading the file
 	 * or some coordinate in POI-file didn't match any MapNode in the SimMap
 	 */
-	private List<MapNode> readPoisOf(int index, Coord offset) {
+	private List<MapNode> readPoisOf(int index) {
 		List<MapNode> nodes = new ArrayList<MapNode>();
 		Settings fileSettings = new Settings(POI_NS);
-		WKTReader reader = new WKTReader();
 
 		File poiFile = null;
 		List<Coord> coords = null;
 		try {
 			poiFile = new File(fileSettings.getSetting(POI_FILE_S + index));
-			coords = reader.readPoints(poiFile);
+			// mirrored and translated to match map data
+			coords = WKTFileCache.getPoints(poiFile, map);
 		}
 		catch (IOException ioe){
 			throw new SettingsError("Couldn't read POI-data from file '" +
@@ -195,14 +207,6 @@ public class PointsOfInterest {
 		}
 
 		for (Coord c : coords) {
-			if (map.isMirrored()) { // mirror POIs if map data is also mirrored
-				c.setLocation(c.getX(), -c.getY()); // flip around X axis
-			}
-
-			// translate to match map data
-			c.translate(offset.getX(), offset.getY());
-
-
 			MapNode node = map.getNodeByCoord(c);
 			if (node != null) {
 				if (okMapNodeTypes != null && !node.isType(okMapNodeTypes)) {
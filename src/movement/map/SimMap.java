@@ -6,6 +6,7 @@ package movement.map;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -28,6 +29,10 @@ public class SimMap implements Serializable {
 
 	/** is re-hash needed before using hash mode (some coordinates changed) */
 	private boolean needsRehash = false;
+	/** compact graph of the map nodes (created when needed) */
+	private transient MapGraph graph;
+	/** spatial index of the map nodes (created when needed) */
+	private transient SpatialIndex spatialIndex;
 
 	public SimMap(Map<Coord, MapNode> nodes) {
 		this.offset = new Coord(0,0);
@@ -37,6 +42,22 @@ public class SimMap implements Serializable {
 		setBounds();
 	}
 
+	/**
+	 * Creates a map of the given nodes. The nodes are kept in the given
+	 * order.
+	 * @param nodes The nodes of the map
+	 */
+	public SimMap(List<MapNode> nodes) {
+		this.offset = new Coord(0,0);
+		this.nodes = new ArrayList<MapNode>(nodes);
+		this.nodesMap = new HashMap<Coord, MapNode>();
+		for (MapNode n : nodes) {
+			this.nodesMap.put(n.getLocation(), n);
+		}
+		this.isMirrored = false;
+		setBounds();
+	}
+
 	/**
 	 * Returns all the map nodes in a list
 	 * @return all the map nodes in a list
@@ -45,18 +66,46 @@ public class SimMap implements Serializable {
 		return this.nodes;
 	}
 
+	/**
+	 * Returns a compact graph representation of the map. The graph's node
+	 * indexes are the indexes of the nodes in the list returned by
+	 * {@link #getNodes()}. A new graph is created if the map has changed.
+	 * @return The graph of the map
+	 */
+	public MapGraph getGraph() {
+		if (graph == null || !graph.isValid()) {
+			graph = new MapGraph(this.nodes);
+		}
+		return graph;
+	}
+
+	/**
+	 * Returns a spatial index of the map nodes for finding nearest nodes and
+	 * nodes within some range of a coordinate. A new index is created if the
+	 * map has changed.
+	 * @return The spatial index of the map
+	 */
+	public SpatialIndex getSpatialIndex() {
+		if (spatialIndex == null) {
+			spatialIndex = new SpatialIndex(this.nodes);
+		}
+		return spatialIndex;
+	}
+
 	/**
 	 * Returns a MapNode at given coordinates or null if there's no MapNode
-	 * in the location of the coordinate
+	 * in the location of the coordinate. Thread-safe (movement models may be
+	 * replicated in parallel).
 	 * @param c The coordinate
 	 * @return The map node in that location or null if it doesn't exist
 	 */
-	public MapNode getNodeByCoord(Coord c) {
+	public synchronized MapNode getNodeByCoord(Coord c) {
 		if (needsRehash) { // some coordinates have changed after creating hash
 			nodesMap.clear();
 			for (MapNode node : getNodes()) {
 				nodesMap.put(node.getLocation(), node); // re-hash
 			}
+			needsRehash = false;
 		}
 
 		return nodesMap.get(c);
@@ -111,6 +160,7 @@ public class SimMap implements Serializable {
 		offset.translate(dx, dy);
 
 		needsRehash = true;
+		invalidateGraph();
 	}
 
 	/**
@@ -127,6 +177,19 @@ public class SimMap implements Serializable {
 		setBounds();
 		this.isMirrored = true;
 		needsRehash = true;
+		invalidateGraph();
+	}
+
+	/**
+	 * Invalidates the graph and the spatial index after the node coordinates
+	 * have changed
+	 */
+	private void invalidateGraph() {
+		spatialIndex = null;
+		if (graph != null) {
+			graph.invalidate();
+			graph = null;
+		}
 	}
 
 	/**
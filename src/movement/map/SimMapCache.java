@@ -0,0 +1,246 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.Coord;
+import core.SimError;
+
+/**
+ * <P>Binary cache for maps read from WKT files. Parsing large WKT maps is
+ * slow, so the map graph can be stored to a compact binary file after the
+ * first read and later loaded from it. The cache file is identified by a key
+ * that is computed from the contents of the source WKT files (see
+ * {@link #getKey(List)}), so a changed map file is never read from a stale
+ * cache.</P>
+ * <P>The file has a header (magic number, format version, number of nodes
+ * and number of neighbor entries) and the node data in columns: x and y
+ * coordinates (doubles), type bit masks (ints), neighbor list offsets
+ * (nrof nodes + 1 ints) and the neighbor node indexes of all nodes (ints).
+ * The order of the nodes and their neighbors is kept, so a map loaded from
+ * the cache is exactly the same as the one that was stored. The file is
+ * memory-mapped for reading.</P>
+ */
+public class SimMapCache {
+	/** Extension of map cache files */
+	public static final String CACHE_EXT = ".simmap";
+	/** Magic number at the start of map cache files */
+	public static final int MAGIC = 0x4F4E454D; /* "ONEM" */
+	/** Version of the file format */
+	public static final int VERSION = 1;
+
+	/** size of the header: magic, version, nrof nodes, nrof neighbors */
+	private static final int HEADER_SIZE = 4 * 4;
+	/** size of the buffers for hashing and writing */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Computes the cache key of a map that is read from the given files in
+	 * the given order (the index of a file is used as the type of its nodes)
+	 * @param mapFiles The WKT files of the map
+	 * @return The key (a hexadecimal string)
+	 * @throws IOException if reading the files failed
+	 */
+	public static String getKey(List<File> mapFiles) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new SimError(e);
+		}
+
+		byte[] buffer = new byte[BUFFER_SIZE];
+		for (File file : mapFiles) {
+			/* file boundaries and sizes are part of the key */
+			digest.update(ByteBuffer.allocate(8).putLong(file.length())
+					.array());
+			InputStream in = new FileInputStream(file);
+			try {
+				int len;
+				while ((len = in.read(buffer)) > 0) {
+					digest.update(buffer, 0, len);
+				}
+			} finally {
+				in.close();
+			}
+		}
+
+		StringBuilder key = new StringBuilder();
+		for (byte b : digest.digest()) {
+			key.append(String.format("%02x", b & 0xff));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Returns the cache file of a map in a cache directory
+	 * @param cacheDir The cache directory
+	 * @param key Key of the map
+	 * @return The cache file (that may not exist)
+	 * @see #getKey(List)
+	 */
+	public static File getCacheFile(File cacheDir, String key) {
+		return new File(cacheDir, "map-" + key + CACHE_EXT);
+	}
+
+	/**
+	 * Stores a map to a cache file. The file is first written to a temporary
+	 * file that is then renamed, so other simulations never read a partial
+	 * cache file.
+	 * @param map The map to store
+	 * @param file The cache file
+	 * @throws IOException if writing failed
+	 */
+	public static void write(SimMap map, File file) throws IOException {
+		List<MapNode> nodes = map.getNodes();
+		Map<MapNode, Integer> indexes = new HashMap<MapNode, Integer>();
+		int nrofNeighbors = 0;
+		for (MapNode n : nodes) {
+			indexes.put(n, indexes.size());
+			nrofNeighbors += n.getNeighbors().size();
+		}
+
+		File dir = file.getAbsoluteFile().getParentFile();
+		dir.mkdirs();
+		File tmpFile = File.createTempFile("simmap", ".tmp", dir);
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmpFile),
+							BUFFER_SIZE));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(nodes.size());
+				out.writeInt(nrofNeighbors);
+
+				for (MapNode n : nodes) {
+					out.writeDouble(n.getLocation().getX());
+				}
+				for (MapNode n : nodes) {
+					out.writeDouble(n.getLocation().getY());
+				}
+				for (MapNode n : nodes) {
+					out.writeInt(n.getTypeMask());
+				}
+				int offset = 0;
+				for (MapNode n : nodes) {
+					out.writeInt(offset);
+					offset += n.getNeighbors().size();
+				}
+				out.writeInt(offset);
+				for (MapNode n : nodes) {
+					for (MapNode neighbor : n.getNeighbors()) {
+						out.writeInt(indexes.get(neighbor));
+					}
+				}
+			} finally {
+				out.close();
+			}
+
+			if (!tmpFile.renameTo(file) && !file.exists()) {
+				throw new IOException("Can't rename " + tmpFile);
+			}
+		} finally {
+			tmpFile.delete();
+		}
+	}
+
+	/**
+	 * Reads a map from a cache file
+	 * @param file The cache file
+	 * @return The map
+	 * @throws IOException if the file couldn't be read or it is not a valid
+	 * map cache file
+	 */
+	public static SimMap read(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size());
+
+			if (buffer.remaining() < HEADER_SIZE ||
+					buffer.getInt() != MAGIC) {
+				throw new IOException("Not a map cache file: " + file);
+			}
+			int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported map cache version " +
+						version + " in " + file);
+			}
+			int nrofNodes = buffer.getInt();
+			int nrofNeighbors = buffer.getInt();
+			long size = HEADER_SIZE + 8L * 2 * nrofNodes +
+				4L * (2 * nrofNodes + 1) + 4L * nrofNeighbors;
+			if (nrofNodes < 0 || nrofNeighbors < 0 || size != channel.size()) {
+				throw new IOException("Corrupted map cache file " + file);
+			}
+
+			DoubleBuffer xs = slice(buffer, HEADER_SIZE).asDoubleBuffer();
+			DoubleBuffer ys = slice(buffer, HEADER_SIZE + 8 * nrofNodes)
+				.asDoubleBuffer();
+			int intStart = HEADER_SIZE + 16 * nrofNodes;
+			IntBuffer types = slice(buffer, intStart).asIntBuffer();
+			IntBuffer offsets = slice(buffer, intStart + 4 * nrofNodes)
+				.asIntBuffer();
+			IntBuffer neighbors = slice(buffer,
+					intStart + 4 * (2 * nrofNodes + 1)).asIntBuffer();
+
+			List<MapNode> nodes = new ArrayList<MapNode>(nrofNodes);
+			for (int i=0; i<nrofNodes; i++) {
+				MapNode n = new MapNode(new Coord(xs.get(i), ys.get(i)));
+				int typeMask = types.get(i);
+				for (int t = MapNode.MIN_TYPE; t <= MapNode.MAX_TYPE; t++) {
+					if ((typeMask & (1 << t)) != 0) {
+						n.addType(t);
+					}
+				}
+				nodes.add(n);
+			}
+
+			for (int i=0; i<nrofNodes; i++) {
+				MapNode n = nodes.get(i);
+				for (int j = offsets.get(i), end = offsets.get(i+1); j < end;
+						j++) {
+					n.addNeighbor(nodes.get(neighbors.get(j)));
+				}
+			}
+
+			return new SimMap(nodes);
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("Corrupted map cache file " + file);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Returns a view of a buffer starting from the given position
+	 */
+	private static ByteBuffer slice(ByteBuffer buffer, int position) {
+		ByteBuffer dup = buffer.duplicate();
+		dup.position(position);
+		return dup.slice();
+	}
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import core.Coord;
+
+/**
+ * <P>Spatial index (a static 2-d tree) of map nodes for finding the nearest
+ * node to a coordinate and all nodes within some distance of a coordinate in
+ * logarithmic time (on average). The tree is stored in arrays: the nodes of
+ * each subtree are in a continuous range of the node order array and the
+ * splitting node of a range is the one in the middle.</P>
+ * <P>The index is a snapshot of the node locations, so it must be re-created
+ * if they change (see {@link SimMap#getSpatialIndex()}).</P>
+ */
+public class SpatialIndex {
+	/** the indexed nodes */
+	private List<MapNode> nodes;
+	/** node indexes (in the nodes list) in the tree order */
+	private int[] order;
+	/** x coordinates of the nodes in the tree order */
+	private double[] xs;
+	/** y coordinates of the nodes in the tree order */
+	private double[] ys;
+
+	/**
+	 * Creates an index of map nodes
+	 * @param nodes The nodes to index
+	 */
+	public SpatialIndex(List<MapNode> nodes) {
+		int n = nodes.size();
+		this.nodes = nodes;
+		this.order = new int[n];
+		this.xs = new double[n];
+		this.ys = new double[n];
+		for (int i=0; i<n; i++) {
+			Coord c = nodes.get(i).getLocation();
+			order[i] = i;
+			xs[i] = c.getX();
+			ys[i] = c.getY();
+		}
+		build(0, n, 0);
+	}
+
+	/**
+	 * Builds the tree of a range
+	 * @param lo First index of the range
+	 * @param hi Index after the last index of the range
+	 * @param depth Depth of the tree (even = split by x, odd = by y)
+	 */
+	private void build(int lo, int hi, int depth) {
+		while (hi - lo > 1) {
+			int mid = (lo + hi) >>> 1;
+			select(lo, hi, mid, depth % 2 == 0 ? xs : ys);
+			build(lo, mid, depth + 1);
+			lo = mid + 1;
+			depth++;
+		}
+	}
+
+	/**
+	 * Partially sorts a range so that the node at index k is the one that
+	 * would be there if the range was sorted by the given coordinates and
+	 * nodes before (after) it have smaller or equal (larger or equal)
+	 * coordinates.
+	 */
+	private void select(int lo, int hi, int k, double[] keys) {
+		hi--;
+		while (hi > lo) {
+			double pivot = keys[(lo + hi) >>> 1];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (keys[i] < pivot) {
+					i++;
+				}
+				while (keys[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(i++, j--);
+				}
+			}
+			if (k <= j) {
+				hi = j;
+			} else if (k >= i) {
+				lo = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void swap(int i, int j) {
+		int tmpNode = order[i];
+		order[i] = order[j];
+		order[j] = tmpNode;
+		double tmp = xs[i];
+		xs[i] = xs[j];
+		xs[j] = tmp;
+		tmp = ys[i];
+		ys[i] = ys[j];
+		ys[j] = tmp;
+	}
+
+	/**
+	 * Returns the node that is nearest to the given coordinate. If there
+	 * are many equally near nodes, the one that is first in the node list
+	 * is returned (i.e., the same node as a linear search through the list
+	 * would find).
+	 * @param c The coordinate
+	 * @return The nearest node or null if the index is empty (or no node is
+	 * closer than Double.MAX_VALUE)
+	 */
+	public MapNode getNearestNode(Coord c) {
+		if (order.length == 0) {
+			return null;
+		}
+		Nearest nearest = new Nearest();
+		findNearest(0, order.length, 0, c.getX(), c.getY(), nearest);
+		return (nearest.pos < 0 ? null : nodes.get(order[nearest.pos]));
+	}
+
+	/**
+	 * Finds the nearest node of a range
+	 */
+	private void findNearest(int lo, int hi, int depth, double x, double y,
+			Nearest nearest) {
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			double dx = xs[mid] - x;
+			double dy = ys[mid] - y;
+			/* same computation as in Coord.distance() */
+			double dist = Math.sqrt(dx*dx + dy*dy);
+			if (dist < nearest.distance || (dist == nearest.distance &&
+					nearest.pos >= 0 && order[mid] < order[nearest.pos])) {
+				nearest.distance = dist;
+				nearest.pos = mid;
+			}
+
+			double diff = (depth % 2 == 0 ? dx : dy);
+			depth++;
+			/* search the side of the coordinate first and the other side
+			 * only if it may contain nodes that are (equally) near */
+			if (diff > 0) {
+				findNearest(lo, mid, depth, x, y, nearest);
+				if (diff > nearest.distance) {
+					return;
+				}
+				lo = mid + 1;
+			} else {
+				findNearest(mid + 1, hi, depth, x, y, nearest);
+				if (-diff > nearest.distance) {
+					return;
+				}
+				hi = mid;
+			}
+		}
+	}
+
+	/**
+	 * Returns all nodes whose distance to the given coordinate is at most
+	 * the given range
+	 * @param c The coordinate
+	 * @param range The maximum distance
+	 * @return The nodes in range in the same order as in the node list
+	 */
+	public List<MapNode> getNodesInRange(Coord c, double range) {
+		int[] found = new int[16];
+		int nrofFound = findInRange(0, order.length, 0, c.getX(), c.getY(),
+				range, found, 0);
+		if (nrofFound > found.length) { // results didn't fit, search again
+			found = new int[nrofFound];
+			findInRange(0, order.length, 0, c.getX(), c.getY(), range,
+					found, 0);
+		}
+
+		Arrays.sort(found, 0, nrofFound);
+		List<MapNode> result = new ArrayList<MapNode>(nrofFound);
+		for (int i=0; i<nrofFound; i++) {
+			result.add(nodes.get(found[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the nodes of a range that are within the distance
+	 * @return The number of nodes found so far (may be more than fit in the
+	 * result array)
+	 */
+	private int findInRange(int lo, int hi, int depth, double x, double y,
+			double range, int[] found, int nrofFound) {
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			double dx = xs[mid] - x;
+			double dy = ys[mid] - y;
+			if (Math.sqrt(dx*dx + dy*dy) <= range) {
+				if (nrofFound < found.length) {
+					found[nrofFound] = order[mid];
+				}
+				nrofFound++;
+			}
+
+			double diff = (depth % 2 == 0 ? dx : dy);
+			depth++;
+			if (diff >= -range) {
+				nrofFound = findInRange(lo, mid, depth, x, y, range, found,
+						nrofFound);
+			}
+			if (diff > range) {
+				return nrofFound;
+			}
+			lo = mid + 1;
+		}
+		return nrofFound;
+	}
+
+	/**
+	 * Nearest node found so far
+	 */
+	private static class Nearest {
+		private int pos = -1;
+		private double distance = Double.MAX_VALUE;
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import input.WKTReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.Coord;
+import core.DTNSim;
+
+/**
+ * <P>Scenario-level cache of location data (e.g., offices, homes, meeting
+ * spots, POIs and routes) read from WKT files. Each file is parsed only once
+ * per simulation and the coordinates are transformed (mirrored and
+ * translated) to match the map data. The cache is keyed by the file's path
+ * and the map's offset and mirroring, so all movement models that use the
+ * same file with the same map share the parsed data.</P>
+ * <P>All methods return new copies of the cached coordinates, so the callers
+ * are free to modify them. The cache is emptied when the simulation is
+ * reset.</P>
+ */
+public class WKTFileCache {
+	/** cached points by file and map transformation */
+	private static Map<String, List<Coord>> points;
+	/** cached lines by file and map transformation */
+	private static Map<String, List<List<Coord>>> lines;
+
+	static {
+		DTNSim.registerForReset(WKTFileCache.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Empties the cache
+	 */
+	public static synchronized void reset() {
+		points = new HashMap<String, List<Coord>>();
+		lines = new HashMap<String, List<List<Coord>>>();
+	}
+
+	/**
+	 * Returns the points of a WKT file transformed to match the map data
+	 * @param file The WKT file
+	 * @param map The map the points should match (if the map data is mirrored
+	 * or translated, so are the points)
+	 * @return A new list of the points
+	 * @throws IOException if the file couldn't be read
+	 */
+	public static synchronized List<Coord> getPoints(File file, SimMap map)
+			throws IOException {
+		String key = getKey(file, map);
+		List<Coord> coords = points.get(key);
+		if (coords == null) {
+			coords = (new WKTReader()).readPoints(file);
+			transform(coords, map);
+			points.put(key, coords);
+		}
+		return copy(coords);
+	}
+
+	/**
+	 * Returns the lines (LINESTRINGs and MULTILINESTRINGs) of a WKT file
+	 * transformed to match the map data
+	 * @param file The WKT file
+	 * @param map The map the lines should match (if the map data is mirrored
+	 * or translated, so are the lines)
+	 * @return A new list of the lines
+	 * @throws IOException if the file couldn't be read
+	 */
+	public static synchronized List<List<Coord>> getLines(File file,
+			SimMap map) throws IOException {
+		String key = getKey(file, map);
+		List<List<Coord>> coords = lines.get(key);
+		if (coords == null) {
+			coords = (new WKTReader()).readLines(file);
+			for (List<Coord> l : coords) {
+				transform(l, map);
+			}
+			lines.put(key, coords);
+		}
+
+		List<List<Coord>> result = new ArrayList<List<Coord>>(coords.size());
+		for (List<Coord> l : coords) {
+			result.add(copy(l));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the cache key of a file and a map's transformation
+	 */
+	private static String getKey(File file, SimMap map) throws IOException {
+		Coord offset = map.getOffset();
+		return file.getCanonicalPath() + "|" + offset.getX() + "|" +
+			offset.getY() + "|" + map.isMirrored();
+	}
+
+	/**
+	 * Mirrors (if the map is mirrored) and translates coordinates the same
+	 * way as the map data has been
+	 */
+	private static void transform(List<Coord> coords, SimMap map) {
+		Coord offset = map.getOffset();
+		for (Coord c : coords) {
+			if (map.isMirrored()) {
+				c.setLocation(c.getX(), -c.getY()); // flip around X axis
+			}
+			c.translate(offset.getX(), offset.getY());
+		}
+	}
+
+	/**
+	 * Returns a list of copies of the coordinates
+	 */
+	private static List<Coord> copy(List<Coord> coords) {
+		List<Coord> result = new ArrayList<Coord>(coords.size());
+		for (Coord c : coords) {
+			result.add(c.clone());
+		}
+		return result;
+	}
+}
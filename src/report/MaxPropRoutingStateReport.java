@@ -0,0 +1,69 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.List;
+
+import routing.MaxPropRouter;
+import core.DTNHost;
+import core.UpdateListener;
+
+/**
+ * Reports how much routing state (meeting probability sets) the
+ * {@link MaxPropRouter}s exchanged during the simulation. Byte counts are
+ * estimates based on {@link MaxPropRouter#PROB_SET_HEADER_BYTES} and
+ * {@link MaxPropRouter#PROB_ENTRY_BYTES}. Hosts that use some other router
+ * are ignored.
+ */
+public class MaxPropRoutingStateReport extends Report
+	implements UpdateListener {
+	/** hosts of the simulation (from the latest update) */
+	private List<DTNHost> hosts;
+
+	/**
+	 * Constructor.
+	 */
+	public MaxPropRoutingStateReport() {
+		init();
+	}
+
+	public void updated(List<DTNHost> hosts) {
+		this.hosts = hosts;
+	}
+
+	@Override
+	public void done() {
+		long exchanges = 0;
+		long sets = 0;
+		long bytes = 0;
+		double bytesPerContact = Double.NaN;
+
+		if (hosts != null) {
+			for (DTNHost h : hosts) {
+				if (!(h.getRouter() instanceof MaxPropRouter)) {
+					continue;
+				}
+				MaxPropRouter r = (MaxPropRouter)h.getRouter();
+				exchanges += r.getNrofExchanges();
+				sets += r.getNrofSetsReceived();
+				bytes += r.getRoutingStateBytesReceived();
+			}
+		}
+
+		/* both ends of a contact count the same exchange */
+		long contacts = exchanges / 2;
+		if (contacts > 0) {
+			bytesPerContact = (1.0 * bytes) / contacts;
+		}
+
+		write("MaxProp routing state exchange for scenario " +
+				getScenarioName() + "\nsim_time: " + format(getSimTime()));
+		write("contacts: " + contacts +
+			"\nprob_sets_exchanged: " + sets +
+			"\nbytes_exchanged: " + bytes +
+			"\nbytes_per_contact: " + format(bytesPerContact));
+		super.done();
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import input.MovementRecordReader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import movement.Path;
+import core.Coord;
+import core.DTNHost;
+import core.PathListener;
+import core.SimClock;
+import core.SimError;
+import core.SimScenario;
+
+/**
+ * <P>Records the movement of all hosts to a binary movement record file
+ * that can be replayed with {@link movement.RecordedMovement}. The record
+ * contains the initial locations of the hosts and every path that the hosts
+ * got from their movement models (see {@link MovementRecordReader} for the
+ * format). Replaying the record gives exactly the same movement without
+ * running the (possibly expensive) movement models.</P>
+ * <P>If no output file is defined for the report, the file is created in the
+ * report directory with the extension {@value MovementRecordReader#RECORD_EXT}.
+ * This report ignores the warm up settings.</P>
+ */
+public class MovementRecordReport extends Report implements PathListener {
+	private DataOutputStream recordOut;
+	private String recordFileName;
+
+	/**
+	 * Constructor. Creates the record file and writes the initial locations
+	 * of all hosts to it.
+	 */
+	public MovementRecordReport() {
+		this.recordFileName = getOutputFileName();
+		if (!getSettings().contains(OUTPUT_SETTING) &&
+				recordFileName.endsWith(OUT_SUFFIX)) {
+			recordFileName = recordFileName.substring(0,
+					recordFileName.length() - OUT_SUFFIX.length()) +
+					MovementRecordReader.RECORD_EXT;
+		}
+
+		List<DTNHost> hosts = SimScenario.getInstance().getHosts();
+		try {
+			this.recordOut = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(recordFileName), 1 << 16));
+			recordOut.writeInt(MovementRecordReader.RECORD_MAGIC);
+			recordOut.writeInt(MovementRecordReader.RECORD_VERSION);
+			recordOut.writeInt(hosts.size());
+			for (DTNHost host : hosts) {
+				recordOut.writeInt(host.getAddress());
+				recordOut.writeDouble(host.getLocation().getX());
+				recordOut.writeDouble(host.getLocation().getY());
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't write movement record '" +
+					recordFileName + "'\n" + e.getMessage(), e);
+		}
+	}
+
+	public void newPath(DTNHost host, Path path) {
+		try {
+			recordOut.writeInt(host.getAddress());
+			recordOut.writeDouble(SimClock.getTime());
+			recordOut.writeDouble(host.getLocation().getX());
+			recordOut.writeDouble(host.getLocation().getY());
+			if (path == null) {
+				recordOut.writeInt(-1);
+				recordOut.writeInt(0);
+				return;
+			}
+
+			List<Coord> coords = path.getCoords();
+			List<Double> speeds = path.getSpeeds();
+			recordOut.writeInt(coords.size());
+			recordOut.writeInt(speeds.size());
+			for (double speed : speeds) {
+				recordOut.writeDouble(speed);
+			}
+			for (Coord c : coords) {
+				recordOut.writeDouble(c.getX());
+				recordOut.writeDouble(c.getY());
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't write movement record '" +
+					recordFileName + "'\n" + e.getMessage(), e);
+		}
+	}
+
+	public void newDestination(DTNHost host, Coord destination, double speed) {
+		// the whole paths are recorded
+	}
+
+	public void initialLocation(DTNHost host, Coord location) {
+		// initial locations are recorded when the report is created
+	}
+
+	@Override
+	public void done() {
+		try {
+			recordOut.close();
+		} catch (IOException e) {
+			throw new SimError("Couldn't write movement record '" +
+					recordFileName + "'\n" + e.getMessage(), e);
+		}
+		super.done();
+	}
+}
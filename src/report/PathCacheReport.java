@@ -0,0 +1,58 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.Arrays;
+
+import movement.map.DijkstraPathFinder;
+import movement.map.PathCache;
+
+/**
+ * Reports the hit and miss counts of the shortest path caches of map based
+ * movement models (see {@link PathCache}). Path caching must be enabled with
+ * the <CODE>MapBasedMovement.pathCacheSize</CODE> setting. One line is
+ * written for each cache (map, OK map node types and path finding algorithm
+ * combination) and the totals of all caches in the end.
+ */
+public class PathCacheReport extends Report {
+
+	public PathCacheReport() {
+		init();
+	}
+
+	@Override
+	public void done() {
+		write("Path cache stats for scenario " + getScenarioName() +
+				"\nsim_time: " + format(getSimTime()));
+		write("# okMaps algorithm paths capacity hits misses hit_ratio");
+
+		long hits = 0;
+		long misses = 0;
+		for (PathCache c : PathCache.getCaches()) {
+			int[] okMaps = c.getOkMapNodes();
+			String okMapsText = (okMaps == null ? "all" :
+				Arrays.toString(okMaps).replace(" ", ""));
+
+			write(okMapsText + " " +
+					DijkstraPathFinder.ALGORITHM_NAMES[c.getAlgorithm()] + " " +
+					c.size() + " " + c.getCapacity() + " " + c.getNrofHits() +
+					" " + c.getNrofMisses() + " " +
+					format(getRatio(c.getNrofHits(), c.getNrofMisses())));
+			hits += c.getNrofHits();
+			misses += c.getNrofMisses();
+		}
+
+		write("hits: " + hits + "\nmisses: " + misses +
+				"\nhit_ratio: " + format(getRatio(hits, misses)));
+		super.done();
+	}
+
+	private double getRatio(long hits, long misses) {
+		if (hits + misses == 0) {
+			return Double.NaN;
+		}
+		return (1.0 * hits) / (hits + misses);
+	}
+}
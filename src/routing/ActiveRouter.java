@@ -10,6 +10,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
+import routing.util.BufferPolicy;
 import routing.util.EnergyModel;
 import routing.util.MessageTransferAcceptPolicy;
 import routing.util.RoutingInfo;
@@ -48,6 +49,9 @@ public abstract class ActiveRouter extends MessageRouter {
 
 	private MessageTransferAcceptPolicy policy;
 	private EnergyModel energy;
+	/** message dropping order policy or null if the router's own order
+	 * is used (see {@link BufferPolicy#BUFFER_POLICY_S}) */
+	private BufferPolicy bufferPolicy;
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -66,6 +70,8 @@ public abstract class ActiveRouter extends MessageRouter {
 		} else {
 			this.energy = null; /* no energy model */
 		}
+
+		this.bufferPolicy = BufferPolicy.createPolicy(s);
 	}
 
 	/**
@@ -77,6 +83,8 @@ public abstract class ActiveRouter extends MessageRouter {
 		this.deleteDelivered = r.deleteDelivered;
 		this.policy = r.policy;
 		this.energy = (r.energy != null ? r.energy.replicate() : null);
+		this.bufferPolicy = (r.bufferPolicy != null ?
+				r.bufferPolicy.replicate() : null);
 	}
 
 	@Override
@@ -312,9 +320,28 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 
 
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		super.addToMessages(m, newMessage);
+		if (this.bufferPolicy != null) {
+			this.bufferPolicy.messageAdded(m);
+		}
+	}
+
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null && this.bufferPolicy != null) {
+			this.bufferPolicy.messageRemoved(id);
+		}
+		return m;
+	}
+
 	/**
 	 * Returns the oldest (by receive time) message in the message buffer
-	 * (that is not being sent if excludeMsgBeingSent is true).
+	 * (that is not being sent if excludeMsgBeingSent is true). If a buffer
+	 * policy is defined for the router, the next message to drop according
+	 * to the policy is returned instead.
 	 * @param excludeMsgBeingSent If true, excludes message(s) that are
 	 * being sent from the oldest message check (i.e. if oldest message is
 	 * being sent, the second oldest message is returned)
@@ -323,6 +350,11 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * exludeMsgBeingSent is true)
 	 */
 	protected Message getNextMessageToRemove(boolean excludeMsgBeingSent) {
+		if (this.bufferPolicy != null) {
+			return this.bufferPolicy.getNextToRemove(excludeMsgBeingSent ?
+					getIdsBeingSent() : null);
+		}
+
 		Collection<Message> messages = this.getMessageCollection();
 		Message oldest = null;
 		for (Message m : messages) {
@@ -342,6 +374,20 @@ public abstract class ActiveRouter extends MessageRouter {
 		return oldest;
 	}
 
+	/**
+	 * Returns the IDs of the messages that are being sent
+	 * @return the IDs of the messages that are being sent
+	 */
+	private List<String> getIdsBeingSent() {
+		List<String> ids = new ArrayList<String>(this.sendingConnections.size());
+		for (Connection con : this.sendingConnections) {
+			if (con.getMessage() != null) {
+				ids.add(con.getMessage().getId());
+			}
+		}
+		return ids;
+	}
+
 	/**
 	 * Returns a list of message-connections tuples of the messages whose
 	 * recipient is some host that we're connected to at the moment.
@@ -590,6 +636,9 @@ public abstract class ActiveRouter extends MessageRouter {
 			/* finalize ready transfers */
 			if (con.isMessageTransferred()) {
 				if (con.getMessage() != null) {
+					if (this.bufferPolicy != null) {
+						this.bufferPolicy.messageForwarded(con.getMessage());
+					}
 					transferDone(con);
 					con.finalizeTransfer();
 				} /* else: some other entity aborted transfer */
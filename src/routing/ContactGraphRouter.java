@@ -0,0 +1,245 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import input.ConnectionEvent;
+import input.ExternalEvent;
+import input.StandardEventsReader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import routing.schedule.EarliestArrivalTable;
+import routing.schedule.ScheduleOracle;
+import util.Tuple;
+import core.Connection;
+import core.DTNHost;
+import core.DTNSim;
+import core.Message;
+import core.Settings;
+import core.SimClock;
+
+/**
+ * <P>Contact graph routing based on a known contact plan. The contact plan
+ * is read from a file in the standard external events format (only the
+ * connection up/down events are used), for example from the output of
+ * {@link report.ConnectivityONEReport} of an earlier run of a scenario with
+ * scheduled movement (e.g. {@link movement.BusMovement} or
+ * {@link movement.MapRouteMovement} with the same random seeds).</P>
+ * <P>The earliest arrival tables between all nodes of the plan are
+ * precomputed once per run (see {@link EarliestArrivalTable}) and shared by
+ * all the routers that use the same plan. A message is forwarded only to the
+ * first hop of the fastest path towards its destination and the sender
+ * doesn't keep a copy (single-copy routing).</P>
+ * <P>A contact of the plan can be used at any time from its start to its
+ * end, and messages are assumed to be transferred instantly.</P>
+ */
+public class ContactGraphRouter extends ActiveRouter {
+	/** Contact graph router's settings name space ({@value})*/
+	public static final String CGR_NS = "ContactGraphRouter";
+	/** Contact plan file -setting id ({@value}). Path of the file that
+	 * contains the connection events of the contact plan. */
+	public static final String CONTACT_PLAN_S = "contactPlanFile";
+	/** Number of threads for computing the tables -setting id ({@value}).
+	 * Default is the number of available processors. */
+	public static final String NROF_THREADS_S = "nrofThreads";
+
+	/** How many events are read from the plan file at a time */
+	private static final int PLAN_READ_BATCH = 1000;
+
+	/** Earliest arrival tables mapped using the contact plan file path */
+	private static Map<String, EarliestArrivalTable> tableCache;
+
+	/** Earliest arrival tables of the contact plan of this router */
+	private EarliestArrivalTable table;
+
+	static {
+		DTNSim.registerForReset(ContactGraphRouter.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Constructor. Creates a new message router based on the settings in
+	 * the given Settings object.
+	 * @param s The settings object
+	 */
+	public ContactGraphRouter(Settings s) {
+		super(s);
+		Settings cgrSettings = new Settings(CGR_NS);
+		String planFile = cgrSettings.getSetting(CONTACT_PLAN_S);
+		int nrofThreads = cgrSettings.getInt(NROF_THREADS_S,
+				Runtime.getRuntime().availableProcessors());
+
+		this.table = tableCache.get(planFile);
+		if (this.table == null) {
+			this.table = new EarliestArrivalTable(
+					readContactPlan(new File(planFile)), nrofThreads);
+			tableCache.put(planFile, this.table);
+		}
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param r The router prototype where setting values are copied from
+	 */
+	protected ContactGraphRouter(ContactGraphRouter r) {
+		super(r);
+		this.table = r.table;
+	}
+
+	/**
+	 * Reads a contact plan from a standard external events file. Each contact
+	 * (from connection up to connection down) becomes a schedule entry, in
+	 * both directions, that can be used during the contact. Contacts that
+	 * don't end in the file end at the time of the last event.
+	 * @param planFile The file to read
+	 * @return Schedule oracle of the contacts
+	 */
+	private static ScheduleOracle readContactPlan(File planFile) {
+		ScheduleOracle oracle = new ScheduleOracle();
+		Map<Long, Double> open = new HashMap<Long, Double>();
+		StandardEventsReader reader = new StandardEventsReader(planFile);
+		double lastTime = 0;
+		List<ExternalEvent> events;
+
+		while ((events = reader.readEvents(PLAN_READ_BATCH)).size() > 0) {
+			for (ExternalEvent ee : events) {
+				lastTime = ee.getTime();
+				if (!(ee instanceof ConnectionEvent)) {
+					continue;
+				}
+				ConnectionEvent ce = (ConnectionEvent)ee;
+				Long key = contactKey(ce.getFromAddress(), ce.getToAddress());
+				if (ce.isUp()) {
+					if (!open.containsKey(key)) {
+						open.put(key, ce.getTime());
+					}
+				} else {
+					Double start = open.remove(key);
+					if (start != null) {
+						addContact(oracle, key, start, ce.getTime());
+					}
+				}
+			}
+		}
+		reader.close();
+
+		for (Map.Entry<Long, Double> e : open.entrySet()) {
+			addContact(oracle, e.getKey(), e.getValue(), lastTime);
+		}
+
+		return oracle;
+	}
+
+	/**
+	 * Adds a contact to the schedule in both directions
+	 * @param oracle The schedule
+	 * @param key The hosts of the contact (see {@link #contactKey(int, int)})
+	 * @param startTime The time when the contact starts
+	 * @param endTime The time when the contact ends
+	 */
+	private static void addContact(ScheduleOracle oracle, long key,
+			double startTime, double endTime) {
+		int a = (int)(key >>> 32);
+		int b = (int)key;
+		oracle.addContact(startTime, endTime, a, b);
+		oracle.addContact(startTime, endTime, b, a);
+	}
+
+	/**
+	 * Returns a key for a contact between two hosts; the smaller address in
+	 * the upper 32 bits and the bigger in the lower
+	 * @param a Address of one host
+	 * @param b Address of the other host
+	 * @return The key
+	 */
+	private static long contactKey(int a, int b) {
+		return ((long)Math.min(a, b) << 32) | Math.max(a, b);
+	}
+
+	@Override
+	protected int checkReceiving(Message m, DTNHost from) {
+		int recvCheck = super.checkReceiving(m, from);
+
+		if (recvCheck == RCV_OK) {
+			/* don't accept a message that has already traversed this node */
+			if (m.getHops().contains(getHost())) {
+				recvCheck = DENIED_OLD;
+			}
+		}
+
+		return recvCheck;
+	}
+
+	@Override
+	public void update() {
+		super.update();
+		if (isTransferring() || !canStartTransfer()) {
+			return;
+		}
+
+		if (exchangeDeliverableMessages() != null) {
+			return;
+		}
+
+		tryMessagesForConnected(getMessagesForNextHops());
+	}
+
+	/**
+	 * Returns the messages whose next hop, according to the contact plan, is
+	 * one of the currently connected hosts, paired with the connection to
+	 * that host
+	 * @return List of message-connection tuples
+	 */
+	@SuppressWarnings(value = "unchecked") /* ugly sortByQueueMode */
+	private List<Tuple<Message, Connection>> getMessagesForNextHops() {
+		List<Tuple<Message, Connection>> forTuples =
+			new ArrayList<Tuple<Message, Connection>>();
+		List<Connection> connections = getConnections();
+		int myAddress = getHost().getAddress();
+		double now = SimClock.getTime();
+
+		if (connections.size() == 0) {
+			return forTuples;
+		}
+
+		for (Message m : getMessageCollection()) {
+			int nextHop = table.getNextHop(myAddress, m.getTo().getAddress(),
+					now);
+			if (nextHop == EarliestArrivalTable.NO_ROUTE) {
+				continue;
+			}
+			for (Connection con : connections) {
+				if (con.getOtherNode(getHost()).getAddress() == nextHop) {
+					forTuples.add(new Tuple<Message, Connection>(m, con));
+					break;
+				}
+			}
+		}
+
+		return sortByQueueMode(forTuples);
+	}
+
+	@Override
+	protected void transferDone(Connection con) {
+		/* don't leave a copy for the sender */
+		this.deleteMessage(con.getMessage().getId(), false);
+	}
+
+	@Override
+	public ContactGraphRouter replicate() {
+		return new ContactGraphRouter(this);
+	}
+
+	/**
+	 * Resets the cache of earliest arrival tables
+	 */
+	public static void reset() {
+		tableCache = new HashMap<String, EarliestArrivalTable>();
+	}
+}
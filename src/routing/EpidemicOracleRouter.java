@@ -5,8 +5,10 @@
 package routing;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
+import routing.util.DeliveryOracle;
 import core.*;
 
 import static core.Constants.DEBUG;
@@ -17,12 +19,19 @@ import static core.Constants.DEBUG;
  * and that message is then removed from all nodes that use this routing module.
  * This router also <B>ignores message size and all messages are delivered
  * immediately</B>.</P><P>
+ * The oracle's knowledge (which hosts have which messages and which messages
+ * have been delivered) is kept in a single {@link DeliveryOracle} shared by
+ * all the routers, so a delivery only causes work at the hosts that have
+ * the message.</P><P>
  * <B>Note:</B> This router module also bypasses ActiveRouter.update()
  */
 public class EpidemicOracleRouter extends ActiveRouter {
 
-	/** List of all routers in this node group */
+	/** List of all routers using this module, indexed by host address
+	 * (null for hosts that use some other router) */
 	private static List<EpidemicOracleRouter> allRouters;
+	/** The shared knowledge of message holders and delivered messages */
+	private static DeliveryOracle oracle;
 
 	static {
 		DTNSim.registerForReset(EpidemicOracleRouter.class.getCanonicalName());
@@ -44,7 +53,31 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	 */
 	protected EpidemicOracleRouter(EpidemicOracleRouter r) {
 		super(r);
-		allRouters.add(this);
+	}
+
+	@Override
+	public void init(DTNHost host, List<MessageListener> mListeners) {
+		super.init(host, mListeners);
+		int address = host.getAddress();
+		while (allRouters.size() <= address) {
+			allRouters.add(null);
+		}
+		allRouters.set(address, this);
+	}
+
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		super.addToMessages(m, newMessage);
+		oracle.addHolder(m.getId(), getHost().getAddress());
+	}
+
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null) {
+			oracle.removeHolder(id, getHost().getAddress());
+		}
+		return m;
 	}
 
 	@Override
@@ -53,10 +86,11 @@ public class EpidemicOracleRouter extends ActiveRouter {
 
 		if (con.isUp()) {
 			DTNHost peer = con.getOtherNode(getHost());
+			int address = getHost().getAddress();
 			List<Message> newMessages = new ArrayList<Message>();
 
 			for (Message m : peer.getMessageCollection()) {
-				if (!this.hasMessage(m.getId())) {
+				if (!oracle.isHolder(m.getId(), address)) {
 					newMessages.add(m);
 				}
 			}
@@ -114,8 +148,14 @@ public class EpidemicOracleRouter extends ActiveRouter {
 		Message m = super.messageTransferred(id, from);
 
 		if (m.getTo() == this.getHost()) {
-			for (EpidemicOracleRouter r : allRouters) {
-				if (r != this && r != from.getRouter()) {
+			oracle.setDelivered(id);
+			/* only the hosts that have the message need to remove it; also
+			 * the sender, since transferDone() is called only from update() */
+			BitSet holders = oracle.getHolders(id);
+			for (int i = holders.nextSetBit(0); i >= 0;
+					i = holders.nextSetBit(i+1)) {
+				EpidemicOracleRouter r = allRouters.get(i);
+				if (r != this) {
 					r.removeDeliveredMessage(id);
 				}
 			}
@@ -126,23 +166,13 @@ public class EpidemicOracleRouter extends ActiveRouter {
 		return m;
 	}
 
-	protected int checkReceiving(Message m) {
-		if ( isIncomingMessage(m.getId()) || hasMessage(m.getId()) ||
-				isDeliveredMessage(m) ){
-			return DENIED_OLD; // already seen this message -> reject it
-		}
-
-		if (m.getTtl() <= 0 && m.getTo() != getHost()) {
-			/* TTL has expired and this host is not the final recipient */
-			return DENIED_TTL;
-		}
-
-		/* remove oldest messages but not the ones being sent */
-		if (!makeRoomForMessage(m.getSize())) {
-			return DENIED_NO_SPACE; // couldn't fit into buffer -> reject
+	@Override
+	protected int checkReceiving(Message m, DTNHost from) {
+		if (isIncomingMessage(m.getId()) || oracle.isDelivered(m.getId())) {
+			return DENIED_OLD; // already seen or delivered this message
 		}
 
-		return RCV_OK;
+		return super.checkReceiving(m, from);
 	}
 
 	@Override
@@ -174,10 +204,19 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	}
 
 	/**
-	 * Resets the static router list
+	 * Returns the oracle that is shared by all routers of this type
+	 * @return the oracle
+	 */
+	public static DeliveryOracle getOracle() {
+		return oracle;
+	}
+
+	/**
+	 * Resets the static router list and the oracle
 	 */
 	public static void reset() {
 		allRouters = new ArrayList<EpidemicOracleRouter>();
+		oracle = new DeliveryOracle();
 	}
 
 }
@@ -13,6 +13,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import routing.maxprop.MaxPropDijkstra;
 import routing.maxprop.MeetingProbabilitySet;
@@ -51,6 +52,17 @@ public class MaxPropRouter extends ActiveRouter {
 	/** meeting probabilities of all hosts from this host's point of view
 	 * mapped using host's network address */
 	private Map<Integer, MeetingProbabilitySet> allProbs;
+	/** version number of each probability set in {@link #allProbs} */
+	private Map<Integer, Long> probVersions;
+	/** addresses of the probability sets in {@link #allProbs} ordered by
+	 * the version of their latest update (only the latest version of each
+	 * set is kept) */
+	private TreeMap<Long, Integer> probChangeLog;
+	/** version of the latest change in {@link #allProbs} */
+	private long probsVersion;
+	/** the {@link #probsVersion} of each peer at the end of the last
+	 * routing state exchange with it, mapped using peer's network address */
+	private Map<Integer, Long> peerVersions;
 	/** the cost-to-node calculator */
 	private MaxPropDijkstra dijkstra;
 	/** IDs of the messages that are known to have reached the final dst */
@@ -74,6 +86,20 @@ public class MaxPropRouter extends ActiveRouter {
 	 * opportunity"  */
 	private int avgTransferredBytes = 0;
 
+	/** Estimated size (bytes) of a probability set's header in routing state
+	 * exchange: host address and last update time ({@value}) */
+	public static final int PROB_SET_HEADER_BYTES = 4 + 8;
+	/** Estimated size (bytes) of a single meeting probability in routing
+	 * state exchange: host address and probability value ({@value}) */
+	public static final int PROB_ENTRY_BYTES = 4 + 8;
+
+	/** how many routing state exchanges this router has been part of */
+	private int nrofExchanges;
+	/** how many probability sets this router has received in exchanges */
+	private long nrofSetsReceived;
+	/** how many bytes of routing state this router has received */
+	private long bytesReceived;
+
 	/** The alpha parameter string*/
 	public static final String ALPHA_S = "alpha";
 
@@ -114,6 +140,10 @@ public class MaxPropRouter extends ActiveRouter {
 		this.alpha = r.alpha;
 		this.probs = new MeetingProbabilitySet(probSetMaxSize, this.alpha);
 		this.allProbs = new HashMap<Integer, MeetingProbabilitySet>();
+		this.probVersions = new HashMap<Integer, Long>();
+		this.probChangeLog = new TreeMap<Long, Integer>();
+		this.probsVersion = 0;
+		this.peerVersions = new HashMap<Integer, Long>();
 		this.dijkstra = new MaxPropDijkstra(this.allProbs);
 		this.ackedMessageIds = new HashSet<String>();
 		this.avgSamples = new int[BYTES_TRANSFERRED_AVG_SAMPLES];
@@ -148,13 +178,24 @@ public class MaxPropRouter extends ActiveRouter {
 				probs.updateMeetingProbFor(otherHost.getAddress());
 				otherRouter.probs.updateMeetingProbFor(getHost().getAddress());
 
-				/* exchange the transitive probabilities */
-				this.updateTransitiveProbs(otherRouter.allProbs);
-				otherRouter.updateTransitiveProbs(this.allProbs);
-				this.allProbs.put(otherHost.getAddress(),
+				/* exchange the transitive probabilities that have changed
+				 * since the previous exchange between these two hosts */
+				this.updateTransitiveProbs(otherRouter);
+				otherRouter.updateTransitiveProbs(this);
+				this.putProbs(otherHost.getAddress(),
 						otherRouter.probs.replicate());
-				otherRouter.allProbs.put(getHost().getAddress(),
+				otherRouter.putProbs(getHost().getAddress(),
 						this.probs.replicate());
+				this.countReceived(otherRouter.probs);
+				otherRouter.countReceived(this.probs);
+
+				/* both are now up to date with each other's changes */
+				this.peerVersions.put(otherHost.getAddress(),
+						otherRouter.probsVersion);
+				otherRouter.peerVersions.put(getHost().getAddress(),
+						this.probsVersion);
+				this.nrofExchanges++;
+				otherRouter.nrofExchanges++;
 			}
 		}
 		else {
@@ -165,20 +206,84 @@ public class MaxPropRouter extends ActiveRouter {
 
 	/**
 	 * Updates transitive probability values by replacing the current
-	 * MeetingProbabilitySets with the values from the given mapping
-	 * if the given sets have more recent updates.
-	 * @param p Mapping of the values of the other host
+	 * MeetingProbabilitySets with the values from the other router
+	 * if the other router's sets have more recent updates. Only the sets
+	 * that the other router has changed since the previous exchange with this
+	 * router are checked; sets that didn't change were already merged then.
+	 * @param other The router of the other host
 	 */
-	private void updateTransitiveProbs(Map<Integer, MeetingProbabilitySet> p) {
-		for (Map.Entry<Integer, MeetingProbabilitySet> e : p.entrySet()) {
-			MeetingProbabilitySet myMps = this.allProbs.get(e.getKey());
+	private void updateTransitiveProbs(MaxPropRouter other) {
+		Long lastSeen = this.peerVersions.get(other.getHost().getAddress());
+		Map<Long, Integer> changes = (lastSeen == null ? other.probChangeLog :
+			other.probChangeLog.tailMap(lastSeen, false));
+
+		/* copy the changed addresses first; putProbs may modify the log of
+		 * the other router if it is this router */
+		List<Integer> changed = new ArrayList<Integer>(changes.values());
+		for (Integer address : changed) {
+			MeetingProbabilitySet otherMps = other.allProbs.get(address);
+			MeetingProbabilitySet myMps = this.allProbs.get(address);
+			countReceived(otherMps);
 			if (myMps == null ||
-				e.getValue().getLastUpdateTime() > myMps.getLastUpdateTime() ) {
-				this.allProbs.put(e.getKey(), e.getValue().replicate());
+				otherMps.getLastUpdateTime() > myMps.getLastUpdateTime() ) {
+				this.putProbs(address, otherMps.replicate());
 			}
 		}
 	}
 
+	/**
+	 * Stores a probability set for the given host address and marks the set
+	 * changed so that it is offered to peers in the following exchanges.
+	 * @param address Address of the host whose probability set is stored
+	 * @param mps The probability set
+	 */
+	private void putProbs(Integer address, MeetingProbabilitySet mps) {
+		Long oldVersion = this.probVersions.put(address, ++probsVersion);
+		if (oldVersion != null) {
+			this.probChangeLog.remove(oldVersion);
+		}
+		this.probChangeLog.put(probsVersion, address);
+		this.allProbs.put(address, mps);
+	}
+
+	/**
+	 * Updates the routing state exchange counters with a received
+	 * probability set
+	 * @param mps The probability set that was received
+	 */
+	private void countReceived(MeetingProbabilitySet mps) {
+		this.nrofSetsReceived++;
+		this.bytesReceived += PROB_SET_HEADER_BYTES +
+			PROB_ENTRY_BYTES * mps.getAllProbs().size();
+	}
+
+	/**
+	 * Returns how many routing state exchanges this router has been part of
+	 * @return how many routing state exchanges this router has been part of
+	 */
+	public int getNrofExchanges() {
+		return this.nrofExchanges;
+	}
+
+	/**
+	 * Returns how many meeting probability sets this router has received
+	 * from its peers in routing state exchanges
+	 * @return the number of received probability sets
+	 */
+	public long getNrofSetsReceived() {
+		return this.nrofSetsReceived;
+	}
+
+	/**
+	 * Returns the estimated number of bytes of routing state this router has
+	 * received from its peers (see {@link #PROB_SET_HEADER_BYTES} and
+	 * {@link #PROB_ENTRY_BYTES})
+	 * @return the estimated number of received routing state bytes
+	 */
+	public long getRoutingStateBytesReceived() {
+		return this.bytesReceived;
+	}
+
 	/**
 	 * Deletes the messages from the message buffer that are known to be ACKed
 	 */
@@ -314,7 +419,7 @@ public class MaxPropRouter extends ActiveRouter {
 		/* check if the cached values are OK */
 		if (this.costsForMessages == null || lastCostFrom != from) {
 			/* cached costs are invalid -> calculate new costs */
-			this.allProbs.put(getHost().getAddress(), this.probs);
+			this.putProbs(getHost().getAddress(), this.probs);
 			int fromIndex = from.getAddress();
 
 			/* calculate paths only to nodes we have messages to
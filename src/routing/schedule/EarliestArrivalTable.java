@@ -0,0 +1,499 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.schedule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import core.SimError;
+
+/**
+ * <P>Precomputed first hops of the fastest (earliest arrival) paths between
+ * all nodes of a schedule. The fastest paths from a source node are first
+ * searched for start time 0. Each found path stays the fastest one until the
+ * latest start time at which it can still be used, i.e., until one of its
+ * entries can't be caught anymore (paths of entries without a time window
+ * don't depend on the start time and entries with a window take no time).
+ * When the start time passes such a time, the paths of only the nodes whose
+ * paths expired are searched again, starting from the incoming entries of
+ * the nodes whose paths are still valid. This continues until no node can be
+ * reached anymore. For each destination only the breakpoints, i.e., the
+ * searches where the first hop changes, are stored; queries find the
+ * breakpoint with a binary search. The tables of different sources are
+ * computed in parallel. Arrival times are not stored but searched when
+ * asked (see {@link #getArrivalTime(int, int, double)}).</P>
+ * <P><B>Memory use:</B> 8 bytes per breakpoint and 8 bytes per search of
+ * each source. A destination has at most one breakpoint per search, so with
+ * N nodes and T searches per node (at most the number of distinct end times
+ * of the schedule entries) the worst case is 8*N&sup2;*T bytes
+ * (e.g., 640 MB for 200 nodes with 2000 searches each), but usually the
+ * first hop towards a destination stays the same over many searches and only
+ * a fraction of that is needed. During the computation, eight arrays of N
+ * values are needed per computing thread, and the incoming entries of all
+ * nodes are listed once.</P>
+ */
+public class EarliestArrivalTable {
+	/** Value returned as the next hop when there is no route ({@value}) */
+	public static final int NO_ROUTE = -1;
+
+	/** Tables of all source nodes, mapped using the source node */
+	private Map<Integer, SourceTable> tables;
+	/** The schedule (for searching arrival times) */
+	private ScheduleOracle oracle;
+
+	/**
+	 * Constructor. Computes the tables for all the source nodes of the
+	 * given schedule.
+	 * @param oracle The schedule oracle
+	 * @param nrofThreads How many threads to use for the computation
+	 */
+	public EarliestArrivalTable(final ScheduleOracle oracle,
+			int nrofThreads) {
+		final int nrofNodes = oracle.getMaxNodeIndex() + 1;
+		this.oracle = oracle;
+		this.tables = new HashMap<Integer, SourceTable>();
+
+		oracle.sortAll(); /* make the oracle safe for concurrent queries */
+		final List<List<ScheduleEntry>> incoming = getIncoming(oracle,
+				nrofNodes);
+		final double[] maxWindows = getMaxWindows(incoming);
+		ExecutorService pool = Executors.newFixedThreadPool(
+				Math.max(1, nrofThreads));
+		List<Future<SourceTable>> results = new ArrayList<Future<SourceTable>>();
+		List<Integer> sources = new ArrayList<Integer>(oracle.getSources());
+
+		for (final Integer from : sources) {
+			results.add(pool.submit(new Callable<SourceTable>() {
+				public SourceTable call() {
+					return new SourceTable(oracle, incoming, maxWindows, from,
+							nrofNodes);
+				}
+			}));
+		}
+
+		try {
+			for (int i=0, n=sources.size(); i<n; i++) {
+				tables.put(sources.get(i), results.get(i).get());
+			}
+		} catch (InterruptedException e) {
+			throw new SimError("Earliest arrival computation interrupted", e);
+		} catch (ExecutionException e) {
+			throw new SimError("Earliest arrival computation failed: " +
+					e.getCause(), e);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Lists the incoming schedule entries of every node, ordered by the
+	 * entries' start time
+	 * @param oracle The schedule oracle
+	 * @param nrofNodes Number of nodes in the schedule
+	 * @return The entries whose destination is the node, for each node
+	 */
+	private static List<List<ScheduleEntry>> getIncoming(
+			ScheduleOracle oracle, int nrofNodes) {
+		List<List<ScheduleEntry>> incoming =
+			new ArrayList<List<ScheduleEntry>>(nrofNodes);
+		for (int i=0; i<nrofNodes; i++) {
+			incoming.add(new ArrayList<ScheduleEntry>());
+		}
+		for (ScheduleEntry se : oracle.getEntries()) {
+			incoming.get(se.getTo()).add(se);
+		}
+
+		Comparator<ScheduleEntry> byStart = new Comparator<ScheduleEntry>() {
+			public int compare(ScheduleEntry s1, ScheduleEntry s2) {
+				return Double.compare(s1.getTime(), s2.getTime());
+			}
+		};
+		for (List<ScheduleEntry> list : incoming) {
+			Collections.sort(list, byStart);
+		}
+		return incoming;
+	}
+
+	/**
+	 * Returns the length of the longest time window of the incoming entries
+	 * of every node
+	 * @param incoming The incoming entries of each node
+	 * @return The longest window of each node (0 if no windows)
+	 */
+	private static double[] getMaxWindows(List<List<ScheduleEntry>> incoming) {
+		double[] maxWindows = new double[incoming.size()];
+		for (int i=0; i<maxWindows.length; i++) {
+			for (ScheduleEntry se : incoming.get(i)) {
+				maxWindows[i] = Math.max(maxWindows[i],
+						se.getEndTime() - se.getTime());
+			}
+		}
+		return maxWindows;
+	}
+
+	/**
+	 * Returns the first hop of the fastest path between two nodes
+	 * @param from The source node
+	 * @param to The destination node
+	 * @param time The time when the path starts
+	 * @return The next hop or {@link #NO_ROUTE} if the destination can't be
+	 * reached from the source after the given time
+	 */
+	public int getNextHop(int from, int to, double time) {
+		SourceTable st = tables.get(from);
+		int index = (st == null ? -1 : st.indexFor(time));
+		if (index < 0 || to < 0 || to >= st.breakpoints.length) {
+			return NO_ROUTE;
+		}
+		return st.getFirstHop(to, index);
+	}
+
+	/**
+	 * Returns the earliest arrival time between two nodes. The arrival times
+	 * are not stored in the table, so this method searches the fastest paths
+	 * from the source (in the calling thread).
+	 * @param from The source node
+	 * @param to The destination node
+	 * @param time The time when the path starts
+	 * @return The earliest arrival time or Double.MAX_VALUE if the
+	 * destination can't be reached from the source after the given time
+	 */
+	public double getArrivalTime(int from, int to, double time) {
+		SourceTable st = tables.get(from);
+		int index = (st == null ? -1 : st.indexFor(time));
+		if (index < 0 || to < 0 || to >= st.breakpoints.length ||
+				st.getFirstHop(to, index) == NO_ROUTE) {
+			return Double.MAX_VALUE;
+		}
+
+		int nrofNodes = st.breakpoints.length;
+		double[] arrivals = new double[nrofNodes];
+		new ScheduleDijkstra(oracle).getEarliestArrivals(from, time,
+				arrivals, new int[nrofNodes]);
+		return arrivals[to];
+	}
+
+	/**
+	 * The earliest arrival tables of a single source node
+	 */
+	private static class SourceTable {
+		/** Start times of the searches in ascending order; the results of a
+		 * search are valid until the start time of the next one */
+		private double[] startTimes;
+		/** Breakpoints of each destination: indexes of the searches where
+		 * the first hop changes, ascending */
+		private int[][] breakpoints;
+		/** First hops to each destination at the breakpoints */
+		private int[][] firstHops;
+
+		/* state of the search (only during the computation) */
+		private ScheduleOracle oracle;
+		private List<List<ScheduleEntry>> incoming;
+		private double[] maxWindows;
+		private int source;
+		/** is the node reachable with the current start time */
+		private boolean[] reachable;
+		/** is the node's path being searched again */
+		private boolean[] searched;
+		/** arrival time at the node, or the time of the path's last entry
+		 * with a window if the arrival time is the start time of the path
+		 * (see {@link #startDependent}) */
+		private double[] arrivals;
+		/** is the arrival time at the node the start time of the path when
+		 * the start time is later than {@link #arrivals} */
+		private boolean[] startDependent;
+		/** latest start time at which the node's path can be used */
+		private double[] latestStarts;
+		/** first hop of the node's path */
+		private int[] hops;
+		/** best arrival time found so far for the searched nodes */
+		private double[] best;
+
+		/**
+		 * Computes the tables of a source node
+		 * @param oracle The schedule oracle
+		 * @param incoming The incoming entries of each node, by start time
+		 * @param maxWindows The longest window of each node's incoming
+		 * entries
+		 * @param from The source node
+		 * @param nrofNodes Number of nodes in the schedule
+		 */
+		public SourceTable(ScheduleOracle oracle,
+				List<List<ScheduleEntry>> incoming, double[] maxWindows,
+				int from, int nrofNodes) {
+			this.oracle = oracle;
+			this.incoming = incoming;
+			this.maxWindows = maxWindows;
+			this.source = from;
+			this.startTimes = new double[4];
+			this.breakpoints = new int[nrofNodes][];
+			this.firstHops = new int[nrofNodes][];
+			this.reachable = new boolean[nrofNodes];
+			this.searched = new boolean[nrofNodes];
+			this.arrivals = new double[nrofNodes];
+			this.startDependent = new boolean[nrofNodes];
+			this.latestStarts = new double[nrofNodes];
+			this.hops = new int[nrofNodes];
+			this.best = new double[nrofNodes];
+			int[] counts = new int[nrofNodes];
+			int nrofSearches = 0;
+
+			reachable[from] = true;
+			startDependent[from] = true;
+			arrivals[from] = Double.NEGATIVE_INFINITY;
+			latestStarts[from] = Double.MAX_VALUE;
+			hops[from] = NO_ROUTE;
+			List<Integer> expired = new ArrayList<Integer>();
+			for (int i=0; i<nrofNodes; i++) {
+				if (i != from) {
+					expired.add(i);
+				}
+			}
+
+			double time = 0;
+			while (true) {
+				search(expired, time);
+				if (nrofSearches == startTimes.length) {
+					startTimes = Arrays.copyOf(startTimes, nrofSearches * 2);
+				}
+				startTimes[nrofSearches] = time;
+
+				for (int to : expired) {
+					int n = counts[to];
+					if (n > 0 && hops[to] == firstHops[to][n-1]) {
+						continue; /* same first hop as in the last search */
+					}
+					if (n == 0) {
+						breakpoints[to] = new int[4];
+						firstHops[to] = new int[4];
+					} else if (n == breakpoints[to].length) {
+						breakpoints[to] = Arrays.copyOf(breakpoints[to], n * 2);
+						firstHops[to] = Arrays.copyOf(firstHops[to], n * 2);
+					}
+					breakpoints[to][n] = nrofSearches;
+					firstHops[to][n] = hops[to];
+					counts[to]++;
+				}
+				nrofSearches++;
+
+				double validUntil = Double.MAX_VALUE;
+				for (int to=0; to<nrofNodes; to++) {
+					if (to != from && reachable[to]) {
+						validUntil = Math.min(validUntil, latestStarts[to]);
+					}
+				}
+				if (validUntil == Double.MAX_VALUE) {
+					break; /* no reachable nodes left */
+				}
+
+				time = Math.nextUp(validUntil);
+				expired.clear();
+				for (int to=0; to<nrofNodes; to++) {
+					if (to != from && reachable[to] &&
+							latestStarts[to] < time) {
+						expired.add(to);
+					}
+				}
+			}
+
+			startTimes = Arrays.copyOf(startTimes, nrofSearches);
+			for (int to=0; to<nrofNodes; to++) {
+				if (to == from) {
+					breakpoints[to] = new int[] {0};
+					firstHops[to] = new int[] {NO_ROUTE};
+				} else {
+					breakpoints[to] = Arrays.copyOf(breakpoints[to], counts[to]);
+					firstHops[to] = Arrays.copyOf(firstHops[to], counts[to]);
+				}
+			}
+
+			/* free the search state */
+			this.oracle = null;
+			this.incoming = null;
+			this.maxWindows = null;
+			this.reachable = this.searched = this.startDependent = null;
+			this.arrivals = this.latestStarts = this.best = null;
+			this.hops = null;
+		}
+
+		/**
+		 * Searches the fastest paths of the expired nodes. The paths of the
+		 * other reachable nodes are still the fastest ones at the given time.
+		 * @param expired The nodes whose paths are searched
+		 * @param time Start time of the paths
+		 */
+		private void search(List<Integer> expired, double time) {
+			PriorityQueue<NodeTime> queue = new PriorityQueue<NodeTime>();
+
+			for (int node : expired) {
+				searched[node] = true;
+				reachable[node] = false;
+				best[node] = Double.MAX_VALUE;
+				hops[node] = NO_ROUTE;
+				latestStarts[node] = Double.MAX_VALUE;
+			}
+
+			/* continue from the nodes whose paths are still valid */
+			for (int node : expired) {
+				List<ScheduleEntry> in = incoming.get(node);
+				for (int i = firstStartingAfter(in, time - maxWindows[node]);
+						i < in.size(); i++) {
+					ScheduleEntry se = in.get(i);
+					if (se.getTime() >= best[node]) {
+						break; /* the rest can't lead to an earlier arrival */
+					}
+					if (reachable[se.getFrom()]) {
+						relax(se, time, queue);
+					}
+				}
+			}
+
+			NodeTime next;
+			while ((next = queue.poll()) != null) {
+				int node = next.node;
+				if (!searched[node] || next.time > best[node]) {
+					continue; /* already visited or an outdated entry */
+				}
+				searched[node] = false;
+				reachable[node] = true;
+
+				for (ScheduleEntry se : oracle.getConnected(node,
+						getArrival(node, time))) {
+					if (searched[se.getTo()]) {
+						relax(se, time, queue);
+					}
+				}
+			}
+
+			for (int node : expired) {
+				searched[node] = false; /* not reachable anymore */
+			}
+		}
+
+		/**
+		 * Updates the path of an entry's destination if the entry leads to
+		 * an earlier arrival than the best one found so far
+		 * @param se The entry (whose source has a valid path)
+		 * @param time Start time of the paths
+		 * @param queue Queue of the nodes to visit
+		 */
+		private void relax(ScheduleEntry se, double time,
+				PriorityQueue<NodeTime> queue) {
+			int from = se.getFrom();
+			int to = se.getTo();
+			double atFrom = getArrival(from, time);
+			if (se.getEndTime() < atFrom) {
+				return; /* can't catch the entry anymore */
+			}
+
+			double arrival = Math.max(atFrom, se.getTime()) +
+				se.getDuration();
+			if (arrival >= best[to]) {
+				return;
+			}
+
+			best[to] = arrival;
+			hops[to] = (from == source ? to : hops[from]);
+			latestStarts[to] = latestStarts[from];
+			if (startDependent[from]) { /* must be in time for the entry */
+				latestStarts[to] = Math.min(latestStarts[to],
+						se.getEndTime());
+			}
+			startDependent[to] = startDependent[from] && se.isWindow();
+			arrivals[to] = (startDependent[to] ?
+					Math.max(arrivals[from], se.getTime()) : arrival);
+			queue.add(new NodeTime(to, arrival));
+		}
+
+		/**
+		 * Returns the arrival time at a reachable node
+		 * @param node The node
+		 * @param time Start time of the path
+		 * @return The arrival time
+		 */
+		private double getArrival(int node, double time) {
+			return (startDependent[node] ?
+					Math.max(time, arrivals[node]) : arrivals[node]);
+		}
+
+		/**
+		 * Returns the index of the first entry that starts at or after the
+		 * given time
+		 * @param entries The entries sorted by their start time
+		 * @param time The time
+		 * @return Index of the entry or the size of the list if all entries
+		 * start before the time
+		 */
+		private static int firstStartingAfter(List<ScheduleEntry> entries,
+				double time) {
+			int low = 0;
+			int high = entries.size();
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (entries.get(mid).getTime() < time) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * Returns the index of the search whose results are valid at the
+		 * given time
+		 * @param time The time
+		 * @return Index of the search or -1 if the time is before the first
+		 * search
+		 */
+		public int indexFor(double time) {
+			int index = Arrays.binarySearch(startTimes, time);
+			if (index < 0) {
+				index = -index - 2; /* the last search before the time */
+			}
+			return index;
+		}
+
+		/**
+		 * Returns the first hop towards a destination
+		 * @param to The destination
+		 * @param index Index of the search (see {@link #indexFor(double)})
+		 * @return The first hop or {@link #NO_ROUTE}
+		 */
+		public int getFirstHop(int to, int index) {
+			/* the last breakpoint at or before the search index */
+			int bp = Arrays.binarySearch(breakpoints[to], index);
+			return firstHops[to][bp >= 0 ? bp : -bp - 2];
+		}
+	}
+
+	/**
+	 * A node and the time one could be at that node, ordered by the time
+	 */
+	private static class NodeTime implements Comparable<NodeTime> {
+		private int node;
+		private double time;
+
+		public NodeTime(int node, double time) {
+			this.node = node;
+			this.time = time;
+		}
+
+		public int compareTo(NodeTime other) {
+			return Double.compare(this.time, other.time);
+		}
+	}
+}
@@ -6,7 +6,7 @@
 package routing.schedule;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -16,7 +16,14 @@ import java.util.Queue;
 import java.util.Set;
 
 /**
- * Dijkstra's shortest path implementation for schedule data
+ * Dijkstra's shortest path implementation for schedule data. The search
+ * finds the earliest arrival at the destination. Schedule entries are
+ * scanned in their start time order and a node's scan stops at the first
+ * entry that starts after the earliest known arrival time at the
+ * destination, since no such entry can lead to an earlier arrival. Entries
+ * with a time window (contacts) can be used from the arrival time at the
+ * node if the window is open at that time, and from the start of the window
+ * otherwise.
  */
 /* TODO: combine this with movement.map.DijkstraPathFinder? */
 public class ScheduleDijkstra {
@@ -29,8 +36,12 @@ public class ScheduleDijkstra {
 	private TimeMap times;
 	/** Set of already visited nodes (where the shortest path is known) */
 	private Set<Integer> visited;
-	/** Priority queue of unvisited nodes discovered so far */
-	private Queue<Integer> unvisited;
+	/** Priority queue of unvisited nodes discovered so far; a node may be
+	 * in the queue many times, of which only the earliest time is valid */
+	private Queue<NodeTime> unvisited;
+	/** Destination of the current search (null if searching paths to all
+	 * nodes) */
+	private Integer target;
 	/** Map of previous schedule on the shortest path(s) */
 	private Map<Integer, ScheduleEntry> prevHops;
 	/** Oracle that know all schedules */
@@ -51,14 +62,13 @@ public class ScheduleDijkstra {
 	 * @param time The time when the path starts
 	 */
 	private void initWith(Integer node, double time) {
-		this.unvisited = new PriorityQueue<Integer>(PQ_INIT_SIZE,
-				new DurationComparator());
+		this.unvisited = new PriorityQueue<NodeTime>(PQ_INIT_SIZE);
 		this.visited = new HashSet<Integer>();
 		this.prevHops = new HashMap<Integer, ScheduleEntry>();
 		this.times = new TimeMap();
 
 		this.times.put(node, time);
-		this.unvisited.add(node);
+		this.unvisited.add(new NodeTime(node, time));
 	}
 
 	/**
@@ -79,15 +89,22 @@ public class ScheduleDijkstra {
 		}
 
 		initWith(from, time);
+		this.target = to;
 		Integer node = null;
+		NodeTime next;
 
-		while ((node = unvisited.poll()) != null) {
+		while ((next = unvisited.poll()) != null) {
+			node = next.node;
+			if (!visited.add(node)) {
+				node = null;
+				continue; // outdated queue entry of an already visited node
+			}
 			if (node.equals(to)) {
 				break;
 			}
 
-			visited.add(node);
 			relax(node);
+			node = null;
 		}
 
 		if (node != null) { // found a path
@@ -103,22 +120,67 @@ public class ScheduleDijkstra {
 		return path;
 	}
 
+	/**
+	 * Finds the earliest arrival times from a source node to all the nodes
+	 * reachable from it, and the first hop of the fastest path to each node.
+	 * Nodes are used as indexes of the result arrays so the arrays must be
+	 * large enough for all nodes in the schedule.
+	 * @param from The source of the paths
+	 * @param time The time when the paths start
+	 * @param arrivals Array where the earliest arrival time to each node is
+	 * stored (Double.MAX_VALUE for nodes that can't be reached and the start
+	 * time for the source)
+	 * @param firstHops Array where the first hop towards each node is stored
+	 * (-1 for the source and the nodes that can't be reached)
+	 */
+	public void getEarliestArrivals(Integer from, double time,
+			double[] arrivals, int[] firstHops) {
+		assert time >= 0.0 : "Can't use negative start time";
+		Arrays.fill(arrivals, INFINITY);
+		Arrays.fill(firstHops, -1);
+
+		initWith(from, time);
+		this.target = null;
+		NodeTime next;
+
+		while ((next = unvisited.poll()) != null) {
+			Integer node = next.node;
+			if (!visited.add(node)) {
+				continue; // outdated queue entry of an already visited node
+			}
+
+			arrivals[node] = next.time;
+			if (!node.equals(from)) {
+				/* previous hop is visited (and its first hop known) already */
+				int prev = prevHops.get(node).getFrom();
+				firstHops[node] = (prev == from ? node : firstHops[prev]);
+			}
+
+			relax(node);
+		}
+	}
+
 	/**
 	 * Relaxes the neighbors of a node (updates the shortest distances).
 	 * @param node The node whose neighbors are relaxed
 	 */
 	private void relax(Integer node) {
 		double timeNow = times.get(node);
+		double bound = (target == null ? INFINITY : times.get(target));
 		int to;
 		double timeTo;
 
 		for (ScheduleEntry se : oracle.getConnected(node, timeNow)) {
+			if (se.getTime() >= bound) {
+				break; // the rest start too late to improve the arrival
+			}
 			to = se.getTo();
 			if (visited.contains(to)) {
 				continue; // skip visited nodes
 			}
 
-			timeTo = se.getTime() +  se.getDuration();
+			/* windows that are open already can be used right away */
+			timeTo = Math.max(timeNow, se.getTime()) + se.getDuration();
 
 			if (timeTo < times.get(to)) {
 				prevHops.put(to, se);
@@ -133,34 +195,29 @@ public class ScheduleDijkstra {
 	 * @param time The time when at given node
 	 */
 	private void setTime(Integer n, double time) {
-		unvisited.remove(n);
 		times.put(n, time);
-		unvisited.add(n);
+		unvisited.add(new NodeTime(n, time));
 	}
 
 	/**
-	 * Comparator that compares two nodes by their journey duration
+	 * A node and the time one could be at that node, ordered by the time
 	 */
-	private class DurationComparator implements Comparator<Integer> {
+	private static class NodeTime implements Comparable<NodeTime> {
+		private Integer node;
+		private double time;
+
+		public NodeTime(Integer node, double time) {
+			this.node = node;
+			this.time = time;
+		}
 
 		/**
-		 * Compares two nodes by their time to get there
-		 * @return -1, 0 or 1 if node1's time is smaller, equal to, or
-		 * bigger than node2's
+		 * Compares two node-time pairs by their time to get there
+		 * @return -1, 0 or 1 if this time is smaller, equal to, or
+		 * bigger than the other's
 		 */
-		public int compare(Integer node1, Integer node2) {
-			double time1 = times.get(node1);
-			double time2 = times.get(node2);
-
-			if (time1 > time2) {
-				return 1;
-			}
-			else if (time1 < time2) {
-				return -1;
-			}
-			else {
-				return 0;
-			}
+		public int compareTo(NodeTime other) {
+			return Double.compare(this.time, other.time);
 		}
 	}
 
@@ -10,6 +10,7 @@ public class ScheduleEntry implements Serializable {
 	private static final long serialVersionUID = 42L;
 
 	private double time;
+	private double endTime;
 	private int from;
 	private int to;
 	private int via;
@@ -28,6 +29,7 @@ public class ScheduleEntry implements Serializable {
 	public ScheduleEntry(double time, int from, int via, int to,
 			double duration) {
 		this.time = time;
+		this.endTime = time;
 		this.from = from;
 		this.via = via;
 		this.to = to;
@@ -36,6 +38,20 @@ public class ScheduleEntry implements Serializable {
 		this.usageCount = 0;
 	}
 
+	/**
+	 * Constructor of a new schedule entry that can be used at any time
+	 * between its start and end time (e.g. a contact between two nodes).
+	 * Such entries take no time.
+	 * @param start When the entry can be used first
+	 * @param end When the entry can be used last
+	 * @param from The source
+	 * @param to The destination
+	 */
+	public ScheduleEntry(double start, double end, int from, int to) {
+		this(start, from, -1, to, 0);
+		this.endTime = end;
+	}
+
 	/**
 	 * Returns time + delta
 	 * @return the time
@@ -44,6 +60,25 @@ public class ScheduleEntry implements Serializable {
 		return time + delta;
 	}
 
+	/**
+	 * Returns the last time the entry can be used (plus delta). For entries
+	 * that are not usable over a time window this is the same as
+	 * {@link #getTime()}.
+	 * @return the end time
+	 */
+	public double getEndTime() {
+		return endTime + delta;
+	}
+
+	/**
+	 * Returns true if the entry can be used over a time window, i.e., its
+	 * end time is after its start time
+	 * @return true for entries with a time window
+	 */
+	public boolean isWindow() {
+		return endTime > time;
+	}
+
 	/**
 	 * @return the destination
 	 */
@@ -104,7 +139,8 @@ public class ScheduleEntry implements Serializable {
 
 	@Override
 	public String toString() {
-		return time + "(+" + delta + "): " + from + "->"
+		return time + (isWindow() ? "-" + endTime : "") + "(+" + delta +
+				"): " + from + "->"
 				+ (via > 0 ? via + "->" : "") + to + " (" + duration + ")";
 	}
 
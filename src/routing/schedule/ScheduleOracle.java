@@ -6,17 +6,35 @@ package routing.schedule;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+/**
+ * Oracle that knows the schedules of all nodes. The schedule entries of
+ * each source node are kept sorted by their start time so that the entries
+ * reachable after a certain time can be found with a binary search. Entries
+ * that can be used over a time window (contacts) are found by searching
+ * back from the time by the length of the source's longest window.
+ */
 public class ScheduleOracle implements Serializable{
 	private static final long serialVersionUID = 42L;
 
 	Map<Integer, List<ScheduleEntry>> schedules;
+	/** Source nodes whose schedule lists need sorting before use */
+	private Set<Integer> unsorted;
+	/** Length of the longest time window of each source's entries (only
+	 * for the sources that have entries with a window) */
+	private Map<Integer, Double> maxWindows;
 
 	public ScheduleOracle() {
 		this.schedules = new HashMap<Integer, List<ScheduleEntry>>();
+		this.unsorted = new HashSet<Integer>();
+		this.maxWindows = new HashMap<Integer, Double>();
 	}
 
 	/**
@@ -29,6 +47,32 @@ public class ScheduleOracle implements Serializable{
 	 */
 	public void addEntry(double start, int from, int via, int to,
 			double duration) {
+		addEntry(new ScheduleEntry(start, from, via, to, duration));
+	}
+
+	/**
+	 * Adds a new schedule entry that can be used at any time between its
+	 * start and end time and takes no time, e.g., a contact between two
+	 * nodes (in one direction)
+	 * @param start Start time of the contact
+	 * @param end End time of the contact
+	 * @param from Source of the connection
+	 * @param to Destination of the connection
+	 */
+	public void addContact(double start, double end, int from, int to) {
+		addEntry(new ScheduleEntry(start, end, from, to));
+		Double max = maxWindows.get(from);
+		if (max == null || max < end - start) {
+			maxWindows.put(from, end - start);
+		}
+	}
+
+	/**
+	 * Adds a schedule entry to the list of its source
+	 * @param se The entry to add
+	 */
+	private void addEntry(ScheduleEntry se) {
+		int from = se.getFrom();
 		List<ScheduleEntry> list = schedules.get(from);
 
 		if (list == null) { /* first entry for the from */
@@ -36,7 +80,11 @@ public class ScheduleOracle implements Serializable{
 			schedules.put(from, list);
 		}
 
-		list.add(new ScheduleEntry(start, from, via, to, duration));
+		if (list.size() > 0 &&
+				list.get(list.size() - 1).getTime() > se.getTime()) {
+			unsorted.add(from); /* not appended in time order */
+		}
+		list.add(se);
 	}
 
 	/**
@@ -52,26 +100,124 @@ public class ScheduleOracle implements Serializable{
 
 	/**
 	 * Returns a list of schedule entries for nodes reachable after given time
-	 * from the given node
+	 * from the given node, i.e., the entries that start at or after the time
+	 * and the entries whose time window is open at the time. The entries are
+	 * ordered by their start time and the returned list is read-only.
 	 * @param from The source node
 	 * @param time Time to start
 	 * @return List of reachable nodes
 	 */
 	public List<ScheduleEntry> getConnected(int from, double time) {
+		List<ScheduleEntry> all = getSorted(from);
+
+		if (all == null) {
+			return Collections.emptyList();
+		}
+
+		int first = firstIndexAfter(all, time);
+		Double maxWindow = maxWindows.get(from);
+		if (maxWindow == null) { /* no windows, a view is enough */
+			return Collections.unmodifiableList(
+					all.subList(first, all.size()));
+		}
+
 		List<ScheduleEntry> connected = new ArrayList<ScheduleEntry>();
+		for (int i = firstIndexAfter(all, time - maxWindow); i < first; i++) {
+			if (all.get(i).getEndTime() >= time) { /* window still open */
+				connected.add(all.get(i));
+			}
+		}
+		connected.addAll(all.subList(first, all.size()));
+		return Collections.unmodifiableList(connected);
+	}
+
+	/**
+	 * Returns the nodes that have at least one schedule entry as the source
+	 * @return The source nodes
+	 */
+	public Set<Integer> getSources() {
+		return Collections.unmodifiableSet(schedules.keySet());
+	}
+
+	/**
+	 * Returns the largest node index that appears in the schedules as a source
+	 * or a destination
+	 * @return The largest node index or -1 if there are no schedule entries
+	 */
+	public int getMaxNodeIndex() {
+		int max = -1;
+		for (List<ScheduleEntry> list : schedules.values()) {
+			for (ScheduleEntry se : list) {
+				max = Math.max(max, Math.max(se.getFrom(), se.getTo()));
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Sorts the schedules of all nodes. After this, and as long as no entries
+	 * are added or changed, the oracle can be queried from many threads
+	 * concurrently.
+	 */
+	public void sortAll() {
+		for (Integer from : schedules.keySet()) {
+			getSorted(from);
+		}
+	}
+
+	/**
+	 * Marks the schedule of the given node to be re-sorted. Must be called if
+	 * the start time of any of the node's entries is changed (e.g. using
+	 * {@link ScheduleEntry#setDelta(double)}) after it was added.
+	 * @param from The source node whose entries' times were changed
+	 */
+	public void timesChanged(int from) {
+		unsorted.add(from);
+	}
+
+	/**
+	 * Returns the schedule entries of a source node sorted by start time
+	 * @param from The source node
+	 * @return The sorted entries or null if the node has no entries
+	 */
+	private List<ScheduleEntry> getSorted(int from) {
 		List<ScheduleEntry> all = schedules.get(from);
 
-		if (all == null) {
-			return connected;
+		if (all != null && unsorted.remove(from)) {
+			/* stable sort keeps the insertion order of simultaneous entries */
+			Collections.sort(all, new Comparator<ScheduleEntry>() {
+				public int compare(ScheduleEntry s1, ScheduleEntry s2) {
+					return Double.compare(s1.getTime(), s2.getTime());
+				}
+			});
 		}
 
-		for (ScheduleEntry s : all) {
-			if (s.getTime() >= time) {
-				connected.add(s);
+		return all;
+	}
+
+	/**
+	 * Returns the index of the first entry in a time-sorted list that starts
+	 * at or after the given time
+	 * @param sorted The list sorted by entries' start time
+	 * @param time The time
+	 * @return Index of the first entry that starts at or after the time, or
+	 * the size of the list if there is no such entry
+	 */
+	private static int firstIndexAfter(List<ScheduleEntry> sorted,
+			double time) {
+		int low = 0;
+		int high = sorted.size();
+
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sorted.get(mid).getTime() < time) {
+				low = mid + 1;
+			} else {
+				high = mid;
 			}
 		}
 
-		return connected;
+		return low;
 	}
 
 	/**
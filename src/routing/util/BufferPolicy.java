@@ -0,0 +1,193 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * <P>Superclass of message buffer management policies, i.e., policies that
+ * decide which message is dropped first when the message buffer of a router
+ * is full. A policy is taken into use for a node group by setting the
+ * {@link #BUFFER_POLICY_S} setting to the name of a policy class of this
+ * package, e.g. <CODE>Group1.bufferPolicy = DropLargestPolicy</CODE>.</P>
+ * <P>Each router has its own policy instance that is informed about the
+ * messages added to and removed from the buffer. The policy keeps the
+ * messages ordered by their drop priority, so adding, removing and finding
+ * the next message to drop take logarithmic time. Routers that define their
+ * own message dropping order (e.g. MaxProp) don't use the policy.</P>
+ */
+public abstract class BufferPolicy {
+	/** Buffer policy -setting id ({@value}). Name of the policy class in
+	 * the routing.util package. Default is no policy, i.e., the router's
+	 * own ordering is used. */
+	public static final String BUFFER_POLICY_S = "bufferPolicy";
+
+	/** package where to look for the policy classes */
+	private static final String POLICY_PACKAGE = "routing.util.";
+
+	/** the buffered messages ordered by the drop priority */
+	private TreeSet<Entry> queue;
+	/** the entries of the buffered messages, mapped using message ID */
+	private Map<String, Entry> entries;
+	/** sequence number of the next added entry (for breaking ties) */
+	private long nextSeq;
+
+	/**
+	 * Creates a new buffer policy prototype based on the settings. The
+	 * policy class is read from the {@link #BUFFER_POLICY_S} setting.
+	 * @param s The settings object (e.g. the group's settings)
+	 * @return A new policy prototype or null if no policy is defined
+	 */
+	public static BufferPolicy createPolicy(Settings s) {
+		if (!s.contains(BUFFER_POLICY_S)) {
+			return null;
+		}
+		return (BufferPolicy)s.createIntializedObject(POLICY_PACKAGE +
+				s.getSetting(BUFFER_POLICY_S));
+	}
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public BufferPolicy(Settings s) {
+		init();
+	}
+
+	/**
+	 * Copy constructor. The new policy has no messages.
+	 * @param proto The policy prototype where setting values are copied from
+	 */
+	protected BufferPolicy(BufferPolicy proto) {
+		init();
+	}
+
+	/**
+	 * Initializes the (empty) priority structures
+	 */
+	private void init() {
+		this.queue = new TreeSet<Entry>();
+		this.entries = new HashMap<String, Entry>();
+		this.nextSeq = 0;
+	}
+
+	/**
+	 * Returns the drop priority of a message. The message with the smallest
+	 * value is dropped first; messages with the same value are dropped in
+	 * the order they were added to the buffer. The value of a message must not
+	 * change while the message is buffered unless the change is announced
+	 * with {@link #priorityChanged(Message)}.
+	 * @param m The message
+	 * @return The drop priority of the message
+	 */
+	protected abstract double getDropPriority(Message m);
+
+	/**
+	 * Returns a new policy instance for a router, based on this prototype
+	 * @return A new policy instance
+	 */
+	public abstract BufferPolicy replicate();
+
+	/**
+	 * Informs the policy that a message was added to the buffer
+	 * @param m The message
+	 */
+	public void messageAdded(Message m) {
+		messageRemoved(m.getId()); /* replaces an old entry (if any) */
+		Entry e = new Entry(m, getDropPriority(m), nextSeq++);
+		entries.put(m.getId(), e);
+		queue.add(e);
+	}
+
+	/**
+	 * Informs the policy that a message was removed from the buffer
+	 * @param id ID of the message
+	 */
+	public void messageRemoved(String id) {
+		Entry e = entries.remove(id);
+		if (e != null) {
+			queue.remove(e);
+		}
+	}
+
+	/**
+	 * Informs the policy that a buffered message was forwarded to another
+	 * host. Does nothing by default; policies that depend on forwarding
+	 * should override this.
+	 * @param m The message
+	 */
+	public void messageForwarded(Message m) { }
+
+	/**
+	 * Re-orders a buffered message whose drop priority has changed
+	 * @param m The message
+	 */
+	protected void priorityChanged(Message m) {
+		Entry e = entries.get(m.getId());
+		if (e == null) {
+			return;
+		}
+		queue.remove(e);
+		e.priority = getDropPriority(e.msg); /* m may be a copy */
+		queue.add(e);
+	}
+
+	/**
+	 * Returns the message that should be dropped next
+	 * @param excludedIds IDs of the messages that must not be returned
+	 * (e.g. messages that are being sent), or null to not exclude any
+	 * @return The message to drop or null if there are no (not excluded)
+	 * messages
+	 */
+	public Message getNextToRemove(Collection<String> excludedIds) {
+		for (Entry e : queue) {
+			if (excludedIds == null || !excludedIds.contains(e.msg.getId())) {
+				return e.msg;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number of messages the policy knows
+	 * @return the number of messages the policy knows
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * A buffered message with its drop priority
+	 */
+	private static class Entry implements Comparable<Entry> {
+		private Message msg;
+		private double priority;
+		private long seq;
+
+		public Entry(Message msg, double priority, long seq) {
+			this.msg = msg;
+			this.priority = priority;
+			this.seq = seq;
+		}
+
+		/**
+		 * Compares entries by priority and then by sequence number
+		 */
+		public int compareTo(Entry other) {
+			int cmp = Double.compare(this.priority, other.priority);
+			if (cmp == 0) {
+				cmp = (this.seq < other.seq ? -1 :
+					(this.seq == other.seq ? 0 : 1));
+			}
+			return cmp;
+		}
+	}
+}
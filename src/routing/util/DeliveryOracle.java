@@ -0,0 +1,115 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Global knowledge of the message buffers for oracle based routers. For
+ * every message in some buffer, the oracle knows the addresses of the hosts
+ * that have the message; and it knows all the messages that have been
+ * delivered to their final recipient. A single oracle is shared by all the
+ * routers that use it, so removing a delivered message from all the buffers
+ * requires work only for the hosts that actually have the message.
+ */
+public class DeliveryOracle {
+	/** addresses of the hosts that have a message, mapped using message ID */
+	private Map<String, BitSet> holders;
+	/** IDs of the messages that have reached their final recipient */
+	private Set<String> delivered;
+
+	/**
+	 * Constructor. Creates an oracle that knows no messages.
+	 */
+	public DeliveryOracle() {
+		this.holders = new HashMap<String, BitSet>();
+		this.delivered = new HashSet<String>();
+	}
+
+	/**
+	 * Records that a host has a message in its buffer
+	 * @param id ID of the message
+	 * @param address Address of the host
+	 */
+	public void addHolder(String id, int address) {
+		BitSet hs = this.holders.get(id);
+		if (hs == null) {
+			hs = new BitSet();
+			this.holders.put(id, hs);
+		}
+		hs.set(address);
+	}
+
+	/**
+	 * Records that a host no longer has a message in its buffer
+	 * @param id ID of the message
+	 * @param address Address of the host
+	 */
+	public void removeHolder(String id, int address) {
+		BitSet hs = this.holders.get(id);
+		if (hs == null) {
+			return;
+		}
+		hs.clear(address);
+		if (hs.isEmpty()) {
+			this.holders.remove(id);
+		}
+	}
+
+	/**
+	 * Returns true if the host with the given address has the message
+	 * @param id ID of the message
+	 * @param address Address of the host
+	 * @return true if the host has the message, false if not
+	 */
+	public boolean isHolder(String id, int address) {
+		BitSet hs = this.holders.get(id);
+		return hs != null && hs.get(address);
+	}
+
+	/**
+	 * Returns a copy of the set of addresses of the hosts that have the
+	 * message in their buffer. The copy can be iterated while hosts are
+	 * removed from the oracle.
+	 * @param id ID of the message
+	 * @return The addresses of the hosts as a bit set (empty if no host
+	 * has the message)
+	 */
+	public BitSet getHolders(String id) {
+		BitSet hs = this.holders.get(id);
+		return (hs == null ? new BitSet() : (BitSet)hs.clone());
+	}
+
+	/**
+	 * Returns the number of hosts that have the message in their buffer
+	 * @param id ID of the message
+	 * @return the number of hosts that have the message
+	 */
+	public int getNrofHolders(String id) {
+		BitSet hs = this.holders.get(id);
+		return (hs == null ? 0 : hs.cardinality());
+	}
+
+	/**
+	 * Records that a message has been delivered to its final recipient
+	 * @param id ID of the message
+	 */
+	public void setDelivered(String id) {
+		this.delivered.add(id);
+	}
+
+	/**
+	 * Returns true if the message has been delivered to its final recipient
+	 * @param id ID of the message
+	 * @return true if the message has been delivered, false if not
+	 */
+	public boolean isDelivered(String id) {
+		return this.delivered.contains(id);
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Buffer policy that drops the largest message first. Messages of equal
+ * size are dropped in the order they were received.
+ */
+public class DropLargestPolicy extends BufferPolicy {
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public DropLargestPolicy(Settings s) {
+		super(s);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The policy prototype
+	 */
+	protected DropLargestPolicy(DropLargestPolicy proto) {
+		super(proto);
+	}
+
+	@Override
+	protected double getDropPriority(Message m) {
+		return -m.getSize();
+	}
+
+	@Override
+	public DropLargestPolicy replicate() {
+		return new DropLargestPolicy(this);
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Buffer policy that drops the message that this node has forwarded most
+ * times (MOFO). The more copies a node has spread, the more likely the
+ * message has already reached its destination or is stored by many other
+ * nodes. Messages forwarded equally many times are dropped in the order
+ * they were received.
+ */
+public class DropMostForwardedPolicy extends BufferPolicy {
+	/** forward counts of the buffered messages, mapped using message ID */
+	private Map<String, Integer> forwardCounts;
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public DropMostForwardedPolicy(Settings s) {
+		super(s);
+		this.forwardCounts = new HashMap<String, Integer>();
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The policy prototype
+	 */
+	protected DropMostForwardedPolicy(DropMostForwardedPolicy proto) {
+		super(proto);
+		this.forwardCounts = new HashMap<String, Integer>();
+	}
+
+	@Override
+	protected double getDropPriority(Message m) {
+		return -getForwardCount(m.getId());
+	}
+
+	@Override
+	public void messageRemoved(String id) {
+		super.messageRemoved(id);
+		forwardCounts.remove(id);
+	}
+
+	@Override
+	public void messageForwarded(Message m) {
+		forwardCounts.put(m.getId(), getForwardCount(m.getId()) + 1);
+		priorityChanged(m);
+	}
+
+	/**
+	 * Returns how many times a buffered message has been forwarded
+	 * @param id ID of the message
+	 * @return The forward count
+	 */
+	public int getForwardCount(String id) {
+		Integer count = forwardCounts.get(id);
+		return (count == null ? 0 : count);
+	}
+
+	@Override
+	public DropMostForwardedPolicy replicate() {
+		return new DropMostForwardedPolicy(this);
+	}
+}
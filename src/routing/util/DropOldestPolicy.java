@@ -0,0 +1,41 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Buffer policy that drops the message that was received first. This is
+ * the same order the active routers use by default.
+ */
+public class DropOldestPolicy extends BufferPolicy {
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public DropOldestPolicy(Settings s) {
+		super(s);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The policy prototype
+	 */
+	protected DropOldestPolicy(DropOldestPolicy proto) {
+		super(proto);
+	}
+
+	@Override
+	protected double getDropPriority(Message m) {
+		return m.getReceiveTime();
+	}
+
+	@Override
+	public DropOldestPolicy replicate() {
+		return new DropOldestPolicy(this);
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Buffer policy that drops the message that expires first (has the
+ * shortest remaining time-to-live). Messages without a TTL are dropped
+ * last.
+ */
+public class DropShortestTtlPolicy extends BufferPolicy {
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public DropShortestTtlPolicy(Settings s) {
+		super(s);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The policy prototype
+	 */
+	protected DropShortestTtlPolicy(DropShortestTtlPolicy proto) {
+		super(proto);
+	}
+
+	@Override
+	protected double getDropPriority(Message m) {
+		return m.getExpiryTime();
+	}
+
+	@Override
+	public DropShortestTtlPolicy replicate() {
+		return new DropShortestTtlPolicy(this);
+	}
+}
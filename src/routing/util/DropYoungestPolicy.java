@@ -0,0 +1,40 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Buffer policy that drops the message that was received last.
+ */
+public class DropYoungestPolicy extends BufferPolicy {
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public DropYoungestPolicy(Settings s) {
+		super(s);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The policy prototype
+	 */
+	protected DropYoungestPolicy(DropYoungestPolicy proto) {
+		super(proto);
+	}
+
+	@Override
+	protected double getDropPriority(Message m) {
+		return -m.getReceiveTime();
+	}
+
+	@Override
+	public DropYoungestPolicy replicate() {
+		return new DropYoungestPolicy(this);
+	}
+}
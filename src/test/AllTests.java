@@ -50,6 +50,22 @@ public class AllTests {
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
 		suite.addTestSuite(DTNHostTest.class);
+		suite.addTestSuite(EpidemicOracleRouterTest.class);
+		suite.addTestSuite(ContactGraphRouterTest.class);
+		suite.addTestSuite(BufferPolicyTest.class);
+		suite.addTestSuite(ExternalPathMovementReaderTest.class);
+		suite.addTestSuite(ExternalMovementPreprocessorTest.class);
+		suite.addTestSuite(MessageEventGeneratorTest.class);
+		suite.addTestSuite(SimMapCacheTest.class);
+		suite.addTestSuite(MapGraphTest.class);
+		suite.addTestSuite(PathCacheTest.class);
+		suite.addTestSuite(PathTreesTest.class);
+		suite.addTestSuite(LandmarksTest.class);
+		suite.addTestSuite(WKTFileCacheTest.class);
+		suite.addTestSuite(SpatialIndexTest.class);
+		suite.addTestSuite(PathTest.class);
+		suite.addTestSuite(RecordedMovementTest.class);
+		suite.addTestSuite(SimScenarioTest.class);
 		//$JUnit-END$
 		return suite;
 	}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import routing.util.BufferPolicy;
+import routing.util.DropLargestPolicy;
+import routing.util.DropMostForwardedPolicy;
+import routing.util.DropOldestPolicy;
+import routing.util.DropShortestTtlPolicy;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Tests for the buffer policies of the routing.util package
+ */
+public class BufferPolicyTest extends TestCase {
+
+	private Message m1;
+	private Message m2;
+	private Message m3;
+	private TestSettings ts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		ts = new TestSettings();
+
+		m1 = new Message(null, null, "M1", 100);
+		m1.setTtl(30);
+		SimClock.getInstance().setTime(10);
+		m2 = new Message(null, null, "M2", 300);
+		m2.setTtl(5);
+		SimClock.getInstance().setTime(20);
+		m3 = new Message(null, null, "M3", 200);
+	}
+
+	private BufferPolicy fill(BufferPolicy proto) {
+		BufferPolicy p = proto.replicate();
+		p.messageAdded(m1);
+		p.messageAdded(m2);
+		p.messageAdded(m3);
+		return p;
+	}
+
+	public void testCreatePolicy() {
+		assertNull(BufferPolicy.createPolicy(ts));
+		ts.putSetting(BufferPolicy.BUFFER_POLICY_S, "DropLargestPolicy");
+		assertTrue(BufferPolicy.createPolicy(ts) instanceof DropLargestPolicy);
+	}
+
+	public void testDropOrder() {
+		BufferPolicy p = fill(new DropOldestPolicy(ts));
+		assertEquals(m1, p.getNextToRemove(null));
+		assertEquals(m2, p.getNextToRemove(Arrays.asList("M1")));
+		p.messageRemoved("M1");
+		assertEquals(m2, p.getNextToRemove(null));
+		assertNull(p.getNextToRemove(Arrays.asList("M2", "M3")));
+
+		p = fill(new DropLargestPolicy(ts));
+		assertEquals(m2, p.getNextToRemove(null));
+		assertEquals(m3, p.getNextToRemove(Arrays.asList("M2")));
+
+		p = fill(new DropShortestTtlPolicy(ts));
+		assertEquals(m2, p.getNextToRemove(null));
+		assertEquals(m1, p.getNextToRemove(Arrays.asList("M2")));
+		assertEquals(m3, p.getNextToRemove(Arrays.asList("M1", "M2")));
+	}
+
+	public void testDropMostForwarded() {
+		DropMostForwardedPolicy p =
+			(DropMostForwardedPolicy)fill(new DropMostForwardedPolicy(ts));
+		assertEquals(m1, p.getNextToRemove(null));
+
+		p.messageForwarded(m3);
+		p.messageForwarded(m3);
+		p.messageForwarded(m2);
+		assertEquals(2, p.getForwardCount("M3"));
+		assertEquals(m3, p.getNextToRemove(null));
+		assertEquals(m2, p.getNextToRemove(Arrays.asList("M3")));
+
+		p.messageRemoved("M3");
+		assertEquals(0, p.getForwardCount("M3"));
+		assertEquals(2, p.size());
+	}
+}
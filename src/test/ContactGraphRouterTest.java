@@ -0,0 +1,158 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.PrintWriter;
+
+import routing.ContactGraphRouter;
+import routing.MessageRouter;
+import core.Message;
+
+/**
+ * Tests for ContactGraphRouter
+ */
+public class ContactGraphRouterTest extends AbstractRouterTest {
+
+	private static int TTL = 300;
+	/** contacts 1-2 (10-20) and 2-3 (30-40), so the route from 1 to 3 is
+	 * via 2 and there's no route from 1 to 6; and contacts 4-5 (0-100) and
+	 * 5-6 (10-20), so the route from 4 to 6 is via 5 until 20 */
+	private static final String PLAN =
+		"0 CONN 4 5 up\n" +
+		"10 CONN 1 2 up\n" +
+		"10 CONN 5 6 up\n" +
+		"20 CONN 1 2 down\n" +
+		"20 CONN 5 6 down\n" +
+		"30 CONN 2 3 up\n" +
+		"40 CONN 2 3 down\n" +
+		"100 CONN 4 5 down\n";
+
+	@Override
+	public void setUp() throws Exception {
+		File planFile = File.createTempFile("CGRTest", ".txt");
+		planFile.deleteOnExit();
+		PrintWriter pw = new PrintWriter(planFile);
+		pw.print(PLAN);
+		pw.close();
+
+		ts.setNameSpace(null);
+		ts.putSetting(ContactGraphRouter.CGR_NS + "." +
+				ContactGraphRouter.CONTACT_PLAN_S, planFile.getPath());
+		ts.putSetting(ContactGraphRouter.CGR_NS + "." +
+				ContactGraphRouter.NROF_THREADS_S, "1");
+		ts.restoreNameSpace();
+		ts.putSetting(MessageRouter.MSG_TTL_S, ""+TTL);
+		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		ContactGraphRouter.reset();
+		setRouterProto(new ContactGraphRouter(ts));
+		super.setUp();
+	}
+
+	/**
+	 * Tests that a message is forwarded only to the planned next hop and
+	 * that the sender doesn't keep a copy
+	 */
+	public void testForwardToNextHop() {
+		h1.createNewMessage(new Message(h1, h3, msgId1, 1));
+		checkCreates(1);
+
+		/* other peers are connected but not the planned next hop (h2) */
+		h1.connect(h4);
+		h1.connect(h5);
+		updateAllNodes();
+		clock.advance(1);
+		updateAllNodes();
+		assertFalse(mc.next());
+
+		h1.connect(h2);
+		updateAllNodes();
+		checkTransferStart(h1, h2, msgId1);
+		assertFalse(mc.next());
+		clock.advance(1);
+		updateAllNodes();
+
+		/* transfer done -> the sender's copy is deleted */
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertEquals(msgId1, mc.getLastMsg().getId());
+		assertEquals(h1, mc.getLastFrom());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_RELAY, mc.getLastType());
+		assertEquals(h1, mc.getLastFrom());
+		assertEquals(h2, mc.getLastTo());
+		assertFalse(mc.getLastFirstDelivery());
+
+		assertFalse(h1.getRouter().hasMessage(msgId1));
+		assertTrue(h2.getRouter().hasMessage(msgId1));
+		assertFalse(h4.getRouter().hasMessage(msgId1));
+		assertFalse(h5.getRouter().hasMessage(msgId1));
+	}
+
+	/**
+	 * Tests that a contact can be used during its whole time, so the route
+	 * of a contact that is nested in a longer contact is found
+	 */
+	public void testNestedContacts() {
+		clock.setTime(15);
+		h4.createNewMessage(new Message(h4, h6, msgId1, 1));
+		checkCreates(1);
+
+		h4.connect(h5);
+		updateAllNodes();
+		checkTransferStart(h4, h5, msgId1);
+		clock.advance(1);
+		updateAllNodes();
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_RELAY, mc.getLastType());
+		assertEquals(h5, mc.getLastTo());
+		assertTrue(h5.getRouter().hasMessage(msgId1));
+
+		/* the contact to 6 is over, so there's no route anymore */
+		clock.setTime(25);
+		h4.createNewMessage(new Message(h4, h6, msgId2, 1));
+		checkCreates(1);
+		for (int i=0; i<3; i++) {
+			updateAllNodes();
+			clock.advance(1);
+		}
+		assertFalse(mc.next());
+		assertTrue(h4.getRouter().hasMessage(msgId2));
+	}
+
+	/**
+	 * Tests that a message without a route in the plan is not forwarded
+	 */
+	public void testNoRoute() {
+		h1.createNewMessage(new Message(h1, h6, msgId1, 1));
+		/* too late for the contacts of the plan */
+		h2.createNewMessage(new Message(h2, h3, msgId2, 1));
+		checkCreates(2);
+		clock.setTime(50);
+
+		h1.connect(h2);
+		h2.connect(h3);
+		h1.connect(h5);
+		for (int i=0; i<3; i++) {
+			updateAllNodes();
+			clock.advance(1);
+		}
+
+		/* only the message whose final recipient is connected is delivered */
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_START, mc.getLastType());
+		assertEquals(msgId2, mc.getLastMsg().getId());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_RELAY, mc.getLastType());
+		assertTrue(mc.getLastFirstDelivery());
+		assertFalse(mc.next());
+
+		assertTrue(h1.getRouter().hasMessage(msgId1));
+	}
+}
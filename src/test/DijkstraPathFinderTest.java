@@ -73,6 +73,49 @@ public class DijkstraPathFinderTest extends TestCase {
 		checkPath(getPath(n8,n4), n8, n7, n6, n5, n4);
 	}
 
+	public void testOtherAlgorithms() {
+		MapNode[] nodes = {n1, n2, n3, n4, n5, n6, n7, n8};
+		for (int alg = 1; alg < DijkstraPathFinder.ALGORITHM_NAMES.length;
+				alg++) {
+			DijkstraPathFinder f = new DijkstraPathFinder(null, alg);
+			for (MapNode from : nodes) {
+				for (MapNode to : nodes) {
+					List<MapNode> path = f.getShortestPath(from, to);
+					assertSame(from, path.get(0));
+					assertSame(to, path.get(path.size() - 1));
+					assertEquals(getLength(getPath(from, to)),
+							getLength(path), 0.0001);
+				}
+			}
+		}
+	}
+
+	public void testOkMapNodes() {
+		n1.addType(1);
+		n2.addType(2);
+		n3.addType(1);
+		n4.addType(1);
+		n5.addType(1);
+		n6.addType(1);
+		n7.addType(1);
+		n8.addType(1);
+		for (int alg = 0; alg < DijkstraPathFinder.ALGORITHM_NAMES.length;
+				alg++) {
+			DijkstraPathFinder f = new DijkstraPathFinder(new int[] {1}, alg);
+			checkPath(f.getShortestPath(n1, n3), n1, n4, n5, n6, n3);
+			assertEquals(0, f.getShortestPath(n1, n2).size());
+		}
+	}
+
+	private double getLength(List<MapNode> path) {
+		double length = 0;
+		for (int i=1; i<path.size(); i++) {
+			length += path.get(i-1).getLocation().distance(
+					path.get(i).getLocation());
+		}
+		return length;
+	}
+
 	private void checkPath(List<MapNode> path, MapNode ... nodes) {
 		assertEquals(nodes.length,path.size());
 
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import routing.EpidemicOracleRouter;
+import routing.MessageRouter;
+import routing.util.DeliveryOracle;
+import core.DTNHost;
+import core.Message;
+
+/**
+ * Tests for EpidemicOracleRouter and its delivery oracle
+ */
+public class EpidemicOracleRouterTest extends AbstractRouterTest {
+
+	private static int TTL = 300;
+	private DeliveryOracle oracle;
+
+	@Override
+	public void setUp() throws Exception {
+		ts.putSetting(MessageRouter.MSG_TTL_S, ""+TTL);
+		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		EpidemicOracleRouter.reset();
+		setRouterProto(new EpidemicOracleRouter(ts));
+		super.setUp();
+		this.oracle = EpidemicOracleRouter.getOracle();
+	}
+
+	/**
+	 * Skips all events in the message checker and returns the number of
+	 * transfers started
+	 */
+	private int countTransfers() {
+		int nrof = 0;
+		while (mc.next()) {
+			if (mc.getLastType().equals(mc.TYPE_START)) {
+				nrof++;
+			}
+		}
+		return nrof;
+	}
+
+	/**
+	 * Checks which of the hosts h0-h6 have the message, both in their
+	 * buffers and according to the oracle
+	 */
+	private void checkHolders(String id, DTNHost... holders) {
+		DTNHost[] all = {h0, h1, h2, h3, h4, h5, h6};
+		for (DTNHost h : all) {
+			boolean holder = false;
+			for (DTNHost hh : holders) {
+				holder |= (h == hh);
+			}
+			assertEquals(h.toString(), holder,
+					h.getRouter().hasMessage(id));
+			assertEquals(h.toString(), holder,
+					oracle.isHolder(id, h.getAddress()));
+		}
+		assertEquals(holders.length, oracle.getNrofHolders(id));
+	}
+
+	public void testCopiesOnlyToNonHolders() {
+		h1.createNewMessage(new Message(h1, h5, msgId1, 1));
+		checkHolders(msgId1, h1);
+
+		h1.connect(h2);
+		assertEquals(1, countTransfers());
+		checkHolders(msgId1, h1, h2);
+
+		h2.connect(h3);
+		assertEquals(1, countTransfers());
+		checkHolders(msgId1, h1, h2, h3);
+
+		/* both already have the message */
+		h1.connect(h3);
+		assertEquals(0, countTransfers());
+		checkHolders(msgId1, h1, h2, h3);
+		assertFalse(oracle.isDelivered(msgId1));
+	}
+
+	public void testDeliveryRemovesAllCopies() {
+		h1.createNewMessage(new Message(h1, h4, msgId1, 1));
+		h1.createNewMessage(new Message(h1, h6, msgId2, 1));
+		h1.connect(h2);
+		h2.connect(h3);
+		countTransfers();
+		checkHolders(msgId1, h1, h2, h3);
+
+		h3.connect(h4);
+		boolean delivered = false;
+		while (mc.next()) {
+			if (mc.getLastType().equals(mc.TYPE_RELAY) &&
+					mc.getLastMsg().getId().equals(msgId1)) {
+				assertTrue(mc.getLastFirstDelivery());
+				delivered = true;
+			}
+		}
+		assertTrue(delivered);
+		assertTrue(oracle.isDelivered(msgId1));
+		checkHolders(msgId1);
+
+		/* the other message is not affected (and h4 got a copy of it) */
+		assertFalse(oracle.isDelivered(msgId2));
+		checkHolders(msgId2, h1, h2, h3, h4);
+	}
+
+	public void testDeliveredMessageIsRefused() {
+		h1.createNewMessage(new Message(h1, h2, msgId1, 1));
+		h1.connect(h2);
+		countTransfers();
+		assertTrue(oracle.isDelivered(msgId1));
+		checkHolders(msgId1);
+
+		/* a host that (still) has a copy of the delivered message can't
+		 * give it to others */
+		h5.createNewMessage(new Message(h5, h2, msgId1, 1));
+		checkHolders(msgId1, h5);
+		h5.connect(h6);
+		assertEquals(0, countTransfers());
+		checkHolders(msgId1, h5);
+	}
+}
@@ -5,6 +5,8 @@
 package test;
 
 import input.BinaryEventsReader;
+import input.ColumnarEventsReader;
+import input.CompressedInputStream;
 import input.ExternalEvent;
 import input.ExternalEventsQueue;
 import input.ExternalEventsReader;
@@ -12,8 +14,15 @@ import input.MessageCreateEvent;
 import input.StandardEventsReader;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import junit.framework.TestCase;
 
@@ -66,6 +75,67 @@ public class ExternalEventsQueueTest extends TestCase {
 	}
 
 
+	public void testPrefetchEEQ() {
+		int preload = 3;
+		eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(), preload,
+				true);
+		checkEeq(eeq, preload);
+		assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+
+		preload = 100;
+		eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(), preload,
+				true);
+		checkEeq(eeq, msgTimes.length);
+	}
+
+	public void testCompressedEEQ() throws Exception {
+		int preload = 4;
+		File gzFile = File.createTempFile("TempGzTest", ".gz");
+		gzFile.deleteOnExit();
+		PrintWriter out = new PrintWriter(new GZIPOutputStream(
+				new FileOutputStream(gzFile)));
+		for (String s : stdinput) {
+			out.println(s);
+		}
+		out.close();
+
+		eeq = new ExternalEventsQueue(gzFile.getAbsolutePath(), preload);
+		checkEeq(eeq, preload);
+		eeq = new ExternalEventsQueue(gzFile.getAbsolutePath(), preload, true);
+		checkEeq(eeq, preload);
+
+		File zipFile = File.createTempFile("TempZipTest", ".tmp");
+		zipFile.deleteOnExit();
+		ZipOutputStream zos = new ZipOutputStream(
+				new FileOutputStream(zipFile));
+		zos.putNextEntry(new ZipEntry("events.txt"));
+		out = new PrintWriter(zos);
+		for (String s : stdinput) {
+			out.println(s);
+		}
+		out.close();
+
+		eeq = new ExternalEventsQueue(zipFile.getAbsolutePath(), preload);
+		checkEeq(eeq, preload);
+	}
+
+	public void testInvalidCompressedFile() throws Exception {
+		File gzFile = File.createTempFile("TempGzTest", ".gz");
+		gzFile.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(gzFile);
+		out.write(new byte[] {0x1f, (byte)0x8b, 0, 0, 0, 0}); // bad method
+		out.close();
+
+		try {
+			CompressedInputStream.open(gzFile);
+			fail("Invalid gzip file was opened");
+		} catch (IOException e) {
+			// expected
+		}
+		assertTrue(CompressedInputStream.isCompressed(gzFile));
+		assertEquals(-1, CompressedInputStream.getUncompressedSize(gzFile));
+	}
+
 	public void testBinaryEEQ() throws Exception{
 		int preload = 7;
 		File tmpBinFile = File.createTempFile("TempBinTest",
@@ -81,6 +151,70 @@ public class ExternalEventsQueueTest extends TestCase {
 		assertTrue(tmpBinFile.delete()); // make sure all locks are gone
 	}
 
+	public void testColumnarEEQ() throws Exception {
+		int preload = 7;
+		File tmpColFile = File.createTempFile("TempColTest",
+				ColumnarEventsReader.COLUMNAR_EXT);
+		ExternalEventsReader r = new StandardEventsReader(tempFile);
+		assertEquals(msgTimes.length, ColumnarEventsReader.storeToColumnarFile(
+				r, tmpColFile));
+		r.close();
+		assertTrue(ColumnarEventsReader.isColumnarEeFile(tmpColFile));
+		assertFalse(ColumnarEventsReader.isColumnarEeFile(tempFile));
+
+		/* all events must match the ones read from the text file */
+		List<ExternalEvent> expected =
+			new StandardEventsReader(tempFile).readEvents(100);
+		ColumnarEventsReader cr = new ColumnarEventsReader(tmpColFile);
+		List<ExternalEvent> events = cr.readEvents(4);
+		events.addAll(cr.readEvents(100));
+		assertEquals(0, cr.readEvents(100).size());
+		cr.close();
+		assertEquals(expected.size(), events.size());
+		for (int i=0; i<expected.size(); i++) {
+			assertEquals(expected.get(i).toString(), events.get(i).toString());
+		}
+
+		eeq = new ExternalEventsQueue(tmpColFile.getAbsolutePath(), preload);
+		checkEeq(eeq, preload);
+		tmpColFile.deleteOnExit();
+	}
+
+	public void testColumnarVersion1() throws Exception {
+		File tmpColFile = File.createTempFile("TempColTest",
+				ColumnarEventsReader.COLUMNAR_EXT);
+		tmpColFile.deleteOnExit();
+		ExternalEventsReader r = new StandardEventsReader(tempFile);
+		ColumnarEventsReader.storeToColumnarFile(r, tmpColFile, 1234);
+		r.close();
+		assertEquals(1234, ColumnarEventsReader.getFingerprint(tmpColFile));
+
+		/* drop the fingerprint from the header to get a version 1 file */
+		RandomAccessFile raf = new RandomAccessFile(tmpColFile, "rw");
+		byte[] data = new byte[(int)raf.length()];
+		raf.readFully(data);
+		raf.seek(0);
+		raf.writeInt(ColumnarEventsReader.MAGIC);
+		raf.writeInt(1);
+		raf.writeLong(msgTimes.length);
+		raf.writeLong(ByteBuffer.wrap(data, 16, 8).getLong() - 8);
+		raf.write(data, 32, data.length - 32);
+		raf.setLength(data.length - 8);
+		raf.close();
+
+		assertEquals(ColumnarEventsReader.NO_FINGERPRINT,
+				ColumnarEventsReader.getFingerprint(tmpColFile));
+		List<ExternalEvent> expected =
+			new StandardEventsReader(tempFile).readEvents(100);
+		ColumnarEventsReader cr = new ColumnarEventsReader(tmpColFile);
+		List<ExternalEvent> events = cr.readEvents(100);
+		cr.close();
+		assertEquals(expected.size(), events.size());
+		for (int i=0; i<expected.size(); i++) {
+			assertEquals(expected.get(i).toString(), events.get(i).toString());
+		}
+	}
+
 
 	private void checkEeq(ExternalEventsQueue eeq, int preloadVal) {
 		ExternalEvent ee;
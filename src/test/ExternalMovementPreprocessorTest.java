@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ExternalMovementPreprocessor;
+import input.ExternalMovementReader;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.List;
+
+import junit.framework.TestCase;
+import util.Tuple;
+import core.Coord;
+
+public class ExternalMovementPreprocessorTest extends TestCase {
+	/* unordered trace with a header line and id in the first column */
+	private static final String INPUT =
+		"id time x y\n" +
+		"2 120 25 20.5\n" +
+		"1 110 15 10.5\n" +
+		"3 110 15 30.5\n" +
+		"# comment\n" +
+		"1 120 25 10.5\n" +
+		"2 110 15 20.5\n" +
+		"3 130 45 30.5\n" +
+		"\n" +
+		"1 130 35 20.5\n" +
+		"2 130 35 30.5\n" +
+		"3 120 35 30.5";
+	private static final String [][] ids =
+		{{"1","3","2"}, {"2","1","3"}, {"3","1","2"}};
+	private static final double [] times = {0, 10, 20};
+	private static final Coord [][] coords =
+		{ {new Coord(0,0), new Coord(0,20), new Coord(0,10)},
+		  {new Coord(10,10), new Coord(10,0), new Coord(20,20)},
+		  {new Coord(30,20), new Coord(20,10), new Coord(20,20)} };
+
+	private File inFile;
+	private File outFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		inFile = File.createTempFile("EMPTest", "in");
+		inFile.deleteOnExit();
+		outFile = File.createTempFile("EMPTest", "out");
+		outFile.deleteOnExit();
+
+		PrintWriter pw = new PrintWriter(inFile);
+		pw.println(INPUT);
+		pw.close();
+	}
+
+	public void testProcess() throws Exception {
+		for (int threads = 1; threads <= 3; threads++) {
+			ExternalMovementPreprocessor p = new ExternalMovementPreprocessor(
+					new int[] {1, 0, 2, 3}, 1, threads);
+			assertEquals(9, p.process(inFile, outFile));
+			p.shutdown();
+			checkOutput();
+		}
+	}
+
+	private void checkOutput() {
+		ExternalMovementReader r =
+			new ExternalMovementReader(outFile.getAbsolutePath());
+		assertEquals(0.0, r.getMinTime());
+		assertEquals(20.0, r.getMaxTime());
+		assertEquals(30.0, r.getMaxX());
+		assertEquals(20.0, r.getMaxY());
+
+		for (int i=0; i<times.length; i++) {
+			List<Tuple<String, Coord>> list = r.readNextMovements();
+			assertEquals(times[i], r.getLastTimeStamp());
+			assertEquals(ids[i].length, list.size());
+			for (int j=0; j<ids[i].length; j++) {
+				assertEquals(ids[i][j], list.get(j).getKey());
+				assertEquals(coords[i][j], list.get(j).getValue());
+			}
+		}
+		assertEquals(0, r.readNextMovements().size());
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ExternalPathMovementReader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.SettingsError;
+
+/**
+ * Tests for reading path format traces with and without the path index
+ */
+public class ExternalPathMovementReaderTest extends TestCase {
+	private static final String TRACE =
+		"2 0 100 0 100 0 100\n" +
+		"0 0,1,1 10,5,1\n" +
+		"1 5,2,2\n" +
+		"\n" +
+		"0\n" +
+		"0 20,5,1 30,5,5 40,1,5\n" +
+		"2 50,3,3 60,4,4";
+	private static final String ACTIVITY =
+		"0 0 100\n" +
+		"1 0 100\n" +
+		"2 0 100\n";
+	/** number of paths of each node in the trace */
+	private static final int[] NROF_PATHS = {2, 1, 1};
+
+	private File activityFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		activityFile = createFile(ACTIVITY);
+	}
+
+	private File createFile(String contents) throws IOException {
+		File f = File.createTempFile("EPMRTest", ".txt");
+		f.deleteOnExit();
+		new File(f.getPath() + ExternalPathMovementReader.INDEX_EXT)
+			.deleteOnExit();
+		PrintWriter pw = new PrintWriter(f);
+		pw.print(contents);
+		pw.close();
+		return f;
+	}
+
+	private ExternalPathMovementReader read(File trace, boolean useIndex) {
+		return ExternalPathMovementReader.getInstance(trace.getPath(),
+				activityFile.getPath(), useIndex);
+	}
+
+	private File getIndexFile(File trace) {
+		return new File(trace.getPath() + ExternalPathMovementReader.INDEX_EXT);
+	}
+
+	private void copy(File from, File to, long length) throws IOException {
+		InputStream in = new FileInputStream(from);
+		OutputStream out = new FileOutputStream(to);
+		for (long i=0; i<length; i++) {
+			out.write(in.read());
+		}
+		in.close();
+		out.close();
+	}
+
+	private void assertSameEntry(ExternalPathMovementReader.Entry e1,
+			ExternalPathMovementReader.Entry e2) {
+		assertEquals(e1.time, e2.time);
+		assertEquals(e1.x, e2.x);
+		assertEquals(e1.y, e2.y);
+	}
+
+	/**
+	 * Checks that two readers return the same paths and that they match
+	 * the test trace
+	 */
+	private void assertSamePaths(ExternalPathMovementReader r1,
+			ExternalPathMovementReader r2) {
+		for (int id=0; id<NROF_PATHS.length; id++) {
+			assertEquals(NROF_PATHS[id], r1.getNrofPaths(id));
+			assertEquals(NROF_PATHS[id], r2.getNrofPaths(id));
+			for (int i=0; i<NROF_PATHS[id]; i++) {
+				assertSameEntry(r1.getPathStart(id, i), r2.getPathStart(id, i));
+				assertEquals(r1.getPathStartTime(id, i),
+						r2.getPathStartTime(id, i));
+				List<ExternalPathMovementReader.Entry> p1 = r1.getPath(id, i);
+				List<ExternalPathMovementReader.Entry> p2 = r2.getPath(id, i);
+				assertEquals(p1.size(), p2.size());
+				for (int j=0; j<p1.size(); j++) {
+					assertSameEntry(p1.get(j), p2.get(j));
+				}
+				assertSameEntry(p1.get(0), r1.getPathStart(id, i));
+			}
+		}
+
+		List<ExternalPathMovementReader.Entry> p = r1.getPath(0, 1);
+		assertEquals(3, p.size());
+		assertEquals(30.0, p.get(1).time);
+		assertEquals(5.0, p.get(1).x);
+		assertEquals(5.0, p.get(1).y);
+	}
+
+	public void testIndexedAndInMemory() throws Exception {
+		File trace = createFile(TRACE);
+		ExternalPathMovementReader indexed = read(trace, true);
+		assertTrue(getIndexFile(trace).isFile());
+		assertSamePaths(indexed, read(createFile(TRACE), false));
+
+		/* the stored index is used for another reader of an unchanged trace */
+		File trace2 = createFile(TRACE);
+		assertTrue(trace2.setLastModified(trace.lastModified()));
+		copy(getIndexFile(trace), getIndexFile(trace2),
+				getIndexFile(trace).length());
+		assertSamePaths(read(trace2, true), indexed);
+	}
+
+	public void testReadersOfSameTrace() throws Exception {
+		File trace = createFile(TRACE);
+		ExternalPathMovementReader inMemory = read(trace, false);
+		assertFalse(getIndexFile(trace).exists());
+		assertSame(inMemory, read(trace, false));
+
+		ExternalPathMovementReader indexed = read(trace, true);
+		assertNotSame(inMemory, indexed);
+		assertTrue(getIndexFile(trace).isFile());
+		assertSamePaths(inMemory, indexed);
+
+		File activityFile2 = createFile("0 10 20\n");
+		ExternalPathMovementReader r3 = ExternalPathMovementReader.getInstance(
+				trace.getPath(), activityFile2.getPath(), false);
+		assertNotSame(inMemory, r3);
+		assertEquals(10.0, r3.getActive(0).get(0).start);
+	}
+
+	public void testStaleIndexIsRebuilt() throws Exception {
+		File trace = createFile(TRACE);
+		ExternalPathMovementReader indexed = read(trace, true);
+		File index = getIndexFile(trace);
+
+		/* a different trace with the old index of the original trace */
+		String changed = TRACE.replace("1 5,2,2", "1 5,2,2 7,4,2");
+		File trace2 = createFile(changed);
+		assertTrue(trace2.setLastModified(trace.lastModified()));
+		copy(index, getIndexFile(trace2), index.length());
+		ExternalPathMovementReader r2 = read(trace2, true);
+		assertEquals(2, r2.getPath(1, 0).size());
+		assertSamePaths(r2, read(createFile(changed), false));
+		assertEquals(2, r2.getNrofPaths(0));
+		assertSameEntry(indexed.getPathStart(2, 0), r2.getPathStart(2, 0));
+
+		/* the same trace, but touched after the index was created */
+		File trace3 = createFile(TRACE);
+		File index3 = getIndexFile(trace3);
+		copy(index, index3, index.length());
+		assertTrue(trace3.setLastModified(trace.lastModified() + 10000));
+		assertTrue(index3.setLastModified(0));
+		assertSamePaths(read(trace3, true), indexed);
+		assertTrue("Index was not rebuilt", index3.lastModified() > 0);
+	}
+
+	public void testTruncatedIndexIsRebuilt() throws Exception {
+		File trace = createFile(TRACE);
+		ExternalPathMovementReader indexed = read(trace, true);
+		File index = getIndexFile(trace);
+
+		File trace2 = createFile(TRACE);
+		assertTrue(trace2.setLastModified(trace.lastModified()));
+		File index2 = getIndexFile(trace2);
+		copy(index, index2, index.length() - 10);
+		assertSamePaths(read(trace2, true), indexed);
+		assertEquals(index.length(), index2.length());
+	}
+
+	public void testUnsupportedCompression() throws Exception {
+		File trace = createFile("");
+		OutputStream out = new FileOutputStream(trace);
+		out.write(new byte[] {0x28, (byte)0xb5, 0x2f, (byte)0xfd, 0, 0});
+		out.close();
+
+		try {
+			read(trace, false);
+			fail("Zstandard compressed trace was accepted");
+		} catch (SettingsError e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("Zstandard"));
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import movement.map.DijkstraPathFinder;
+import movement.map.Landmarks;
+import movement.map.MapGraph;
+import movement.map.MapNode;
+import core.Coord;
+
+public class LandmarksTest extends TestCase {
+	private static final int SIZE = 8;
+	private List<MapNode> nodes;
+	private MapGraph graph;
+
+	/**
+	 * Creates a grid of SIZE x SIZE nodes with randomly moved coordinates
+	 * and some missing edges
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+		Random rng = new Random(1);
+		nodes = new ArrayList<MapNode>();
+		for (int y=0; y<SIZE; y++) {
+			for (int x=0; x<SIZE; x++) {
+				MapNode n = new MapNode(new Coord(x * 10 + rng.nextInt(5),
+						y * 10 + rng.nextInt(5)));
+				n.addType(1);
+				if (x > 0 && (y == 0 || rng.nextInt(4) > 0)) {
+					connect(n, nodes.get(nodes.size() - 1));
+				}
+				if (y > 0) {
+					connect(n, nodes.get(nodes.size() - SIZE));
+				}
+				nodes.add(n);
+			}
+		}
+		graph = new MapGraph(nodes);
+	}
+
+	private void connect(MapNode n1, MapNode n2) {
+		n1.addNeighbor(n2);
+		n2.addNeighbor(n1);
+	}
+
+	public void testLowerBounds() {
+		Landmarks lm = Landmarks.getLandmarks(graph, 4, null);
+		assertEquals(4, lm.getNrofLandmarks());
+		assertSame(lm, Landmarks.getLandmarks(graph));
+
+		DijkstraPathFinder finder = new DijkstraPathFinder(null);
+		for (int i=0; i<nodes.size(); i++) {
+			for (int j=0; j<nodes.size(); j++) {
+				double dist = getLength(finder.getShortestPath(nodes.get(i),
+						nodes.get(j)));
+				double bound = lm.getLowerBound(i, j);
+				assertTrue(bound + " > " + dist, bound <= dist);
+				if (i != j && isLandmark(lm, j)) { // bound is tight
+					assertEquals(dist, bound, 0.001);
+				}
+			}
+		}
+	}
+
+	public void testCacheFile() throws Exception {
+		File mapCache = File.createTempFile("LandmarksTest", ".simmap");
+		mapCache.deleteOnExit();
+		File cacheFile = Landmarks.getCacheFile(mapCache);
+		cacheFile.deleteOnExit();
+
+		Landmarks lm = Landmarks.getLandmarks(graph, 3, cacheFile);
+		assertTrue(cacheFile.exists());
+		Landmarks read = Landmarks.getLandmarks(new MapGraph(nodes), 3,
+				cacheFile);
+		assertNotSame(lm, read);
+		assertEquals(lm.getNrofLandmarks(), read.getNrofLandmarks());
+		for (int i=0; i<lm.getNrofLandmarks(); i++) {
+			assertEquals(lm.getLandmark(i), read.getLandmark(i));
+		}
+		for (int i=0; i<nodes.size(); i++) {
+			for (int j=0; j<nodes.size(); j++) {
+				assertEquals(lm.getLowerBound(i, j), read.getLowerBound(i, j));
+			}
+		}
+
+		/* different number of landmarks -> recomputed */
+		assertEquals(2, Landmarks.getLandmarks(new MapGraph(nodes), 2,
+				cacheFile).getNrofLandmarks());
+	}
+
+	private boolean isLandmark(Landmarks lm, int node) {
+		for (int i=0; i<lm.getNrofLandmarks(); i++) {
+			if (lm.getLandmark(i) == node) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private double getLength(List<MapNode> path) {
+		double length = 0;
+		for (int i=1; i<path.size(); i++) {
+			length += path.get(i-1).getLocation().distance(
+					path.get(i).getLocation());
+		}
+		return length;
+	}
+}
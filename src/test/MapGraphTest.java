@@ -0,0 +1,126 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.map.DijkstraPathFinder;
+import movement.map.MapGraph;
+import movement.map.MapNode;
+import movement.map.SimMap;
+import core.Coord;
+
+public class MapGraphTest extends TestCase {
+	private MapNode n1;
+	private MapNode n2;
+	private MapNode n3;
+	private MapNode n4;
+	private List<MapNode> nodes;
+
+	/**
+	 * Creates a topology (n4 is not connected to the others):
+	 *
+	 * n1-3-n2-4-n3   n4
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+		n1 = newNode(0, 0, 1);
+		n2 = newNode(3, 0, 2);
+		n3 = newNode(3, 4, 2);
+		n4 = newNode(10, 10, 1);
+		n1.addNeighbor(n2);
+		n2.addNeighbor(n1);
+		n2.addNeighbor(n3);
+		n3.addNeighbor(n2);
+
+		nodes = new ArrayList<MapNode>();
+		nodes.add(n1);
+		nodes.add(n2);
+		nodes.add(n3);
+		nodes.add(n4);
+	}
+
+	private MapNode newNode(double x, double y, int type) {
+		MapNode n = new MapNode(new Coord(x,y));
+		n.addType(type);
+		return n;
+	}
+
+	public void testGraph() {
+		MapGraph g = new MapGraph(nodes);
+		assertEquals(4, g.getNrofNodes());
+		assertEquals(4, g.getNrofEdges());
+
+		for (int i=0; i<nodes.size(); i++) {
+			MapNode n = nodes.get(i);
+			assertEquals(i, g.getIndex(n));
+			assertSame(n, g.getNode(i));
+			assertEquals(n.getLocation().getX(), g.getX(i));
+			assertEquals(n.getLocation().getY(), g.getY(i));
+			assertEquals(n.getTypeMask(), g.getTypeMask(i));
+			assertEquals(n.getNeighbors().size(),
+					g.getEdgesEnd(i) - g.getEdgesStart(i));
+
+			int e = g.getEdgesStart(i);
+			for (MapNode neighbor : n.getNeighbors()) {
+				assertSame(neighbor, g.getNode(g.getEdgeTarget(e)));
+				assertEquals(n.getLocation().distance(neighbor.getLocation()),
+						g.getEdgeLength(e));
+				e++;
+			}
+		}
+
+		int mask = MapGraph.getTypeMask(new int[] {2});
+		assertFalse(g.isType(0, mask));
+		assertTrue(g.isType(1, mask));
+		assertEquals(-1, g.compareLocations(0, 1));
+		assertEquals(1, g.compareLocations(2, 1));
+		assertEquals(0, g.compareLocations(3, 3));
+	}
+
+	public void testReachableGraph() {
+		MapGraph g = MapGraph.getGraph(n3);
+		assertEquals(3, g.getNrofNodes());
+		assertTrue(g.getIndex(n1) >= 0);
+		assertEquals(-1, g.getIndex(n4));
+		assertSame(g, MapGraph.getGraph(n1));
+		assertNotSame(g, MapGraph.getGraph(n4));
+	}
+
+	public void testInvalidation() {
+		SimMap map = new SimMap(nodes);
+		MapGraph g = map.getGraph();
+		assertSame(g, map.getGraph());
+		assertSame(g, MapGraph.getGraph(n1));
+
+		map.translate(1, 1);
+		assertFalse(g.isValid());
+		g = map.getGraph();
+		assertEquals(4.0, g.getX(1));
+
+		n3.addNeighbor(n4);
+		assertFalse(g.isValid());
+		assertEquals(4, MapGraph.getGraph(n1).getNrofNodes());
+	}
+
+	public void testPathFinding() {
+		DijkstraPathFinder pf = new DijkstraPathFinder(null);
+		assertEquals(3, pf.getShortestPath(n1, n3).size());
+		assertEquals(0, pf.getShortestPath(n1, n4).size());
+
+		pf = new DijkstraPathFinder(new int[] {1});
+		assertEquals(0, pf.getShortestPath(n1, n3).size());
+
+		n1.addNeighbor(n4);
+		n4.addNeighbor(n1);
+		pf = new DijkstraPathFinder(null);
+		List<MapNode> path = pf.getShortestPath(n3, n4);
+		assertEquals(4, path.size());
+		assertSame(n3, path.get(0));
+		assertSame(n4, path.get(3));
+	}
+}
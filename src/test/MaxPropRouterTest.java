@@ -303,4 +303,40 @@ public class MaxPropRouterTest extends AbstractRouterTest {
 		/* msg path h2->h1->h4 */
 		assertEquals((1-0.75)+(1-0.25), r2.getCost(h2, h4));
 	}
+
+	/**
+	 * Tests that hosts that meet again only exchange the probability sets
+	 * that have changed since their previous meeting.
+	 */
+	public void testDeltaExchange() {
+		h1.connect(h2);
+		disconnect(h1);
+		h2.connect(h3);
+		disconnect(h2);
+		assertEquals(1, r1.getNrofExchanges());
+		assertEquals(2, r2.getNrofExchanges());
+
+		long h1Sets = r1.getNrofSetsReceived();
+		long h1Bytes = r1.getRoutingStateBytesReceived();
+
+		/* h2 has learned h3's probs since the last meeting with h1 */
+		clock.advance(1.0);
+		h1.connect(h2);
+		disconnect(h1);
+		/* changed sets: h2's h3 set and h2's own set (sent explicitly) */
+		assertEquals(2, r1.getNrofSetsReceived() - h1Sets);
+		assertTrue(r1.getRoutingStateBytesReceived() > h1Bytes);
+
+		h1Sets = r1.getNrofSetsReceived();
+		/* nothing changed in h2 -> only h2's own set should be received */
+		clock.advance(1.0);
+		h1.connect(h2);
+		disconnect(h1);
+		assertEquals(1, r1.getNrofSetsReceived() - h1Sets);
+
+		/* h1 knows h3's probs even though it has never met h3 */
+		Message m1 = new Message(h1,h3, msgId1, 1);
+		h1.createNewMessage(m1);
+		assertTrue(r1.getCost(h1, h3) < INVALID_COST);
+	}
 }
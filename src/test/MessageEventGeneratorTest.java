@@ -0,0 +1,188 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ColumnarEventsReader;
+import input.EventQueueHandler;
+import input.EventQueueReader;
+import input.ExternalEvent;
+import input.ExternalEventsQueue;
+import input.MessageBatch;
+import input.MessageBurstGenerator;
+import input.MessageCreateEvent;
+import input.MessageEventGenerator;
+import input.OneToEachMessageGenerator;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.SettingsError;
+import core.SimScenario;
+
+/**
+ * Tests that the message generators create the same messages one event at a
+ * time, in batches and when stored to a workload file
+ */
+public class MessageEventGeneratorTest extends TestCase {
+	private TestSettings ts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		ts.putSetting(MessageEventGenerator.MESSAGE_SIZE_S, "10,100");
+		ts.putSetting(MessageEventGenerator.MESSAGE_INTERVAL_S, "1,5");
+		ts.putSetting(MessageEventGenerator.HOST_RANGE_S, "0,10");
+		ts.putSetting(MessageEventGenerator.MESSAGE_ID_PREFIX_S, "M");
+		ts.putSetting(MessageEventGenerator.MESSAGE_TIME_S, "10,500");
+	}
+
+	public void testMessageEventGenerator() {
+		checkBatches(new MessageEventGenerator(ts),
+				new MessageEventGenerator(ts), 20);
+	}
+
+	public void testMessageBurstGenerator() {
+		ts.putSetting(MessageEventGenerator.MESSAGE_INTERVAL_S, "20");
+		checkBatches(new MessageBurstGenerator(ts),
+				new MessageBurstGenerator(ts), 50);
+	}
+
+	public void testOneToEachGenerator() {
+		ts.putSetting(MessageEventGenerator.HOST_RANGE_S, "0,1");
+		ts.putSetting(MessageEventGenerator.TO_HOST_RANGE_S, "0,10");
+		checkBatches(new OneToEachMessageGenerator(ts),
+				new OneToEachMessageGenerator(ts), 7);
+	}
+
+	public void testStoredWorkload() throws Exception {
+		double endTime = 300;
+		File file1 = File.createTempFile("TempWorkloadTest",
+				ColumnarEventsReader.COLUMNAR_EXT);
+		file1.deleteOnExit();
+		File file2 = File.createTempFile("TempWorkloadTest",
+				ColumnarEventsReader.COLUMNAR_EXT);
+		file2.deleteOnExit();
+
+		long nrof = ColumnarEventsReader.storeToColumnarFile(
+				new EventQueueReader(new MessageEventGenerator(ts), endTime),
+				file1);
+		ColumnarEventsReader.storeToColumnarFile(
+				new EventQueueReader(new MessageEventGenerator(ts), endTime),
+				file2);
+		assertEquals(ColumnarEventsReader.getChecksum(file1),
+				ColumnarEventsReader.getChecksum(file2));
+
+		MessageEventGenerator generator = new MessageEventGenerator(ts);
+		ExternalEventsQueue eeq = new ExternalEventsQueue(file1.getPath(), 10);
+		int nrofEvents = 0;
+		while (generator.nextEventsTime() <= endTime) {
+			assertEquals(generator.nextEventsTime(), eeq.nextEventsTime());
+			assertEquals(generator.nextEvent().toString(),
+					eeq.nextEvent().toString());
+			nrofEvents++;
+		}
+		assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+		assertEquals(nrof, nrofEvents);
+	}
+
+	public void testWorkloadFingerprint() throws Exception {
+		File file = File.createTempFile("TempWorkloadTest",
+				ColumnarEventsReader.COLUMNAR_EXT);
+		file.delete();
+		file.deleteOnExit();
+		String ns = EventQueueHandler.SETTINGS_NAMESPACE + "1.";
+		String endTimeS = SimScenario.SCENARIO_NS + "." +
+			SimScenario.END_TIME_S;
+
+		ts.putSetting(EventQueueHandler.SETTINGS_NAMESPACE + "." +
+				EventQueueHandler.NROF_SETTING, "1");
+		ts.putSetting(ns + EventQueueHandler.CLASS_SETTING,
+				"MessageEventGenerator");
+		ts.putSetting(ns + MessageEventGenerator.MESSAGE_SIZE_S, "10,100");
+		ts.putSetting(ns + MessageEventGenerator.MESSAGE_INTERVAL_S, "1,5");
+		ts.putSetting(ns + MessageEventGenerator.HOST_RANGE_S, "0,10");
+		ts.putSetting(ns + MessageEventGenerator.MESSAGE_ID_PREFIX_S, "M");
+		ts.putSetting(ns + EventQueueHandler.WORKLOAD_FILE_SETTING,
+				file.getPath());
+
+		new EventQueueHandler();
+		assertTrue(file.exists());
+		String checksum = ColumnarEventsReader.getChecksum(file);
+
+		/* settings that don't change the events don't matter */
+		ts.putSetting(ns + EventQueueHandler.PRELOAD_SETTING, "10");
+		ts.putSetting(ns + EventQueueHandler.WORKLOAD_CHECKSUM_SETTING,
+				checksum);
+		new EventQueueHandler();
+
+		ts.putSetting(ns + MessageEventGenerator.MESSAGE_INTERVAL_S, "2,5");
+		assertRefused();
+		ts.putSetting(ns + MessageEventGenerator.MESSAGE_INTERVAL_S, "1,5");
+		new EventQueueHandler();
+
+		ts.putSetting(endTimeS, "200");
+		assertRefused();
+		ts.putSetting(endTimeS, "100");
+		new EventQueueHandler();
+		assertEquals(checksum, ColumnarEventsReader.getChecksum(file));
+
+		/* a new workload is created once the file is deleted */
+		ts.putSetting(endTimeS, "200");
+		ts.putSetting(ns + EventQueueHandler.WORKLOAD_CHECKSUM_SETTING, "");
+		file.delete();
+		new EventQueueHandler();
+		assertFalse(checksum.equals(ColumnarEventsReader.getChecksum(file)));
+	}
+
+	private void assertRefused() {
+		try {
+			new EventQueueHandler();
+			fail("Workload file of different settings was used");
+		} catch (SettingsError e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Checks that the batches of one generator have the same messages
+	 * as the events of another (identically configured) generator
+	 */
+	private void checkBatches(MessageEventGenerator single,
+			MessageEventGenerator batched, double batchInterval) {
+		List<MessageCreateEvent> events = new ArrayList<MessageCreateEvent>();
+		while (single.nextEventsTime() < Double.MAX_VALUE) {
+			double time = single.nextEventsTime();
+			ExternalEvent ee = single.nextEvent();
+			if (ee instanceof MessageCreateEvent) {
+				assertEquals(time, ee.getTime());
+				events.add((MessageCreateEvent)ee);
+			}
+		}
+		assertTrue(events.size() > 5);
+
+		MessageBatch batch = new MessageBatch(2);
+		int nrofMessages = 0;
+		for (double t = 0; batched.nextEventsTime() < Double.MAX_VALUE;
+				t += batchInterval) {
+			batch.clear();
+			batched.nextMessages(t, batch);
+			assertTrue(batched.nextEventsTime() > t);
+
+			for (int i=0; i<batch.size(); i++) {
+				MessageCreateEvent e = events.get(nrofMessages++);
+				assertTrue(batch.getTime(i) <= t);
+				assertEquals(e.getTime(), batch.getTime(i));
+				assertEquals(e.getId(), batch.getId(i));
+				assertEquals(e.getFromAddress(), batch.getFrom(i));
+				assertEquals(e.getToAddress(), batch.getTo(i));
+				assertEquals(e.getSize(), batch.getSize(i));
+				assertEquals(e.getResponseSize(), batch.getResponseSize(i));
+			}
+		}
+		assertEquals(events.size(), nrofMessages);
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.map.DijkstraPathFinder;
+import movement.map.MapGraph;
+import movement.map.MapNode;
+import movement.map.PathCache;
+import core.Coord;
+
+public class PathCacheTest extends TestCase {
+	private List<MapNode> nodes;
+	private MapGraph graph;
+
+	/**
+	 * Creates a line of 5 nodes (and one unconnected node)
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+		PathCache.reset();
+		nodes = new ArrayList<MapNode>();
+		for (int i=0; i<6; i++) {
+			MapNode n = new MapNode(new Coord(i * 10, 0));
+			n.addType(1);
+			if (i > 0 && i < 5) {
+				MapNode prev = nodes.get(i - 1);
+				n.addNeighbor(prev);
+				prev.addNeighbor(n);
+			}
+			nodes.add(n);
+		}
+		graph = new MapGraph(nodes);
+	}
+
+	public void testSharing() {
+		PathCache c = PathCache.getCache(graph, new int[] {2, 1},
+				DijkstraPathFinder.DIJKSTRA, 10);
+		assertSame(c, PathCache.getCache(graph, new int[] {1, 2},
+				DijkstraPathFinder.DIJKSTRA, 10));
+		assertNotSame(c, PathCache.getCache(graph, null,
+				DijkstraPathFinder.DIJKSTRA, 10));
+		assertNotSame(c, PathCache.getCache(graph, new int[] {1, 2},
+				DijkstraPathFinder.A_STAR, 10));
+		assertEquals(3, PathCache.getCaches().size());
+
+		graph.invalidate();
+		assertNotSame(c, PathCache.getCache(new MapGraph(nodes),
+				new int[] {1, 2}, DijkstraPathFinder.DIJKSTRA, 10));
+		assertEquals(1, PathCache.getCaches().size());
+	}
+
+	public void testLeastRecentlyUsed() {
+		PathCache c = PathCache.getCache(graph, null,
+				DijkstraPathFinder.DIJKSTRA, 2);
+		c.put(0, 1, new int[] {0, 1});
+		c.put(0, 2, new int[] {0, 1, 2});
+		assertNotNull(c.get(0, 1));
+		c.put(0, 3, new int[] {0, 1, 2, 3});
+
+		assertEquals(2, c.size());
+		assertNull(c.get(0, 2));
+		assertNotNull(c.get(0, 1));
+		assertNotNull(c.get(0, 3));
+		assertEquals(3, c.getNrofHits());
+		assertEquals(1, c.getNrofMisses());
+	}
+
+	public void testCachedPaths() {
+		DijkstraPathFinder f1 = new DijkstraPathFinder(null);
+		f1.enablePathCache(10);
+		DijkstraPathFinder f2 = new DijkstraPathFinder(null);
+		f2.enablePathCache(10);
+
+		List<MapNode> path = f1.getShortestPath(nodes.get(0), nodes.get(4));
+		assertEquals(5, path.size());
+		assertEquals(path, f2.getShortestPath(nodes.get(0), nodes.get(4)));
+		assertEquals(0, f1.getShortestPath(nodes.get(0), nodes.get(5)).size());
+		assertEquals(0, f2.getShortestPath(nodes.get(0), nodes.get(5)).size());
+
+		assertEquals(1, PathCache.getCaches().size());
+		PathCache c = PathCache.getCaches().get(0);
+		assertEquals(2, c.size());
+		assertEquals(2, c.getNrofHits());
+		assertEquals(2, c.getNrofMisses());
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.WKTMapReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import movement.map.DijkstraPathFinder;
+import movement.map.MapNode;
+import movement.map.PathTrees;
+import movement.map.SimMap;
+
+/**
+ * Benchmark for the shortest path algorithms of {@link DijkstraPathFinder}.
+ * Reads the Helsinki map of the default scenario (or the given WKT map
+ * files), finds shortest paths
+ * between random map nodes with all the algorithms and prints the speed in
+ * queries per second. Also checks that all algorithms find paths of the
+ * same length. Finally, compares path queries to a few destinations with
+ * precomputed {@link PathTrees} to the same queries with Dijkstra's
+ * algorithm.
+ * Usage: <CODE>PathFinderBenchmark [nrofQueries [nrofRounds [mapFiles...]]]
+ * </CODE>
+ */
+public class PathFinderBenchmark {
+	/** Map files of the default scenario */
+	private static final String[] MAP_FILES = {"data/roads.wkt",
+		"data/main_roads.wkt", "data/pedestrian_paths.wkt", "data/shops.wkt"};
+	/** Default number of queries per round */
+	private static final int DEF_NROF_QUERIES = 5000;
+	/** Default number of rounds per algorithm */
+	private static final int DEF_NROF_ROUNDS = 3;
+	/** Number of destinations for the path tree queries */
+	private static final int NROF_TREE_ROOTS = 20;
+
+	public static void main(String[] args) throws IOException {
+		int nrofQueries = (args.length > 0 ? Integer.parseInt(args[0]) :
+			DEF_NROF_QUERIES);
+		int nrofRounds = (args.length > 1 ? Integer.parseInt(args[1]) :
+			DEF_NROF_ROUNDS);
+
+		String[] mapFiles = MAP_FILES;
+		if (args.length > 2) {
+			mapFiles = new String[args.length - 2];
+			System.arraycopy(args, 2, mapFiles, 0, mapFiles.length);
+		}
+
+		WKTMapReader reader = new WKTMapReader(true);
+		for (int i=0; i<mapFiles.length; i++) {
+			reader.addPaths(new File(mapFiles[i]), i + 1);
+		}
+		SimMap map = reader.getMap();
+		List<MapNode> nodes = map.getNodes();
+		System.out.println("Read map of " + nodes.size() + " nodes");
+
+		Random rng = new Random(0);
+		MapNode[] from = new MapNode[nrofQueries];
+		MapNode[] to = new MapNode[nrofQueries];
+		for (int i=0; i<nrofQueries; i++) {
+			from[i] = nodes.get(rng.nextInt(nodes.size()));
+			to[i] = nodes.get(rng.nextInt(nodes.size()));
+		}
+
+		double[] lengths = null;
+		for (int alg=0; alg<DijkstraPathFinder.ALGORITHM_NAMES.length; alg++) {
+			DijkstraPathFinder finder = new DijkstraPathFinder(null, alg);
+			double[] algLengths = new double[nrofQueries];
+
+			for (int round = 1; round <= nrofRounds; round++) {
+				long start = System.nanoTime();
+				for (int i=0; i<nrofQueries; i++) {
+					algLengths[i] = getLength(finder.getShortestPath(from[i],
+							to[i]));
+				}
+				double secs = (System.nanoTime() - start) / 1e9;
+
+				System.out.printf("%s round %d: %d queries in %.2f s, " +
+						"%.0f queries/s\n",
+						DijkstraPathFinder.ALGORITHM_NAMES[alg], round,
+						nrofQueries, secs, nrofQueries / secs);
+			}
+
+			if (lengths == null) {
+				lengths = algLengths;
+				continue;
+			}
+			int nrofDifferent = 0;
+			for (int i=0; i<nrofQueries; i++) {
+				if (Math.abs(lengths[i] - algLengths[i]) > 1e-6) {
+					nrofDifferent++;
+				}
+			}
+			if (nrofDifferent > 0) {
+				System.out.println("ERROR: " + nrofDifferent + " paths have " +
+						"different length than with " +
+						DijkstraPathFinder.ALGORITHM_NAMES[0]);
+			}
+		}
+
+		List<MapNode> roots = new ArrayList<MapNode>();
+		for (int i=0; i<NROF_TREE_ROOTS; i++) {
+			roots.add(to[i]);
+		}
+		for (int i=0; i<nrofQueries; i++) {
+			to[i] = roots.get(i % roots.size());
+		}
+		long start = System.nanoTime();
+		PathTrees trees = PathTrees.getTrees(map.getGraph(), null, roots,
+				null);
+		System.out.printf("Computed %d path trees in %.2f s\n",
+				trees.getNrofTrees(), (System.nanoTime() - start) / 1e9);
+
+		DijkstraPathFinder finder = new DijkstraPathFinder(null);
+		for (int round = 1; round <= nrofRounds; round++) {
+			int nrofDifferent = 0;
+			double finderSecs = 0;
+			double treeSecs = 0;
+			for (int i=0; i<nrofQueries; i++) {
+				start = System.nanoTime();
+				double length = getLength(finder.getShortestPath(from[i],
+						to[i]));
+				finderSecs += (System.nanoTime() - start) / 1e9;
+				start = System.nanoTime();
+				double treeLength = getLength(trees.getPath(from[i], to[i]));
+				treeSecs += (System.nanoTime() - start) / 1e9;
+				if (Math.abs(length - treeLength) > 1e-6) {
+					nrofDifferent++;
+				}
+			}
+
+			System.out.printf("%d destinations round %d: %.0f queries/s " +
+					"with %s, %.0f queries/s with path trees\n",
+					roots.size(), round, nrofQueries / finderSecs,
+					DijkstraPathFinder.ALGORITHM_NAMES[0],
+					nrofQueries / treeSecs);
+			if (nrofDifferent > 0) {
+				System.out.println("ERROR: " + nrofDifferent + " paths " +
+						"from path trees have different length");
+			}
+		}
+	}
+
+	/**
+	 * Returns the length of a path
+	 * @param path The path as a list of map nodes
+	 * @return The length of the path or -1 for an empty path
+	 */
+	private static double getLength(List<MapNode> path) {
+		if (path.isEmpty()) {
+			return -1;
+		}
+		double length = 0;
+		MapNode prev = null;
+		for (MapNode n : path) {
+			if (prev != null) {
+				length += prev.getLocation().distance(n.getLocation());
+			}
+			prev = n;
+		}
+		return length;
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import routing.PassiveRouter;
+import core.Coord;
+import core.DTNHost;
+import core.MessageListener;
+import core.ModuleCommunicationBus;
+import core.MovementListener;
+import core.NetworkInterface;
+import core.SimClock;
+import core.World;
+
+public class PathTest extends TestCase {
+	private static final double DELTA = 0.00001;
+
+	/**
+	 * Creates path (0,0) -> (3,4) -> (3,10) -> (13,10) where the legs have
+	 * speeds 1, 2 and 5
+	 */
+	private Path createPath() {
+		Path p = new Path();
+		p.addWaypoint(new Coord(0, 0), 1);
+		p.addWaypoint(new Coord(3, 4), 1);
+		p.addWaypoint(new Coord(3, 10), 2);
+		p.addWaypoint(new Coord(13, 10), 5);
+		return p;
+	}
+
+	private void assertLocation(double x, double y, Coord c) {
+		assertEquals(x, c.getX(), DELTA);
+		assertEquals(y, c.getY(), DELTA);
+	}
+
+	public void testLengthAndTimes() {
+		Path p = createPath();
+		assertEquals(21, p.getLength(), DELTA);
+		assertEquals(0, p.getTimeTo(0), DELTA);
+		assertEquals(5, p.getTimeTo(1), DELTA);
+		assertEquals(8, p.getTimeTo(2), DELTA);
+		assertEquals(10, p.getTimeTo(3), DELTA);
+
+		p.addWaypoint(new Coord(13, 0), 10);
+		assertEquals(31, p.getLength(), DELTA);
+		assertEquals(11, p.getTimeTo(4), DELTA);
+
+		p = new Path(2);
+		p.addWaypoint(new Coord(0, 0));
+		p.addWaypoint(new Coord(0, 10));
+		assertEquals(5, p.getTimeTo(1), DELTA);
+		p.setSpeed(5);
+		assertEquals(2, p.getTimeTo(1), DELTA);
+		assertEquals(0, new Path(1).getLength(), DELTA);
+	}
+
+	public void testLocationAt() {
+		Path p = createPath();
+		assertLocation(0, 0, p.getLocationAt(-1));
+		assertLocation(0, 0, p.getLocationAt(0));
+		assertLocation(1.8, 2.4, p.getLocationAt(3));
+		assertLocation(3, 4, p.getLocationAt(5));
+		assertLocation(3, 7, p.getLocationAt(6.5));
+		assertLocation(8, 10, p.getLocationAt(9));
+		assertLocation(13, 10, p.getLocationAt(10));
+		assertLocation(13, 10, p.getLocationAt(100));
+		assertNull(new Path(1).getLocationAt(1));
+
+		/* zero speed leg is never passed */
+		p = new Path(0);
+		p.addWaypoint(new Coord(1, 1));
+		p.addWaypoint(new Coord(2, 2));
+		assertLocation(1, 1, p.getLocationAt(100));
+	}
+
+	/**
+	 * Creates a movement model that gives the path once
+	 * @param start Initial location of the host
+	 * @param path The path
+	 * @return The movement model
+	 */
+	private MovementModel createMovement(Coord start, final Path path) {
+		return new StationaryMovement(start) {
+			private boolean pathGiven = false;
+			@Override
+			public Path getPath() {
+				if (pathGiven) {
+					return null;
+				}
+				pathGiven = true;
+				return path;
+			}
+			@Override
+			public double nextPathAvailable() {
+				return 0;
+			}
+			@Override
+			public StationaryMovement replicate() {
+				return this;
+			}
+		};
+	}
+
+	public void testHostLocationAt() {
+		SimClock clock = SimClock.getInstance();
+		clock.setTime(0);
+		MovementModel mm = createMovement(new Coord(0, 0), createPath());
+		DTNHost host = new TestUtils(null, null, new TestSettings())
+			.createHost(mm, null);
+		assertLocation(0, 0, host.getLocationAt(10));
+
+		host.move(0); // start the path
+		for (int i=1; i<=6; i++) {
+			clock.setTime(i);
+			host.move(1);
+		}
+		assertLocation(3, 6, host.getLocation());
+		assertLocation(3, 6, host.getLocationAt(6));
+		assertLocation(3, 8, host.getLocationAt(7));
+		assertLocation(8, 10, host.getLocationAt(9));
+		assertLocation(13, 10, host.getLocationAt(20));
+
+		for (int i=7; i<=12; i++) {
+			clock.setTime(i);
+			host.move(1);
+		}
+		assertLocation(13, 10, host.getLocation());
+		assertLocation(13, 10, host.getLocationAt(20));
+	}
+
+	/**
+	 * Moves a host on the test path, starting 3 meters before the path
+	 * @param listener Movement listener for the host
+	 * @return The locations of the host every half second
+	 */
+	private List<Coord> moveOnPath(MovementListener listener) {
+		SimClock clock = SimClock.getInstance();
+		clock.setTime(0);
+		List<MovementListener> movLs = new ArrayList<MovementListener>();
+		movLs.add(listener);
+		DTNHost host = new DTNHost(new ArrayList<MessageListener>(), movLs,
+				"h", new ArrayList<NetworkInterface>(),
+				new ModuleCommunicationBus(),
+				createMovement(new Coord(0, -3), createPath()),
+				new PassiveRouter(new TestSettings()));
+
+		List<Coord> locations = new ArrayList<Coord>();
+		host.move(0); // start the path
+		locations.add(host.getLocation().clone());
+		for (int i=1; i<=32; i++) {
+			clock.setTime(i * 0.5);
+			host.move(0.5);
+			locations.add(host.getLocation().clone());
+		}
+		return locations;
+	}
+
+	public void testInterpolatedMovement() {
+		final List<Coord> destinations = new ArrayList<Coord>();
+		MovementListener listener = new MovementListener() {
+			public void newDestination(DTNHost host, Coord destination,
+					double speed) {
+				destinations.add(destination);
+			}
+			public void initialLocation(DTNHost host, Coord location) { }
+		};
+
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				DTNHost.INTERPOLATE_MOVEMENT_S, "true");
+		DTNHost.reset();
+		List<Coord> locations;
+		try {
+			locations = moveOnPath(listener);
+		} finally {
+			new TestSettings();
+			DTNHost.reset();
+		}
+
+		/* every waypoint is still reported, in order */
+		assertEquals(4, destinations.size());
+		assertLocation(0, 0, destinations.get(0));
+		assertLocation(3, 4, destinations.get(1));
+		assertLocation(3, 10, destinations.get(2));
+		assertLocation(13, 10, destinations.get(3));
+
+		/* lead-in to the first waypoint takes 3 s, then the path 10 s */
+		Path path = createPath();
+		for (int i=0; i<locations.size(); i++) {
+			double time = i * 0.5;
+			if (time < 3) {
+				assertLocation(0, time - 3, locations.get(i));
+			} else {
+				Coord c = path.getLocationAt(time - 3);
+				assertLocation(c.getX(), c.getY(), locations.get(i));
+			}
+		}
+		assertLocation(3, 6, locations.get(18));
+		assertLocation(13, 10, locations.get(32));
+	}
+}
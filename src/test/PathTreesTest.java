@@ -0,0 +1,122 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.map.DijkstraPathFinder;
+import movement.map.MapGraph;
+import movement.map.MapNode;
+import movement.map.PathTrees;
+import core.Coord;
+
+public class PathTreesTest extends TestCase {
+	private static final int SIZE = 6;
+	private List<MapNode> nodes;
+	private MapGraph graph;
+	private List<MapNode> roots;
+
+	/**
+	 * Creates a grid of SIZE x SIZE nodes with type 1, except the nodes of
+	 * the second column that have type 2
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+		nodes = new ArrayList<MapNode>();
+		for (int y=0; y<SIZE; y++) {
+			for (int x=0; x<SIZE; x++) {
+				MapNode n = new MapNode(new Coord(x * 10, y * 10 + x));
+				n.addType(x == 1 ? 2 : 1);
+				if (x > 0) {
+					connect(n, nodes.get(nodes.size() - 1));
+				}
+				if (y > 0) {
+					connect(n, nodes.get(nodes.size() - SIZE));
+				}
+				nodes.add(n);
+			}
+		}
+		graph = new MapGraph(nodes);
+
+		roots = new ArrayList<MapNode>();
+		roots.add(nodes.get(0));
+		roots.add(nodes.get(SIZE * SIZE - 1));
+		roots.add(nodes.get(SIZE + 3));
+	}
+
+	private void connect(MapNode n1, MapNode n2) {
+		n1.addNeighbor(n2);
+		n2.addNeighbor(n1);
+	}
+
+	public void testPaths() {
+		checkTrees(PathTrees.getTrees(graph, null, roots, null), null);
+	}
+
+	public void testOkMapNodes() {
+		int[] okMaps = {1};
+		PathTrees trees = PathTrees.getTrees(graph, okMaps, roots, null);
+		checkTrees(trees, okMaps);
+		assertNull(trees.getPath(nodes.get(2), nodes.get(0)));
+	}
+
+	public void testCacheFile() throws Exception {
+		File mapCache = File.createTempFile("PathTreesTest", ".simmap");
+		mapCache.deleteOnExit();
+		File cacheFile = PathTrees.getCacheFile(mapCache, null, roots);
+		cacheFile.deleteOnExit();
+
+		PathTrees.getTrees(graph, null, roots, cacheFile);
+		assertTrue(cacheFile.exists());
+		checkTrees(PathTrees.getTrees(graph, null, roots, cacheFile), null);
+
+		List<MapNode> otherRoots = roots.subList(0, 2);
+		File otherFile = PathTrees.getCacheFile(mapCache, null, otherRoots);
+		assertFalse(cacheFile.equals(otherFile));
+		/* trees of other roots must not be read from the file */
+		assertNull(PathTrees.getTrees(graph, null, otherRoots, cacheFile)
+				.getPath(nodes.get(5), roots.get(2)));
+	}
+
+	/**
+	 * Checks that the trees give shortest paths from all (OK) nodes to
+	 * the roots and no paths to other nodes
+	 */
+	private void checkTrees(PathTrees trees, int[] okMaps) {
+		DijkstraPathFinder finder = new DijkstraPathFinder(okMaps);
+		assertEquals(roots.size(), trees.getNrofTrees());
+		for (MapNode from : nodes) {
+			if (okMaps != null && !from.isType(okMaps)) {
+				continue;
+			}
+			for (MapNode root : roots) {
+				List<MapNode> path = trees.getPath(from, root);
+				List<MapNode> expected = finder.getShortestPath(from, root);
+				if (expected.isEmpty()) {
+					assertNull(path);
+					continue;
+				}
+				assertSame(from, path.get(0));
+				assertSame(root, path.get(path.size() - 1));
+				assertEquals(getLength(expected), getLength(path), 0.0001);
+			}
+			assertNull(trees.getPath(from, nodes.get(1)));
+		}
+	}
+
+	private double getLength(List<MapNode> path) {
+		double length = 0;
+		for (int i=1; i<path.size(); i++) {
+			MapNode n1 = path.get(i-1);
+			MapNode n2 = path.get(i);
+			assertTrue(n1.getNeighbors().contains(n2));
+			length += n1.getLocation().distance(n2.getLocation());
+		}
+		return length;
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.MovementRecordReader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import movement.Path;
+import movement.RecordedMovement;
+import core.Coord;
+import core.DTNHost;
+import core.SimClock;
+import core.SimError;
+
+/**
+ * Tests for the movement record reader and the recorded movement model
+ */
+public class RecordedMovementTest extends TestCase {
+	private static final double DELTA = 0.00001;
+
+	private File file;
+	private SimClock clock;
+
+	/**
+	 * Writes a record of two hosts: host 0 starts at (0,0) and goes to (3,4)
+	 * with speed 1 at time 0 and then stays at (3,4) from time 5; host 1
+	 * starts at (10,0), gets no path at time 0 and is moved to (20,0) when
+	 * it goes to (20,5) with speed 2 at time 2. The file ends with a
+	 * truncated record.
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+		MovementRecordReader.reset();
+		DTNHost.reset();
+		clock = SimClock.getInstance();
+		clock.setTime(0);
+
+		file = File.createTempFile("RecordedMovementTest",
+				MovementRecordReader.RECORD_EXT);
+		file.deleteOnExit();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)));
+		out.writeInt(MovementRecordReader.RECORD_MAGIC);
+		out.writeInt(MovementRecordReader.RECORD_VERSION);
+		out.writeInt(2);
+		writeLocation(out, 0, 0, 0);
+		writeLocation(out, 1, 10, 0);
+
+		writeRecord(out, 0, 0, 0, 0, new double[] {1}, 0, 0, 3, 4);
+		writeRecord(out, 1, 0, 10, 0, null);
+		writeRecord(out, 1, 2, 20, 0, new double[] {2, 2}, 20, 0, 20, 5);
+		writeRecord(out, 0, 5, 3, 4, new double[] {0}, 3, 4);
+		out.writeInt(0);
+		out.writeDouble(6); // truncated record
+		out.close();
+	}
+
+	private void writeLocation(DataOutputStream out, int address, double x,
+			double y) throws IOException {
+		out.writeInt(address);
+		out.writeDouble(x);
+		out.writeDouble(y);
+	}
+
+	private void writeRecord(DataOutputStream out, int address, double time,
+			double x, double y, double[] speeds, double... coords)
+			throws IOException {
+		out.writeInt(address);
+		out.writeDouble(time);
+		out.writeDouble(x);
+		out.writeDouble(y);
+		if (speeds == null) {
+			out.writeInt(-1);
+			out.writeInt(0);
+			return;
+		}
+		out.writeInt(coords.length / 2);
+		out.writeInt(speeds.length);
+		for (double s : speeds) {
+			out.writeDouble(s);
+		}
+		for (double c : coords) {
+			out.writeDouble(c);
+		}
+	}
+
+	private void assertLocation(double x, double y, Coord c) {
+		assertEquals(x, c.getX(), DELTA);
+		assertEquals(y, c.getY(), DELTA);
+	}
+
+	public void testReader() {
+		MovementRecordReader r = MovementRecordReader.getInstance(
+				file.getPath());
+		assertSame(r, MovementRecordReader.getInstance(file.getPath()));
+		assertTrue(r.hasHost(1));
+		assertFalse(r.hasHost(2));
+		assertLocation(10, 0, r.getInitialLocation(1));
+
+		assertEquals(2, r.getNrofPaths(0));
+		assertEquals(2, r.getNrofPaths(1));
+		assertEquals(5, r.getPathTime(0, 1), DELTA);
+		assertNull(r.getPath(1, 0));
+		assertLocation(20, 0, r.getPathLocation(1, 1));
+
+		Path p = r.getPath(1, 1);
+		assertEquals(Arrays.asList(new Coord(20, 0), new Coord(20, 5)),
+				p.getCoords());
+		assertEquals(Arrays.asList(2.0, 2.0), p.getSpeeds());
+		p = r.getPath(0, 1);
+		assertEquals(1, p.getCoords().size());
+		assertEquals(Arrays.asList(0.0), p.getSpeeds());
+	}
+
+	public void testReplay() {
+		DTNHost h0 = createHost();
+		DTNHost h1 = createHost();
+		assertLocation(0, 0, h0.getLocation());
+		assertLocation(10, 0, h1.getLocation());
+
+		for (int i=0; i<=3; i++) {
+			clock.setTime(i);
+			h0.move(1);
+			h1.move(1);
+		}
+		assertLocation(2.4, 3.2, h0.getLocation());
+		assertLocation(20, 4, h1.getLocation());
+
+		for (int i=4; i<=10; i++) {
+			clock.setTime(i);
+			h0.move(1);
+			h1.move(1);
+		}
+		assertLocation(3, 4, h0.getLocation());
+		assertLocation(20, 5, h1.getLocation());
+	}
+
+	public void testOutOfSync() {
+		DTNHost h0 = createHost();
+		clock.setTime(1); // the first path was recorded at time 0
+		try {
+			h0.move(1);
+			fail("Replay out of sync was not detected");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+
+	private DTNHost createHost() {
+		TestSettings s = new TestSettings();
+		s.putSetting(RecordedMovement.RECORD_FILE_S, file.getPath());
+		RecordedMovement mm = new RecordedMovement(s);
+		return new TestUtils(null, null, s).createHost(mm, null);
+	}
+}
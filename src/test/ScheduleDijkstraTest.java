@@ -5,7 +5,9 @@
 package test;
 
 import java.util.List;
+import java.util.Random;
 
+import routing.schedule.EarliestArrivalTable;
 import routing.schedule.ScheduleDijkstra;
 import routing.schedule.ScheduleOracle;
 import routing.schedule.ScheduleEntry;
@@ -96,4 +98,142 @@ public class ScheduleDijkstraTest extends TestCase {
 		comparePaths(new int[]{3,12,13,14,20}, d.getShortestPath(3, 20, 40));
 	}
 
+	public void testConnectedOrder() {
+		oracle.addEntry(5, 1, 6, 10); /* added out of time order */
+		oracle.addEntry(25, 1, 7, 10);
+
+		List<ScheduleEntry> con = oracle.getConnected(1, 0);
+		assertEquals(6, con.size());
+		for (int i=1; i<con.size(); i++) {
+			assertTrue(con.get(i-1).getTime() <= con.get(i).getTime());
+		}
+
+		con = oracle.getConnected(1, 20);
+		assertEquals(4, con.size());
+		assertEquals(20.0, con.get(0).getTime());
+		assertEquals(3, con.get(0).getTo()); /* insertion order for ties */
+		assertEquals(4, con.get(1).getTo());
+
+		assertEquals(0, oracle.getConnected(1, 31).size());
+		assertEquals(0, oracle.getConnected(2, 0).size());
+	}
+
+	public void testEarliestArrivalTable() {
+		oracle.addEntry(40, 3, 10, 5);
+		oracle.addEntry(60, 10, 20, 10);
+		oracle.addEntry(100, 1, 20, 5);
+
+		EarliestArrivalTable table = new EarliestArrivalTable(oracle, 2);
+
+		/* 1 -> 3 (@20) -> 10 (@40) -> 20 (@60) */
+		assertEquals(3, table.getNextHop(1, 20, 0));
+		assertEquals(70.0, table.getArrivalTime(1, 20, 0));
+		assertEquals(3, table.getNextHop(1, 20, 20));
+		/* misses the hop to 3, takes direct late */
+		assertEquals(20, table.getNextHop(1, 20, 21));
+		assertEquals(105.0, table.getArrivalTime(1, 20, 21));
+		/* too late for any path */
+		assertEquals(EarliestArrivalTable.NO_ROUTE,
+				table.getNextHop(1, 20, 101));
+		assertEquals(EarliestArrivalTable.NO_ROUTE, table.getNextHop(20, 1, 0));
+		assertEquals(EarliestArrivalTable.NO_ROUTE, table.getNextHop(1, 99, 0));
+	}
+
+	public void testContactWindows() {
+		oracle = new ScheduleOracle();
+		d = new ScheduleDijkstra(oracle);
+		/* 1-2 during 0-100 and, nested in it, 2-3 during 10-20 */
+		oracle.addContact(0, 100, 1, 2);
+		oracle.addContact(10, 20, 2, 3);
+		oracle.addContact(50, 60, 3, 4);
+
+		List<ScheduleEntry> con = oracle.getConnected(2, 15);
+		assertEquals(1, con.size()); /* window open at 15 */
+		assertEquals(0, oracle.getConnected(2, 21).size());
+
+		comparePaths(new int[]{1,2,3}, d.getShortestPath(1, 3, 5));
+		comparePaths(new int[]{1,2,3,4}, d.getShortestPath(1, 4, 15));
+		assertEquals(0, d.getShortestPath(1, 3, 25).size());
+
+		EarliestArrivalTable table = new EarliestArrivalTable(oracle, 2);
+		assertEquals(2, table.getNextHop(1, 3, 5));
+		assertEquals(10.0, table.getArrivalTime(1, 3, 5));
+		assertEquals(2, table.getNextHop(1, 3, 20));
+		assertEquals(20.0, table.getArrivalTime(1, 3, 20));
+		assertEquals(50.0, table.getArrivalTime(1, 4, 20));
+		assertEquals(EarliestArrivalTable.NO_ROUTE, table.getNextHop(1, 3, 21));
+		assertEquals(2, table.getNextHop(1, 2, 21));
+		assertEquals(21.0, table.getArrivalTime(1, 2, 21));
+		assertEquals(2, table.getNextHop(1, 2, 100));
+		assertEquals(EarliestArrivalTable.NO_ROUTE,
+				table.getNextHop(1, 2, 100.5));
+		assertEquals(EarliestArrivalTable.NO_ROUTE, table.getNextHop(4, 1, 0));
+	}
+
+	/**
+	 * Checks that the (compressed) table gives the earliest arrival times
+	 * and first hops that lead to them, with schedules of entries with and
+	 * without time windows
+	 */
+	public void testEarliestArrivalTableMatchesSearch() {
+		Random rng = new Random(1);
+		int nrofNodes = 15;
+		oracle = new ScheduleOracle();
+		d = new ScheduleDijkstra(oracle);
+		for (int i=0; i<300; i++) {
+			int from = rng.nextInt(nrofNodes);
+			int to = (from + 1 + rng.nextInt(nrofNodes - 1)) % nrofNodes;
+			int start = rng.nextInt(500);
+			if (i % 3 == 0) {
+				oracle.addContact(start, start + rng.nextInt(30), from, to);
+			} else {
+				oracle.addEntry(start, from, to, 1 + rng.nextInt(20));
+			}
+		}
+
+		EarliestArrivalTable table = new EarliestArrivalTable(oracle, 2);
+		double[] arrivals = new double[nrofNodes];
+		int[] hops = new int[nrofNodes];
+		for (int from=0; from<nrofNodes; from++) {
+			for (double t=0; t<540; t+=2.5) {
+				d.getEarliestArrivals(from, t, arrivals, hops);
+				for (int to=0; to<nrofNodes; to++) {
+					if (to == from) {
+						continue;
+					}
+					int hop = table.getNextHop(from, to, t);
+					if (arrivals[to] == Double.MAX_VALUE) {
+						assertEquals(EarliestArrivalTable.NO_ROUTE, hop);
+						continue;
+					}
+					assertEquals(arrivals[to],
+							table.getArrivalTime(from, to, t));
+					assertEquals("Hop " + hop + " from " + from + " to " +
+							to + " at " + t, arrivals[to],
+							getArrivalVia(from, hop, to, t));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the earliest arrival time at a destination when the first hop
+	 * is fixed
+	 */
+	private double getArrivalVia(int from, int hop, int to, double time) {
+		double[] arrivals = new double[oracle.getMaxNodeIndex() + 1];
+		int[] hops = new int[arrivals.length];
+		double best = Double.MAX_VALUE;
+
+		for (ScheduleEntry se : oracle.getConnected(from, time)) {
+			if (se.getTo() != hop) {
+				continue;
+			}
+			double atHop = Math.max(time, se.getTime()) + se.getDuration();
+			d.getEarliestArrivals(hop, atHop, arrivals, hops);
+			best = Math.min(best, arrivals[to]);
+		}
+		return best;
+	}
+
 }
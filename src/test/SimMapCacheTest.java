@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.WKTMapReader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.map.MapNode;
+import movement.map.SimMap;
+import movement.map.SimMapCache;
+
+public class SimMapCacheTest extends TestCase {
+	private static final String MAP1 =
+		"LINESTRING (1.0 1.0, 2.0 1.0, 3.0 1.0, 8.0 1.0)\n" +
+		"LINESTRING (1.0 1.0, 1.0 3.0)\n" +
+		"LINESTRING (2.0 1.0, 2.0 0.0, 3.0 0.0, 3.0 1.0)\n";
+	private static final String MAP2 =
+		"LINESTRING (1.0 3.0, 2.5 3.25, 3.0 3.0)\n" +
+		"LINESTRING (3.0 1.0, 3.0 3.0)\n";
+
+	private File cacheFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		cacheFile = File.createTempFile("SimMapCacheTest",
+				SimMapCache.CACHE_EXT);
+		cacheFile.deleteOnExit();
+	}
+
+	public void testWriteAndRead() throws IOException {
+		WKTMapReader r = new WKTMapReader(true);
+		r.addPaths(new StringReader(MAP1), 1);
+		r.addPaths(new StringReader(MAP2), 2);
+		SimMap map = r.getMap();
+
+		SimMapCache.write(map, cacheFile);
+		SimMap cached = SimMapCache.read(cacheFile);
+
+		List<MapNode> nodes = map.getNodes();
+		List<MapNode> cachedNodes = cached.getNodes();
+		assertEquals(nodes.size(), cachedNodes.size());
+		for (int i=0; i<nodes.size(); i++) {
+			MapNode n = nodes.get(i);
+			MapNode c = cachedNodes.get(i);
+			assertEquals(n.getLocation(), c.getLocation());
+			assertEquals(n.getTypeMask(), c.getTypeMask());
+			assertEquals(n.getNeighbors().size(), c.getNeighbors().size());
+			for (int j=0; j<n.getNeighbors().size(); j++) {
+				assertEquals(n.getNeighbors().get(j).getLocation(),
+						c.getNeighbors().get(j).getLocation());
+			}
+			assertSame(c, cached.getNodeByCoord(c.getLocation()));
+		}
+		assertEquals(map.getMinBound(), cached.getMinBound());
+		assertEquals(map.getMaxBound(), cached.getMaxBound());
+	}
+
+	public void testKey() throws IOException {
+		File f1 = writeTmp(MAP1);
+		File f2 = writeTmp(MAP2);
+		List<File> files = new ArrayList<File>();
+		files.add(f1);
+		files.add(f2);
+		String key = SimMapCache.getKey(files);
+
+		assertEquals(key, SimMapCache.getKey(files));
+		files.add(0, files.remove(1));
+		assertFalse(key.equals(SimMapCache.getKey(files)));
+
+		files.remove(0);
+		assertFalse(key.equals(SimMapCache.getKey(files)));
+	}
+
+	public void testInvalidFile() throws IOException {
+		PrintWriter out = new PrintWriter(new FileOutputStream(cacheFile));
+		out.println(MAP1);
+		out.close();
+
+		try {
+			SimMapCache.read(cacheFile);
+			fail("Invalid file was read");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	private File writeTmp(String contents) throws IOException {
+		File f = File.createTempFile("SimMapCacheTest", ".wkt");
+		f.deleteOnExit();
+		PrintWriter out = new PrintWriter(f);
+		out.print(contents);
+		out.close();
+		return f;
+	}
+}
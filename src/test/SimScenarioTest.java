@@ -0,0 +1,119 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimClock;
+import core.SimScenario;
+import core.World;
+
+/**
+ * Tests for creating the hosts of a scenario.
+ */
+public class SimScenarioTest extends TestCase {
+	private static final int NROF_HOSTS = 50;
+
+	private TestSettings ts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		ts.putSetting(SimScenario.SCENARIO_NS + "." +
+				SimScenario.NROF_GROUPS_S, "2");
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.RNG_SEED, "3");
+
+		ts.setNameSpace(SimScenario.GROUP_NS);
+		ts.putSetting(SimScenario.NROF_HOSTS_S, "" + NROF_HOSTS);
+		ts.putSetting(SimScenario.ROUTER_S, "PassiveRouter");
+		ts.putSetting(SimScenario.NROF_INTERF_S, "1");
+		ts.putSetting(SimScenario.INTERFACENAME_S + "1", "testInterface");
+		ts.restoreNameSpace();
+		ts.putSetting(SimScenario.GROUP_NS + "1." + SimScenario.GROUP_ID_S,
+				"a");
+		ts.putSetting(SimScenario.GROUP_NS + "1." +
+				SimScenario.MOVEMENT_MODEL_S, "RandomWaypoint");
+		ts.putSetting(SimScenario.GROUP_NS + "2." + SimScenario.GROUP_ID_S,
+				"b");
+		ts.putSetting(SimScenario.GROUP_NS + "2." +
+				SimScenario.MOVEMENT_MODEL_S, "RandomWalk");
+
+		ts.setNameSpace("testInterface");
+		ts.putSetting(SimScenario.INTTYPE_S, "SimpleBroadcastInterface");
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "10");
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1000");
+		ts.restoreNameSpace();
+	}
+
+	/**
+	 * Creates the hosts of a new scenario with the current settings
+	 * @return The hosts of the scenario
+	 */
+	@SuppressWarnings("serial")
+	private List<DTNHost> createHosts() {
+		SimClock.reset();
+		DTNHost.reset();
+		MovementModel.reset();
+		NetworkInterface.reset();
+		ConnectivityGrid.reset();
+		return new SimScenario() {}.getHosts();
+	}
+
+	public void testParallelHostCreation() {
+		ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				SimScenario.PARALLEL_HOSTS_S, "true");
+		List<DTNHost> hosts1 = createHosts();
+		List<DTNHost> hosts2 = createHosts();
+
+		assertEquals(2 * NROF_HOSTS, hosts1.size());
+		assertEquals(hosts1.size(), hosts2.size());
+		for (int i=0; i<hosts1.size(); i++) {
+			DTNHost h1 = hosts1.get(i);
+			DTNHost h2 = hosts2.get(i);
+			assertEquals(i, h1.getAddress());
+			assertEquals(i, h2.getAddress());
+			assertEquals((i < NROF_HOSTS ? "a" : "b") + i, h1.toString());
+			assertEquals(h1.getLocation(), h2.getLocation());
+			assertEquals(1, h1.getInterfaces().size());
+			assertEquals(h1.getLocation(),
+					h1.getInterfaces().get(0).getLocation());
+		}
+
+		/* hosts don't all get the same location */
+		assertFalse(hosts1.get(0).getLocation().equals(
+				hosts1.get(1).getLocation()));
+		assertFalse(hosts1.get(0).getLocation().equals(
+				hosts1.get(NROF_HOSTS).getLocation()));
+
+		/* locations depend only on the group and the index in the group */
+		ts.putSetting(SimScenario.GROUP_NS + "1." + SimScenario.NROF_HOSTS_S,
+				"10");
+		List<DTNHost> hosts3 = createHosts();
+		assertEquals(10 + NROF_HOSTS, hosts3.size());
+		for (int i=0; i<NROF_HOSTS; i++) {
+			assertEquals(hosts1.get(NROF_HOSTS + i).getLocation(),
+					hosts3.get(10 + i).getLocation());
+		}
+	}
+
+	public void testSerialHostCreation() {
+		List<DTNHost> hosts1 = createHosts();
+		List<DTNHost> hosts2 = createHosts();
+
+		assertEquals(2 * NROF_HOSTS, hosts1.size());
+		for (int i=0; i<hosts1.size(); i++) {
+			assertEquals(i, hosts1.get(i).getAddress());
+			assertEquals(hosts1.get(i).getLocation(),
+					hosts2.get(i).getLocation());
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import movement.map.MapNode;
+import movement.map.SimMap;
+import movement.map.SpatialIndex;
+import core.Coord;
+
+public class SpatialIndexTest extends TestCase {
+	private static final int NROF_NODES = 500;
+	private static final int NROF_QUERIES = 500;
+	private Random rng;
+	private List<MapNode> nodes;
+
+	/**
+	 * Creates random nodes on integer coordinates, so there are nodes in
+	 * the same location and equally near nodes
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+		rng = new Random(1);
+		nodes = new ArrayList<MapNode>();
+		for (int i=0; i<NROF_NODES; i++) {
+			nodes.add(new MapNode(new Coord(rng.nextInt(50),
+					rng.nextInt(50))));
+		}
+	}
+
+	private Coord randomCoord() {
+		if (rng.nextBoolean()) {
+			return new Coord(rng.nextInt(60) - 5, rng.nextInt(60) - 5);
+		}
+		return new Coord(rng.nextDouble() * 60 - 5, rng.nextDouble() * 60 - 5);
+	}
+
+	public void testNearestNode() {
+		SpatialIndex index = new SpatialIndex(nodes);
+		for (int i=0; i<NROF_QUERIES; i++) {
+			Coord c = randomCoord();
+			assertSame(c.toString(), getNearest(c), index.getNearestNode(c));
+		}
+
+		assertNull(new SpatialIndex(new ArrayList<MapNode>()).getNearestNode(
+				new Coord(0, 0)));
+	}
+
+	public void testNodesInRange() {
+		SpatialIndex index = new SpatialIndex(nodes);
+		for (int i=0; i<NROF_QUERIES; i++) {
+			Coord c = randomCoord();
+			double range = rng.nextDouble() * 20;
+			List<MapNode> expected = new ArrayList<MapNode>();
+			for (MapNode n : nodes) {
+				if (n.getLocation().distance(c) <= range) {
+					expected.add(n);
+				}
+			}
+			assertEquals(expected, index.getNodesInRange(c, range));
+		}
+	}
+
+	public void testMapChanges() {
+		SimMap map = new SimMap(nodes);
+		SpatialIndex index = map.getSpatialIndex();
+		assertSame(index, map.getSpatialIndex());
+
+		map.translate(100, 0);
+		index = map.getSpatialIndex();
+		Coord c = new Coord(110, 10);
+		assertSame(getNearest(c), index.getNearestNode(c));
+		map.mirror();
+		assertNotSame(index, map.getSpatialIndex());
+	}
+
+	/**
+	 * Returns the nearest node using a linear search
+	 */
+	private MapNode getNearest(Coord c) {
+		MapNode nearest = null;
+		double minDistance = Double.MAX_VALUE;
+		for (MapNode n : nodes) {
+			double distance = n.getLocation().distance(c);
+			if (distance < minDistance) {
+				minDistance = distance;
+				nearest = n;
+			}
+		}
+		return nearest;
+	}
+}
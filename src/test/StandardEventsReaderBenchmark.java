@@ -0,0 +1,96 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ExternalEvent;
+import input.StandardEventsReader;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Benchmark for the parsing speed of {@link StandardEventsReader}. Generates
+ * a connection trace (with some message events) to a temporary file, reads
+ * it a few times and prints the reading speed in events per second.
+ * Usage: <CODE>StandardEventsReaderBenchmark [nrofLines [nrofRounds]]</CODE>
+ */
+public class StandardEventsReaderBenchmark {
+	/** Default number of lines in the generated trace */
+	private static final int DEF_NROF_LINES = 2000000;
+	/** Default number of read rounds */
+	private static final int DEF_NROF_ROUNDS = 3;
+	/** Number of hosts in the generated trace */
+	private static final int NROF_HOSTS = 1000;
+	/** How many events are read at a time */
+	private static final int BATCH_SIZE = 500;
+
+	public static void main(String[] args) throws IOException {
+		int nrofLines = (args.length > 0 ? Integer.parseInt(args[0]) :
+			DEF_NROF_LINES);
+		int nrofRounds = (args.length > 1 ? Integer.parseInt(args[1]) :
+			DEF_NROF_ROUNDS);
+
+		File trace = File.createTempFile("eventsBench", ".txt");
+		trace.deleteOnExit();
+		generateTrace(trace, nrofLines);
+		System.out.println("Generated " + nrofLines + " lines (" +
+				trace.length() / 1024 + " kB)");
+
+		for (int round = 1; round <= nrofRounds; round++) {
+			long start = System.nanoTime();
+			StandardEventsReader reader = new StandardEventsReader(trace);
+			long nrofEvents = 0;
+			List<ExternalEvent> events;
+			while ((events = reader.readEvents(BATCH_SIZE)).size() > 0) {
+				nrofEvents += events.size();
+			}
+			reader.close();
+			double secs = (System.nanoTime() - start) / 1e9;
+
+			System.out.printf("Round %d: %d events in %.2f s, %.0f events/s\n",
+					round, nrofEvents, secs, nrofEvents / secs);
+		}
+	}
+
+	/**
+	 * Generates a trace of mostly connection events
+	 * @param file The file to write the trace to
+	 * @param nrofLines Number of lines to generate
+	 * @throws IOException if writing failed
+	 */
+	private static void generateTrace(File file, int nrofLines)
+			throws IOException {
+		Random rng = new Random(0);
+		BufferedWriter out = new BufferedWriter(new FileWriter(file));
+		double time = 0;
+
+		out.write("# generated trace for StandardEventsReaderBenchmark\n");
+		for (int i = 0; i < nrofLines; i++) {
+			time += rng.nextInt(1000) / 1000.0;
+			int a = rng.nextInt(NROF_HOSTS);
+			int b = rng.nextInt(NROF_HOSTS);
+			String t = String.format(Locale.US, "%.3f", time);
+
+			if (i % 10 == 0) {
+				out.write(t + "\tC\tM" + i + "\tp" + a + "\tp" + b + "\t" +
+						(1 + rng.nextInt(1000)) + "k\n");
+			}
+			else if (i % 10 == 1) {
+				out.write(t + "\tS\tM" + (i - 1) + "\tp" + a + "\tp" + b +
+						"\n");
+			}
+			else {
+				out.write(t + " CONN " + a + " " + b + " " +
+						(rng.nextBoolean() ? "up" : "down") + "\n");
+			}
+		}
+		out.close();
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.map.MapNode;
+import movement.map.SimMap;
+import movement.map.WKTFileCache;
+import core.Coord;
+
+public class WKTFileCacheTest extends TestCase {
+	private static final String DATA =
+		"POINT (10 20)\n" +
+		"LINESTRING (1 2, 3 4, 5 6)\n" +
+		"POINT (30 40)\n";
+
+	private File file;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		WKTFileCache.reset();
+		file = File.createTempFile("WKTFileCacheTest", ".wkt");
+		file.deleteOnExit();
+		PrintWriter out = new PrintWriter(new FileWriter(file));
+		out.print(DATA);
+		out.close();
+	}
+
+	private SimMap createMap() {
+		List<MapNode> nodes = new ArrayList<MapNode>();
+		nodes.add(new MapNode(new Coord(0, 0)));
+		return new SimMap(nodes);
+	}
+
+	public void testPoints() throws Exception {
+		SimMap map = createMap();
+		List<Coord> points = WKTFileCache.getPoints(file, map);
+		assertEquals(2, points.size());
+		assertEquals(new Coord(10, 20), points.get(0));
+		assertEquals(new Coord(30, 40), points.get(1));
+
+		/* modifying the returned coordinates doesn't change the cache */
+		points.get(0).translate(1, 1);
+		/* the file is parsed only once */
+		assertTrue(file.delete());
+		points = WKTFileCache.getPoints(file, map);
+		assertEquals(new Coord(10, 20), points.get(0));
+
+		WKTFileCache.reset();
+		try {
+			WKTFileCache.getPoints(file, map);
+			fail("Deleted file was read after reset");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	public void testTransformation() throws Exception {
+		SimMap map = createMap();
+		assertEquals(new Coord(10, 20), WKTFileCache.getPoints(file, map)
+				.get(0));
+
+		map.mirror();
+		map.translate(100, 50);
+		List<Coord> points = WKTFileCache.getPoints(file, map);
+		assertEquals(new Coord(110, 30), points.get(0));
+		assertEquals(new Coord(130, 10), points.get(1));
+
+		List<List<Coord>> lines = WKTFileCache.getLines(file, map);
+		assertEquals(1, lines.size());
+		assertEquals(3, lines.get(0).size());
+		assertEquals(new Coord(101, 48), lines.get(0).get(0));
+		assertEquals(new Coord(105, 44), lines.get(0).get(2));
+	}
+}